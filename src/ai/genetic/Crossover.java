@@ -0,0 +1,42 @@
+package ai.genetic;
+
+import java.util.SplittableRandom;
+
+@FunctionalInterface
+@SuppressWarnings("unused")
+public interface Crossover<G> {
+    // a new child, the parents stay untouched since they may still be in the population
+    G cross(G first, G second, SplittableRandom random);
+
+    static Crossover<int[]> onePoint() {
+        return (a, b, random) -> {
+            var res = a.clone();
+            var cut = random.nextInt(a.length + 1);
+            System.arraycopy(b, cut, res, cut, a.length - cut);
+            return res;
+        };
+    }
+
+    static Crossover<int[]> twoPoint() {
+        return (a, b, random) -> {
+            var res = a.clone();
+            var i = random.nextInt(a.length + 1);
+            var j = random.nextInt(a.length + 1);
+            System.arraycopy(b, Math.min(i, j), res, Math.min(i, j), Math.abs(i - j));
+            return res;
+        };
+    }
+
+    static Crossover<int[]> uniform() {
+        return (a, b, random) -> {
+            var res = a.clone();
+            for (int i = 0; i < res.length; i += 64) {
+                var bits = random.nextLong();
+                for (int k = i, end = Math.min(res.length, i + 64); k < end; k++, bits >>>= 1)
+                    if ((bits & 1) != 0)
+                        res[k] = b[k];
+            }
+            return res;
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package ai.genetic;
+
+// higher is better, it is called from several threads at once so it should not share mutable state
+@FunctionalInterface
+public interface Fitness<G> {
+    double of(G genome);
+}
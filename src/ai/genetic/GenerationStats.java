@@ -0,0 +1,11 @@
+package ai.genetic;
+
+// fitness of a generation after it is evaluated, evaluations counts the genomes whose fitness was computed for it
+public record GenerationStats(long generation, double best, double mean, double worst, double standardDeviation,
+                              int evaluations, long nanos) {
+    @Override
+    public String toString() {
+        return String.format("gen %d: best %.4f mean %.4f worst %.4f sd %.4f (%d evaluated, %.2f ms)",
+                generation, best, mean, worst, standardDeviation, evaluations, nanos / 1e6);
+    }
+}
@@ -0,0 +1,284 @@
+package ai.genetic;
+
+import utils.Parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// a genetic algorithm over any genome, the population is kept sorted from the best to the worst with the fitness of
+// every individual computed once when it is born, new individuals are evaluated and bred on the shared pool, each
+// child draws from a random seeded by the generation and its slot so a run is repeatable whatever the core count is
+@SuppressWarnings("unused")
+public class GeneticEngine<G> {
+    private static final Comparator<Individual<?>> BEST_FIRST =
+            (a, b) -> Double.compare(b.getFitness(), a.getFitness());
+
+    private final Fitness<G> fitness;
+    private Selection selection;
+    private Crossover<G> crossover;
+    private Mutation<G> mutation;
+    private Mode mode;
+    private double crossoverRate;
+    private int elitism;
+    private double replacement;
+    private long seed;
+    private long generation;
+    private Individual<G>[] population;
+    private final List<GenerationStats> history;
+
+    public GeneticEngine(Fitness<G> fitness, Crossover<G> crossover, Mutation<G> mutation) {
+        this.fitness = fitness;
+        this.crossover = crossover;
+        this.mutation = mutation;
+        selection = Selection.tournament(2);
+        mode = Mode.GENERATIONAL;
+        crossoverRate = 0.9;
+        elitism = 1;
+        replacement = 0.5;
+        seed = System.nanoTime();
+        history = new ArrayList<>();
+    }
+
+    // a population of size genomes made by the factory from a random of every slot
+    public GenerationStats initialize(int size, Function<SplittableRandom, G> factory) {
+        if (size <= 0)
+            throw new IllegalArgumentException("AHD:: Population size should be positive");
+        @SuppressWarnings("unchecked")
+        Individual<G>[] res = (Individual<G>[]) new Individual<?>[size];
+        Parallel.forRange(0, size, Parallel.grainOf(size, 64), (s, e) -> {
+            for (int i = s; i < e; i++)
+                res[i] = new Individual<>(factory.apply(random(-1, i)));
+        });
+        return setPopulation(res);
+    }
+
+    public GenerationStats setPopulation(List<G> genomes) {
+        @SuppressWarnings("unchecked")
+        Individual<G>[] res = (Individual<G>[]) new Individual<?>[genomes.size()];
+        for (int i = 0; i < res.length; i++)
+            res[i] = new Individual<>(genomes.get(i));
+        return setPopulation(res);
+    }
+
+    private GenerationStats setPopulation(Individual<G>[] individuals) {
+        if (individuals.length == 0)
+            throw new IllegalArgumentException("AHD:: Population should not be empty");
+        generation = 0;
+        history.clear();
+        population = individuals;
+        var start = System.nanoTime();
+        var evaluations = evaluate(population);
+        Arrays.sort(population, BEST_FIRST);
+        return record(evaluations, System.nanoTime() - start);
+    }
+
+    // breeds the next generation, generational mode keeps the elites and replaces everything else, steady state keeps
+    // the best and replaces the worst share of the population given by the replacement
+    public GenerationStats step() {
+        if (population == null)
+            throw new IllegalStateException("AHD:: Population is not initialized");
+        var start = System.nanoTime();
+        final var current = population;
+        final var n = current.length;
+        final var kept = mode == Mode.GENERATIONAL ? Math.min(elitism, n) :
+                Math.max(Math.min(elitism, n), n - Math.max(1, (int) Math.round(replacement * n)));
+        var sortedFitness = new double[n];
+        for (int i = 0; i < n; i++)
+            sortedFitness[i] = current[i].getFitness();
+        final var selector = selection.prepare(sortedFitness);
+        @SuppressWarnings("unchecked")
+        final Individual<G>[] next = (Individual<G>[]) new Individual<?>[n];
+        System.arraycopy(current, 0, next, 0, kept);
+        final var g = generation + 1;
+        Parallel.forRange(kept, n, Parallel.grainOf(n - kept, 64), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var random = random(g, i);
+                var first = current[selector.select(random)].getGenome();
+                G child;
+                if (random.nextDouble() < crossoverRate)
+                    child = crossover.cross(first, current[selector.select(random)].getGenome(), random);
+                else
+                    child = crossover.cross(first, first, random);
+                next[i] = new Individual<>(mutation.mutate(child, random));
+            }
+        });
+        var evaluations = evaluate(next);
+        Arrays.sort(next, BEST_FIRST);
+        population = next;
+        generation = g;
+        return record(evaluations, System.nanoTime() - start);
+    }
+
+    public GenerationStats run(int generations) {
+        return run(generations, stats -> false);
+    }
+
+    // steps until the generations are done or stop accepts the stats of a generation
+    public GenerationStats run(int generations, Predicate<GenerationStats> stop) {
+        var res = history.isEmpty() ? null : history.get(history.size() - 1);
+        for (int i = 0; i < generations && (res == null || !stop.test(res)); i++)
+            res = step();
+        return res;
+    }
+
+    // evaluates every individual that is not yet, in parallel, and returns how many were
+    private int evaluate(Individual<G>[] individuals) {
+        var pending = new int[individuals.length];
+        var count = 0;
+        for (int i = 0; i < individuals.length; i++)
+            if (!individuals[i].isEvaluated())
+                pending[count++] = i;
+        final var len = count;
+        Parallel.forRange(0, len, Parallel.grainOf(len, 1), (s, e) -> {
+            for (int k = s; k < e; k++) {
+                var individual = individuals[pending[k]];
+                var f = fitness.of(individual.getGenome());
+                individual.setFitness(Double.isNaN(f) ? Double.NEGATIVE_INFINITY : f);
+            }
+        });
+        return len;
+    }
+
+    private GenerationStats record(int evaluations, long nanos) {
+        double sum = 0, squares = 0;
+        for (var individual : population) {
+            var f = individual.getFitness();
+            sum += f;
+            squares += f * f;
+        }
+        var n = population.length;
+        var mean = sum / n;
+        var stats = new GenerationStats(generation, population[0].getFitness(), mean, population[n - 1].getFitness(),
+                Math.sqrt(Math.max(0, squares / n - mean * mean)), evaluations, nanos);
+        history.add(stats);
+        return stats;
+    }
+
+    private SplittableRandom random(long generation, int slot) {
+        var z = seed + generation * 0x9E3779B97F4A7C15L + slot * 0xD1B54A32D192ED03L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    public Individual<G> getBest() {
+        return population == null ? null : population[0];
+    }
+
+    public Individual<G> get(int rank) {
+        return population[rank];
+    }
+
+    // best first
+    public List<Individual<G>> getPopulation() {
+        return population == null ? List.of() : Collections.unmodifiableList(Arrays.asList(population));
+    }
+
+    public int size() {
+        return population == null ? 0 : population.length;
+    }
+
+    // puts genomes in place of the worst individuals, they are evaluated and the population sorted again
+    public void replaceWorst(List<G> genomes) {
+        if (genomes.size() > population.length)
+            throw new IllegalArgumentException("AHD:: More genomes than the population");
+        for (int i = 0; i < genomes.size(); i++)
+            population[population.length - 1 - i] = new Individual<>(genomes.get(i));
+        evaluate(population);
+        Arrays.sort(population, BEST_FIRST);
+    }
+
+    public List<GenerationStats> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public Fitness<G> getFitness() {
+        return fitness;
+    }
+
+    public Selection getSelection() {
+        return selection;
+    }
+
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
+
+    public Crossover<G> getCrossover() {
+        return crossover;
+    }
+
+    public void setCrossover(Crossover<G> crossover) {
+        this.crossover = crossover;
+    }
+
+    public Mutation<G> getMutation() {
+        return mutation;
+    }
+
+    public void setMutation(Mutation<G> mutation) {
+        this.mutation = mutation;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public double getCrossoverRate() {
+        return crossoverRate;
+    }
+
+    // a child that is not crossed is a copy of its first parent made by crossing it with itself
+    public void setCrossoverRate(double crossoverRate) {
+        if (crossoverRate < 0 || crossoverRate > 1)
+            throw new IllegalArgumentException("AHD:: Crossover rate should be in [0, 1]");
+        this.crossoverRate = crossoverRate;
+    }
+
+    public int getElitism() {
+        return elitism;
+    }
+
+    public void setElitism(int elitism) {
+        if (elitism < 0)
+            throw new IllegalArgumentException("AHD:: Elitism should not be negative");
+        this.elitism = elitism;
+    }
+
+    public double getReplacement() {
+        return replacement;
+    }
+
+    // share of the population replaced by a steady state generation
+    public void setReplacement(double replacement) {
+        if (!(replacement > 0) || replacement > 1)
+            throw new IllegalArgumentException("AHD:: Replacement should be in (0, 1]");
+        this.replacement = replacement;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public enum Mode {
+        GENERATIONAL, STEADY_STATE
+    }
+}
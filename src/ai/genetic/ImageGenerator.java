@@ -1,122 +1,230 @@
 package ai.genetic;
 
-import org.jetbrains.annotations.NotNull;
+import utils.Parallel;
 import utils.Utils;
 
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.*;
-
-import static java.lang.Math.abs;
-import static java.lang.Math.random;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// evolves images toward a base image, a genome is the argb pixels of an image and its fitness is minus the sum of the
+// channel distances to the base, the population is split into islands that evolve on their own cores and every
+// migration interval the best of each island replace the worst of the next one on a ring
 public class ImageGenerator {
-    private final BufferedImage baseImage;
     private final int width;
     private final int height;
-    private int generationCounter;
-    private final ImageGene[] population;
-    private final int[][] baseBuffer;
     private final int len;
+    private final int[] base;
+    private final List<GeneticEngine<int[]>> islands;
+    private int migrationInterval;
+    private int migrants;
+    private double mutationRate;
+    private int mutationStep;
+    private int generationCounter;
 
     public ImageGenerator(BufferedImage baseImage, int populationSize) {
-        this.baseImage = baseImage;
-        var base = Utils.getIntColorArrayOfImage(baseImage);
+        this(baseImage, populationSize, Math.max(1, Math.min(Parallel.parallelism(), populationSize / 2)));
+    }
+
+    // populationSize is split evenly over the islands
+    public ImageGenerator(BufferedImage baseImage, int populationSize, int islandCount) {
+        if (islandCount <= 0 || populationSize < islandCount)
+            throw new IllegalArgumentException("AHD:: Every island needs at least one image");
         width = baseImage.getWidth();
         height = baseImage.getHeight();
         len = width * height;
-        this.baseBuffer = new int[len][];
-        for (int i = 0; i < len; i++) {
-            var c = new Color(base[i]);
-            this.baseBuffer[i] = new int[] { c.getAlpha(), c.getRed(), c.getGreen(), c.getBlue() };
-        }
+        // getRGB gives argb whatever the type of the image, with an alpha of 255 for opaque ones
+        base = baseImage.getRGB(0, 0, width, height, null, 0, width);
+        final var alpha = baseImage.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+        migrationInterval = 10;
+        migrants = 1;
+        mutationRate = 0.002;
+        mutationStep = 48;
         generationCounter = 0;
-        population = new ImageGene[populationSize];
-        Arrays.setAll(population, i -> new ImageGene());
-    }
-
-    public void nextGeneration() {
-        Arrays.sort(population);
-        int mid = population.length / 2;
-        for (int i = 0; i < mid; i++)
-            population[population.length - i - 1].remix(population[i], population[i + 1]);
-        generationCounter++;
-    }
-
-    private class ImageGene implements Comparable<ImageGene> {
-        private static int index = 0;
-        private final int[] buffer;
-        private final BufferedImage image;
-        private final int id = index++;
-
-        public ImageGene(int[] buffer) {
-            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-            this.buffer = Utils.getIntColorArrayOfImage(image);
-            System.arraycopy(buffer, 0, this.buffer, 0, width * height);
-        }
-
-        public ImageGene(BufferedImage image) {
-            this.image = image;
-            buffer = Utils.getIntColorArrayOfImage(image);
+        islands = new ArrayList<>(islandCount);
+        var seed = System.nanoTime();
+        for (int i = 0; i < islandCount; i++) {
+            var island = new GeneticEngine<int[]>(g -> -distance(g), Crossover.twoPoint(),
+                    (g, random) -> mutate(g, random));
+            island.setSeed(seed + i);
+            island.setElitism(1);
+            island.setSelection(Selection.tournament(2));
+            var size = populationSize / islandCount + (i < populationSize % islandCount ? 1 : 0);
+            island.initialize(size, random -> {
+                var res = new int[len];
+                for (int k = 0; k < len; k++)
+                    res[k] = random.nextInt() | alpha;
+                return res;
+            });
+            islands.add(island);
         }
+    }
 
-        public ImageGene() {
-            this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
-            Arrays.setAll(buffer, i -> (int) (Integer.MAX_VALUE * random()));
+    // sum over the pixels of the absolute differences of the four channels, read from the packed ints
+    public long distance(int[] pixels) {
+        final var b = base;
+        long res = 0;
+        for (int i = 0; i < len; i++) {
+            var p = pixels[i];
+            var q = b[i];
+            res += Math.abs((p >>> 24) - (q >>> 24)) +
+                    Math.abs((p >>> 16 & 0xFF) - (q >>> 16 & 0xFF)) +
+                    Math.abs((p >>> 8 & 0xFF) - (q >>> 8 & 0xFF)) +
+                    Math.abs((p & 0xFF) - (q & 0xFF));
         }
+        return res;
+    }
 
-        public int fitness() {
+    // every pixel changes with the mutation rate, each channel moved by up to the mutation step
+    private int[] mutate(int[] pixels, SplittableRandom random) {
+        var log = Math.log1p(-mutationRate);
+        var step = mutationStep;
+        for (long i = -1; ; ) {
+            i += 1 + (long) (Math.log(1 - random.nextDouble()) / log);
+            if (i >= len)
+                break;
+            var p = pixels[(int) i];
             var res = 0;
-            for (int i = 0; i < len; i++) {
-                var b = baseBuffer[i];
-                var t = new Color(buffer[i]);
-                res += abs(b[0] - t.getAlpha()) +
-                        abs(b[1] - t.getRed()) +
-                        abs(b[2] - t.getGreen()) +
-                        abs(b[3] - t.getBlue());
+            for (int shift = 0; shift < 32; shift += 8) {
+                var c = (p >>> shift & 0xFF) + random.nextInt(2 * step + 1) - step;
+                res |= Math.max(0, Math.min(255, c)) << shift;
             }
-            return res;
+            pixels[(int) i] = res;
         }
+        return pixels;
+    }
 
-        public void save() {
-            try {
-                ImageIO.write(image, "png",
-                        new File("tmp/image/" + generationCounter + "-" + id + "-" + fitness() / len + ".png"));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    // runs every island for the generations on its own core, migrating each migration interval
+    public void nextGenerations(int generations) {
+        while (generations > 0) {
+            var run = Math.min(generations, migrationInterval - generationCounter % migrationInterval);
+            Parallel.forRange(0, islands.size(), 1, (s, e) -> {
+                for (int i = s; i < e; i++)
+                    islands.get(i).run(run);
+            });
+            generationCounter += run;
+            generations -= run;
+            if (generationCounter % migrationInterval == 0)
+                migrate();
         }
+    }
 
-        public void remix(ImageGene gene1, ImageGene gene2) {
-            int index = (int) (len * random());
-            int counter = 0;
-            while (counter <= index)
-                buffer[counter] = gene1.buffer[counter++];
-            while (counter < len)
-                buffer[counter] = gene2.buffer[counter++];
-            mutate();
-        }
+    public void nextGeneration() {
+        nextGenerations(1);
+    }
 
-        public void mutate() {
-//            if (random() > 0.9)
-//                return;
-            var seed = 0.17 * len;
-            for (int i = 0; i < seed ; i++)
-                buffer[(int) (random() * len)] = (int) (Integer.MAX_VALUE * random());
-//            mutate();
+    // the best of every island go to the next island on the ring as copies
+    private void migrate() {
+        if (islands.size() < 2 || migrants == 0)
+            return;
+        var outgoing = new ArrayList<List<int[]>>(islands.size());
+        for (var island : islands) {
+            var list = new ArrayList<int[]>();
+            for (int k = 0; k < Math.min(migrants, island.size()); k++)
+                list.add(island.get(k).getGenome().clone());
+            outgoing.add(list);
+        }
+        for (int i = 0; i < islands.size(); i++) {
+            var incoming = outgoing.get((i + islands.size() - 1) % islands.size());
+            var island = islands.get(i);
+            island.replaceWorst(incoming.subList(0, Math.min(incoming.size(), island.size() - 1)));
         }
+    }
 
-        @Override
-        public int compareTo(@NotNull ImageGene o) {
-            return fitness() - o.fitness();
+    public Individual<int[]> getBest() {
+        Individual<int[]> res = null;
+        for (var island : islands)
+            if (res == null || island.getBest().getFitness() > res.getFitness())
+                res = island.getBest();
+        return res;
+    }
+
+    public BufferedImage getBestImage() {
+        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        System.arraycopy(getBest().getGenome(), 0, Utils.getIntColorArrayOfImage(res), 0, len);
+        return res;
+    }
+
+    public void save() {
+        try {
+            ImageIO.write(getBestImage(), "png",
+                    new File("tmp/image/" + generationCounter + "-" + (long) -getBest().getFitness() / len + ".png"));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
     }
 
+    // mean distance of the images of every island to the base
     public double fitness() {
-        return Arrays.stream(population).mapToInt(ImageGene::fitness).average().orElse(0);
+        double sum = 0;
+        var count = 0;
+        for (var island : islands) {
+            for (var individual : island.getPopulation())
+                sum -= individual.getFitness();
+            count += island.size();
+        }
+        return sum / count;
+    }
+
+    public List<GeneticEngine<int[]>> getIslands() {
+        return Collections.unmodifiableList(islands);
+    }
+
+    public int getGenerationCounter() {
+        return generationCounter;
+    }
+
+    public int getMigrationInterval() {
+        return migrationInterval;
+    }
+
+    public void setMigrationInterval(int migrationInterval) {
+        if (migrationInterval <= 0)
+            throw new IllegalArgumentException("AHD:: Migration interval should be positive");
+        this.migrationInterval = migrationInterval;
+    }
+
+    public int getMigrants() {
+        return migrants;
+    }
+
+    public void setMigrants(int migrants) {
+        if (migrants < 0)
+            throw new IllegalArgumentException("AHD:: Migrants should not be negative");
+        this.migrants = migrants;
+    }
+
+    public double getMutationRate() {
+        return mutationRate;
+    }
+
+    public void setMutationRate(double mutationRate) {
+        if (!(mutationRate > 0) || mutationRate >= 1)
+            throw new IllegalArgumentException("AHD:: Mutation rate should be in (0, 1)");
+        this.mutationRate = mutationRate;
+    }
+
+    public int getMutationStep() {
+        return mutationStep;
+    }
+
+    public void setMutationStep(int mutationStep) {
+        if (mutationStep <= 0 || mutationStep > 255)
+            throw new IllegalArgumentException("AHD:: Mutation step should be in [1, 255]");
+        this.mutationStep = mutationStep;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
     }
 
     public static void main(String[] args) throws IOException {
@@ -126,7 +234,6 @@ public class ImageGenerator {
             ig.nextGeneration();
             System.out.println(ig.fitness() / ig.len);
         }
-        Arrays.sort(ig.population);
-        ig.population[0].save();
+        ig.save();
     }
 }
@@ -0,0 +1,44 @@
+package ai.genetic;
+
+// a genome with its fitness, the fitness is computed once by the engine and read from here afterwards
+@SuppressWarnings("unused")
+public final class Individual<G> {
+    private final G genome;
+    private double fitness;
+    private boolean evaluated;
+
+    public Individual(G genome) {
+        this.genome = genome;
+        fitness = Double.NaN;
+    }
+
+    Individual(G genome, double fitness) {
+        this.genome = genome;
+        this.fitness = fitness;
+        evaluated = true;
+    }
+
+    public G getGenome() {
+        return genome;
+    }
+
+    public double getFitness() {
+        if (!evaluated)
+            throw new IllegalStateException("AHD:: Individual is not evaluated yet");
+        return fitness;
+    }
+
+    public boolean isEvaluated() {
+        return evaluated;
+    }
+
+    void setFitness(double fitness) {
+        this.fitness = fitness;
+        evaluated = true;
+    }
+
+    @Override
+    public String toString() {
+        return "f: " + fitness + " " + genome;
+    }
+}
@@ -0,0 +1,47 @@
+package ai.genetic;
+
+import java.util.SplittableRandom;
+
+@FunctionalInterface
+@SuppressWarnings("unused")
+public interface Mutation<G> {
+    // mutates a child that nothing else refers to, it may change it in place and return it
+    G mutate(G genome, SplittableRandom random);
+
+    static <G> Mutation<G> none() {
+        return (g, random) -> g;
+    }
+
+    // every gene is set to a value in [0, bound) with the probability of rate, the count of changes is drawn once
+    // so a low rate costs about the genes it changes
+    static Mutation<int[]> resetInts(double rate, int bound) {
+        if (rate < 0 || rate > 1)
+            throw new IllegalArgumentException("AHD:: Rate should be in [0, 1]");
+        return (g, random) -> {
+            if (rate == 0 || g.length == 0)
+                return g;
+            // gaps between the changed genes are geometric
+            var log = Math.log1p(-rate);
+            for (long i = -1; ; ) {
+                i += 1 + (rate == 1 ? 0 : (long) (Math.log(1 - random.nextDouble()) / log));
+                if (i >= g.length)
+                    break;
+                g[(int) i] = random.nextInt(bound);
+            }
+            return g;
+        };
+    }
+
+    static Mutation<int[]> swap(double probability) {
+        return (g, random) -> {
+            if (g.length > 1 && random.nextDouble() < probability) {
+                var i = random.nextInt(g.length);
+                var j = random.nextInt(g.length);
+                var t = g[i];
+                g[i] = g[j];
+                g[j] = t;
+            }
+            return g;
+        };
+    }
+}
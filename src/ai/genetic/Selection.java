@@ -0,0 +1,89 @@
+package ai.genetic;
+
+import java.util.SplittableRandom;
+
+// picks parents from a population sorted from the best to the worst, prepare runs once per generation so a pick
+// costs a few random numbers or a binary search
+@FunctionalInterface
+@SuppressWarnings("unused")
+public interface Selection {
+    Selector prepare(double[] sortedFitness);
+
+    @FunctionalInterface
+    interface Selector {
+        int select(SplittableRandom random);
+    }
+
+    // the best of size individuals drawn uniformly, the population is sorted so that is the smallest index
+    static Selection tournament(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("AHD:: Tournament size should be positive");
+        return fitness -> random -> {
+            var res = random.nextInt(fitness.length);
+            for (int i = 1; i < size; i++)
+                res = Math.min(res, random.nextInt(fitness.length));
+            return res;
+        };
+    }
+
+    // probability proportional to the fitness above the worst one, so negative fitness works as well
+    static Selection roulette() {
+        return fitness -> {
+            var n = fitness.length;
+            var worst = fitness[n - 1];
+            var cumulative = new double[n];
+            var sum = 0.0;
+            for (int i = 0; i < n; i++)
+                cumulative[i] = sum += fitness[i] - worst;
+            if (!(sum > 0))
+                return random -> random.nextInt(n);
+            return random -> search(cumulative, random.nextDouble() * cumulative[n - 1]);
+        };
+    }
+
+    // probability proportional to the raw fitness among the best share of the population, the rest is never picked,
+    // fitness should not be negative
+    static Selection proportional(double share) {
+        if (!(share > 0) || share > 1)
+            throw new IllegalArgumentException("AHD:: Share of proportional selection should be in (0, 1]");
+        return fitness -> {
+            var n = Math.max(1, (int) (fitness.length * share));
+            var cumulative = new double[n];
+            var sum = 0.0;
+            for (int i = 0; i < n; i++)
+                cumulative[i] = sum += Math.max(0, fitness[i]);
+            if (!(sum > 0))
+                return random -> random.nextInt(n);
+            return random -> search(cumulative, random.nextDouble() * cumulative[n - 1]);
+        };
+    }
+
+    // linear ranking, the best is pressure times as likely as the average and the worst 2 - pressure times
+    static Selection rank(double pressure) {
+        if (pressure < 1 || pressure > 2)
+            throw new IllegalArgumentException("AHD:: Pressure of rank selection should be in [1, 2]");
+        return fitness -> {
+            var n = fitness.length;
+            if (n == 1)
+                return random -> 0;
+            var cumulative = new double[n];
+            var sum = 0.0;
+            for (int i = 0; i < n; i++)
+                cumulative[i] = sum += (2 - pressure) + 2 * (pressure - 1) * (n - 1 - i) / (n - 1.0);
+            return random -> search(cumulative, random.nextDouble() * cumulative[n - 1]);
+        };
+    }
+
+    // the first index whose cumulative weight is above value
+    private static int search(double[] cumulative, double value) {
+        int lo = 0, hi = cumulative.length - 1;
+        while (lo < hi) {
+            var mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > value)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+}
@@ -1,70 +1,69 @@
 package ai.uni2;
 
+import ai.genetic.GenerationStats;
+import ai.genetic.GeneticEngine;
+import ai.genetic.Individual;
+import ai.genetic.Mutation;
+import ai.genetic.Selection;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.Math.random;
 
 public class GeneticAlgorithm {
     private final String level;
     private final Point agent;
-    private List<Gene> population;
+    private final GeneticEngine<Gene> engine;
     private final Map<Gene, Integer> solutions;
 
     public GeneticAlgorithm(String level) {
         this.level = level;
         agent = new Point();
         solutions = new HashMap<>();
+        // the better half survives and the other half is refilled by fathers drawn from the better half in proportion
+        // to their fitness
+        engine = new GeneticEngine<>(gene -> gene.fitness(false), Gene::remix, Mutation.none());
+        engine.setMode(GeneticEngine.Mode.STEADY_STATE);
+        engine.setReplacement(0.5);
+        engine.setSelection(Selection.proportional(0.5));
+        engine.setCrossoverRate(1);
         fillPopulationRandomly(300);
     }
 
-    public void nextGeneration() {
-        Collections.sort(population);
-        int mid = population.size() / 2;
-        var totalWeight = 0;
-        var weights = new double[mid];
-        for (int i = 0; i < mid; i++)
-            totalWeight += population.get(i).fitness(false);
-        for (int i = 0; i < mid; i++)
-            weights[i] = population.get(i).fitness(false) / (double) totalWeight + (i == 0 ? 0 : weights[i - 1]);
-        for (int i = population.size() - 1; i >= mid; i--)
-            population.set(i, father(weights).remix(father(weights)));
+    public GenerationStats nextGeneration() {
+        return engine.step();
     }
 
+    // the better half is paired with its next neighbor in order and the children replace the other half
     public void nextGeneration0() {
-        Collections.sort(population);
+        var population = getPopulation();
         int mid = population.size() / 2;
+        var children = new ArrayList<Gene>(mid);
         for (int i = 0; i < mid; i++)
-            population.set(population.size() - i - 1, population.get(i).remix(population.get(i + 1)));
-    }
-
-    private Gene father(double[] weights) {
-        var rand = random();
-        int counter = -1;
-        //noinspection StatementWithEmptyBody
-        while (weights[++counter] <= rand);
-        return population.get(counter);
+            children.add(population.get(i).remix(population.get(i + 1)));
+        engine.replaceWorst(children);
     }
 
     private void fillPopulationRandomly(int size) {
-        population = new ArrayList<>(size);
-        while (size-- > 0)
-            population.add(new Gene());
+        engine.initialize(size, Gene::new);
         solutions.clear();
     }
 
     public Map<Gene, Integer> getSolutions() {
-        population.forEach(e -> e.fitness(true));
+        getPopulation().forEach(e -> e.fitness(true));
         return solutions;
     }
 
+    // best first
     public List<Gene> getPopulation() {
-        Collections.sort(population);
-        return population;
+        return engine.getPopulation().stream().map(Individual::getGenome).toList();
+    }
+
+    public GeneticEngine<Gene> getEngine() {
+        return engine;
     }
 
     public Point getAgent() {
@@ -73,37 +72,53 @@ public class GeneticAlgorithm {
 
     public class Gene implements Comparable<Gene> {
         public final int[] data;
+        // -1 until computed, fitness is never negative
+        private int fitness = -1;
 
         public Gene() {
             data = new int[level.length()];
             Arrays.setAll(data, i -> (int) (3 * random()));
         }
 
+        public Gene(SplittableRandom random) {
+            data = new int[level.length()];
+            Arrays.setAll(data, i -> random.nextInt(3));
+        }
+
         public Gene(int[] data) {
             this.data = data;
         }
 
         public Gene remix(Gene gene) {
+            return remix(gene, new SplittableRandom((long) (Long.MAX_VALUE * random())));
+        }
+
+        public Gene remix(Gene gene, SplittableRandom random) {
             var data = new int[level.length()];
-            int index = (int) (level.length() * random());
+            int index = random.nextInt(level.length());
             int counter = 0;
             while (counter <= index)
                 data[counter] = this.data[counter++];
             while (counter < level.length())
                 data[counter] = gene.data[counter++];
             var g = new Gene(data);
-            g.mutate();
+            g.mutate(random);
             return g;
         }
 
         public void mutate() {
-            if (random() > 0.1)
-                return;
-            data[(int) (random() * level.length())] = (int) (3 * random());
-            mutate();
+            mutate(new SplittableRandom((long) (Long.MAX_VALUE * random())));
+        }
+
+        public void mutate(SplittableRandom random) {
+            while (random.nextDouble() < 0.1)
+                data[random.nextInt(level.length())] = random.nextInt(3);
+            fitness = -1;
         }
 
         public int fitness(boolean addSolutions) {
+            if (fitness >= 0 && !addSolutions)
+                return fitness;
             int fitness = 0;
             var win = true;
             for (int i = 1; i < data.length; i++) {
@@ -125,7 +140,7 @@ public class GeneticAlgorithm {
             }
             if (data[data.length - 1] == 1)
                 fitness += 2;
-            return Math.max(fitness, 0);
+            return this.fitness = Math.max(fitness, 0);
         }
 
         @Override
@@ -0,0 +1,123 @@
+package ai.uni3;
+
+import java.util.Arrays;
+
+// binary puzzle as a Csp, a cell is the variable row * cols + col with the values 0 and 1, no three equal cells follow
+// each other in a row or a column, a row has at most cols / 2 of each value and a column rows / 2, and no two rows or
+// two columns are equal, cells of -1 are empty
+@SuppressWarnings("unused")
+public class BinaryPuzzle {
+    private final int rows;
+    private final int cols;
+    private final Csp csp;
+
+    public BinaryPuzzle(int[][] cells) {
+        rows = cells.length;
+        cols = rows == 0 ? 0 : cells[0].length;
+        if (rows == 0 || cols == 0)
+            throw new IllegalArgumentException("AHD:: Puzzle should not be empty");
+        csp = new Csp();
+        for (var row : cells) {
+            if (row.length != cols)
+                throw new IllegalArgumentException("AHD:: Every row should have " + cols + " cells");
+            for (var cell : row) {
+                if (cell < -1 || cell > 1)
+                    throw new IllegalArgumentException("AHD:: Cells should be -1, 0 or 1");
+                csp.addVariable(cell == -1 ? 3 : 1L << cell);
+            }
+        }
+        var rowVars = new int[rows][cols];
+        var colVars = new int[cols][rows];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                colVars[j][i] = rowVars[i][j] = variable(i, j);
+        addLines(rowVars);
+        addLines(colVars);
+    }
+
+    private void addLines(int[][] lines) {
+        for (var line : lines) {
+            for (int k = 0; k + 2 < line.length; k++)
+                csp.addConstraint(Constraints.notAllEqual(line[k], line[k + 1], line[k + 2]));
+            var half = line.length / 2;
+            for (int value = 0; value < 2; value++)
+                csp.addConstraint(Constraints.count(line, value, Math.min(half, line.length - half), half));
+        }
+        for (int a = 0; a < lines.length; a++)
+            for (int b = a + 1; b < lines.length; b++)
+                csp.addConstraint(Constraints.differentVectors(lines[a], lines[b]));
+    }
+
+    public int variable(int row, int col) {
+        return row * cols + col;
+    }
+
+    public Csp getCsp() {
+        return csp;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    // the solved cells, null when there is no solution
+    public int[][] solve(CheckingMethod checkingMethod) {
+        return toCells(csp.solve(checkingMethod));
+    }
+
+    public int[][] solvePortfolio(CheckingMethod checkingMethod, int workers) {
+        return toCells(csp.solvePortfolio(checkingMethod, workers));
+    }
+
+    // fixed variables with their value and the others as -1
+    public void write(Domains domains, int[][] cells) {
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                cells[i][j] = domains.isFixed(variable(i, j)) ? domains.value(variable(i, j)) : -1;
+    }
+
+    private int[][] toCells(int[] values) {
+        if (values == null)
+            return null;
+        var res = new int[rows][];
+        for (int i = 0; i < rows; i++)
+            res[i] = Arrays.copyOfRange(values, i * cols, (i + 1) * cols);
+        return res;
+    }
+
+    // whether the cells are a complete grid that keeps every rule
+    public static boolean isSolution(int[][] cells) {
+        var rows = cells.length;
+        var cols = rows == 0 ? 0 : cells[0].length;
+        var columns = new int[cols][rows];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++) {
+                if (cells[i].length != cols || cells[i][j] < 0 || cells[i][j] > 1)
+                    return false;
+                columns[j][i] = cells[i][j];
+            }
+        return keepRules(cells) && keepRules(columns);
+    }
+
+    private static boolean keepRules(int[][] lines) {
+        for (int a = 0; a < lines.length; a++) {
+            var line = lines[a];
+            var ones = 0;
+            for (int k = 0; k < line.length; k++) {
+                ones += line[k];
+                if (k >= 2 && line[k] == line[k - 1] && line[k] == line[k - 2])
+                    return false;
+            }
+            if (ones > line.length / 2 || line.length - ones > line.length / 2)
+                return false;
+            for (int b = a + 1; b < lines.length; b++)
+                if (Arrays.equals(line, lines[b]))
+                    return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,10 @@
+package ai.uni3;
+
+// a constraint is its own propagator, it removes the values of its scope that have no support and returns false when
+// it can not be satisfied anymore, it must fail once its whole scope is fixed to a violating assignment and it keeps
+// no state of its own so one instance serves every solver of a portfolio
+public interface Constraint {
+    int[] scope();
+
+    boolean propagate(Domains domains);
+}
@@ -0,0 +1,203 @@
+package ai.uni3;
+
+import utils.predicate.IntBinaryPredicate;
+
+import java.util.Arrays;
+
+// common constraints over bitset domains, each one prunes in a single pass over its scope
+@SuppressWarnings("unused")
+public final class Constraints {
+    private Constraints() {
+    }
+
+    // arc consistent binary constraint, the supports of every value of both sides are tabled once so a revision is a
+    // few ands of the bitsets
+    public static Constraint binary(int x, int y, IntBinaryPredicate allowed) {
+        if (x == y)
+            throw new IllegalArgumentException("AHD:: A binary constraint needs two variables");
+        var ofX = new long[64];
+        var ofY = new long[64];
+        for (int a = 0; a < 64; a++)
+            for (int b = 0; b < 64; b++)
+                if (allowed.check(a, b)) {
+                    ofX[a] |= 1L << b;
+                    ofY[b] |= 1L << a;
+                }
+        return new Binary(new int[]{x, y}, ofX, ofY);
+    }
+
+    public static Constraint notEqual(int x, int y) {
+        return allDifferent(x, y);
+    }
+
+    public static Constraint allDifferent(int... vars) {
+        return new AllDifferent(distinct(vars, 2));
+    }
+
+    // at least one of the variables differs from the others
+    public static Constraint notAllEqual(int... vars) {
+        return new NotAllEqual(distinct(vars, 2));
+    }
+
+    // the number of variables taking the value is in [min, max]
+    public static Constraint count(int[] vars, int value, int min, int max) {
+        checkValue(value);
+        if (min < 0 || max < min)
+            throw new IllegalArgumentException("AHD:: Count bounds should satisfy 0 <= min <= max");
+        return new Count(distinct(vars, 1), 1L << value, min, max);
+    }
+
+    public static Constraint atMost(int[] vars, int value, int max) {
+        return count(vars, value, 0, max);
+    }
+
+    public static Constraint exactly(int[] vars, int value, int count) {
+        return count(vars, value, count, count);
+    }
+
+    // the two sequences of variables are not equal at every position
+    public static Constraint differentVectors(int[] a, int[] b) {
+        if (a.length != b.length || a.length == 0)
+            throw new IllegalArgumentException("AHD:: Vectors should be non empty with the same length");
+        var scope = Arrays.copyOf(a, a.length * 2);
+        System.arraycopy(b, 0, scope, a.length, b.length);
+        distinct(scope, 2);
+        return new DifferentVectors(scope, a.length);
+    }
+
+    private static int[] distinct(int[] vars, int min) {
+        if (vars.length < min)
+            throw new IllegalArgumentException("AHD:: The constraint needs at least " + min + " variables");
+        var sorted = vars.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++)
+            if (sorted[i] == sorted[i - 1])
+                throw new IllegalArgumentException("AHD:: Variable " + sorted[i] + " is repeated in the scope");
+        return vars.clone();
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0 || value >= 64)
+            throw new IllegalArgumentException("AHD:: Values should be in [0, 64)");
+    }
+
+    private record Binary(int[] scope, long[] ofX, long[] ofY) implements Constraint {
+        @Override
+        public boolean propagate(Domains d) {
+            int x = scope[0], y = scope[1];
+            long dx = d.get(x), dy = d.get(y), sx = 0, sy = 0;
+            for (var m = dx; m != 0; m &= m - 1) {
+                var a = Long.numberOfTrailingZeros(m);
+                if ((ofX[a] & dy) != 0)
+                    sx |= 1L << a;
+            }
+            for (var m = dy; m != 0; m &= m - 1) {
+                var b = Long.numberOfTrailingZeros(m);
+                if ((ofY[b] & sx) != 0)
+                    sy |= 1L << b;
+            }
+            return d.restrict(x, sx) && d.restrict(y, sy);
+        }
+    }
+
+    private record AllDifferent(int[] scope) implements Constraint {
+        @Override
+        public boolean propagate(Domains d) {
+            long union = 0, fixed = 0;
+            for (var v : scope) {
+                var dv = d.get(v);
+                union |= dv;
+                if (Domains.isSingleton(dv)) {
+                    if ((fixed & dv) != 0)
+                        return false;
+                    fixed |= dv;
+                }
+            }
+            // pigeonhole, fewer values than variables left
+            if (Long.bitCount(union) < scope.length)
+                return false;
+            if (fixed != 0)
+                for (var v : scope)
+                    if (!d.isFixed(v) && !d.restrict(v, ~fixed))
+                        return false;
+            return true;
+        }
+    }
+
+    private record NotAllEqual(int[] scope) implements Constraint {
+        @Override
+        public boolean propagate(Domains d) {
+            var common = -1L;
+            var open = -1;
+            for (var v : scope) {
+                var dv = d.get(v);
+                if (Domains.isSingleton(dv)) {
+                    common &= dv;
+                } else if (open >= 0) {
+                    return true;
+                } else {
+                    open = v;
+                }
+            }
+            if (open < 0)
+                return common == 0;
+            // the rest agree on one value, the open one has to take another
+            return common == 0 || d.restrict(open, ~common);
+        }
+    }
+
+    private record Count(int[] scope, long bit, int min, int max) implements Constraint {
+        @Override
+        public boolean propagate(Domains d) {
+            int fixed = 0, possible = 0;
+            for (var v : scope) {
+                var dv = d.get(v);
+                if ((dv & bit) != 0) {
+                    possible++;
+                    if (dv == bit)
+                        fixed++;
+                }
+            }
+            if (fixed > max || possible < min)
+                return false;
+            if (possible == fixed)
+                return true;
+            if (fixed == max) {
+                for (var v : scope)
+                    if (d.get(v) != bit && !d.restrict(v, ~bit))
+                        return false;
+            } else if (possible == min) {
+                for (var v : scope)
+                    if ((d.get(v) & bit) != 0 && !d.restrict(v, bit))
+                        return false;
+            }
+            return true;
+        }
+    }
+
+    private record DifferentVectors(int[] scope, int length) implements Constraint {
+        @Override
+        public boolean propagate(Domains d) {
+            var open = -1;
+            for (int i = 0; i < length; i++) {
+                long a = d.get(scope[i]), b = d.get(scope[i + length]);
+                if ((a & b) == 0)
+                    return true;
+                if (a == b && Domains.isSingleton(a))
+                    continue;
+                if (open >= 0)
+                    return true;
+                open = i;
+            }
+            if (open < 0)
+                return false;
+            // every other position is equal, this one has to differ
+            int x = scope[open], y = scope[open + length];
+            if (d.isFixed(x))
+                return d.restrict(y, ~d.get(x));
+            if (d.isFixed(y))
+                return d.restrict(x, ~d.get(y));
+            return true;
+        }
+    }
+}
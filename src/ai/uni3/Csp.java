@@ -0,0 +1,145 @@
+package ai.uni3;
+
+import utils.Parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// a constraint satisfaction problem, variables are the ints 0 to n - 1 with bitset domains of up to 64 values, the
+// model is only the definition, every solve runs on its own CspSolver so one model serves many searches
+@SuppressWarnings("unused")
+public class Csp {
+    private long[] domains;
+    private int variableCount;
+    private final List<Constraint> constraints;
+    private int[][] constraintsOf;
+
+    public Csp() {
+        domains = new long[16];
+        constraints = new ArrayList<>();
+    }
+
+    // a variable with the values 0 to domainSize - 1
+    public int addVariable(int domainSize) {
+        if (domainSize <= 0 || domainSize > 64)
+            throw new IllegalArgumentException("AHD:: Domain size should be in [1, 64]");
+        return addVariable(domainSize == 64 ? -1L : (1L << domainSize) - 1);
+    }
+
+    public int addVariable(long domain) {
+        if (domain == 0)
+            throw new IllegalArgumentException("AHD:: Domain should not be empty");
+        if (variableCount == domains.length)
+            domains = Arrays.copyOf(domains, variableCount * 2);
+        domains[variableCount] = domain;
+        constraintsOf = null;
+        return variableCount++;
+    }
+
+    public int[] addVariables(int count, int domainSize) {
+        var res = new int[count];
+        for (int i = 0; i < count; i++)
+            res[i] = addVariable(domainSize);
+        return res;
+    }
+
+    public long getDomain(int var) {
+        checkVariable(var);
+        return domains[var];
+    }
+
+    public void setDomain(int var, long domain) {
+        checkVariable(var);
+        if (domain == 0)
+            throw new IllegalArgumentException("AHD:: Domain should not be empty");
+        domains[var] = domain;
+    }
+
+    public void assign(int var, int value) {
+        if (value < 0 || value >= 64 || (getDomain(var) >>> value & 1) == 0)
+            throw new IllegalArgumentException("AHD:: " + value + " is not in the domain of variable " + var);
+        domains[var] = 1L << value;
+    }
+
+    public int addConstraint(Constraint constraint) {
+        for (var v : constraint.scope())
+            checkVariable(v);
+        constraints.add(constraint);
+        constraintsOf = null;
+        return constraints.size() - 1;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public List<Constraint> getConstraints() {
+        return Collections.unmodifiableList(constraints);
+    }
+
+    public CspSolver solver(CheckingMethod checkingMethod) {
+        return new CspSolver(this, checkingMethod, 0);
+    }
+
+    // values of the variables of a solution, null when there is none
+    public int[] solve(CheckingMethod checkingMethod) {
+        var solver = solver(checkingMethod);
+        return solver.solve() ? solver.getSolution() : null;
+    }
+
+    // portfolio search, every worker runs a differently randomized search on the shared pool and the first one that
+    // finishes stops the others, worker 0 is the plain deterministic search
+    public int[] solvePortfolio(CheckingMethod checkingMethod, int workers) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("AHD:: Workers should be positive");
+        constraintsOf();
+        var stop = new AtomicBoolean();
+        var result = new AtomicReference<int[]>();
+        Parallel.forRange(0, workers, 1, (s, e) -> {
+            for (int i = s; i < e && !stop.get(); i++) {
+                var solver = new CspSolver(this, checkingMethod, i);
+                solver.setStopFlag(stop);
+                var solved = solver.solve();
+                // a complete search also ends the portfolio when it proves there is no solution
+                if (!solver.isStopped() && stop.compareAndSet(false, true) && solved)
+                    result.set(solver.getSolution());
+            }
+        });
+        return result.get();
+    }
+
+    long[] domains() {
+        return Arrays.copyOf(domains, variableCount);
+    }
+
+    Constraint[] constraintArray() {
+        return constraints.toArray(new Constraint[0]);
+    }
+
+    // for every variable the indices of the constraints on it
+    synchronized int[][] constraintsOf() {
+        if (constraintsOf != null)
+            return constraintsOf;
+        var counts = new int[variableCount];
+        for (var c : constraints)
+            for (var v : c.scope())
+                counts[v]++;
+        var res = new int[variableCount][];
+        for (int v = 0; v < variableCount; v++)
+            res[v] = new int[counts[v]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < constraints.size(); i++)
+            for (var v : constraints.get(i).scope())
+                res[v][counts[v]++] = i;
+        return constraintsOf = res;
+    }
+
+    private void checkVariable(int var) {
+        if (var < 0 || var >= variableCount)
+            throw new IllegalArgumentException("AHD:: Variable " + var + " is not in [0, " + variableCount + ")");
+    }
+}
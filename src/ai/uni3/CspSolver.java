@@ -0,0 +1,330 @@
+package ai.uni3;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// depth first search over the domains of a Csp, every domain change is pushed on a trail as the variable and its old
+// bitset so going back to a decision pops the trail instead of copying domains, propagation runs the constraints of a
+// queue until nothing changes, with MAC a constraint is queued on every change of its variables and with forward
+// checking only when one of them gets fixed, refuted decisions remove the value and propagate again
+@SuppressWarnings("unused")
+public class CspSolver implements Domains {
+    private final CheckingMethod checkingMethod;
+    private final Constraint[] constraints;
+    private final int[][] constraintsOf;
+    private final int n;
+    private final long[] domains;
+
+    private int[] trailVars;
+    private long[] trailDomains;
+    private int trailSize;
+
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+
+    // unfixed variables as a sparse set, a fixed variable is swapped behind the end and undo brings it back in the
+    // reverse order
+    private final int[] unfixed;
+    private final int[] position;
+    private int unfixedCount;
+    // open[c] is the number of unfixed variables of constraint c and degree[v] the summed weight of the constraints of
+    // v with another unfixed variable, a weight starts at 1 and grows on every failure of its constraint so the
+    // search turns to the variables of the constraints that keep failing, both follow the fixings so the heuristic
+    // never rescans the constraints
+    private final int[] open;
+    private final int[] weights;
+    private final long[] degree;
+    private final int[] tieKeys;
+    private final SplittableRandom random;
+
+    private final int[] decisionVars;
+    private final int[] decisionValues;
+    private final int[] decisionMarks;
+    private int depth;
+
+    private AtomicBoolean stopFlag;
+    private boolean stopped;
+    private int[] solution;
+    private DecisionListener listener;
+    private long nodes;
+    private long failures;
+    private long propagations;
+
+    // seed 0 is the plain search, other seeds break ties and order values randomly
+    public CspSolver(Csp csp, CheckingMethod checkingMethod, long seed) {
+        this.checkingMethod = checkingMethod;
+        constraints = csp.constraintArray();
+        constraintsOf = csp.constraintsOf();
+        domains = csp.domains();
+        n = domains.length;
+        trailVars = new int[Math.max(16, n * 2)];
+        trailDomains = new long[trailVars.length];
+        queue = new int[constraints.length];
+        queued = new boolean[constraints.length];
+        unfixed = new int[n];
+        position = new int[n];
+        open = new int[constraints.length];
+        weights = new int[constraints.length];
+        Arrays.fill(weights, 1);
+        degree = new long[n];
+        tieKeys = new int[n];
+        random = seed == 0 ? null : new SplittableRandom(seed);
+        if (random != null)
+            for (int v = 0; v < n; v++)
+                tieKeys[v] = random.nextInt();
+        decisionVars = new int[n];
+        decisionValues = new int[n];
+        decisionMarks = new int[n];
+        for (int v = 0; v < n; v++)
+            if (!Domains.isSingleton(domains[v])) {
+                position[v] = unfixedCount;
+                unfixed[unfixedCount++] = v;
+            }
+        for (int c = 0; c < constraints.length; c++)
+            for (var v : constraints[c].scope())
+                if (!Domains.isSingleton(domains[v]))
+                    open[c]++;
+        for (int v = 0; v < n; v++)
+            degree[v] = degreeOf(v);
+    }
+
+    public boolean solve() {
+        if (solution != null)
+            return true;
+        for (int c = 0; c < constraints.length; c++)
+            enqueue(c);
+        if (!propagate())
+            return false;
+        while (true) {
+            if (stopFlag != null && stopFlag.get()) {
+                stopped = true;
+                return false;
+            }
+            var v = select();
+            if (v < 0) {
+                solution = new int[n];
+                for (int i = 0; i < n; i++)
+                    solution[i] = Long.numberOfTrailingZeros(domains[i]);
+                return true;
+            }
+            var value = chooseValue(v);
+            if (listener != null)
+                listener.decided(v, value);
+            decisionVars[depth] = v;
+            decisionValues[depth] = value;
+            decisionMarks[depth] = trailSize;
+            depth++;
+            nodes++;
+            if (assign(v, value) && propagate())
+                continue;
+            // the decision failed, refute it in the parent and keep going back while the refutations fail too
+            while (true) {
+                failures++;
+                clearQueue();
+                if (depth == 0)
+                    return false;
+                depth--;
+                undo(decisionMarks[depth]);
+                if (remove(decisionVars[depth], decisionValues[depth]) && propagate())
+                    break;
+            }
+        }
+    }
+
+    // smallest domain first, then the most constraints with other unfixed variables
+    private int select() {
+        int res = -1, bestSize = Integer.MAX_VALUE, bestKey = 0;
+        long bestDegree = -1;
+        for (int i = 0; i < unfixedCount; i++) {
+            var v = unfixed[i];
+            var size = Long.bitCount(domains[v]);
+            if (size > bestSize)
+                continue;
+            var d = degree[v];
+            if (size < bestSize || d > bestDegree || d == bestDegree && tieKeys[v] < bestKey) {
+                res = v;
+                bestSize = size;
+                bestDegree = d;
+                bestKey = tieKeys[v];
+            }
+        }
+        return res;
+    }
+
+    private int chooseValue(int v) {
+        var d = domains[v];
+        if (random == null)
+            return Long.numberOfTrailingZeros(d);
+        for (var k = random.nextInt(Long.bitCount(d)); k > 0; k--)
+            d &= d - 1;
+        return Long.numberOfTrailingZeros(d);
+    }
+
+    private boolean propagate() {
+        while (queueSize > 0) {
+            var c = queue[queueHead];
+            queueHead = queueHead + 1 == queue.length ? 0 : queueHead + 1;
+            queueSize--;
+            queued[c] = false;
+            propagations++;
+            if (!constraints[c].propagate(this)) {
+                weigh(c);
+                clearQueue();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void weigh(int c) {
+        weights[c]++;
+        if (open[c] >= 2)
+            for (var v : constraints[c].scope())
+                if (!Domains.isSingleton(domains[v]))
+                    degree[v]++;
+    }
+
+    private void enqueue(int c) {
+        if (queued[c])
+            return;
+        queued[c] = true;
+        var tail = queueHead + queueSize;
+        queue[tail >= queue.length ? tail - queue.length : tail] = c;
+        queueSize++;
+    }
+
+    private void clearQueue() {
+        while (queueSize > 0) {
+            queued[queue[queueHead]] = false;
+            queueHead = queueHead + 1 == queue.length ? 0 : queueHead + 1;
+            queueSize--;
+        }
+    }
+
+    @Override
+    public long get(int var) {
+        return domains[var];
+    }
+
+    @Override
+    public boolean restrict(int var, long mask) {
+        var old = domains[var];
+        var now = old & mask;
+        if (now == old)
+            return true;
+        if (now == 0)
+            return false;
+        if (trailSize == trailVars.length) {
+            trailVars = Arrays.copyOf(trailVars, trailSize * 2);
+            trailDomains = Arrays.copyOf(trailDomains, trailSize * 2);
+        }
+        trailVars[trailSize] = var;
+        trailDomains[trailSize++] = old;
+        domains[var] = now;
+        var fixed = (now & now - 1) == 0;
+        if (fixed)
+            fixed(var);
+        if (fixed || checkingMethod == CheckingMethod.MAC)
+            for (var c : constraintsOf[var])
+                enqueue(c);
+        return true;
+    }
+
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            var var = trailVars[trailSize];
+            var wasFixed = Domains.isSingleton(domains[var]);
+            domains[var] = trailDomains[trailSize];
+            if (wasFixed && !Domains.isSingleton(domains[var]))
+                unfixed(var);
+        }
+    }
+
+    private void fixed(int v) {
+        var last = unfixed[--unfixedCount];
+        var p = position[v];
+        unfixed[p] = last;
+        position[last] = p;
+        unfixed[unfixedCount] = v;
+        position[v] = unfixedCount;
+        for (var c : constraintsOf[v])
+            if (--open[c] == 1)
+                degree[lastOpen(c, v)] -= weights[c];
+    }
+
+    // exact reverse of fixed, v is the variable fixed last among the fixed ones so it sits right behind the end
+    private void unfixed(int v) {
+        var cs = constraintsOf[v];
+        for (int i = cs.length - 1; i >= 0; i--) {
+            var c = cs[i];
+            if (open[c]++ == 1)
+                degree[lastOpen(c, v)] += weights[c];
+        }
+        unfixedCount++;
+        degree[v] = degreeOf(v);
+    }
+
+    // the only unfixed variable of the constraint other than v
+    private int lastOpen(int c, int v) {
+        for (var u : constraints[c].scope())
+            if (u != v && !Domains.isSingleton(domains[u]))
+                return u;
+        throw new IllegalStateException("AHD:: Constraint " + c + " has no open variable");
+    }
+
+    private long degreeOf(int v) {
+        long res = 0;
+        var self = Domains.isSingleton(domains[v]) ? 0 : 1;
+        for (var c : constraintsOf[v])
+            if (open[c] - self >= 1)
+                res += weights[c];
+        return res;
+    }
+
+    // the values of every variable once solve returned true
+    public int[] getSolution() {
+        return solution == null ? null : solution.clone();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public CheckingMethod getCheckingMethod() {
+        return checkingMethod;
+    }
+
+    public void setStopFlag(AtomicBoolean stopFlag) {
+        this.stopFlag = stopFlag;
+    }
+
+    public void setListener(DecisionListener listener) {
+        this.listener = listener;
+    }
+
+    @FunctionalInterface
+    public interface DecisionListener {
+        // called before the variable is assigned the value, the domains are the ones the decision is taken on
+        void decided(int var, int value);
+    }
+}
@@ -0,0 +1,39 @@
+package ai.uni3;
+
+// view of the current domains that constraints narrow, a domain is a bitset of up to 64 values in a long where bit v
+// set means value v is still possible
+public interface Domains {
+    long get(int var);
+
+    // keeps only the values of the mask, false when the domain becomes empty
+    boolean restrict(int var, long mask);
+
+    default boolean remove(int var, int value) {
+        return restrict(var, ~(1L << value));
+    }
+
+    default boolean assign(int var, int value) {
+        return restrict(var, 1L << value);
+    }
+
+    default boolean contains(int var, int value) {
+        return (get(var) >>> value & 1) != 0;
+    }
+
+    default boolean isFixed(int var) {
+        return isSingleton(get(var));
+    }
+
+    // the lowest value of the domain, the value itself when it is fixed
+    default int value(int var) {
+        return Long.numberOfTrailingZeros(get(var));
+    }
+
+    default int size(int var) {
+        return Long.bitCount(get(var));
+    }
+
+    static boolean isSingleton(long domain) {
+        return domain != 0 && (domain & domain - 1) == 0;
+    }
+}
@@ -0,0 +1,94 @@
+package jmath.datatypes.functions;
+
+import jmath.datatypes.ComplexNumber;
+
+// complex function evaluated in place over primitive arrays of real and imaginary parts, nothing is allocated per value
+@SuppressWarnings("unused")
+@FunctionalInterface
+public interface ComplexKernel {
+    void apply(double[] re, double[] im, int n);
+
+    default ComplexKernel andThen(ComplexKernel after) {
+        return (re, im, n) -> {
+            apply(re, im, n);
+            after.apply(re, im, n);
+        };
+    }
+
+    // boxes every value, only for functions that have no primitive form
+    static ComplexKernel of(CFunction f) {
+        return (re, im, n) -> {
+            for (int i = 0; i < n; i++) {
+                var res = f.valueAt(new ComplexNumber(re[i], im[i], false));
+                re[i] = res.realValue;
+                im[i] = res.imaginaryValue;
+            }
+        };
+    }
+
+    static ComplexKernel identity() {
+        return (re, im, n) -> {};
+    }
+
+    static ComplexKernel power(int power) {
+        if (power < 0)
+            return power(-power).andThen(reciprocal());
+        return (re, im, n) -> {
+            for (int i = 0; i < n; i++) {
+                double x = re[i], y = im[i];
+                double rx = 1, ry = 0;
+                for (int p = power; p > 0; p >>= 1) {
+                    if ((p & 1) == 1) {
+                        var t = rx * x - ry * y;
+                        ry = rx * y + ry * x;
+                        rx = t;
+                    }
+                    var t = x * x - y * y;
+                    y = 2 * x * y;
+                    x = t;
+                }
+                re[i] = rx;
+                im[i] = ry;
+            }
+        };
+    }
+
+    static ComplexKernel reciprocal() {
+        return (re, im, n) -> {
+            for (int i = 0; i < n; i++) {
+                var d = re[i] * re[i] + im[i] * im[i];
+                re[i] = re[i] / d;
+                im[i] = -im[i] / d;
+            }
+        };
+    }
+
+    static ComplexKernel exp() {
+        return (re, im, n) -> {
+            for (int i = 0; i < n; i++) {
+                var r = Math.exp(re[i]);
+                var y = im[i];
+                re[i] = r * Math.cos(y);
+                im[i] = r * Math.sin(y);
+            }
+        };
+    }
+
+    // coefficients are real and given from the highest degree, evaluated with horner's rule
+    static ComplexKernel polynomial(double... coefficients) {
+        final var cs = coefficients.clone();
+        return (re, im, n) -> {
+            for (int i = 0; i < n; i++) {
+                double x = re[i], y = im[i];
+                double rx = 0, ry = 0;
+                for (var c : cs) {
+                    var t = rx * x - ry * y + c;
+                    ry = rx * y + ry * x;
+                    rx = t;
+                }
+                re[i] = rx;
+                im[i] = ry;
+            }
+        };
+    }
+}
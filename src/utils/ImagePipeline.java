@@ -0,0 +1,242 @@
+package utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntUnaryOperator;
+
+// chain of per pixel operations on argb pixels, the whole chain runs in a single pass over tiles of the image on the
+// shared pool so a pixel is read and written once however many operations are chained, the result goes to a buffer
+// the caller gives, which may be the source itself
+@SuppressWarnings("unused")
+public final class ImagePipeline {
+    // 128 x 64 ints are 32 KB, a tile of the source and of the destination stay in the cache together
+    public static final int TILE_WIDTH = 128;
+    public static final int TILE_HEIGHT = 64;
+
+    private final PixelFunction[] stages;
+
+    private ImagePipeline(PixelFunction[] stages) {
+        this.stages = stages;
+    }
+
+    public static ImagePipeline create() {
+        return new ImagePipeline(new PixelFunction[0]);
+    }
+
+    public static ImagePipeline of(IntUnaryOperator op) {
+        return create().map(op);
+    }
+
+    // pipelines are immutable, each call returns a longer chain and keeps this one usable
+    public ImagePipeline map(IntUnaryOperator op) {
+        return then((x, y, argb) -> op.applyAsInt(argb));
+    }
+
+    public ImagePipeline mapAt(PixelFunction op) {
+        return then(op);
+    }
+
+    public ImagePipeline then(ImagePipeline next) {
+        var res = Arrays.copyOf(stages, stages.length + next.stages.length);
+        System.arraycopy(next.stages, 0, res, stages.length, next.stages.length);
+        return new ImagePipeline(res);
+    }
+
+    private ImagePipeline then(PixelFunction op) {
+        var res = Arrays.copyOf(stages, stages.length + 1);
+        res[stages.length] = op;
+        return new ImagePipeline(res);
+    }
+
+    public int size() {
+        return stages.length;
+    }
+
+    public int applyAt(int x, int y, int argb) {
+        for (var stage : stages)
+            argb = stage.apply(x, y, argb);
+        return argb;
+    }
+
+    // dst may be src, both are width x height row major
+    public void apply(int[] src, int[] dst, int width, int height) {
+        checkSize(src, width, height);
+        checkSize(dst, width, height);
+        final var ops = stages;
+        Parallel.forTiles(width, height, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0, i = y * width + x0; x < x1; x++, i++) {
+                    var argb = src[i];
+                    for (var op : ops)
+                        argb = op.apply(x, y, argb);
+                    dst[i] = argb;
+                }
+            }
+        });
+    }
+
+    // same pass on the calling thread, for callers that are already parallel
+    public void applySingleThread(int[] src, int[] dst, int width, int height) {
+        checkSize(src, width, height);
+        checkSize(dst, width, height);
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                var argb = src[i];
+                for (var op : stages)
+                    argb = op.apply(x, y, argb);
+                dst[i] = argb;
+            }
+        }
+    }
+
+    public void apply(BufferedImage image) {
+        apply(image, image);
+    }
+
+    public void apply(BufferedImage src, BufferedImage dst) {
+        var w = src.getWidth();
+        var h = src.getHeight();
+        if (dst.getWidth() != w || dst.getHeight() != h)
+            throw new IllegalArgumentException("AHD:: Source and destination should have the same size");
+        var s = pixelsOf(src);
+        var d = pixelsOf(dst);
+        if (s != null && d != null) {
+            apply(s, d, w, h);
+            return;
+        }
+        // other layouts go through the color model a tile at a time
+        final var ops = stages;
+        Parallel.forTiles(w, h, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            var tw = x1 - x0;
+            var tile = src.getRGB(x0, y0, tw, y1 - y0, null, 0, tw);
+            for (int y = y0, i = 0; y < y1; y++)
+                for (int x = x0; x < x1; x++, i++) {
+                    var argb = tile[i];
+                    for (var op : ops)
+                        argb = op.apply(x, y, argb);
+                    tile[i] = argb;
+                }
+            synchronized (dst) {
+                dst.setRGB(x0, y0, tw, y1 - y0, tile, 0, tw);
+            }
+        });
+    }
+
+    public BufferedImage applyToCopy(BufferedImage src) {
+        var res = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        apply(src, res);
+        return res;
+    }
+
+    // fills dst with the color of every pixel
+    public static void generate(int[] dst, int width, int height, PixelGenerator generator) {
+        checkSize(dst, width, height);
+        Parallel.forTiles(width, height, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++)
+                for (int x = x0, i = y * width + x0; x < x1; x++, i++)
+                    dst[i] = generator.colorAt(x, y);
+        });
+    }
+
+    public static BufferedImage generate(int width, int height, PixelGenerator generator) {
+        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        generate(((DataBufferInt) res.getRaster().getDataBuffer()).getData(), width, height, generator);
+        return res;
+    }
+
+    // reads every image of the directory with one of the extensions, runs the pipeline on it and writes it with the
+    // same name to the output directory, images are spread over the pool and each one is processed by the thread that
+    // decoded it, returns how many images are written
+    public int processDirectory(File inputDirectory, File outputDirectory, String formatName, String... extensions) {
+        var files = inputDirectory.listFiles(f -> f.isFile() && hasExtension(f.getName(), extensions));
+        if (files == null)
+            throw new IllegalArgumentException("AHD:: " + inputDirectory + " is not a readable directory");
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+            throw new IllegalArgumentException("AHD:: Could not create " + outputDirectory);
+        var failures = new ArrayList<Exception>();
+        var written = new int[1];
+        Parallel.forRange(0, files.length, 1, (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var file = files[i];
+                try {
+                    var image = ImageIO.read(file);
+                    if (image == null)
+                        throw new IOException("AHD:: " + file + " is not a readable image");
+                    var argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+                    var g = argb.createGraphics();
+                    g.drawImage(image, 0, 0, null);
+                    g.dispose();
+                    var pixels = pixelsOf(argb);
+                    applySingleThread(pixels, pixels, argb.getWidth(), argb.getHeight());
+                    var res = argb;
+                    // jpeg and bmp writers refuse an alpha channel
+                    if (!formatName.equalsIgnoreCase("png") && !formatName.equalsIgnoreCase("gif")) {
+                        res = new BufferedImage(argb.getWidth(), argb.getHeight(), BufferedImage.TYPE_INT_RGB);
+                        var rg = res.createGraphics();
+                        rg.drawImage(argb, 0, 0, null);
+                        rg.dispose();
+                    }
+                    var name = file.getName();
+                    var dot = name.lastIndexOf('.');
+                    var out = new File(outputDirectory, (dot < 0 ? name : name.substring(0, dot)) + "." + formatName);
+                    if (!ImageIO.write(res, formatName, out))
+                        throw new IOException("AHD:: No writer for the format " + formatName);
+                    synchronized (written) {
+                        written[0]++;
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    synchronized (failures) {
+                        failures.add(ex);
+                    }
+                }
+            }
+        });
+        if (!failures.isEmpty()) {
+            var ex = new RuntimeException("AHD:: " + failures.size() + " of " + files.length + " images failed",
+                    failures.get(0));
+            failures.stream().skip(1).forEach(ex::addSuppressed);
+            throw ex;
+        }
+        return written[0];
+    }
+
+    private static boolean hasExtension(String name, String... extensions) {
+        var lower = name.toLowerCase(Locale.ROOT);
+        if (extensions.length == 0)
+            return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg") ||
+                    lower.endsWith(".bmp") || lower.endsWith(".gif");
+        for (var extension : extensions)
+            if (lower.endsWith("." + extension.toLowerCase(Locale.ROOT)))
+                return true;
+        return false;
+    }
+
+    // the backing pixels when they are argb ints, null for every other layout
+    static int[] pixelsOf(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getDataBuffer() instanceof DataBufferInt b && b.getNumBanks() == 1 &&
+                image.getRaster().getParent() == null)
+            return b.getData();
+        return null;
+    }
+
+    private static void checkSize(int[] pixels, int width, int height) {
+        if (width < 0 || height < 0 || pixels.length < (long) width * height)
+            throw new IllegalArgumentException("AHD:: Pixels are less than " + width + " x " + height);
+    }
+
+    @FunctionalInterface
+    public interface PixelFunction {
+        int apply(int x, int y, int argb);
+    }
+
+    @FunctionalInterface
+    public interface PixelGenerator {
+        int colorAt(int x, int y);
+    }
+}
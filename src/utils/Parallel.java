@@ -0,0 +1,118 @@
+package utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// shared pool for data parallel jobs, use it instead of creating threads per call
+@SuppressWarnings("unused")
+public final class Parallel {
+    private static final ForkJoinPool pool;
+
+    static {
+        var counter = new AtomicInteger();
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+            var t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("ulib-parallel-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    public static ForkJoinPool pool() {
+        return pool;
+    }
+
+    public static int parallelism() {
+        return pool.getParallelism();
+    }
+
+    public static boolean inPool() {
+        return Thread.currentThread() instanceof ForkJoinWorkerThread w && w.getPool() == pool;
+    }
+
+    public static int grainOf(int len, int minGrain) {
+        return Math.max(minGrain, len / (parallelism() * 4) + 1);
+    }
+
+    public static void forRange(int from, int to, int grain, IntRangeConsumer body) {
+        if (to - from <= grain || parallelism() < 2) {
+            body.accept(from, to);
+            return;
+        }
+        var task = new RangeAction(from, to, Math.max(grain, 1), body);
+        if (inPool())
+            task.invoke();
+        else
+            pool.invoke(task);
+    }
+
+    public static void forRange(int from, int to, IntRangeConsumer body) {
+        forRange(from, to, grainOf(to - from, 1), body);
+    }
+
+    public static void forEach(int from, int to, IntConsumer body) {
+        forRange(from, to, (s, e) -> {
+            for (int i = s; i < e; i++)
+                body.accept(i);
+        });
+    }
+
+    public static void forTiles(int width, int height, int tileWidth, int tileHeight, TileConsumer body) {
+        if (width <= 0 || height <= 0)
+            return;
+        final var tw = Math.max(1, tileWidth);
+        final var th = Math.max(1, tileHeight);
+        final var cols = (width + tw - 1) / tw;
+        final var rows = (height + th - 1) / th;
+        forRange(0, cols * rows, 1, (s, e) -> {
+            for (int t = s; t < e; t++) {
+                var x = (t % cols) * tw;
+                var y = (t / cols) * th;
+                body.accept(x, y, Math.min(x + tw, width), Math.min(y + th, height));
+            }
+        });
+    }
+
+    private static final class RangeAction extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final IntRangeConsumer body;
+
+        private RangeAction(int from, int to, int grain, IntRangeConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.accept(from, to);
+                return;
+            }
+            var mid = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, mid, grain, body), new RangeAction(mid, to, grain, body));
+        }
+    }
+
+    @FunctionalInterface
+    public interface IntRangeConsumer {
+        void accept(int from, int to);
+    }
+
+    @FunctionalInterface
+    public interface IntConsumer {
+        void accept(int i);
+    }
+
+    @FunctionalInterface
+    public interface TileConsumer {
+        void accept(int x0, int y0, int x1, int y1);
+    }
+
+    private Parallel() {}
+}
@@ -11,15 +11,18 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 import swingutils.MainFrame;
 import utils.annotation.NotFinal;
+import utils.filter.Filters;
+import utils.filter.InverseMapper;
+import utils.filter.ResampleFilter;
+import utils.filter.Warp;
 import utils.predicate.IntBinaryPredicate;
 import visualization.canvas.*;
 import visualization.canvas.Canvas;
+import visualization.canvas.export.FrameWriter;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.awt.image.RenderedImage;
@@ -115,6 +118,7 @@ public final class Utils {
         return getAs2dArray(getIntColorArrayOfImage(bi), bi.getWidth(), bi.getHeight());
     }
 
+    // numOfThreads below 1 runs on the calling thread, otherwise the shared pool decides the threads
     public static void multiThreadIntArraySetter(int[] src, IntUnaryOperator func, int numOfThreads) {
         if (numOfThreads < 1) {
             var len = src.length;
@@ -122,46 +126,30 @@ public final class Utils {
                 src[i] = func.applyAsInt(i);
             return;
         }
-        var list = new Thread[numOfThreads];
-        var partLen = src.length / numOfThreads;
-        for (var i = 0; i < numOfThreads; i++) {
-            final var counter = i;
-            var t = new Thread(() -> {
-                var start = counter * partLen;
-                var end = counter == numOfThreads - 1 ? src.length : start + partLen;
-                for (int j = start; j < end; j++)
-                    src[j] = func.applyAsInt(j);
-            });
-            list[counter] = t;
-            t.start();
-        }
-        for (var t : list)
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        Parallel.forRange(0, src.length, Parallel.grainOf(src.length, 4096), (s, e) -> {
+            for (int j = s; j < e; j++)
+                src[j] = func.applyAsInt(j);
+        });
     }
 
     public static @NotNull BufferedImage createImage(int width, int height, IntBinaryOperator colorFunc, int numOfThreads) {
-        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        multiThreadIntArraySetter(getIntColorArrayOfImage(res), i -> colorFunc.applyAsInt(i / width, i % width), numOfThreads);
-        return res;
+        if (numOfThreads < 1)
+            return createImageSingleThread(width, height, i -> colorFunc.applyAsInt(i / width, i % width));
+        return ImagePipeline.generate(width, height, (x, y) -> colorFunc.applyAsInt(y, x));
     }
 
     public static @NotNull BufferedImage createImage(int width, int height, IntUnaryOperator colorFunc, int numOfThreads) {
-        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        multiThreadIntArraySetter(getIntColorArrayOfImage(res), colorFunc, numOfThreads);
-        return res;
+        if (numOfThreads < 1)
+            return createImageSingleThread(width, height, colorFunc);
+        return ImagePipeline.generate(width, height, (x, y) -> colorFunc.applyAsInt(y * width + x));
     }
 
     public static @NotNull BufferedImage createImage(@NotNull CoordinatedCanvas cc, ColorFunction colorFunc, int numOfThreads) {
         var w = cc.getWidth();
         var h = cc.getHeight();
-        var res = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        multiThreadIntArraySetter(getIntColorArrayOfImage(res),
-                i -> colorFunc.valueAt(cc.coordinateX(i / w), cc.coordinateY(i % w)).getRGB(), numOfThreads);
-        return res;
+        if (numOfThreads < 1)
+            return createImageSingleThread(w, h, i -> colorFunc.valueAt(cc.coordinateX(i / w), cc.coordinateY(i % w)).getRGB());
+        return ImagePipeline.generate(w, h, (x, y) -> colorFunc.valueAt(cc.coordinateX(y), cc.coordinateY(x)).getRGB());
     }
 
     public static @NotNull BufferedImage createImage(int width, int height, @NotNull Render render) {
@@ -185,6 +173,17 @@ public final class Utils {
         return res;
     }
 
+    // same frames as createImageSequence but streamed to the writer instead of being kept in memory
+    public static void writeImageSequence(int width, int height, Render render, int numOfFrames, FrameWriter writer) {
+        try (var recorder = new FrameRecorder(writer, FrameRecorder.OverflowPolicy.BLOCK,
+                FrameRecorder.DEFAULT_QUEUE_CAPACITY, Runtime.getRuntime().availableProcessors())) {
+            for (int i = 0; i < numOfFrames; i++) {
+                recorder.record(width, height, null, render::render);
+                render.tick();
+            }
+        }
+    }
+
     @Contract("null -> fail")
     @Deprecated(forRemoval = true)
     public static @NotNull BufferedImage createMergeImageFromImageSequence(BufferedImage[] imageSequence) {
@@ -236,7 +235,7 @@ public final class Utils {
             return;
         }
         var pixels = getIntColorArrayOfImage(image);
-        multiThreadIntArraySetter(pixels, i -> func.applyAsInt(pixels[i]), numOfThreads);
+        ImagePipeline.of(func).apply(pixels, pixels, image.getWidth(), image.getHeight());
     }
 
     public static @NotNull BufferedImage readImage(String path) throws IOException {
@@ -265,14 +264,13 @@ public final class Utils {
         return res;
     }
 
+    // the effector changes the source pixel wherever the predicate holds for (row, col)
     public static @NotNull BufferedImage cloneAffectivelyImage(@NotNull BufferedImage source, IntUnaryOperator effector,
             IntBinaryPredicate changePredicate) {
         final var w = source.getWidth();
         var res = new BufferedImage(w, source.getHeight(), BufferedImage.TYPE_INT_ARGB);
-        var c = getIntColorArrayOfImage(res);
-        var s = getIntColorArrayOfImage(source);
-        for (int i = 0; i < c.length; i++)
-            c[i] = changePredicate.test(i / w, i % w) ? effector.applyAsInt(c[i]) : s[i];
+        ImagePipeline.create().mapAt((x, y, argb) -> changePredicate.test(y, x) ? effector.applyAsInt(argb) : argb)
+                .apply(getIntColorArrayOfImage(source), getIntColorArrayOfImage(res), w, source.getHeight());
         return res;
     }
 
@@ -283,24 +281,22 @@ public final class Utils {
         final var w = source.getWidth();
         final var h = source.getHeight();
         var res = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        var c = getIntColorArrayOfImage(res);
-        var s = getIntColorArrayOfImage(source);
-        for (int i = 0; i < s.length; i++) {
-            final var x = i / w;
-            final var y = i % w;
-            var m = spatialMapper.map(x, y);
-            if (m.x >= 0 && m.y >= 0 && m.x < h && m.y < w) {
-                c[i] = mappingPredicate.check(m.x, m.y) ? s[m.x * w + m.y] : colorIfNotMapping.applyAsInt(x, y);
-            } else if (colorIfNotInBound != null) {
-                c[i] = colorIfNotInBound.applyAsInt(x, y);
-            } else {
-                while (m.x < 0) m.x += h;
-                while (m.x >= h) m.x -= h;
-                while (m.y < 0) m.y += w;
-                while (m.y >= w) m.x -= w;
-                c[i] = s[m.x * w + m.y];
+        final var c = getIntColorArrayOfImage(res);
+        final var s = getIntColorArrayOfImage(source);
+        Parallel.forTiles(w, h, ImagePipeline.TILE_WIDTH, ImagePipeline.TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int x = y0; x < y1; x++) {
+                for (int y = x0, i = x * w + x0; y < x1; y++, i++) {
+                    var m = spatialMapper.map(x, y);
+                    if (m.x >= 0 && m.y >= 0 && m.x < h && m.y < w) {
+                        c[i] = mappingPredicate.check(m.x, m.y) ? s[m.x * w + m.y] : colorIfNotMapping.applyAsInt(x, y);
+                    } else if (colorIfNotInBound != null) {
+                        c[i] = colorIfNotInBound.applyAsInt(x, y);
+                    } else {
+                        c[i] = s[Math.floorMod(m.x, h) * w + Math.floorMod(m.y, w)];
+                    }
+                }
             }
-        }
+        });
         return res;
     }
 
@@ -346,6 +342,7 @@ public final class Utils {
                 images.stream().mapToInt(BufferedImage::getHeight).min().orElse(0));
     }
 
+    // every pixel of the result is the mean of a squareWidth x squareHeight block of the source, colors weighted by alpha
     public static @NotNull BufferedImage squareBaseSample(@NotNull BufferedImage source, int squareWidth, int squareHeight) {
         var ws = source.getWidth();
         var w = ws / squareWidth;
@@ -353,9 +350,26 @@ public final class Utils {
         var res = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
         var s = getIntColorArrayOfImage(source);
         var c = getIntColorArrayOfImage(res);
-        for (int i = 0; i < h; i++)
-            for (int j = 0; j < w; j++)
-                c[i * w + j] = s[i * squareHeight * ws + j * squareWidth];
+        var n = squareWidth * squareHeight;
+        Parallel.forRange(0, h, Parallel.grainOf(h, 1), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                for (int j = 0; j < w; j++) {
+                    long a = 0, r = 0, g = 0, b = 0;
+                    for (int y = i * squareHeight; y < (i + 1) * squareHeight; y++) {
+                        for (int x = j * squareWidth, k = y * ws + x; x < (j + 1) * squareWidth; x++, k++) {
+                            var p = s[k];
+                            var alpha = p >>> 24;
+                            a += alpha;
+                            r += (p >>> 16 & 0xFF) * alpha;
+                            g += (p >>> 8 & 0xFF) * alpha;
+                            b += (p & 0xFF) * alpha;
+                        }
+                    }
+                    c[i * w + j] = a == 0 ? 0 : (int) ((a + n / 2) / n) << 24 | (int) ((r + a / 2) / a) << 16 |
+                            (int) ((g + a / 2) / a) << 8 | (int) ((b + a / 2) / a);
+                }
+            }
+        });
         return res;
     }
 
@@ -364,24 +378,11 @@ public final class Utils {
         final double cos = Math.abs(Math.cos(radian));
         final int w = (int) Math.floor(bi.getWidth() * cos + bi.getHeight() * sin);
         final int h = (int) Math.floor(bi.getHeight() * cos + bi.getWidth() * sin);
-        final BufferedImage rotatedImage = new BufferedImage(w, h, bi.getType());
-        final AffineTransform at = new AffineTransform();
-        at.translate(w / 2.0, h / 2.0);
-        at.rotate(radian,0, 0);
-        at.translate(-bi.getWidth() / 2.0, -bi.getHeight() / 2.0);
-        final AffineTransformOp rotateOp = new AffineTransformOp(at, AffineTransformOp.TYPE_BILINEAR);
-        rotateOp.filter(bi, rotatedImage);
-        return rotatedImage;
+        return new Warp(InverseMapper.rotation(radian, bi.getWidth(), bi.getHeight(), w, h)).apply(bi, w, h);
     }
 
     public static BufferedImage getScaledImage(@NotNull BufferedImage bi, double xFactor, double yFactor) {
-        final int w = bi.getWidth();
-        final int h = bi.getHeight();
-        BufferedImage scaledImage = new BufferedImage((int) (w * xFactor), (int) (h * yFactor), BufferedImage.TYPE_INT_ARGB);
-        final AffineTransform at = AffineTransform.getScaleInstance(xFactor, yFactor);
-        final AffineTransformOp ato = new AffineTransformOp(at, AffineTransformOp.TYPE_BICUBIC);
-        scaledImage = ato.filter(bi, scaledImage);
-        return scaledImage;
+        return Filters.resize(bi, (int) (bi.getWidth() * xFactor), (int) (bi.getHeight() * yFactor), ResampleFilter.BICUBIC);
     }
     //////////////////////
 
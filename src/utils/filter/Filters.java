@@ -0,0 +1,350 @@
+package utils.filter;
+
+import utils.ImagePipeline;
+import utils.Parallel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// filters of argb buffers, every pass runs over tiles of the image on the shared pool, the source and the destination
+// may be the same buffer, premultiplied filters colors multiplied by alpha which keeps transparent pixels from
+// darkening the edges of opaque ones, blurs and resampling filter alpha as well while convolve and unsharpMask keep
+// the alpha of the source unless premultiplied
+@SuppressWarnings("unused")
+public final class Filters {
+    private static final int TILE_WIDTH = ImagePipeline.TILE_WIDTH;
+    private static final int TILE_HEIGHT = ImagePipeline.TILE_HEIGHT;
+
+    public static void gaussianBlur(int[] src, int[] dst, int width, int height, double sigma, boolean premultiplied) {
+        var taps = Kernel.gaussian(sigma);
+        convolveSeparable(src, dst, width, height, taps, taps, premultiplied);
+    }
+
+    // passes of a box blur of radius r, three passes are close to a gaussian of sigma sqrt(r * (r + 1)), a pass costs
+    // the same whatever the radius is
+    public static void boxBlur(int[] src, int[] dst, int width, int height, int radius, int passes, boolean premultiplied) {
+        if (radius < 0 || passes < 0)
+            throw new IllegalArgumentException("AHD:: Radius and passes should not be negative");
+        var planes = Planes.of(src, width, height, premultiplied);
+        var tmp = new float[width * height];
+        for (var c : planes.channels) {
+            for (int p = 0; p < passes; p++) {
+                boxHorizontal(c, tmp, width, height, radius);
+                boxVertical(tmp, c, width, height, radius);
+            }
+        }
+        planes.store(dst, premultiplied);
+    }
+
+    public static void convolveSeparable(int[] src, int[] dst, int width, int height, float[] horizontal,
+                                         float[] vertical, boolean premultiplied) {
+        if (horizontal.length == 0 || vertical.length == 0)
+            throw new IllegalArgumentException("AHD:: Kernel should not be empty");
+        var planes = Planes.of(src, width, height, premultiplied);
+        separable(planes, planes, horizontal, vertical, 0);
+        planes.store(dst, premultiplied);
+    }
+
+    public static void convolve(int[] src, int[] dst, int width, int height, Kernel kernel, boolean premultiplied) {
+        var planes = Planes.of(src, width, height, premultiplied);
+        var res = new Planes(width, height);
+        final var first = premultiplied ? 0 : 1;
+        if (first == 1)
+            res.channels[0] = planes.channels[0];
+        final var kw = kernel.getWidth();
+        final var kh = kernel.getHeight();
+        final var cx = kw / 2;
+        final var cy = kh / 2;
+        final var weights = kernel.weights();
+        Parallel.forTiles(width, height, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int c = first; c < 4; c++) {
+                var s = planes.channels[c];
+                var d = res.channels[c];
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        var sum = 0f;
+                        var interior = x - cx >= 0 && x - cx + kw <= width;
+                        for (int ky = 0, k = 0; ky < kh; ky++) {
+                            var row = clamp(y + ky - cy, height) * width;
+                            if (interior) {
+                                for (int kx = 0, i = row + x - cx; kx < kw; kx++, k++, i++)
+                                    sum += weights[k] * s[i];
+                            } else {
+                                for (int kx = 0; kx < kw; kx++, k++)
+                                    sum += weights[k] * s[row + clamp(x + kx - cx, width)];
+                            }
+                        }
+                        d[y * width + x] = sum;
+                    }
+                }
+            }
+        });
+        res.store(dst, premultiplied);
+    }
+
+    // sharpens by adding amount times the difference to a gaussian blur wherever it is at least threshold in [0, 255]
+    public static void unsharpMask(int[] src, int[] dst, int width, int height, double sigma, double amount,
+                                   double threshold, boolean premultiplied) {
+        var planes = Planes.of(src, width, height, premultiplied);
+        var blurred = new Planes(width, height);
+        var taps = Kernel.gaussian(sigma);
+        final var first = premultiplied ? 0 : 1;
+        separable(planes, blurred, taps, taps, first);
+        final var a = (float) amount;
+        final var t = (float) threshold;
+        Parallel.forRange(0, height, Parallel.grainOf(height, 8), (s, e) -> {
+            for (int c = first; c < 4; c++) {
+                var p = planes.channels[c];
+                var b = blurred.channels[c];
+                for (int i = s * width, end = e * width; i < end; i++) {
+                    var diff = p[i] - b[i];
+                    if (Math.abs(diff) >= t)
+                        p[i] += a * diff;
+                }
+            }
+        });
+        planes.store(dst, premultiplied);
+    }
+
+    // resamples the source to dstWidth x dstHeight, a shrinking filter is widened by the factor so every source pixel
+    // contributes and the result does not alias
+    public static void resize(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight,
+                              ResampleFilter filter, boolean premultiplied) {
+        if (dstWidth <= 0 || dstHeight <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid size of the destination");
+        checkSize(dst, dstWidth, dstHeight);
+        var planes = Planes.of(src, srcWidth, srcHeight, premultiplied);
+        var tmp = new Planes(dstWidth, srcHeight);
+        var res = new Planes(dstWidth, dstHeight);
+        final var cx = Contributions.of(srcWidth, dstWidth, filter);
+        final var cy = Contributions.of(srcHeight, dstHeight, filter);
+        Parallel.forTiles(dstWidth, srcHeight, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int c = 0; c < 4; c++) {
+                var s = planes.channels[c];
+                var d = tmp.channels[c];
+                for (int y = y0; y < y1; y++) {
+                    var row = y * srcWidth;
+                    for (int x = x0; x < x1; x++) {
+                        var sum = 0f;
+                        for (int t = 0, k = x * cx.taps; t < cx.taps; t++, k++)
+                            sum += cx.weights[k] * s[row + cx.indices[k]];
+                        d[y * dstWidth + x] = sum;
+                    }
+                }
+            }
+        });
+        Parallel.forTiles(dstWidth, dstHeight, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            var acc = new float[x1 - x0];
+            for (int c = 0; c < 4; c++) {
+                var s = tmp.channels[c];
+                var d = res.channels[c];
+                for (int y = y0; y < y1; y++) {
+                    Arrays.fill(acc, 0);
+                    for (int t = 0, k = y * cy.taps; t < cy.taps; t++, k++) {
+                        var w = cy.weights[k];
+                        var row = cy.indices[k] * dstWidth;
+                        for (int x = x0; x < x1; x++)
+                            acc[x - x0] += w * s[row + x];
+                    }
+                    System.arraycopy(acc, 0, d, y * dstWidth + x0, x1 - x0);
+                }
+            }
+        });
+        res.store(dst, premultiplied);
+    }
+
+    public static BufferedImage gaussianBlur(BufferedImage image, double sigma) {
+        var res = argbCopy(image);
+        var pixels = pixelsOf(res);
+        gaussianBlur(pixels, pixels, res.getWidth(), res.getHeight(), sigma, true);
+        return res;
+    }
+
+    public static BufferedImage boxBlur(BufferedImage image, int radius, int passes) {
+        var res = argbCopy(image);
+        var pixels = pixelsOf(res);
+        boxBlur(pixels, pixels, res.getWidth(), res.getHeight(), radius, passes, true);
+        return res;
+    }
+
+    public static BufferedImage convolve(BufferedImage image, Kernel kernel) {
+        var res = argbCopy(image);
+        var pixels = pixelsOf(res);
+        convolve(pixels, pixels, res.getWidth(), res.getHeight(), kernel, false);
+        return res;
+    }
+
+    public static BufferedImage unsharpMask(BufferedImage image, double sigma, double amount, double threshold) {
+        var res = argbCopy(image);
+        var pixels = pixelsOf(res);
+        unsharpMask(pixels, pixels, res.getWidth(), res.getHeight(), sigma, amount, threshold, true);
+        return res;
+    }
+
+    public static BufferedImage resize(BufferedImage image, int width, int height, ResampleFilter filter) {
+        var src = argbCopy(image);
+        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        resize(pixelsOf(src), src.getWidth(), src.getHeight(), pixelsOf(res), width, height, filter, true);
+        return res;
+    }
+
+    // fits the image in maxSide x maxSide keeping its aspect ratio, images already smaller are only copied
+    public static BufferedImage thumbnail(BufferedImage image, int maxSide) {
+        if (maxSide <= 0)
+            throw new IllegalArgumentException("AHD:: Side of the thumbnail should be positive");
+        var scale = Math.min(1, maxSide / (double) Math.max(image.getWidth(), image.getHeight()));
+        return resize(image, Math.max(1, (int) Math.round(image.getWidth() * scale)),
+                Math.max(1, (int) Math.round(image.getHeight() * scale)), ResampleFilter.LANCZOS3);
+    }
+
+    // horizontal then vertical pass of every channel from the first one, out may be in
+    private static void separable(Planes in, Planes out, float[] horizontal, float[] vertical, int firstChannel) {
+        final var width = in.width;
+        final var height = in.height;
+        final var tmp = new Planes(width, height);
+        final var hr = horizontal.length / 2;
+        final var vr = vertical.length / 2;
+        Parallel.forTiles(width, height, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            for (int c = firstChannel; c < 4; c++) {
+                var s = in.channels[c];
+                var d = tmp.channels[c];
+                for (int y = y0; y < y1; y++) {
+                    var row = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        var sum = 0f;
+                        if (x - hr >= 0 && x - hr + horizontal.length <= width) {
+                            for (int t = 0, i = row + x - hr; t < horizontal.length; t++, i++)
+                                sum += horizontal[t] * s[i];
+                        } else {
+                            for (int t = 0; t < horizontal.length; t++)
+                                sum += horizontal[t] * s[row + clamp(x + t - hr, width)];
+                        }
+                        d[row + x] = sum;
+                    }
+                }
+            }
+        });
+        // rows of the tile are added whole so the inner loop streams along a row
+        Parallel.forTiles(width, height, TILE_WIDTH, TILE_HEIGHT, (x0, y0, x1, y1) -> {
+            var acc = new float[x1 - x0];
+            for (int c = firstChannel; c < 4; c++) {
+                var s = tmp.channels[c];
+                var d = out.channels[c];
+                for (int y = y0; y < y1; y++) {
+                    Arrays.fill(acc, 0);
+                    for (int t = 0; t < vertical.length; t++) {
+                        var w = vertical[t];
+                        var row = clamp(y + t - vr, height) * width;
+                        for (int x = x0; x < x1; x++)
+                            acc[x - x0] += w * s[row + x];
+                    }
+                    System.arraycopy(acc, 0, d, y * width + x0, x1 - x0);
+                }
+            }
+        });
+    }
+
+    private static void boxHorizontal(float[] s, float[] d, int width, int height, int r) {
+        final var inv = 1f / (2 * r + 1);
+        Parallel.forRange(0, height, Parallel.grainOf(height, 8), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                var row = y * width;
+                double sum = 0;
+                for (int t = -r; t <= r; t++)
+                    sum += s[row + clamp(t, width)];
+                for (int x = 0; x < width; x++) {
+                    d[row + x] = (float) (sum * inv);
+                    sum += s[row + clamp(x + r + 1, width)] - s[row + clamp(x - r, width)];
+                }
+            }
+        });
+    }
+
+    // a strip of columns keeps a running sum per column and slides them down one row at a time
+    private static void boxVertical(float[] s, float[] d, int width, int height, int r) {
+        final var inv = 1f / (2 * r + 1);
+        Parallel.forTiles(width, 1, TILE_WIDTH, 1, (x0, y0, x1, y1) -> {
+            var sums = new double[x1 - x0];
+            for (int t = -r; t <= r; t++) {
+                var row = clamp(t, height) * width;
+                for (int x = x0; x < x1; x++)
+                    sums[x - x0] += s[row + x];
+            }
+            for (int y = 0; y < height; y++) {
+                var row = y * width;
+                var add = clamp(y + r + 1, height) * width;
+                var sub = clamp(y - r, height) * width;
+                for (int x = x0; x < x1; x++) {
+                    var k = x - x0;
+                    d[row + x] = (float) (sums[k] * inv);
+                    sums[k] += s[add + x] - s[sub + x];
+                }
+            }
+        });
+    }
+
+    private static int clamp(int i, int len) {
+        return i < 0 ? 0 : i >= len ? len - 1 : i;
+    }
+
+    private static BufferedImage argbCopy(BufferedImage image) {
+        var res = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        var g = res.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return res;
+    }
+
+    private static int[] pixelsOf(BufferedImage argb) {
+        return ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    static void checkSize(int[] pixels, int width, int height) {
+        if (width <= 0 || height <= 0 || pixels.length < (long) width * height)
+            throw new IllegalArgumentException("AHD:: Pixels are less than " + width + " x " + height);
+    }
+
+    // source pixels and weights of every destination pixel along one axis, taps per pixel with clamped indices
+    private static final class Contributions {
+        private final int taps;
+        private final int[] indices;
+        private final float[] weights;
+
+        private Contributions(int taps, int[] indices, float[] weights) {
+            this.taps = taps;
+            this.indices = indices;
+            this.weights = weights;
+        }
+
+        private static Contributions of(int srcLen, int dstLen, ResampleFilter filter) {
+            var scale = dstLen / (double) srcLen;
+            var stretch = Math.max(1, 1 / scale);
+            var support = filter.support() * stretch;
+            var taps = (int) Math.ceil(2 * support) + 1;
+            var indices = new int[dstLen * taps];
+            var weights = new float[dstLen * taps];
+            for (int i = 0; i < dstLen; i++) {
+                var center = (i + 0.5) / scale - 0.5;
+                var left = (int) Math.ceil(center - support);
+                var sum = 0.0;
+                for (int t = 0, k = i * taps; t < taps; t++, k++) {
+                    var w = filter.weight((left + t - center) / stretch);
+                    indices[k] = clamp(left + t, srcLen);
+                    weights[k] = (float) w;
+                    sum += w;
+                }
+                if (sum == 0) {
+                    indices[i * taps] = clamp((int) Math.round(center), srcLen);
+                    weights[i * taps] = 1;
+                    continue;
+                }
+                for (int t = 0, k = i * taps; t < taps; t++, k++)
+                    weights[k] /= sum;
+            }
+            return new Contributions(taps, indices, weights);
+        }
+    }
+
+    private Filters() {}
+}
@@ -0,0 +1,40 @@
+package utils.filter;
+
+// the source point a destination pixel takes its color from, pixel (i, j) of an image is centered at (i, j)
+@FunctionalInterface
+@SuppressWarnings("unused")
+public interface InverseMapper {
+    // writes u and v into uv[0] and uv[1], false leaves the pixel to the constant color of the warp
+    boolean map(double x, double y, double[] uv);
+
+    InverseMapper IDENTITY = (x, y, uv) -> {
+        uv[0] = x;
+        uv[1] = y;
+        return true;
+    };
+
+    // u = m00 x + m01 y + m02 and v = m10 x + m11 y + m12
+    static InverseMapper affine(double m00, double m01, double m02, double m10, double m11, double m12) {
+        return (x, y, uv) -> {
+            uv[0] = m00 * x + m01 * y + m02;
+            uv[1] = m10 * x + m11 * y + m12;
+            return true;
+        };
+    }
+
+    // source of a destination that is the source rotated by radian about its center and moved to the center of
+    // the destination
+    static InverseMapper rotation(double radian, int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        var cos = Math.cos(radian);
+        var sin = Math.sin(radian);
+        var scx = (srcWidth - 1) / 2.0;
+        var scy = (srcHeight - 1) / 2.0;
+        var dcx = (dstWidth - 1) / 2.0;
+        var dcy = (dstHeight - 1) / 2.0;
+        return affine(cos, sin, scx - cos * dcx - sin * dcy, -sin, cos, scy + sin * dcx - cos * dcy);
+    }
+
+    default InverseMapper andThen(InverseMapper next) {
+        return (x, y, uv) -> map(x, y, uv) && next.map(uv[0], uv[1], uv);
+    }
+}
@@ -0,0 +1,105 @@
+package utils.filter;
+
+import java.util.Arrays;
+
+// weights of a two dimensional convolution, the weight at (width / 2, height / 2) lands on the pixel being computed,
+// the one dimensional factories return the taps of a separable pass with the center in the middle
+@SuppressWarnings("unused")
+public final class Kernel {
+    public static final Kernel SHARPEN = new Kernel(3, 3,
+            0, -1, 0,
+            -1, 5, -1,
+            0, -1, 0);
+    public static final Kernel LAPLACIAN = new Kernel(3, 3,
+            0, 1, 0,
+            1, -4, 1,
+            0, 1, 0);
+    public static final Kernel EMBOSS = new Kernel(3, 3,
+            -2, -1, 0,
+            -1, 1, 1,
+            0, 1, 2);
+    public static final Kernel SOBEL_X = new Kernel(3, 3,
+            -1, 0, 1,
+            -2, 0, 2,
+            -1, 0, 1);
+    public static final Kernel SOBEL_Y = new Kernel(3, 3,
+            -1, -2, -1,
+            0, 0, 0,
+            1, 2, 1);
+
+    private final int width;
+    private final int height;
+    private final float[] weights;
+
+    public Kernel(int width, int height, float... weights) {
+        if (width <= 0 || height <= 0 || weights.length != width * height)
+            throw new IllegalArgumentException("AHD:: Kernel needs width * height weights");
+        this.width = width;
+        this.height = height;
+        this.weights = weights.clone();
+    }
+
+    // the outer product, a blur of these taps costs horizontal.length + vertical.length per pixel done separably
+    public static Kernel of(float[] horizontal, float[] vertical) {
+        var res = new float[horizontal.length * vertical.length];
+        for (int y = 0, i = 0; y < vertical.length; y++)
+            for (var h : horizontal)
+                res[i++] = vertical[y] * h;
+        return new Kernel(horizontal.length, vertical.length, res);
+    }
+
+    // normalized taps of radius ceil(3 sigma)
+    public static float[] gaussian(double sigma) {
+        if (!(sigma > 0))
+            throw new IllegalArgumentException("AHD:: Sigma should be positive");
+        var radius = (int) Math.ceil(3 * sigma);
+        var res = new float[2 * radius + 1];
+        var sum = 0.0;
+        for (int i = -radius; i <= radius; i++)
+            sum += res[i + radius] = (float) Math.exp(-i * i / (2 * sigma * sigma));
+        for (int i = 0; i < res.length; i++)
+            res[i] /= sum;
+        return res;
+    }
+
+    public static float[] box(int radius) {
+        if (radius < 0)
+            throw new IllegalArgumentException("AHD:: Radius should not be negative");
+        var res = new float[2 * radius + 1];
+        Arrays.fill(res, 1f / res.length);
+        return res;
+    }
+
+    public Kernel normalized() {
+        var sum = 0.0;
+        for (var w : weights)
+            sum += w;
+        if (sum == 0)
+            return this;
+        var res = weights.clone();
+        for (int i = 0; i < res.length; i++)
+            res[i] /= sum;
+        return new Kernel(width, height, res);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public float weight(int x, int y) {
+        return weights[y * width + x];
+    }
+
+    float[] weights() {
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return "Kernel(" + width + "x" + height + ")" + Arrays.toString(weights);
+    }
+}
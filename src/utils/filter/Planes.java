@@ -0,0 +1,74 @@
+package utils.filter;
+
+import utils.Parallel;
+
+// an argb image split into four float planes in [0, 255], alpha first, filters run on the planes so a pass over a
+// channel reads contiguous floats, colors are multiplied by alpha when premultiplied so transparent pixels do not
+// bleed their color into their neighbors
+final class Planes {
+    final int width;
+    final int height;
+    final float[][] channels;
+
+    Planes(int width, int height) {
+        this.width = width;
+        this.height = height;
+        channels = new float[4][width * height];
+    }
+
+    static Planes of(int[] argb, int width, int height, boolean premultiplied) {
+        Filters.checkSize(argb, width, height);
+        var res = new Planes(width, height);
+        final var a = res.channels[0];
+        final var r = res.channels[1];
+        final var g = res.channels[2];
+        final var b = res.channels[3];
+        Parallel.forRange(0, height, Parallel.grainOf(height, 8), (s, e) -> {
+            for (int i = s * width, end = e * width; i < end; i++) {
+                var c = argb[i];
+                var alpha = c >>> 24;
+                a[i] = alpha;
+                if (premultiplied) {
+                    var f = alpha / 255f;
+                    r[i] = (c >>> 16 & 0xFF) * f;
+                    g[i] = (c >>> 8 & 0xFF) * f;
+                    b[i] = (c & 0xFF) * f;
+                } else {
+                    r[i] = c >>> 16 & 0xFF;
+                    g[i] = c >>> 8 & 0xFF;
+                    b[i] = c & 0xFF;
+                }
+            }
+        });
+        return res;
+    }
+
+    void store(int[] dst, boolean premultiplied) {
+        Filters.checkSize(dst, width, height);
+        final var a = channels[0];
+        final var r = channels[1];
+        final var g = channels[2];
+        final var b = channels[3];
+        Parallel.forRange(0, height, Parallel.grainOf(height, 8), (s, e) -> {
+            for (int i = s * width, end = e * width; i < end; i++) {
+                var alpha = clamp(a[i]);
+                float rr = r[i], gg = g[i], bb = b[i];
+                if (premultiplied) {
+                    if (alpha == 0) {
+                        dst[i] = 0;
+                        continue;
+                    }
+                    var f = 255f / alpha;
+                    rr *= f;
+                    gg *= f;
+                    bb *= f;
+                }
+                dst[i] = alpha << 24 | clamp(rr) << 16 | clamp(gg) << 8 | clamp(bb);
+            }
+        });
+    }
+
+    private static int clamp(float v) {
+        return v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f);
+    }
+}
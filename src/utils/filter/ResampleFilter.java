@@ -0,0 +1,56 @@
+package utils.filter;
+
+// reconstruction filters of resampling, weight is the contribution of a source pixel at distance x in source pixels
+@SuppressWarnings("unused")
+public enum ResampleFilter {
+    NEAREST(0.5) {
+        @Override
+        public double weight(double x) {
+            return x >= -0.5 && x < 0.5 ? 1 : 0;
+        }
+    },
+    BILINEAR(1) {
+        @Override
+        public double weight(double x) {
+            x = Math.abs(x);
+            return x < 1 ? 1 - x : 0;
+        }
+    },
+    // keys cubic with a = -0.5, the catmull rom spline
+    BICUBIC(2) {
+        @Override
+        public double weight(double x) {
+            x = Math.abs(x);
+            if (x < 1)
+                return (1.5 * x - 2.5) * x * x + 1;
+            if (x < 2)
+                return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+            return 0;
+        }
+    },
+    LANCZOS3(3) {
+        @Override
+        public double weight(double x) {
+            x = Math.abs(x);
+            if (x < 1e-9)
+                return 1;
+            if (x >= 3)
+                return 0;
+            var px = Math.PI * x;
+            return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+        }
+    };
+
+    private final double support;
+
+    ResampleFilter(double support) {
+        this.support = support;
+    }
+
+    // weight is zero at distances of support and more
+    public double support() {
+        return support;
+    }
+
+    public abstract double weight(double x);
+}
@@ -0,0 +1,221 @@
+package utils.filter;
+
+import utils.Parallel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// geometric warp by inverse mapping, every destination pixel asks the mapper where it comes from and samples the source
+// there, rows run on the shared pool and a run of rows reuses one uv pair and sampler so nothing is allocated per
+// pixel, samples are interpolated with colors multiplied by alpha so transparent pixels do not tint their neighbors
+@SuppressWarnings("unused")
+public class Warp {
+    private InverseMapper mapper;
+    private Sampling sampling;
+    private EdgeMode edgeMode;
+    private int constant;
+
+    public Warp(InverseMapper mapper) {
+        this.mapper = mapper;
+        sampling = Sampling.BILINEAR;
+        edgeMode = EdgeMode.CONSTANT;
+        constant = 0;
+    }
+
+    public void apply(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight) {
+        Filters.checkSize(src, srcWidth, srcHeight);
+        Filters.checkSize(dst, dstWidth, dstHeight);
+        if (src == dst)
+            throw new IllegalArgumentException("AHD:: Warp can not write into its source");
+        final var m = mapper;
+        final var mode = sampling;
+        final var edge = edgeMode;
+        Parallel.forRange(0, dstHeight, Parallel.grainOf(dstHeight, 4), (s, e) -> {
+            var uv = new double[2];
+            var sampler = new Sampler(src, srcWidth, srcHeight, edge, constant);
+            for (int y = s; y < e; y++) {
+                for (int x = 0, i = y * dstWidth; x < dstWidth; x++, i++) {
+                    if (!m.map(x, y, uv) || !(Math.abs(uv[0]) < 1e9 && Math.abs(uv[1]) < 1e9)) {
+                        dst[i] = constant;
+                        continue;
+                    }
+                    dst[i] = switch (mode) {
+                        case NEAREST -> sampler.nearest(uv[0], uv[1]);
+                        case BILINEAR -> sampler.bilinear(uv[0], uv[1]);
+                        case BICUBIC -> sampler.bicubic(uv[0], uv[1]);
+                    };
+                }
+            }
+        });
+    }
+
+    public BufferedImage apply(BufferedImage source, int width, int height) {
+        var src = source.getType() == BufferedImage.TYPE_INT_ARGB ? source : copy(source);
+        var res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        apply(pixelsOf(src), src.getWidth(), src.getHeight(), pixelsOf(res), width, height);
+        return res;
+    }
+
+    public BufferedImage apply(BufferedImage source) {
+        return apply(source, source.getWidth(), source.getHeight());
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        var res = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        var g = res.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return res;
+    }
+
+    private static int[] pixelsOf(BufferedImage argb) {
+        return ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    public InverseMapper getMapper() {
+        return mapper;
+    }
+
+    public void setMapper(InverseMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+
+    public void setSampling(Sampling sampling) {
+        this.sampling = sampling;
+    }
+
+    public EdgeMode getEdgeMode() {
+        return edgeMode;
+    }
+
+    public void setEdgeMode(EdgeMode edgeMode) {
+        this.edgeMode = edgeMode;
+    }
+
+    public int getConstant() {
+        return constant;
+    }
+
+    // argb of pixels the mapper rejects and, in the constant edge mode, of taps outside the source
+    public void setConstant(int constant) {
+        this.constant = constant;
+    }
+
+    // sampling state of one run of rows, the sums are premultiplied
+    private static final class Sampler {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        private final EdgeMode edge;
+        private final int constant;
+        private final float[] wx = new float[4];
+        private final float[] wy = new float[4];
+        private float a, r, g, b;
+
+        private Sampler(int[] pixels, int width, int height, EdgeMode edge, int constant) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.edge = edge;
+            this.constant = constant;
+        }
+
+        private int fetch(int x, int y) {
+            if (x >= 0 && y >= 0 && x < width && y < height)
+                return pixels[y * width + x];
+            return switch (edge) {
+                case CLAMP -> pixels[Math.max(0, Math.min(height - 1, y)) * width + Math.max(0, Math.min(width - 1, x))];
+                case WRAP -> pixels[Math.floorMod(y, height) * width + Math.floorMod(x, width)];
+                case CONSTANT -> constant;
+            };
+        }
+
+        private int nearest(double u, double v) {
+            return fetch((int) Math.floor(u + 0.5), (int) Math.floor(v + 0.5));
+        }
+
+        private int bilinear(double u, double v) {
+            var x0 = (int) Math.floor(u);
+            var y0 = (int) Math.floor(v);
+            var tx = (float) (u - x0);
+            var ty = (float) (v - y0);
+            int c00, c10, c01, c11;
+            if (x0 >= 0 && y0 >= 0 && x0 + 1 < width && y0 + 1 < height) {
+                var i = y0 * width + x0;
+                c00 = pixels[i];
+                c10 = pixels[i + 1];
+                c01 = pixels[i + width];
+                c11 = pixels[i + width + 1];
+            } else {
+                c00 = fetch(x0, y0);
+                c10 = fetch(x0 + 1, y0);
+                c01 = fetch(x0, y0 + 1);
+                c11 = fetch(x0 + 1, y0 + 1);
+            }
+            if (c00 == c10 && c00 == c01 && c00 == c11)
+                return c00;
+            a = r = g = b = 0;
+            add(c00, (1 - tx) * (1 - ty));
+            add(c10, tx * (1 - ty));
+            add(c01, (1 - tx) * ty);
+            add(c11, tx * ty);
+            return argb();
+        }
+
+        private int bicubic(double u, double v) {
+            var x0 = (int) Math.floor(u);
+            var y0 = (int) Math.floor(v);
+            weights((float) (u - x0), wx);
+            weights((float) (v - y0), wy);
+            a = r = g = b = 0;
+            var inside = x0 - 1 >= 0 && y0 - 1 >= 0 && x0 + 2 < width && y0 + 2 < height;
+            for (int j = 0; j < 4; j++) {
+                var row = (y0 - 1 + j) * width + x0 - 1;
+                for (int i = 0; i < 4; i++)
+                    add(inside ? pixels[row + i] : fetch(x0 - 1 + i, y0 - 1 + j), wx[i] * wy[j]);
+            }
+            return argb();
+        }
+
+        // catmull rom weights of the taps at -1, 0, 1 and 2 for a sample at t in [0, 1)
+        private static void weights(float t, float[] res) {
+            var t2 = t * t;
+            var t3 = t2 * t;
+            res[0] = -0.5f * t3 + t2 - 0.5f * t;
+            res[1] = 1.5f * t3 - 2.5f * t2 + 1;
+            res[2] = -1.5f * t3 + 2 * t2 + 0.5f * t;
+            res[3] = 0.5f * t3 - 0.5f * t2;
+        }
+
+        private void add(int c, float w) {
+            var wa = w * (c >>> 24);
+            a += wa;
+            r += wa * (c >>> 16 & 0xFF);
+            g += wa * (c >>> 8 & 0xFF);
+            b += wa * (c & 0xFF);
+        }
+
+        private int argb() {
+            if (a <= 0)
+                return 0;
+            var alpha = Math.min(255, (int) (a + 0.5f));
+            return alpha << 24 | channel(r / a) << 16 | channel(g / a) << 8 | channel(b / a);
+        }
+
+        private static int channel(float v) {
+            return v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f);
+        }
+    }
+
+    public enum Sampling {
+        NEAREST, BILINEAR, BICUBIC
+    }
+
+    public enum EdgeMode {
+        CLAMP, WRAP, CONSTANT
+    }
+}
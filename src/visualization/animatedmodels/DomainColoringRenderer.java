@@ -0,0 +1,91 @@
+package visualization.animatedmodels;
+
+import jmath.datatypes.functions.ComplexKernel;
+import visualization.canvas.TiledPlaneRenderer;
+
+import java.util.Arrays;
+
+// domain coloring on cached progressive tiles, hue is the phase and lightness is 2/pi * atan(|f(z)|) taken from a
+// precomputed table
+@SuppressWarnings("unused")
+public class DomainColoringRenderer extends TiledPlaneRenderer {
+    private static final int HUE_BITS = 9;
+    private static final int LIGHT_BINS = 256;
+    private static final int[] COLOR_TABLE = colorTable();
+
+    private volatile ComplexKernel kernel;
+
+    public DomainColoringRenderer(ComplexKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    // the kernel overwrites the coordinates with f(z) in place
+    @Override
+    protected void shade(double[] xs, double[] ys, int[] out, int n) {
+        var k = kernel;
+        if (k == null) {
+            Arrays.fill(out, 0, n, 0xFF000000);
+            return;
+        }
+        k.apply(xs, ys, n);
+        for (int i = 0; i < n; i++)
+            out[i] = colorOf(xs[i], ys[i]);
+    }
+
+    public static int colorOf(double re, double im) {
+        if (Double.isNaN(re) || Double.isNaN(im))
+            return 0xFF000000;
+        var hue = Math.atan2(im, re) * (0.5 / Math.PI);
+        if (hue < 0)
+            hue += 1;
+        var abs = Math.sqrt(re * re + im * im);
+        var light = abs == Double.POSITIVE_INFINITY ? LIGHT_BINS - 1 : (int) (2 / Math.PI * Math.atan(abs) * (LIGHT_BINS - 1));
+        var h = (int) (hue * (1 << HUE_BITS)) & ((1 << HUE_BITS) - 1);
+        return COLOR_TABLE[light << HUE_BITS | h];
+    }
+
+    private static int[] colorTable() {
+        var res = new int[LIGHT_BINS << HUE_BITS];
+        for (int l = 0; l < LIGHT_BINS; l++)
+            for (int h = 0; h < 1 << HUE_BITS; h++)
+                res[l << HUE_BITS | h] = hsl2rgb((h + 0.5) / (1 << HUE_BITS), 1, l / (LIGHT_BINS - 1.0));
+        return res;
+    }
+
+    public static int hsl2rgb(double h, double s, double l) {
+        double r = l, g = l, b = l;
+        var v = l <= 0.5 ? l * (1 + s) : l + s - l * s;
+        if (v > 0) {
+            var m = l + l - v;
+            var sv = (v - m) / v;
+            h *= 6;
+            var sextant = (int) h;
+            var fract = h - sextant;
+            var vsf = v * sv * fract;
+            var mid1 = m + vsf;
+            var mid2 = v - vsf;
+            switch (sextant) {
+                case 0 -> {r = v; g = mid1; b = m;}
+                case 1 -> {r = mid2; g = v; b = m;}
+                case 2 -> {r = m; g = v; b = mid1;}
+                case 3 -> {r = m; g = mid2; b = v;}
+                case 4 -> {r = mid1; g = m; b = v;}
+                case 5 -> {r = v; g = m; b = mid2;}
+            }
+        }
+        return 0xFF000000 | channel(r) << 16 | channel(g) << 8 | channel(b);
+    }
+
+    private static int channel(double v) {
+        return (int) Math.max(0, Math.min(255, v * 255 + 0.5));
+    }
+
+    public ComplexKernel getKernel() {
+        return kernel;
+    }
+
+    public void setKernel(ComplexKernel kernel) {
+        this.kernel = kernel;
+        invalidate();
+    }
+}
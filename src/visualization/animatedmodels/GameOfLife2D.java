@@ -1,21 +1,26 @@
 package visualization.animatedmodels;
 
+import utils.Parallel;
 import visualization.canvas.CoordinatedScreen;
 import visualization.canvas.Render;
 
-import javax.swing.*;
 import java.awt.*;
-import java.awt.event.MouseAdapter;
-import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 public class GameOfLife2D implements Render {
+    private static final int ALIVE_COLOR = 0xFFFF0000;
+    private static final int MIN_GRID_CELL_SIZE = 4;
 
     private final int row;
     private final int col;
     private boolean isVisible;
-    private final boolean[][] cells;
+    private final LifeBoard board;
     private final CoordinatedScreen cs;
     private final double cellSize;
+    private BufferedImage frame;
+    private int[] framePixels;
 
     public GameOfLife2D(CoordinatedScreen cs, int row, int col) {
         if (row <= 0 || col <= 0)
@@ -25,8 +30,8 @@ public class GameOfLife2D implements Render {
         this.col = col;
         isVisible = true;
         cellSize = 0.1;
-        cells = new boolean[row][col];
-        setCells((i, j) -> Math.random() < 0.1);
+        board = new LifeBoard(row, col);
+        board.randomize(0.1, System.nanoTime());
     }
 
     public int getRow() {
@@ -41,29 +46,28 @@ public class GameOfLife2D implements Render {
         isVisible = visible;
     }
 
-    private int validate(int i, int j) {
-        while (i < 0)
-            i += row;
-        while (j < 0)
-            j += col;
-        return cells[i % row][j % col] ? 1 : 0;
+    public LifeBoard getBoard() {
+        return board;
     }
 
-    private int numOfNeighbors(int i, int j) {
-        return  validate(i+1, j) +
-                validate(i-1, j) +
-                validate(i, j+1) +
-                validate(i+1, j+1) +
-                validate(i-1, j+1) +
-                validate(i, j-1) +
-                validate(i+1, j-1) +
-                validate(i-1, j-1);
+    public void setRule(LifeRule rule) {
+        board.setRule(rule);
+    }
+
+    public LifeRule getRule() {
+        return board.getRule();
+    }
+
+    public long getGeneration() {
+        return board.getGeneration();
     }
 
     public void setCells(CellSetter setter) {
-        for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++)
-                cells[i][j] = setter.isAlive(i, j);
+        board.setCells(setter);
+    }
+
+    public boolean isAlive(int i, int j) {
+        return board.get(i, j);
     }
 
     private void drawGrid(Graphics2D g2d) {
@@ -82,29 +86,76 @@ public class GameOfLife2D implements Render {
         return isVisible;
     }
 
+    // every visible pixel looks up the cell under it, so a frame costs the pixels on screen instead of the live cells
     @Override
     public void render(Graphics2D g2d) {
-        g2d.setColor(Color.RED);
-        var w = cs.screenXLen(cellSize);
-        var h = cs.screenYLen(cellSize);
-        for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++)
-                if (cells[i][j])
-                    g2d.fillRect(cs.screenX(i * cellSize), cs.screenY(j * cellSize), w, h);
-        drawGrid(g2d);
+        var view = cs.viewBounds(g2d);
+        // cells smaller than a pixel still take one so large boards stay visible when zoomed out
+        final var w = Math.max(1, cs.screenXLen(cellSize));
+        final var h = Math.max(1, cs.screenYLen(cellSize));
+        // the cells of each screen column and row as the rectangles of fillRect would cover them, rounding lets two
+        // neighbor rectangles share a line of pixels so a second cell is kept
+        final var cellsOfX = cellsOf(view.width, w, firstCell(cs.coordinateX(view.x) / cellSize - 1, row), row, true, view.x);
+        final var cellsOfY = cellsOf(view.height, h, firstCell(cs.coordinateY(view.y + view.height) / cellSize - 1, col), col, false, view.y);
+        if (cellsOfX == null || cellsOfY == null)
+            return;
+        if (frame == null || frame.getWidth() != view.width || frame.getHeight() != view.height) {
+            frame = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+            framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        }
+        final var pixels = framePixels;
+        final var width = view.width;
+        final var height = view.height;
+        // a screen column sees a single board row, whose cells are contiguous in the bitset
+        Parallel.forRange(0, width, Parallel.grainOf(width, 16), (s, e) -> {
+            for (int px = s; px < e; px++) {
+                var i = cellsOfX[px];
+                var i2 = cellsOfX[width + px];
+                for (int py = 0; py < height; py++) {
+                    var j = cellsOfY[py];
+                    var j2 = cellsOfY[height + py];
+                    pixels[py * width + px] = alive(i, j) || alive(i2, j) || alive(i, j2) || alive(i2, j2) ? ALIVE_COLOR : 0;
+                }
+            }
+        });
+        g2d.drawImage(frame, view.x, view.y, null);
+        if (w >= MIN_GRID_CELL_SIZE && h >= MIN_GRID_CELL_SIZE)
+            drawGrid(g2d);
+    }
+
+    private boolean alive(int i, int j) {
+        return i >= 0 && j >= 0 && board.get(i, j);
+    }
+
+    // first len entries hold the last cell covering each pixel and the next len the one it covers, null when none is seen
+    private int[] cellsOf(int len, int size, int first, int count, boolean horizontal, int origin) {
+        var res = new int[2 * len];
+        Arrays.fill(res, -1);
+        var seen = false;
+        for (int c = first; c < count; c++) {
+            var p = (horizontal ? cs.screenX(c * cellSize) : cs.screenY(c * cellSize)) - origin;
+            if (horizontal ? p >= len : p + size <= 0)
+                break;
+            for (int k = Math.max(0, p), ke = Math.min(len, p + size); k < ke; k++, seen = true) {
+                res[len + k] = res[k];
+                res[k] = c;
+            }
+        }
+        return seen ? res : null;
+    }
+
+    private static int firstCell(double cell, int len) {
+        return (int) Math.max(0, Math.min(len, Math.floor(cell)));
     }
 
     @Override
     public void tick() {
-        var cellsTemp = new boolean[row][col];
-        for (int i = 0; i < row; i++)
-            for (int j = 0; j < col; j++) {
-                var alive = cells[i][j];
-                var n = numOfNeighbors(i, j);
-                cellsTemp[i][j] = alive && (n == 2 || n == 3) ||!alive && n == 3;
-            }
-        for (int i = 0 ; i < row; i++)
-            System.arraycopy(cellsTemp[i], 0, cells[i], 0, col);
+        board.step();
+    }
+
+    @Override
+    public int tickGroup() {
+        return INDEPENDENT_TICK_GROUP;
     }
 
     @FunctionalInterface
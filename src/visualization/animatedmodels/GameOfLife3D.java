@@ -1,120 +1,291 @@
 package visualization.animatedmodels;
 
 import jmath.datatypes.tuples.Point3D;
+import utils.Parallel;
+import utils.Utils;
 import visualization.canvas.CoordinatedScreen;
-import visualization.shapes.shape3d.Area;
+import visualization.canvas.Render;
 
 import java.awt.*;
-import java.util.HashSet;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-public class GameOfLife3D extends Area {
+// 3D life on a bit packed voxel grid, alive cells are drawn as one cube transformed once per frame and placed at every
+// cell, only faces toward a dead neighbor and the eye are rasterized into a private depth buffer in bands on the pool
+@SuppressWarnings("unused")
+public class GameOfLife3D implements Render {
+    private static final double SPACING = 0.2;
+    private static final double OFFSET = 0.05;
+    private static final double HALF_SIDE = 0.11 * Math.sqrt(3) / 2;
+    private static final int BAND_HEIGHT = 16;
+    // corners of a face in order around it, corner c has its x, y and z at the bits 2, 1 and 0 of c
+    private static final int[][] FACES = {{0, 1, 3, 2}, {4, 5, 7, 6}, {0, 1, 5, 4}, {2, 3, 7, 6}, {0, 2, 6, 4}, {1, 3, 7, 5}};
+    private static final int[][] NORMALS = {{-1, 0, 0}, {1, 0, 0}, {0, -1, 0}, {0, 1, 0}, {0, 0, -1}, {0, 0, 1}};
+
+    private final CoordinatedScreen cs;
     private final int cubeSize;
+    private final VoxelLife grid;
+    private boolean isVisible;
+    private Color color;
+    private BufferedImage frame;
+    private int[] framePixels;
+    private float[] depth;
 
     public GameOfLife3D(CoordinatedScreen cs, int cubeSize) {
-        super(cs);
+        this.cs = cs;
         this.cubeSize = cubeSize;
-        init();
-    }
-
-    private void init() {
-        var set = new HashSet<Point3D>();
-        for (int i = 0; i < cubeSize; i++)
-            for (int j = 0; j < cubeSize; j++)
-                for (int k = 0; k < cubeSize; k++) {
-                    var cell = Area.cube(cs, new Point3D(i * 0.2 + 0.05, j * 0.2 + 0.05, k * 0.2 + 0.05), 0.11);
-                    components.add(cell);
-                    set.addAll(cell.getPoints());
-                }
-        points.addAll(set);
-        setCells((i, j, k) -> Math.random() < 0.1);
-        //        setCells((i, j, k) ->
-        //                    i == 8 && j == 8 && k == 4 ||
-        //                    i == 8 && j == 9 && k == 4 ||
-        //                    i == 7 && j == 7 && k == 4 ||
-        //                    i == 6 && j == 7 && k == 4 ||
-        //                    i == 5 && j == 8 && k == 4 ||
-        //                    i == 5 && j == 9 && k == 4 ||
-        //                    i == 6 && j == 10 && k == 4 ||
-        //                    i == 7 && j == 10 && k == 4
-        //                );
+        grid = new VoxelLife(cubeSize);
+        isVisible = true;
+        color = Utils.randomColor();
+        grid.randomize(0.1, System.nanoTime());
     }
 
     public void setCells(CellSetter cellSetter) {
-        for (int i = 0; i < cubeSize; i++)
-            for (int j = 0; j < cubeSize; j++)
-                for (int k = 0; k < cubeSize; k++)
-                    components.get(i + j * cubeSize + k * cubeSize * cubeSize).setVisible(cellSetter.isAlive(i, j, k));
+        grid.setCells(cellSetter);
     }
 
     public boolean getCell(int i, int j, int k) {
-        return components.get(i + j * cubeSize + k * cubeSize * cubeSize).isVisible();
+        return grid.get(i, j, k);
     }
 
-    private int asInt(boolean... b) {
-        int res = 0;
-        for (var e : b)
-            res += e ? 1 : 0;
-        return res;
+    public VoxelLife getGrid() {
+        return grid;
+    }
+
+    public int getCubeSize() {
+        return cubeSize;
+    }
+
+    public void setRule(LifeRule rule) {
+        grid.setRule(rule);
     }
 
-    private int validate(int i) {
-        if (i < 0)
-            return i + cubeSize;
-        return i % cubeSize;
+    public LifeRule getRule() {
+        return grid.getRule();
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public void setVisible(boolean visible) {
+        isVisible = visible;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return isVisible;
     }
 
     @Override
     public void render(Graphics2D g2d) {
+        var view = cs.viewBounds(g2d);
+        if (view.width <= 0 || view.height <= 0)
+            return;
+        if (frame == null || frame.getWidth() != view.width || frame.getHeight() != view.height) {
+            frame = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+            framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            depth = new float[view.width * view.height];
+        }
+        Arrays.fill(framePixels, 0);
+        Arrays.fill(depth, Float.NEGATIVE_INFINITY);
+        var faces = collectFaces(view);
+        final var width = view.width;
+        final var height = view.height;
+        final var pixels = framePixels;
+        final var zs = depth;
+        final var bands = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        Parallel.forRange(0, bands, 1, (s, e) -> {
+            for (int b = s; b < e; b++) {
+                var y0 = b * BAND_HEIGHT;
+                var y1 = Math.min(height, y0 + BAND_HEIGHT);
+                for (var f : faces)
+                    f.rasterize(pixels, zs, width, y0, y1);
+            }
+        });
+        g2d.drawImage(frame, view.x, view.y, null);
+    }
+
+    // projects the visible faces of every alive cell, slabs of z fill their own buffers
+    private List<Faces> collectFaces(Rectangle view) {
+        var angles = cs.camera().getAngles();
+        var m = new double[9];
+        for (int c = 0; c < 3; c++) {
+            var axis = Point3D.rotateImmutably(new Point3D(c == 0 ? 1 : 0, c == 1 ? 1 : 0, c == 2 ? 1 : 0), angles);
+            m[c] = axis.x;
+            m[3 + c] = axis.y;
+            m[6 + c] = axis.z;
+        }
+        var corners = new double[24];
+        for (int c = 0; c < 8; c++) {
+            var dx = (c >> 2 & 1) == 1 ? HALF_SIDE : -HALF_SIDE;
+            var dy = (c >> 1 & 1) == 1 ? HALF_SIDE : -HALF_SIDE;
+            var dz = (c & 1) == 1 ? HALF_SIDE : -HALF_SIDE;
+            corners[3 * c] = m[0] * dx + m[1] * dy + m[2] * dz;
+            corners[3 * c + 1] = m[3] * dx + m[4] * dy + m[5] * dz;
+            corners[3 * c + 2] = m[6] * dx + m[7] * dy + m[8] * dz;
+        }
+        // flat shading of the six faces by a light coming from above the eye
+        var normals = new double[18];
+        var colors = new int[6];
+        double lx = 0.3, ly = 0.5, lz = 0.81;
+        for (int f = 0; f < 6; f++) {
+            var n = NORMALS[f];
+            var nx = m[0] * n[0] + m[1] * n[1] + m[2] * n[2];
+            var ny = m[3] * n[0] + m[4] * n[1] + m[5] * n[2];
+            var nz = m[6] * n[0] + m[7] * n[1] + m[8] * n[2];
+            normals[3 * f] = nx;
+            normals[3 * f + 1] = ny;
+            normals[3 * f + 2] = nz;
+            var shade = 0.35 + 0.65 * Math.max(0, nx * lx + ny * ly + nz * lz);
+            colors[f] = 0xFF000000 | channel(color.getRed(), shade) << 16 | channel(color.getGreen(), shade) << 8 |
+                    channel(color.getBlue(), shade);
+        }
+        final var camZ = cs.camera().getZ();
+        final var eyeZ = camZ + 10;
+        final var originX = cs.screenX(0) - view.x;
+        final var originY = cs.screenY(0) - view.y;
+        final var scaleX = cs.scaleX();
+        final var scaleY = cs.scaleY();
+        final var n = cubeSize;
+        final var words = grid.getWords();
+        var res = new ArrayList<Faces>();
+        Parallel.forRange(0, n, 1, (s, e) -> {
+            var faces = new Faces();
+            var p = new double[12];
+            for (int z = s; z < e; z++) {
+                for (int y = 0; y < n; y++) {
+                    for (int w = 0; w < words; w++) {
+                        var bits = grid.word(y, z, w);
+                        while (bits != 0) {
+                            var x = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            double px = x * SPACING + OFFSET, py = y * SPACING + OFFSET, pz = z * SPACING + OFFSET;
+                            var cx = m[0] * px + m[1] * py + m[2] * pz;
+                            var cy = m[3] * px + m[4] * py + m[5] * pz;
+                            var cz = m[6] * px + m[7] * py + m[8] * pz;
+                            if (cz >= camZ)
+                                continue;
+                            for (int f = 0; f < 6; f++) {
+                                var d = NORMALS[f];
+                                int nx = x + d[0], ny = y + d[1], nz = z + d[2];
+                                if (nx >= 0 && ny >= 0 && nz >= 0 && nx < n && ny < n && nz < n && grid.get(nx, ny, nz))
+                                    continue;
+                                // the face looks at the eye when its normal points to the eye from its center
+                                var fx = normals[3 * f];
+                                var fy = normals[3 * f + 1];
+                                var fz = normals[3 * f + 2];
+                                if (-fx * (cx + fx * HALF_SIDE) - fy * (cy + fy * HALF_SIDE) + fz * (eyeZ - cz - fz * HALF_SIDE) <= 0)
+                                    continue;
+                                var corner = FACES[f];
+                                for (int k = 0; k < 4; k++) {
+                                    var qx = cx + corners[3 * corner[k]];
+                                    var qy = cy + corners[3 * corner[k] + 1];
+                                    var qz = cz + corners[3 * corner[k] + 2];
+                                    var factor = Math.abs(10 / (eyeZ - qz));
+                                    p[3 * k] = originX + qx * factor * scaleX;
+                                    p[3 * k + 1] = originY - qy * factor * scaleY;
+                                    p[3 * k + 2] = qz;
+                                }
+                                faces.add(p, colors[f]);
+                            }
+                        }
+                    }
+                }
+            }
+            synchronized (res) {
+                res.add(faces);
+            }
+        });
+        return res;
+    }
+
+    private static int channel(int c, double shade) {
+        return (int) Math.min(255, c * shade);
     }
 
     @Override
     public void tick() {
-        var cellsTemp = new boolean[cubeSize][cubeSize][cubeSize];
-        for (int i = 0; i < cubeSize; i++)
-            for (int j = 0; j < cubeSize; j++)
-                for (int k = 0; k < cubeSize; k++) {
-                    var n = asInt(
-                            getCell(validate(i+1), j, k),
-                            getCell(validate(i-1), j, k),
-
-                            getCell(i, validate(j+1), k),
-                            getCell(validate(i+1), validate(j+1), k),
-                            getCell(validate(i-1), validate(j+1), k),
-
-                            getCell(i, validate(j-1), k),
-                            getCell(validate(i+1), validate(j-1), k),
-                            getCell(validate(i-1), validate(j-1), k),
-
-                            getCell(i, j, validate(k+1)),
-                            getCell(validate(i+1), j, validate(k+1)),
-                            getCell(validate(i-1), j, validate(k+1)),
-
-                            getCell(i, validate(j+1), validate(k+1)),
-                            getCell(validate(i+1), validate(j+1), validate(k+1)),
-                            getCell(validate(i-1), validate(j+1), validate(k+1)),
-
-                            getCell(i, validate(j-1), validate(k+1)),
-                            getCell(validate(i+1), validate(j-1), validate(k+1)),
-                            getCell(validate(i-1), validate(j-1), validate(k+1)),
-
-                            getCell(i, j, validate(k-1)),
-                            getCell(validate(i+1), j, validate(k-1)),
-                            getCell(validate(i-1), j, validate(k-1)),
-
-                            getCell(i, validate(j+1), validate(k-1)),
-                            getCell(validate(i+1), validate(j+1), validate(k-1)),
-                            getCell(validate(i-1), validate(j+1), validate(k-1)),
-
-                            getCell(i, validate(j-1), validate(k-1)),
-                            getCell(validate(i+1), validate(j-1), validate(k-1)),
-                            getCell(validate(i-1), validate(j-1), validate(k-1))
-                    );
-                    var alive = getCell(i, j, k);
-                    if (alive && (n == 6 || n == 5) || !alive && n == 4)
-                        cellsTemp[i][j][k] = true;
-                }
+        grid.step();
+    }
+
+    @Override
+    public int tickGroup() {
+        return INDEPENDENT_TICK_GROUP;
+    }
 
-        setCells((i, j, k) -> cellsTemp[i][j][k]);
+    // projected quads, x and y on the screen and the depth of their four corners
+    private static final class Faces {
+        private float[] corners = new float[12 * 256];
+        private int[] colors = new int[256];
+        private float[] minY = new float[256];
+        private float[] maxY = new float[256];
+        private int size;
+
+        private void add(double[] p, int color) {
+            if (size == colors.length) {
+                corners = Arrays.copyOf(corners, corners.length * 2);
+                colors = Arrays.copyOf(colors, colors.length * 2);
+                minY = Arrays.copyOf(minY, minY.length * 2);
+                maxY = Arrays.copyOf(maxY, maxY.length * 2);
+            }
+            var o = 12 * size;
+            for (int i = 0; i < 12; i++)
+                corners[o + i] = (float) p[i];
+            minY[size] = (float) Math.min(Math.min(p[1], p[4]), Math.min(p[7], p[10]));
+            maxY[size] = (float) Math.max(Math.max(p[1], p[4]), Math.max(p[7], p[10]));
+            colors[size++] = color;
+        }
+
+        private void rasterize(int[] pixels, float[] depth, int width, int y0, int y1) {
+            for (int i = 0; i < size; i++) {
+                if (maxY[i] < y0 || minY[i] >= y1)
+                    continue;
+                var o = 12 * i;
+                triangle(pixels, depth, width, y0, y1, o, o + 3, o + 6, colors[i]);
+                triangle(pixels, depth, width, y0, y1, o, o + 6, o + 9, colors[i]);
+            }
+        }
+
+        // pixel centers inside the triangle keep the nearest depth, the larger z is nearer to the eye
+        private void triangle(int[] pixels, float[] depth, int width, int y0, int y1, int a, int b, int c, int color) {
+            final var cs = corners;
+            float ax = cs[a], ay = cs[a + 1], az = cs[a + 2];
+            float bx = cs[b], by = cs[b + 1], bz = cs[b + 2];
+            float cx = cs[c], cy = cs[c + 1], cz = cs[c + 2];
+            var area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+            if (area == 0)
+                return;
+            var minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+            var maxX = Math.min(width - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+            var minYi = Math.max(y0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+            var maxYi = Math.min(y1 - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+            var inv = 1 / area;
+            for (int y = minYi; y <= maxYi; y++) {
+                var py = y + 0.5f;
+                for (int x = minX; x <= maxX; x++) {
+                    var px = x + 0.5f;
+                    var w0 = ((bx - px) * (cy - py) - (by - py) * (cx - px)) * inv;
+                    var w1 = ((cx - px) * (ay - py) - (cy - py) * (ax - px)) * inv;
+                    var w2 = 1 - w0 - w1;
+                    if (w0 < 0 || w1 < 0 || w2 < 0)
+                        continue;
+                    var z = w0 * az + w1 * bz + w2 * cz;
+                    var i = y * width + x;
+                    if (z > depth[i]) {
+                        depth[i] = z;
+                        pixels[i] = color;
+                    }
+                }
+            }
+        }
     }
 
     @FunctionalInterface
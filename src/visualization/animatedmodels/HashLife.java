@@ -0,0 +1,472 @@
+package visualization.animatedmodels;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+// unbounded two state life on a canonical quadtree, equal squares are shared so a node is identified by its four children
+// and remembers the center it becomes after 2^(level - 2) generations, or after the last slower step asked of it, which
+// lets repetitive patterns jump through time in big strides, x grows to the east and y to the south
+@SuppressWarnings("unused")
+public class HashLife {
+    public static final int DEFAULT_MAX_NODES = 1 << 21;
+    private static final int MIN_ROOT_LEVEL = 3;
+    private static final int MAX_LEVEL = 60;
+
+    private final Node dead;
+    private final Node alive;
+    private final ArrayList<Node> empties;
+    private Node[] table;
+    private int size;
+    private int nextId;
+    private int maxNodes;
+    private int collectAt;
+    private Node root;
+    private LifeRule rule;
+    private long generation;
+    private long collections;
+
+    public HashLife() {
+        this(LifeRule.CONWAY);
+    }
+
+    public HashLife(LifeRule rule) {
+        dead = new Node(0, 0);
+        alive = new Node(1, 1);
+        nextId = 2;
+        empties = new ArrayList<>();
+        empties.add(dead);
+        table = new Node[1 << 16];
+        maxNodes = DEFAULT_MAX_NODES;
+        collectAt = maxNodes;
+        setRule(rule);
+        root = empty(MIN_ROOT_LEVEL);
+    }
+
+    // advances 2^log2 generations
+    public void step(int log2) {
+        if (log2 < 0 || log2 > MAX_LEVEL - 3)
+            throw new IllegalArgumentException("AHD:: Step should be in [0, " + (MAX_LEVEL - 3) + "], got " + log2);
+        // the pattern has to fit in the inner quarter and the step in a quarter of the width so nothing leaves the result
+        while (root.level < log2 + 3 || innerPopulation(root) != root.population)
+            expand();
+        // once more so the border of the result stays empty for the next step
+        expand();
+        root = successor(root, log2);
+        generation += 1L << log2;
+    }
+
+    public void step() {
+        step(0);
+    }
+
+    // any count of generations as a sum of powers of two
+    public void advance(long generations) {
+        if (generations < 0)
+            throw new IllegalArgumentException("AHD:: Generations should not be negative");
+        for (int k = 0; generations != 0; k++, generations >>>= 1)
+            if ((generations & 1) == 1)
+                step(k);
+    }
+
+    private static long innerPopulation(Node n) {
+        return n.nw.se.se.population + n.ne.sw.sw.population + n.sw.ne.ne.population + n.se.nw.nw.population;
+    }
+
+    private void expand() {
+        var l = root.level;
+        if (l >= MAX_LEVEL)
+            throw new RuntimeException("AHD:: Universe is too large");
+        var e = empty(l - 1);
+        root = join(join(e, e, e, root.nw), join(e, e, root.ne, e), join(e, root.sw, e, e), join(root.se, e, e, e));
+    }
+
+    // center of the node, one level down, after 2^j generations, j is at most level - 2
+    private Node successor(Node n, int j) {
+        if (n.population == 0)
+            return empty(n.level - 1);
+        var l = n.level;
+        if (j == l - 2) {
+            if (n.result == null)
+                n.result = l == 2 ? base(n) : full(n);
+            return n.result;
+        }
+        if (n.slow == null || n.slowStep != j) {
+            n.slow = slow(n, j);
+            n.slowStep = j;
+        }
+        return n.slow;
+    }
+
+    // two rounds of 2^(level - 3) generations over the nine overlapping squares
+    private Node full(Node n) {
+        var j = n.level - 3;
+        var n00 = successor(n.nw, j);
+        var n01 = successor(horizontal(n.nw, n.ne), j);
+        var n02 = successor(n.ne, j);
+        var n10 = successor(vertical(n.nw, n.sw), j);
+        var n11 = successor(center(n), j);
+        var n12 = successor(vertical(n.ne, n.se), j);
+        var n20 = successor(n.sw, j);
+        var n21 = successor(horizontal(n.sw, n.se), j);
+        var n22 = successor(n.se, j);
+        return join(successor(join(n00, n01, n10, n11), j), successor(join(n01, n02, n11, n12), j),
+                successor(join(n10, n11, n20, n21), j), successor(join(n11, n12, n21, n22), j));
+    }
+
+    // the nine squares are only recentered, the single round of 2^j generations happens one level down
+    private Node slow(Node n, int j) {
+        var n00 = center(n.nw);
+        var n01 = center(horizontal(n.nw, n.ne));
+        var n02 = center(n.ne);
+        var n10 = center(vertical(n.nw, n.sw));
+        var n11 = center(center(n));
+        var n12 = center(vertical(n.ne, n.se));
+        var n20 = center(n.sw);
+        var n21 = center(horizontal(n.sw, n.se));
+        var n22 = center(n.se);
+        return join(successor(join(n00, n01, n10, n11), j), successor(join(n01, n02, n11, n12), j),
+                successor(join(n10, n11, n20, n21), j), successor(join(n11, n12, n21, n22), j));
+    }
+
+    // 4x4 to its 2x2 center after one generation
+    private Node base(Node n) {
+        int bits = 0;
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 4; x++)
+                if (cell(n, x, y))
+                    bits |= 1 << (y * 4 + x);
+        return join(next(bits, 1, 1), next(bits, 2, 1), next(bits, 1, 2), next(bits, 2, 2));
+    }
+
+    private Node next(int bits, int x, int y) {
+        int count = 0;
+        for (int dy = -1; dy <= 1; dy++)
+            for (int dx = -1; dx <= 1; dx++)
+                if ((dx != 0 || dy != 0) && (bits >>> ((y + dy) * 4 + x + dx) & 1) == 1)
+                    count++;
+        return rule.next((bits >>> (y * 4 + x) & 1) == 1, count) ? alive : dead;
+    }
+
+    private static boolean cell(Node n, int x, int y) {
+        while (n.level > 0) {
+            var half = 1 << (n.level - 1);
+            var east = x >= half;
+            var south = y >= half;
+            n = south ? east ? n.se : n.sw : east ? n.ne : n.nw;
+            x -= east ? half : 0;
+            y -= south ? half : 0;
+        }
+        return n.population == 1;
+    }
+
+    private Node horizontal(Node w, Node e) {
+        return join(w.ne, e.nw, w.se, e.sw);
+    }
+
+    private Node vertical(Node n, Node s) {
+        return join(n.sw, n.se, s.nw, s.ne);
+    }
+
+    private Node center(Node n) {
+        return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+    }
+
+    private Node empty(int level) {
+        while (empties.size() <= level) {
+            var e = empties.get(empties.size() - 1);
+            empties.add(join(e, e, e, e));
+        }
+        return empties.get(level);
+    }
+
+    // the canonical node with these children
+    private Node join(Node nw, Node ne, Node sw, Node se) {
+        var h = hash(nw, ne, sw, se);
+        var mask = table.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            var n = table[i];
+            if (n == null)
+                break;
+            if (n.nw == nw && n.ne == ne && n.sw == sw && n.se == se)
+                return n;
+        }
+        var res = new Node(nextId++, nw, ne, sw, se);
+        insert(res);
+        // nodes in flight of a step stay valid after a collection, they just lose their sharing
+        if (size > collectAt)
+            collect();
+        return res;
+    }
+
+    private void insert(Node n) {
+        if (2 * (size + 1) > table.length)
+            rehash(table.length * 2);
+        var mask = table.length - 1;
+        var i = hash(n.nw, n.ne, n.sw, n.se) & mask;
+        while (table[i] != null)
+            i = (i + 1) & mask;
+        table[i] = n;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        var old = table;
+        table = new Node[capacity];
+        size = 0;
+        for (var n : old)
+            if (n != null)
+                insert(n);
+    }
+
+    private static int hash(Node nw, Node ne, Node sw, Node se) {
+        var h = nw.id * 0x9E3779B1 + ne.id * 0x85EBCA77 + sw.id * 0xC2B2AE3D + se.id * 0x27D4EB2F;
+        return h ^ h >>> 16;
+    }
+
+    // drops every node the root does not reach and forgets all results, so memory stays bounded on long runs
+    public void collect() {
+        table = new Node[table.length];
+        size = 0;
+        var marked = new IdentityHashMap<Node, Boolean>();
+        keep(root, marked);
+        for (var e : empties)
+            keep(e, marked);
+        while (2 * size < table.length / 4 && table.length > 1 << 16)
+            rehash(table.length / 2);
+        // a root bigger than the budget would otherwise be collected on every new node
+        collectAt = Math.max(maxNodes, 2 * size);
+        collections++;
+    }
+
+    private void keep(Node n, IdentityHashMap<Node, Boolean> marked) {
+        if (n.level == 0 || marked.put(n, Boolean.TRUE) != null)
+            return;
+        n.result = null;
+        n.slow = null;
+        keep(n.nw, marked);
+        keep(n.ne, marked);
+        keep(n.sw, marked);
+        keep(n.se, marked);
+        insert(n);
+    }
+
+    private long half() {
+        return 1L << (root.level - 1);
+    }
+
+    private boolean covers(long x, long y) {
+        var half = half();
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    public boolean get(long x, long y) {
+        if (!covers(x, y))
+            return false;
+        var n = root;
+        x += half();
+        y += half();
+        while (n.level > 0) {
+            var h = 1L << (n.level - 1);
+            var east = x >= h;
+            var south = y >= h;
+            n = south ? east ? n.se : n.sw : east ? n.ne : n.nw;
+            x -= east ? h : 0;
+            y -= south ? h : 0;
+        }
+        return n == alive;
+    }
+
+    public void set(long x, long y, boolean isAlive) {
+        while (!covers(x, y))
+            expand();
+        root = set(root, x + half(), y + half(), isAlive);
+    }
+
+    private Node set(Node n, long x, long y, boolean isAlive) {
+        if (n.level == 0)
+            return isAlive ? alive : dead;
+        var h = 1L << (n.level - 1);
+        var east = x >= h;
+        var south = y >= h;
+        var lx = east ? x - h : x;
+        var ly = south ? y - h : y;
+        return join(!east && !south ? set(n.nw, lx, ly, isAlive) : n.nw, east && !south ? set(n.ne, lx, ly, isAlive) : n.ne,
+                !east && south ? set(n.sw, lx, ly, isAlive) : n.sw, east && south ? set(n.se, lx, ly, isAlive) : n.se);
+    }
+
+    // writes rows x cols cells with the top left corner at (x, y), cell (row, col) of the setter lands on (x + row, y + col)
+    public void setCells(long x, long y, int rows, int cols, GameOfLife2D.CellSetter setter) {
+        if (rows <= 0 || cols <= 0)
+            return;
+        while (!covers(x, y) || !covers(x + rows - 1, y + cols - 1))
+            expand();
+        var half = half();
+        root = paste(root, -half, -half, x, y, rows, cols, setter);
+    }
+
+    private Node paste(Node n, long ox, long oy, long x, long y, int rows, int cols, GameOfLife2D.CellSetter setter) {
+        var s = 1L << n.level;
+        if (ox >= x + rows || oy >= y + cols || ox + s <= x || oy + s <= y)
+            return n;
+        if (n.level == 0)
+            return setter.isAlive((int) (ox - x), (int) (oy - y)) ? alive : dead;
+        var h = s >>> 1;
+        return join(paste(n.nw, ox, oy, x, y, rows, cols, setter), paste(n.ne, ox + h, oy, x, y, rows, cols, setter),
+                paste(n.sw, ox, oy + h, x, y, rows, cols, setter), paste(n.se, ox + h, oy + h, x, y, rows, cols, setter));
+    }
+
+    // run length encoded pattern as used by most pattern collections, its rule line replaces the current rule
+    public void importRLE(String rle, long x, long y) {
+        var cx = x;
+        var cy = y;
+        var count = 0;
+        for (var line : rle.split("\\R")) {
+            var trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#"))
+                continue;
+            if (trimmed.startsWith("x")) {
+                var i = trimmed.indexOf("rule");
+                if (i >= 0)
+                    setRule(LifeRule.parse(trimmed.substring(trimmed.indexOf('=', i) + 1).trim()));
+                continue;
+            }
+            for (var c : trimmed.toCharArray()) {
+                if (Character.isDigit(c)) {
+                    count = count * 10 + c - '0';
+                    continue;
+                }
+                var n = Math.max(1, count);
+                count = 0;
+                if (c == '!')
+                    return;
+                if (c == '$') {
+                    cy += n;
+                    cx = x;
+                } else if (c == 'b' || c == '.') {
+                    cx += n;
+                } else if (Character.isLetter(c)) {
+                    for (int i = 0; i < n; i++)
+                        set(cx++, cy, true);
+                }
+            }
+        }
+    }
+
+    // draws the live cells into an argb buffer where cell (x, y) starts at (originX + x * cellWidth, originY + y * cellHeight),
+    // squares smaller than a pixel are not descended and light the pixel when anything lives in them
+    public void render(int[] pixels, int width, int height, double originX, double originY,
+                       double cellWidth, double cellHeight, int color) {
+        var half = half();
+        render(root, -half, -half, pixels, width, height, originX, originY, cellWidth, cellHeight, color);
+    }
+
+    private void render(Node n, long ox, long oy, int[] pixels, int width, int height, double originX, double originY,
+                        double cellWidth, double cellHeight, int color) {
+        if (n.population == 0)
+            return;
+        var s = (double) (1L << n.level);
+        var sx0 = originX + ox * cellWidth;
+        var sy0 = originY + oy * cellHeight;
+        var sx1 = sx0 + s * cellWidth;
+        var sy1 = sy0 + s * cellHeight;
+        if (sx1 <= 0 || sy1 <= 0 || sx0 >= width || sy0 >= height)
+            return;
+        if (n.level == 0 || s * cellWidth <= 1 && s * cellHeight <= 1) {
+            var x0 = (int) Math.max(0, Math.floor(sx0));
+            var y0 = (int) Math.max(0, Math.floor(sy0));
+            var x1 = (int) Math.min(width, Math.max(x0 + 1, Math.floor(sx1)));
+            var y1 = (int) Math.min(height, Math.max(y0 + 1, Math.floor(sy1)));
+            for (int y = y0; y < y1; y++)
+                for (int x = x0; x < x1; x++)
+                    pixels[y * width + x] = color;
+            return;
+        }
+        var h = 1L << (n.level - 1);
+        render(n.nw, ox, oy, pixels, width, height, originX, originY, cellWidth, cellHeight, color);
+        render(n.ne, ox + h, oy, pixels, width, height, originX, originY, cellWidth, cellHeight, color);
+        render(n.sw, ox, oy + h, pixels, width, height, originX, originY, cellWidth, cellHeight, color);
+        render(n.se, ox + h, oy + h, pixels, width, height, originX, originY, cellWidth, cellHeight, color);
+    }
+
+    public void clear() {
+        root = empty(MIN_ROOT_LEVEL);
+        generation = 0;
+    }
+
+    public long population() {
+        return root.population;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    // results depend on the rule so they are all forgotten
+    public void setRule(LifeRule rule) {
+        if (((rule.getBirth() | rule.getSurvival()) >>> 9) != 0)
+            throw new IllegalArgumentException("AHD:: A 2D cell has at most 8 neighbors, rule " + rule);
+        if ((rule.getBirth() & 1) == 1)
+            throw new IllegalArgumentException("AHD:: Rules with B0 fill the infinite plane, rule " + rule);
+        var changed = this.rule != null && !this.rule.equals(rule);
+        this.rule = rule;
+        if (changed)
+            collect();
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public void setMaxNodes(int maxNodes) {
+        if (maxNodes < 1 << 10)
+            throw new IllegalArgumentException("AHD:: Max nodes should be at least 1024");
+        this.maxNodes = maxNodes;
+        collectAt = Math.max(maxNodes, 2 * size);
+    }
+
+    public int getNumOfNodes() {
+        return size;
+    }
+
+    public long getCollections() {
+        return collections;
+    }
+
+    public int getRootLevel() {
+        return root.level;
+    }
+
+    private static final class Node {
+        private final int id;
+        private final int level;
+        private final long population;
+        private final Node nw;
+        private final Node ne;
+        private final Node sw;
+        private final Node se;
+        private Node result;
+        private Node slow;
+        private int slowStep;
+
+        private Node(int id, int population) {
+            this.id = id;
+            this.population = population;
+            level = 0;
+            nw = ne = sw = se = null;
+        }
+
+        private Node(int id, Node nw, Node ne, Node sw, Node se) {
+            this.id = id;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            level = nw.level + 1;
+            population = nw.population + ne.population + sw.population + se.population;
+        }
+    }
+}
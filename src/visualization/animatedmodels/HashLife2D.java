@@ -0,0 +1,99 @@
+package visualization.animatedmodels;
+
+import visualization.canvas.CoordinatedScreen;
+import visualization.canvas.Render;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// life on an unbounded plane through hashlife, each tick jumps 2^stepLog generations, cell (x, y) is drawn at
+// (x * cellSize, -y * cellSize) so imported patterns keep the orientation they are written in
+@SuppressWarnings("unused")
+public class HashLife2D implements Render {
+    private static final int ALIVE_COLOR = 0xFFFF0000;
+
+    private final HashLife engine;
+    private final CoordinatedScreen cs;
+    private final double cellSize;
+    private boolean isVisible;
+    private int stepLog;
+    private BufferedImage frame;
+    private int[] framePixels;
+
+    public HashLife2D(CoordinatedScreen cs) {
+        this(cs, LifeRule.CONWAY);
+    }
+
+    public HashLife2D(CoordinatedScreen cs, LifeRule rule) {
+        this.cs = cs;
+        engine = new HashLife(rule);
+        cellSize = 0.1;
+        isVisible = true;
+        stepLog = 0;
+    }
+
+    public HashLife getEngine() {
+        return engine;
+    }
+
+    // cell (row, col) of the setter lands on (x + row, y + col)
+    public void setCells(long x, long y, int rows, int cols, GameOfLife2D.CellSetter setter) {
+        engine.setCells(x, y, rows, cols, setter);
+    }
+
+    public void importRLE(String rle, long x, long y) {
+        engine.importRLE(rle, x, y);
+    }
+
+    public int getStepLog() {
+        return stepLog;
+    }
+
+    public void setStepLog(int stepLog) {
+        if (stepLog < 0)
+            throw new IllegalArgumentException("AHD:: Step should not be negative");
+        this.stepLog = stepLog;
+    }
+
+    public long getGeneration() {
+        return engine.getGeneration();
+    }
+
+    public void setVisible(boolean visible) {
+        isVisible = visible;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return isVisible;
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        var view = cs.viewBounds(g2d);
+        if (view.width <= 0 || view.height <= 0)
+            return;
+        if (frame == null || frame.getWidth() != view.width || frame.getHeight() != view.height) {
+            frame = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+            framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        }
+        Arrays.fill(framePixels, 0);
+        var cellWidth = cellSize * cs.scaleX();
+        var cellHeight = cellSize * cs.scaleY();
+        engine.render(framePixels, view.width, view.height, cs.screenX(0) - view.x, cs.screenY(0) - view.y,
+                cellWidth, cellHeight, ALIVE_COLOR);
+        g2d.drawImage(frame, view.x, view.y, null);
+    }
+
+    @Override
+    public void tick() {
+        engine.step(stepLog);
+    }
+
+    @Override
+    public int tickGroup() {
+        return INDEPENDENT_TICK_GROUP;
+    }
+}
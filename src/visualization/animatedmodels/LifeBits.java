@@ -0,0 +1,40 @@
+package visualization.animatedmodels;
+
+// bit twiddling shared by the packed life grids, a row is words longs with bit j of word w the cell at 64 * w + j and
+// lastBit the bit of the last cell in the last word
+final class LifeBits {
+    private LifeBits() {
+    }
+
+    // bit j holds the cell at j - 1, wrapping the first cell of the row to the last one
+    static long west(long[] src, int row, int w, int words, int lastBit) {
+        var carry = w == 0 ? src[row + words - 1] >>> lastBit & 1 : src[row + w - 1] >>> 63;
+        return src[row + w] << 1 | carry;
+    }
+
+    // bit j holds the cell at j + 1, wrapping the last cell of the row to the first one
+    static long east(long[] src, int row, int w, int words, int lastBit) {
+        var x = src[row + w] >>> 1;
+        if (w < words - 1)
+            return x | src[row + w + 1] << 63;
+        return x & ~(1L << lastBit) | (src[row] & 1) << lastBit;
+    }
+
+    // cells whose neighbor count, given as bit planes from the lowest bit up, equals k
+    static long equal(int k, long s0, long s1, long s2, long s3) {
+        return ((k & 1) != 0 ? s0 : ~s0) & ((k & 2) != 0 ? s1 : ~s1) & ((k & 4) != 0 ? s2 : ~s2) & ((k & 8) != 0 ? s3 : ~s3);
+    }
+
+    static long equal(int k, long s0, long s1, long s2, long s3, long s4) {
+        return equal(k, s0, s1, s2, s3) & ((k & 16) != 0 ? s4 : ~s4);
+    }
+
+    // the counts set in the mask of a rule, up to the most neighbors a cell can have
+    static int[] countsOf(int mask, int maxCount) {
+        var res = new int[Integer.bitCount(mask & (1 << maxCount + 1) - 1)];
+        for (int k = 0, i = 0; k <= maxCount; k++)
+            if ((mask >>> k & 1) == 1)
+                res[i++] = k;
+        return res;
+    }
+}
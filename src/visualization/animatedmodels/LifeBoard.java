@@ -0,0 +1,191 @@
+package visualization.animatedmodels;
+
+import utils.Parallel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// toroidal two state board with 64 cells per long along the columns of a row, a generation counts the eight neighbors of
+// 64 cells at once with a bit sliced adder and writes into a second buffer that is swapped afterward, rows are split
+// over the shared pool
+@SuppressWarnings("unused")
+public class LifeBoard {
+    private final int rows;
+    private final int cols;
+    private final int words;
+    private final int lastBit;
+    private final long tailMask;
+    private long[] cells;
+    private long[] next;
+    private LifeRule rule;
+    private int[] birthCounts;
+    private int[] survivalCounts;
+    private long generation;
+
+    public LifeBoard(int rows, int cols) {
+        if (rows <= 0 || cols <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid row or col");
+        if ((long) rows * ((cols + 63) >>> 6) > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("AHD:: Board is too large");
+        this.rows = rows;
+        this.cols = cols;
+        words = (cols + 63) >>> 6;
+        lastBit = (cols - 1) & 63;
+        tailMask = lastBit == 63 ? -1L : (1L << (lastBit + 1)) - 1;
+        cells = new long[rows * words];
+        next = new long[rows * words];
+        setRule(LifeRule.CONWAY);
+    }
+
+    public boolean get(int row, int col) {
+        return (cells[row * words + (col >>> 6)] >>> col & 1) == 1;
+    }
+
+    public void set(int row, int col, boolean alive) {
+        var i = row * words + (col >>> 6);
+        if (alive)
+            cells[i] |= 1L << col;
+        else
+            cells[i] &= ~(1L << col);
+    }
+
+    public void setCells(GameOfLife2D.CellSetter setter) {
+        for (int i = 0; i < rows; i++) {
+            for (int w = 0; w < words; w++) {
+                long word = 0;
+                for (int b = 0, j = w << 6; b < 64 && j < cols; b++, j++)
+                    if (setter.isAlive(i, j))
+                        word |= 1L << b;
+                cells[i * words + w] = word;
+            }
+        }
+    }
+
+    // every cell is alive with the given probability, rows draw from their own split of the seed so it is reproducible
+    public void randomize(double density, long seed) {
+        var root = new SplittableRandom(seed);
+        var seeds = new long[rows];
+        for (int i = 0; i < rows; i++)
+            seeds[i] = root.nextLong();
+        Parallel.forRange(0, rows, Parallel.grainOf(rows, 16), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var random = new SplittableRandom(seeds[i]);
+                for (int w = 0; w < words; w++) {
+                    long word = 0;
+                    for (int b = 0; b < 64; b++)
+                        if (random.nextDouble() < density)
+                            word |= 1L << b;
+                    cells[i * words + w] = w == words - 1 ? word & tailMask : word;
+                }
+            }
+        });
+    }
+
+    public void clear() {
+        Arrays.fill(cells, 0);
+        generation = 0;
+    }
+
+    public void step() {
+        final var src = cells;
+        final var dst = next;
+        final var conway = rule.equals(LifeRule.CONWAY);
+        Parallel.forRange(0, rows, Parallel.grainOf(rows, 8), (s, e) -> {
+            for (int r = s; r < e; r++)
+                stepRow(src, dst, r, conway);
+        });
+        cells = dst;
+        next = src;
+        generation++;
+    }
+
+    public void step(int generations) {
+        for (int i = 0; i < generations; i++)
+            step();
+    }
+
+    private void stepRow(long[] src, long[] dst, int r, boolean conway) {
+        final var up = (r == 0 ? rows - 1 : r - 1) * words;
+        final var mid = r * words;
+        final var down = (r == rows - 1 ? 0 : r + 1) * words;
+        final var born = birthCounts;
+        final var stay = survivalCounts;
+        for (int w = 0; w < words; w++) {
+            var a = src[up + w];
+            var aw = LifeBits.west(src, up, w, words, lastBit);
+            var ae = LifeBits.east(src, up, w, words, lastBit);
+            var alive = src[mid + w];
+            var mw = LifeBits.west(src, mid, w, words, lastBit);
+            var me = LifeBits.east(src, mid, w, words, lastBit);
+            var b = src[down + w];
+            var bw = LifeBits.west(src, down, w, words, lastBit);
+            var be = LifeBits.east(src, down, w, words, lastBit);
+
+            // eight one bit inputs summed into the bit planes s0..s3 of the neighbor count
+            var x = aw ^ a;
+            var s1a = x ^ ae;
+            var c1a = aw & a | ae & x;
+            x = mw ^ me;
+            var s1b = x ^ bw;
+            var c1b = mw & me | bw & x;
+            var s1c = b ^ be;
+            var c1c = b & be;
+            x = s1a ^ s1b;
+            var s0 = x ^ s1c;
+            var c2 = s1a & s1b | s1c & x;
+            x = c1a ^ c1b;
+            var t = x ^ c1c;
+            var c3 = c1a & c1b | c1c & x;
+            var s1 = t ^ c2;
+            var c4 = t & c2;
+            var s2 = c3 ^ c4;
+            var s3 = c3 & c4;
+
+            long res;
+            if (conway) {
+                res = (s0 | alive) & s1 & ~s2 & ~s3;
+            } else {
+                long birth = 0, survival = 0;
+                for (var k : born)
+                    birth |= LifeBits.equal(k, s0, s1, s2, s3);
+                for (var k : stay)
+                    survival |= LifeBits.equal(k, s0, s1, s2, s3);
+                res = ~alive & birth | alive & survival;
+            }
+            dst[mid + w] = w == words - 1 ? res & tailMask : res;
+        }
+    }
+
+    public long population() {
+        long res = 0;
+        for (var word : cells)
+            res += Long.bitCount(word);
+        return res;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    // only counts up to eight are meaningful on a two dimensional board
+    public void setRule(LifeRule rule) {
+        if (((rule.getBirth() | rule.getSurvival()) >>> 9) != 0)
+            throw new IllegalArgumentException("AHD:: A 2D cell has at most 8 neighbors, rule " + rule);
+        this.rule = rule;
+        birthCounts = LifeBits.countsOf(rule.getBirth(), 8);
+        survivalCounts = LifeBits.countsOf(rule.getSurvival(), 8);
+    }
+
+}
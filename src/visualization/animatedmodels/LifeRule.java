@@ -0,0 +1,107 @@
+package visualization.animatedmodels;
+
+import java.util.Objects;
+
+// outer totalistic rule of a two state automaton, bit k of birth or survival is set when k alive neighbors give birth to
+// a dead cell or keep an alive one, written as B3/S23 with single digits or B5,6,7/S4,5 when counts pass nine
+@SuppressWarnings("unused")
+public final class LifeRule {
+    public static final LifeRule CONWAY = parse("B3/S23");
+    public static final LifeRule HIGH_LIFE = parse("B36/S23");
+    public static final LifeRule SEEDS = parse("B2/S");
+    public static final LifeRule DAY_AND_NIGHT = parse("B3678/S34678");
+
+    private final int birth;
+    private final int survival;
+
+    public LifeRule(int birth, int survival) {
+        this.birth = birth;
+        this.survival = survival;
+    }
+
+    public static LifeRule parse(String rule) {
+        var parts = rule.trim().toUpperCase().split("/");
+        if (parts.length != 2)
+            throw new IllegalArgumentException("AHD:: Rule should be like B3/S23, got " + rule);
+        int birth = -1, survival = -1;
+        for (var part : parts) {
+            if (part.startsWith("B"))
+                birth = counts(part.substring(1), rule);
+            else if (part.startsWith("S"))
+                survival = counts(part.substring(1), rule);
+        }
+        if (birth < 0 || survival < 0)
+            throw new IllegalArgumentException("AHD:: Rule should be like B3/S23, got " + rule);
+        return new LifeRule(birth, survival);
+    }
+
+    private static int counts(String s, String rule) {
+        int res = 0;
+        var items = s.contains(",") ? s.split(",") : s.split("");
+        for (var item : items) {
+            if (item.isBlank())
+                continue;
+            try {
+                var k = Integer.parseInt(item.trim());
+                if (k < 0 || k > 30)
+                    throw new IllegalArgumentException("AHD:: Neighbor count out of range in rule " + rule);
+                res |= 1 << k;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("AHD:: Invalid rule " + rule);
+            }
+        }
+        return res;
+    }
+
+    public boolean isBorn(int neighbors) {
+        return (birth >>> neighbors & 1) == 1;
+    }
+
+    public boolean survives(int neighbors) {
+        return (survival >>> neighbors & 1) == 1;
+    }
+
+    public boolean next(boolean alive, int neighbors) {
+        return alive ? survives(neighbors) : isBorn(neighbors);
+    }
+
+    public int getBirth() {
+        return birth;
+    }
+
+    public int getSurvival() {
+        return survival;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof LifeRule r && birth == r.birth && survival == r.survival;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(birth, survival);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("B");
+        var wide = (birth | survival) >>> 10 != 0;
+        append(sb, birth, wide);
+        sb.append("/S");
+        append(sb, survival, wide);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, int counts, boolean wide) {
+        var first = true;
+        for (int k = 0; k < 31; k++) {
+            if ((counts >>> k & 1) == 0)
+                continue;
+            if (wide && !first)
+                sb.append(',');
+            sb.append(k);
+            first = false;
+        }
+    }
+}
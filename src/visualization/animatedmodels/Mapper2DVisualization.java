@@ -1,24 +1,58 @@
 package visualization.animatedmodels;
 
-import jmath.datatypes.functions.CFunction;
-import jmath.datatypes.functions.ComplexFunction;
 import jmath.datatypes.functions.Mapper2D;
-import utils.Utils;
+import utils.ImagePipeline;
+import utils.filter.Warp;
 import visualization.canvas.CoordinatedCanvas;
 import visualization.canvas.Render;
 
 import java.awt.*;
-
-import static java.lang.Math.PI;
-import static java.lang.Math.atan;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 
 public class Mapper2DVisualization implements Render {
     private Mapper2D mapper;
     private CoordinatedCanvas cc;
+    private BufferedImage image;
+    private int[] imagePixels;
+    private final Warp warp;
+    private BufferedImage frame;
+    private int[] framePixels;
 
     public Mapper2DVisualization(CoordinatedCanvas cc, Mapper2D mapper) {
         this.mapper = mapper;
         this.cc = cc;
+        // the pixel at (x, y) shows the pixel of the image under the screen point the mapper sends (x, y) to
+        warp = new Warp((x, y, uv) -> {
+            var m = this.mapper.map(this.cc.coordinateX((int) x), this.cc.coordinateY((int) y));
+            uv[0] = this.cc.screenX(0) + m.x * this.cc.scaleX();
+            uv[1] = this.cc.screenY(0) - m.y * this.cc.scaleY();
+            return Double.isFinite(uv[0]) && Double.isFinite(uv[1]);
+        });
+        warp.setEdgeMode(Warp.EdgeMode.WRAP);
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    // the image covers the screen at identity, without an image the mapped coordinates are drawn as colors
+    public void setImage(BufferedImage image) {
+        if (image == null) {
+            this.image = null;
+            imagePixels = null;
+            return;
+        }
+        var argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        var g = argb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        this.image = argb;
+        imagePixels = ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    public Warp getWarp() {
+        return warp;
     }
 
     public CoordinatedCanvas getCc() {
@@ -43,14 +77,27 @@ public class Mapper2DVisualization implements Render {
             return;
         final var w = cc.getWidth();
         final var h = cc.getHeight();
-        g2d.drawImage(Utils.createImage(w, h, i -> {
-            var cn = mapper.map(cc.coordinateX(i % w), cc.coordinateY(i / w));
-            return new Color(
-                    (float) Math.abs(cn.x % 1),
-                    (float) Math.abs(cn.y % 1),
-                    (float) Math.abs(cn.distanceFromOrigin() % 1)
-            ).getRGB();
-        }, 40), 0, 0, null);
+        if (w <= 0 || h <= 0)
+            return;
+        if (frame == null || frame.getWidth() != w || frame.getHeight() != h) {
+            frame = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        }
+        if (imagePixels != null) {
+            warp.apply(imagePixels, image.getWidth(), image.getHeight(), framePixels, w, h);
+        } else {
+            ImagePipeline.generate(framePixels, w, h, (x, y) -> {
+                var cn = mapper.map(cc.coordinateX(x), cc.coordinateY(y));
+                return 0xFF000000 | channel(cn.x) << 16 | channel(cn.y) << 8 | channel(Math.hypot(cn.x, cn.y));
+            });
+        }
+        g2d.drawImage(frame, 0, 0, null);
+    }
+
+    // the fraction of |v| in [0, 255] as the old float color did
+    private static int channel(double v) {
+        var f = Math.abs(v % 1);
+        return Double.isNaN(f) ? 0 : (int) (f * 255 + 0.5);
     }
 
     @Override
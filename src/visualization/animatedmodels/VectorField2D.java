@@ -1,11 +1,9 @@
 package visualization.animatedmodels;
 
-import jdk.jshell.execution.Util;
 import jmath.datatypes.tuples.Point2D;
-import jmath.datatypes.tuples.Point3D;
-import utils.Utils;
 import visualization.canvas.CoordinatedScreen;
 import visualization.canvas.Render;
+import visualization.vectorfield.FieldSampler;
 
 import java.awt.*;
 
@@ -16,8 +14,15 @@ public class VectorField2D implements Render {
     private double vectorLen;
     private final Point2D direction;
     private final CoordinatedScreen cs;
+    private FieldSampler field;
 
     public VectorField2D(CoordinatedScreen cs, double width, double height) {
+        this(cs, width, height, null);
+    }
+
+    // arrows follow the field when it is given, otherwise they point away from a moving point
+    public VectorField2D(CoordinatedScreen cs, double width, double height, FieldSampler field) {
+        this.field = field;
         this.height = height;
         this.width = width;
         this.cs = cs;
@@ -50,6 +55,14 @@ public class VectorField2D implements Render {
         this.height = height;
     }
 
+    public FieldSampler getField() {
+        return field;
+    }
+
+    public void setField(FieldSampler field) {
+        this.field = field;
+    }
+
     public double getVectorLen() {
         return vectorLen;
     }
@@ -60,16 +73,26 @@ public class VectorField2D implements Render {
 
     @Override
     public void render(Graphics2D g2d) {
-        for (double x = vectorLen/2; x + vectorLen/2 <= width; x += vectorLen * 1.1)
-            for (double y = vectorLen/2; y + vectorLen/2 <= height; y += vectorLen * 1.1) {
-                g2d.setColor(new Point2D(x, y).distanceFrom(direction) < vectorLen*5 ? Color.GREEN : Color.RED);
-                var angel = Math.atan2(y - direction.y, x - direction.x);
-                var x1 = x - vectorLen * Math.cos(angel) / 2;
-                var y1 = y - vectorLen * Math.sin(angel) / 2;
-                var x2 = x + vectorLen * Math.cos(angel) / 2;
-                var y2 = y + vectorLen * Math.sin(angel) / 2;
-                g2d.drawLine(cs.screenX(x1),
-                        cs.screenY(y1), cs.screenX(x2), cs.screenY(y2));
+        var d = new double[2];
+        var half = vectorLen / 2;
+        var near = vectorLen * vectorLen * 25;
+        for (double x = half; x + half <= width; x += vectorLen * 1.1)
+            for (double y = half; y + half <= height; y += vectorLen * 1.1) {
+                var dx = x - direction.x;
+                var dy = y - direction.y;
+                if (field == null) {
+                    d[0] = dx;
+                    d[1] = dy;
+                } else if (!field.sample(x, y, d)) {
+                    continue;
+                }
+                var len = Math.hypot(d[0], d[1]);
+                if (len == 0)
+                    continue;
+                g2d.setColor(dx * dx + dy * dy < near ? Color.GREEN : Color.RED);
+                var ux = d[0] * half / len;
+                var uy = d[1] * half / len;
+                g2d.drawLine(cs.screenX(x - ux), cs.screenY(y - uy), cs.screenX(x + ux), cs.screenY(y + uy));
             }
     }
 
@@ -82,6 +105,11 @@ public class VectorField2D implements Render {
         direction.set(t += sign * 0.01, Math.sin(t) * 6 + 6);
     }
 
+    @Override
+    public int tickGroup() {
+        return INDEPENDENT_TICK_GROUP;
+    }
+
     @Override
     public boolean isVisible() {
         return isVisible;
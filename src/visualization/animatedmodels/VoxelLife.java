@@ -0,0 +1,210 @@
+package visualization.animatedmodels;
+
+import utils.Parallel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// toroidal two state voxel grid with 64 cells per long along x, a generation sums the 26 neighbors of 64 cells at once
+// into five bit planes, every row adds the 3 cell sums of its nine neighbor rows, slabs of z run on the shared pool
+@SuppressWarnings("unused")
+public class VoxelLife {
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int words;
+    private final int lastBit;
+    private final long tailMask;
+    private long[] cells;
+    private long[] next;
+    private LifeRule rule;
+    private int[] birthCounts;
+    private int[] survivalCounts;
+    private long generation;
+
+    public VoxelLife(int sizeX, int sizeY, int sizeZ) {
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid size of the grid");
+        words = (sizeX + 63) >>> 6;
+        if ((long) words * sizeY * sizeZ > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("AHD:: Grid is too large");
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        lastBit = (sizeX - 1) & 63;
+        tailMask = lastBit == 63 ? -1L : (1L << (lastBit + 1)) - 1;
+        cells = new long[words * sizeY * sizeZ];
+        next = new long[cells.length];
+        setRule(LifeRule.parse("B4/S56"));
+    }
+
+    public VoxelLife(int size) {
+        this(size, size, size);
+    }
+
+    private int row(int y, int z) {
+        return (z * sizeY + y) * words;
+    }
+
+    public boolean get(int x, int y, int z) {
+        return (cells[row(y, z) + (x >>> 6)] >>> x & 1) == 1;
+    }
+
+    public void set(int x, int y, int z, boolean alive) {
+        var i = row(y, z) + (x >>> 6);
+        if (alive)
+            cells[i] |= 1L << x;
+        else
+            cells[i] &= ~(1L << x);
+    }
+
+    // the 64 cells from x = 64 * w of the row at (y, z), bit b is x = 64 * w + b
+    public long word(int y, int z, int w) {
+        return cells[row(y, z) + w];
+    }
+
+    public void setCells(GameOfLife3D.CellSetter setter) {
+        for (int z = 0; z < sizeZ; z++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int w = 0; w < words; w++) {
+                    long word = 0;
+                    for (int b = 0, x = w << 6; b < 64 && x < sizeX; b++, x++)
+                        if (setter.isAlive(x, y, z))
+                            word |= 1L << b;
+                    cells[row(y, z) + w] = word;
+                }
+            }
+        }
+    }
+
+    public void randomize(double density, long seed) {
+        var root = new SplittableRandom(seed);
+        var seeds = new long[sizeZ];
+        for (int z = 0; z < sizeZ; z++)
+            seeds[z] = root.nextLong();
+        Parallel.forRange(0, sizeZ, 1, (s, e) -> {
+            for (int z = s; z < e; z++) {
+                var random = new SplittableRandom(seeds[z]);
+                for (int y = 0; y < sizeY; y++) {
+                    for (int w = 0; w < words; w++) {
+                        long word = 0;
+                        for (int b = 0; b < 64; b++)
+                            if (random.nextDouble() < density)
+                                word |= 1L << b;
+                        cells[row(y, z) + w] = w == words - 1 ? word & tailMask : word;
+                    }
+                }
+            }
+        });
+    }
+
+    public void clear() {
+        Arrays.fill(cells, 0);
+        generation = 0;
+    }
+
+    public void step() {
+        final var src = cells;
+        final var dst = next;
+        Parallel.forRange(0, sizeZ, 1, (s, e) -> {
+            var rows = new int[9];
+            for (int z = s; z < e; z++)
+                for (int y = 0; y < sizeY; y++)
+                    stepRow(src, dst, y, z, rows);
+        });
+        cells = dst;
+        next = src;
+        generation++;
+    }
+
+    public void step(int generations) {
+        for (int i = 0; i < generations; i++)
+            step();
+    }
+
+    private void stepRow(long[] src, long[] dst, int y, int z, int[] rows) {
+        for (int dz = -1, i = 0; dz <= 1; dz++)
+            for (int dy = -1; dy <= 1; dy++)
+                rows[i++] = row(Math.floorMod(y + dy, sizeY), Math.floorMod(z + dz, sizeZ));
+        final var born = birthCounts;
+        final var stay = survivalCounts;
+        final var mid = rows[4];
+        for (int w = 0; w < words; w++) {
+            long a0 = 0, a1 = 0, a2 = 0, a3 = 0, a4 = 0;
+            for (int i = 0; i < 9; i++) {
+                var o = rows[i];
+                var west = LifeBits.west(src, o, w, words, lastBit);
+                var east = LifeBits.east(src, o, w, words, lastBit);
+                long s, k;
+                // s and k are the ones and twos of the cells of this row around x, the middle row skips the cell itself
+                if (i == 4) {
+                    s = west ^ east;
+                    k = west & east;
+                } else {
+                    var c = src[o + w];
+                    var t = west ^ c;
+                    s = t ^ east;
+                    k = west & c | east & t;
+                }
+                var carry = a0 & s;
+                a0 ^= s;
+                var x = a1 ^ k;
+                var c2 = a1 & k | x & carry;
+                a1 = x ^ carry;
+                var c4 = a2 & c2;
+                a2 ^= c2;
+                var c8 = a3 & c4;
+                a3 ^= c4;
+                a4 ^= c8;
+            }
+            var alive = src[mid + w];
+            long birth = 0, survival = 0;
+            for (var n : born)
+                birth |= LifeBits.equal(n, a0, a1, a2, a3, a4);
+            for (var n : stay)
+                survival |= LifeBits.equal(n, a0, a1, a2, a3, a4);
+            var res = ~alive & birth | alive & survival;
+            dst[mid + w] = w == words - 1 ? res & tailMask : res;
+        }
+    }
+
+    public long population() {
+        long res = 0;
+        for (var word : cells)
+            res += Long.bitCount(word);
+        return res;
+    }
+
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    public int getWords() {
+        return words;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    public void setRule(LifeRule rule) {
+        if (((rule.getBirth() | rule.getSurvival()) >>> 27) != 0)
+            throw new IllegalArgumentException("AHD:: A 3D cell has at most 26 neighbors, rule " + rule);
+        this.rule = rule;
+        birthCounts = LifeBits.countsOf(rule.getBirth(), 26);
+        survivalCounts = LifeBits.countsOf(rule.getSurvival(), 26);
+    }
+
+}
@@ -1,38 +1,66 @@
 package visualization.canvas;
 
-import com.sun.management.OperatingSystemMXBean;
 import swingutils.MainFrame;
 import utils.Utils;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.File;
-import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 
 @SuppressWarnings("unused")
 public class Canvas extends JPanel implements Runnable {
     public static final int DEFAULT_REDRAW_DELAY = 4;
+    private static final int MAX_CATCH_UP_TICKS = 8;
+    private static final int MAX_CLIP_REGIONS = 64;
     private static int numberOfPanels = 0;
     private final Timer redrawTimer;
+    private final Object bufferLock;
+    private volatile boolean activeRendering;
+    private volatile boolean activeRunning;
+    private Thread renderThread;
+    private Thread tickThread;
+    private VolatileImage frontBuffer;
+    private VolatileImage backBuffer;
+    private int maxRenderFps;
     protected Color backGround;
     private Image bgImage;
     private int fps;
     private long lastTime;
-    private double timePerTick;
+    private volatile double timePerTick;
     private double delta;
     private long timer;
     private long loopCounter;
     private Color infoColor;
     protected Font infoFont;
     private boolean showInfo;
+    private MetricsOverlay metricsOverlay;
+    private boolean dirtyRegionRepaint;
+    private BufferedImage frameBuffer;
+    private BufferedImage staticBuffer;
+    private List<Object> lastStaticState;
+    private final List<Rectangle> dirtyRegions;
+    private volatile boolean staticLayerInvalid;
     private boolean showBgImg;
     protected final Camera camera;
     private final boolean created;
 
     public Canvas() {
         redrawTimer = new Timer(DEFAULT_REDRAW_DELAY, e -> this.run());
+        bufferLock = new Object();
+        dirtyRegions = new ArrayList<>();
+        activeRendering = false;
+        activeRunning = false;
+        maxRenderFps = 0;
         camera = new Camera();
         init();
         created = true;
@@ -50,10 +78,21 @@ public class Canvas extends JPanel implements Runnable {
         infoColor = Color.GREEN.darker();
         infoFont = new Font(Font.SANS_SERIF, Font.BOLD, 11);
         showInfo = true;
+        metricsOverlay = null;
+        dirtyRegionRepaint = false;
+        staticLayerInvalid = true;
         showBgImg = true;
         setFps(30);
         setDoubleBuffered(true);
 
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                if (getWidth() > 0 && getHeight() > 0)
+                    camera.setFrameDimension(getWidth(), getHeight());
+            }
+        });
+
         addMouseListener(new MouseAdapter() {
             private boolean isRunning = false;
 
@@ -89,6 +128,9 @@ public class Canvas extends JPanel implements Runnable {
         var tooltip = new JButton("TooltipText");
         var resetRenderManager = new JButton("ResetRenderManager");
         var tickAndShow = new JButton("Tick and show");
+        var activeRendering = new JCheckBox("Active Rendering", null, isActiveRendering());
+        var showMetrics = new JCheckBox("Show Metrics", null, isShowMetrics());
+        var dirtyRegions = new JCheckBox("Dirty Regions", null, isDirtyRegionRepaint());
 
         var settingPanel = new JPanel(new GridLayout(0, 2)) {{
             add(fps);
@@ -105,11 +147,17 @@ public class Canvas extends JPanel implements Runnable {
             add(tooltip);
             add(resetRenderManager);
             add(tickAndShow);
+            add(activeRendering);
+            add(showMetrics);
+            add(dirtyRegions);
         }};
         start.addActionListener(e -> start());
         stop.addActionListener(e -> stop());
         showInfo.addActionListener(e -> setShowInfo(showInfo.isSelected()));
         showBgImg.addActionListener(e -> setShowBgImg(showBgImg.isSelected()));
+        activeRendering.addActionListener(e -> setActiveRendering(activeRendering.isSelected()));
+        showMetrics.addActionListener(e -> setShowMetrics(showMetrics.isSelected()));
+        dirtyRegions.addActionListener(e -> setDirtyRegionRepaint(dirtyRegions.isSelected()));
         fps.addActionListener(e -> setFps(Integer.parseInt(JOptionPane.showInputDialog(Canvas.this, "Enter new FPS: (If any exception occurred nothing will change)", getFps()))));
         changeBgColor.addActionListener(e -> setBackground(JColorChooser.showDialog(Canvas.this, "Choose Background Color", getBackGround())));
         setInfoColor.addActionListener(e -> setInfoColor(JColorChooser.showDialog(Canvas.this, "Choose InfoText Color", getBackGround())));
@@ -142,14 +190,157 @@ public class Canvas extends JPanel implements Runnable {
     public synchronized void start() {
         resetLoopInfo();
         lastTime = System.nanoTime();
-        redrawTimer.start();
+        if (!activeRendering) {
+            redrawTimer.start();
+            return;
+        }
+        if (activeRunning)
+            return;
+        activeRunning = true;
+        tickThread = new Thread(this::tickLoop, getName() + "-tick");
+        renderThread = new Thread(this::renderLoop, getName() + "-render");
+        tickThread.setDaemon(true);
+        renderThread.setDaemon(true);
+        tickThread.start();
+        renderThread.start();
     }
 
     public synchronized void stop() {
         redrawTimer.stop();
+        if (!activeRunning)
+            return;
+        activeRunning = false;
+        for (var t : new Thread[]{tickThread, renderThread}) {
+            if (t == null || t == Thread.currentThread())
+                continue;
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        tickThread = null;
+        renderThread = null;
+        camera.setInterpolation(0);
 //        repaint();
     }
 
+    public boolean isActiveRendering() {
+        return activeRendering;
+    }
+
+    // ticks run on their own fixed timestep thread and frames are drawn into an accelerated buffer
+    // by a render thread, so heavy ticks do not stall input handling and painting on the EDT
+    public synchronized void setActiveRendering(boolean activeRendering) {
+        if (this.activeRendering == activeRendering)
+            return;
+        var running = isRunning();
+        stop();
+        this.activeRendering = activeRendering;
+        synchronized (bufferLock) {
+            if (frontBuffer != null)
+                frontBuffer.flush();
+            if (backBuffer != null)
+                backBuffer.flush();
+            frontBuffer = null;
+            backBuffer = null;
+        }
+        if (running)
+            start();
+    }
+
+    public int getMaxRenderFps() {
+        return maxRenderFps;
+    }
+
+    // upper bound of frames per second in active rendering, 0 means the refresh rate of the display
+    public void setMaxRenderFps(int maxRenderFps) {
+        this.maxRenderFps = Math.max(0, maxRenderFps);
+    }
+
+    private long frameNanos() {
+        var max = maxRenderFps;
+        if (max == 0) {
+            var gc = getGraphicsConfiguration();
+            var rate = gc == null ? DisplayMode.REFRESH_RATE_UNKNOWN : gc.getDevice().getDisplayMode().getRefreshRate();
+            max = rate == DisplayMode.REFRESH_RATE_UNKNOWN ? 60 : rate;
+        }
+        return 1_000_000_000L / max;
+    }
+
+    private void tickLoop() {
+        var last = System.nanoTime();
+        double accumulator = 0;
+        while (activeRunning) {
+            var now = System.nanoTime();
+            accumulator += now - last;
+            timer += now - last;
+            last = now;
+            var step = timePerTick;
+            int n = 0;
+            while (accumulator >= step && n < MAX_CATCH_UP_TICKS) {
+                camera.tick();
+                accumulator -= step;
+                n++;
+            }
+            // dropping the backlog keeps a tick that is slower than its step from spiraling
+            if (n == MAX_CATCH_UP_TICKS)
+                accumulator = Math.min(accumulator, step);
+            camera.setInterpolation(Math.min(1, accumulator / step));
+            loopCounter++;
+            var wait = (long) (step - accumulator) - (System.nanoTime() - now);
+            if (wait > 0)
+                LockSupport.parkNanos(Math.min(wait, 1_000_000L));
+        }
+    }
+
+    private void renderLoop() {
+        var next = System.nanoTime();
+        while (activeRunning) {
+            if (!renderActiveFrame())
+                LockSupport.parkNanos(10_000_000L);
+            Toolkit.getDefaultToolkit().sync();
+            next += frameNanos();
+            var now = System.nanoTime();
+            if (next < now)
+                next = now;
+            else
+                LockSupport.parkNanos(next - now);
+        }
+    }
+
+    private boolean renderActiveFrame() {
+        var gc = getGraphicsConfiguration();
+        var w = getWidth();
+        var h = getHeight();
+        if (gc == null || w <= 0 || h <= 0 || !isShowing())
+            return false;
+        var buffer = backBuffer;
+        do {
+            if (buffer == null || buffer.getWidth() != w || buffer.getHeight() != h) {
+                if (buffer != null)
+                    buffer.flush();
+                buffer = gc.createCompatibleVolatileImage(w, h);
+            } else if (buffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                buffer.flush();
+                buffer = gc.createCompatibleVolatileImage(w, h);
+            }
+            var g = buffer.createGraphics();
+            try {
+                paintComponent(g);
+            } finally {
+                g.dispose();
+            }
+        } while (buffer.contentsLost() && activeRunning);
+        synchronized (bufferLock) {
+            backBuffer = frontBuffer;
+            frontBuffer = buffer;
+        }
+        repaint();
+        return true;
+    }
+
     public RenderManager getRenderManager() {
         return camera;
     }
@@ -165,6 +356,7 @@ public class Canvas extends JPanel implements Runnable {
         }
         this.fps = fps;
         redrawTimer.setDelay(fps > 50 ? 0 : DEFAULT_REDRAW_DELAY);
+        camera.getMetrics().setFrameBudgetNanos(1_000_000_000L / fps);
         resetLoopInfo();
     }
 
@@ -220,7 +412,7 @@ public class Canvas extends JPanel implements Runnable {
     }
 
     public boolean isRunning() {
-        return redrawTimer.isRunning();
+        return redrawTimer.isRunning() || activeRunning;
     }
 
     public long getRenderCounter() {
@@ -254,6 +446,19 @@ public class Canvas extends JPanel implements Runnable {
         repaint();
     }
 
+    public boolean isShowMetrics() {
+        return metricsOverlay != null;
+    }
+
+    public void setShowMetrics(boolean showMetrics) {
+        metricsOverlay = showMetrics ? new MetricsOverlay(camera.getMetrics()) : null;
+        repaint();
+    }
+
+    public MetricsOverlay getMetricsOverlay() {
+        return metricsOverlay;
+    }
+
     public void addRender(Render... renders) {
         camera.addRender(renders);
         repaint();
@@ -297,20 +502,140 @@ public class Canvas extends JPanel implements Runnable {
         repaint();
     }
 
+    public boolean isDirtyRegionRepaint() {
+        return dirtyRegionRepaint;
+    }
+
+    // frames are kept in a buffer and only the union of regions damaged by renders is redrawn on it, the background and
+    // static layers are drawn from a separate cache, any render that can not report damage makes the frame a full repaint
+    public synchronized void setDirtyRegionRepaint(boolean dirtyRegionRepaint) {
+        this.dirtyRegionRepaint = dirtyRegionRepaint;
+        camera.setStaticLayersCached(dirtyRegionRepaint);
+        frameBuffer = null;
+        staticBuffer = null;
+        invalidateStaticLayer();
+        repaint();
+    }
+
+    // static layers are redrawn on the next frame, needed when they depend on state the canvas does not know about
+    public void invalidateStaticLayer() {
+        staticLayerInvalid = true;
+    }
+
+    // everything the background and static layers depend on, the static cache is redrawn when it changes
+    protected List<Object> staticLayerState() {
+        return new ArrayList<>(Arrays.asList(getWidth(), getHeight(), backGround, bgImage, showBgImg));
+    }
+
+    private void paintBackground(Graphics2D g2d) {
+        if (bgImage == null || !showBgImg) {
+            g2d.setColor(backGround);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+        } else {
+            g2d.drawImage(bgImage, 0, 0, getWidth(), getHeight(), null);
+        }
+    }
+
+    private void paintDirtyRegions(Graphics2D g2d) {
+        var w = getWidth();
+        var h = getHeight();
+        var full = false;
+        if (frameBuffer == null || frameBuffer.getWidth() != w || frameBuffer.getHeight() != h) {
+            var gc = getGraphicsConfiguration();
+            frameBuffer = gc == null ? new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB) : gc.createCompatibleImage(w, h);
+            staticBuffer = gc == null ? new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB) : gc.createCompatibleImage(w, h);
+            full = true;
+        }
+        var state = staticLayerState();
+        if (full || staticLayerInvalid || !state.equals(lastStaticState)) {
+            staticLayerInvalid = false;
+            lastStaticState = state;
+            var sg = staticBuffer.createGraphics();
+            try {
+                sg.setComposite(AlphaComposite.Src);
+                paintBackground(sg);
+                sg.setComposite(AlphaComposite.SrcOver);
+                sg.setRenderingHints(g2d.getRenderingHints());
+                camera.renderStaticLayers(sg);
+            } finally {
+                sg.dispose();
+            }
+            full = true;
+        }
+
+        dirtyRegions.clear();
+        full |= !camera.collectDirtyRegions(dirtyRegions);
+        Shape clip = null;
+        if (full) {
+            clip = new Rectangle(0, 0, w, h);
+        } else if (!dirtyRegions.isEmpty()) {
+            var bounds = new Rectangle(0, 0, w, h);
+            if (dirtyRegions.size() > MAX_CLIP_REGIONS) {
+                var union = new Rectangle(dirtyRegions.get(0));
+                dirtyRegions.forEach(union::add);
+                clip = union.intersection(bounds);
+            } else {
+                var area = new java.awt.geom.Area();
+                for (var r : dirtyRegions)
+                    area.add(new java.awt.geom.Area(r.intersection(bounds)));
+                clip = area;
+            }
+        }
+
+        if (clip != null) {
+            var fg = frameBuffer.createGraphics();
+            try {
+                fg.setRenderingHints(g2d.getRenderingHints());
+                fg.setClip(clip);
+                fg.setComposite(AlphaComposite.Src);
+                fg.drawImage(staticBuffer, 0, 0, null);
+                fg.setComposite(AlphaComposite.SrcOver);
+                camera.render(fg);
+            } finally {
+                fg.dispose();
+            }
+        }
+        g2d.drawImage(frameBuffer, 0, 0, null);
+    }
+
+    // in active rendering the EDT only blits the last complete frame, the render thread paints the component
+    @Override
+    public void paint(Graphics g) {
+        if (!activeRunning || Thread.currentThread() == renderThread) {
+            super.paint(g);
+            return;
+        }
+        synchronized (bufferLock) {
+            if (frontBuffer != null && !frontBuffer.contentsLost()) {
+                g.drawImage(frontBuffer, 0, 0, null);
+            } else {
+                g.setColor(backGround);
+                g.fillRect(0, 0, getWidth(), getHeight());
+            }
+        }
+        paintBorder(g);
+        paintChildren(g);
+    }
+
     @Override
     public void paintComponent(Graphics g) {
         if (g == null)
             return;
         var g2d = (Graphics2D) g;
 
-        if (bgImage == null || !showBgImg) {
-            g2d.setColor(backGround);
-            g2d.fillRect(0, 0, getWidth(), getHeight());
+        var recorder = camera.getFrameRecorder();
+        if (dirtyRegionRepaint && getWidth() > 0 && getHeight() > 0 && (recorder == null || !recorder.isRunning())) {
+            paintDirtyRegions(g2d);
         } else {
-            g2d.drawImage(bgImage, 0, 0, getWidth(), getHeight(), null);
+            paintBackground(g2d);
+            camera.setStaticLayersCached(false);
+            camera.render(g2d);
+            camera.setStaticLayersCached(dirtyRegionRepaint);
         }
 
-        camera.render(g2d);
+        var overlay = metricsOverlay;
+        if (overlay != null)
+            overlay.render(g2d);
 
         if (!showInfo)
             return;
@@ -325,12 +650,14 @@ public class Canvas extends JPanel implements Runnable {
         g2d.drawString(
                 "FPS: " + getRealFps() +
                         ", TPS: " + getRealTps() +
-                        ", CPU: " + Utils.round(((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuLoad() * 100, 2) +
+                        ", CPU: " + Utils.round(camera.getMetrics().getCpuLoad() * 100, 2) +
                         "%, Tick: " + getTicksCounter() + ", Render: " + getRenderCounter() +
                         ", LTT: " + camera.numOfAliveTickThreads() +
                         ", STT: " + camera.singleThreadedTick() +
                         ", TRT: " + camera.tickRoundTime() +
-                        ", RRT: " + camera.renderRoundTime()
+                        ", RRT: " + camera.renderRoundTime() +
+                        (camera.getFrameRecorder() == null ? "" :
+                                ", REC: " + camera.getFrameRecorder().getWrittenFrames() + "/" + camera.getFrameRecorder().getDroppedFrames())
                 , 0, (int) (infoFont.getSize() * 0.8)
         );
     }
@@ -6,6 +6,8 @@ import jmath.datatypes.tuples.Point3D;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static utils.Utils.round;
@@ -38,7 +40,7 @@ public class CoordinatedCanvas extends Canvas implements CoordinatedScreen {
             handleMouseListener();
         if (setKeyListener)
             handleKeyListener();
-        addRender(this::drawGrid, this::drawAxis);
+        addRender(new StaticLayer(this::drawGrid), new StaticLayer(this::drawAxis));
         camera.setCs(this);
     }
 
@@ -143,13 +145,17 @@ public class CoordinatedCanvas extends Canvas implements CoordinatedScreen {
     protected void drawAxis(Graphics2D g2d) {
         if (!showAxis)
             return;
-        g2d.setColor(getAxisColor());
+        drawAxis(g2d, getWidth(), getHeight(), shiftX, shiftY, getAxisColor());
+    }
+
+    static void drawAxis(Graphics2D g2d, int width, int height, int shiftX, int shiftY, Color color) {
+        g2d.setColor(color);
         g2d.setStroke(new BasicStroke(1.8f));
-        g2d.drawLine(0, getHeight() / 2 - shiftY, getWidth(), getHeight() / 2 - shiftY);
-        g2d.drawLine(getWidth() / 2 - shiftX, 0, getWidth() / 2 - shiftX, getHeight());
-        g2d.fillPolygon(new int[]{getWidth() - 20, getWidth() - 20, getWidth()},
-                new int[]{getHeight() / 2 - 5 - shiftY, getHeight() / 2 + 5 - shiftY, getHeight() / 2 - shiftY}, 3);
-        g2d.fillPolygon(new int[]{getWidth() / 2 - 5 - shiftX, getWidth() / 2 + 5 - shiftX, getWidth() / 2 - shiftX},
+        g2d.drawLine(0, height / 2 - shiftY, width, height / 2 - shiftY);
+        g2d.drawLine(width / 2 - shiftX, 0, width / 2 - shiftX, height);
+        g2d.fillPolygon(new int[]{width - 20, width - 20, width},
+                new int[]{height / 2 - 5 - shiftY, height / 2 + 5 - shiftY, height / 2 - shiftY}, 3);
+        g2d.fillPolygon(new int[]{width / 2 - 5 - shiftX, width / 2 + 5 - shiftX, width / 2 - shiftX},
                 new int[]{20, 20, 0}, 3);
     }
 
@@ -168,24 +174,29 @@ public class CoordinatedCanvas extends Canvas implements CoordinatedScreen {
     protected void drawGrid(Graphics2D g2d) {
         if (!showGrid)
             return;
-        int xCenter = getWidth() / 2;
-        int yCenter = getHeight() / 2;
+        drawGrid(g2d, getWidth(), getHeight(), xScale, yScale, shiftX, shiftY,
+                isDark ? LIGHT.darker().darker() : DARK.brighter().brighter());
+    }
+
+    static void drawGrid(Graphics2D g2d, int width, int height, double xScale, double yScale, int shiftX, int shiftY, Color color) {
+        int xCenter = width / 2;
+        int yCenter = height / 2;
 
         double gridXScale = Math.max(xScale / 5.0, 1);
         double gridYScale = Math.max(yScale / 5.0, 1);
 
-        g2d.setColor(isDark ? LIGHT.darker().darker() : DARK.brighter().brighter());
-        for (int i  = 0; i < getHeight() / (gridYScale * 2) + 1 + Math.abs(shiftY); i++) {
+        g2d.setColor(color);
+        for (int i  = 0; i < height / (gridYScale * 2) + 1 + Math.abs(shiftY); i++) {
             g2d.setStroke(new BasicStroke(i % 5 == 0 ? 0.5f : 0.1f));
             var dd = (int) (i * gridYScale);
-            g2d.drawLine(0, yCenter - dd - shiftY, getWidth(), yCenter - dd - shiftY);
-            g2d.drawLine(0, yCenter + dd - shiftY, getWidth(), yCenter + dd - shiftY);
+            g2d.drawLine(0, yCenter - dd - shiftY, width, yCenter - dd - shiftY);
+            g2d.drawLine(0, yCenter + dd - shiftY, width, yCenter + dd - shiftY);
         }
-        for (int i = 0; i < getWidth() / (gridXScale * 2) + 1 + Math.abs(shiftX); i++) {
+        for (int i = 0; i < width / (gridXScale * 2) + 1 + Math.abs(shiftX); i++) {
             g2d.setStroke(new BasicStroke(i % 5 == 0 ? 0.5f : 0.1f));
             var dd = (int) (i * gridXScale);
-            g2d.drawLine(xCenter - dd - shiftX, 0,  xCenter - dd - shiftX, getHeight());
-            g2d.drawLine(xCenter + dd - shiftX, 0,  xCenter + dd - shiftX, getHeight());
+            g2d.drawLine(xCenter - dd - shiftX, 0,  xCenter - dd - shiftX, height);
+            g2d.drawLine(xCenter + dd - shiftX, 0,  xCenter + dd - shiftX, height);
         }
     }
 
@@ -305,6 +316,13 @@ public class CoordinatedCanvas extends Canvas implements CoordinatedScreen {
         return settingPanel;
     }
 
+    @Override
+    protected List<Object> staticLayerState() {
+        var res = super.staticLayerState();
+        res.addAll(Arrays.asList(xScale, yScale, shiftX, shiftY, isDark, showGrid, showAxis));
+        return res;
+    }
+
     @Override
     public final double coordinateX(int screenX) {
         return (screenX + shiftX - getWidth() / 2.0) / xScale;
@@ -325,6 +343,11 @@ public class CoordinatedCanvas extends Canvas implements CoordinatedScreen {
         return (int) (getHeight() / 2.0 - value * yScale - shiftY);
     }
 
+    @Override
+    public Rectangle viewBounds(Graphics2D g2d) {
+        return CoordinatedScreen.viewBounds(g2d, getWidth(), getHeight());
+    }
+
     @Override
     public Point screen(Point2D p) {
         return new Point(screenX(p.x), screenY(p.y));
@@ -52,6 +52,21 @@ public interface CoordinatedScreen {
         return 1 / coordinateYLen(1);
     }
 
+    // the part of the screen a render draws on, screens that know their size override it to bound the clip by it
+    default Rectangle viewBounds(Graphics2D g2d) {
+        var clip = g2d.getClipBounds();
+        if (clip == null)
+            throw new RuntimeException("AHD:: Size of the screen is unknown, set a clip on the graphics");
+        return clip;
+    }
+
+    // the clip of the graphics within a screen of the size
+    static Rectangle viewBounds(Graphics2D g2d, int width, int height) {
+        var view = new Rectangle(width, height);
+        var clip = g2d.getClipBounds();
+        return clip == null ? view : clip.intersection(view);
+    }
+
     static CoordinatedScreen default2D() {
         return new Graph2DCanvas();
     }
@@ -59,4 +74,9 @@ public interface CoordinatedScreen {
     static CoordinatedScreen default3D() {
         return new Graph3DCanvas();
     }
+
+    // works with java.awt.headless=true
+    static OffscreenScreen offscreen(int width, int height) {
+        return new OffscreenScreen(width, height);
+    }
 }
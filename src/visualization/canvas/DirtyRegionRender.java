@@ -0,0 +1,47 @@
+package visualization.canvas;
+
+import java.awt.*;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// a render that knows which screen rectangles it changed since the last frame, used by dirty region repaint of Canvas
+public interface DirtyRegionRender extends Render {
+    // adds the damaged rectangles in screen pixels and returns true, or returns false when the whole screen has to be repainted
+    boolean collectDirtyRegions(List<Rectangle> regions);
+
+    // the whole render is damaged whenever the state given by the supplier is not equal to the previous one
+    static DirtyRegionRender of(Render render, Supplier<?> state) {
+        return new DirtyRegionRender() {
+            private Object lastState = new Object();
+
+            @Override
+            public boolean collectDirtyRegions(List<Rectangle> regions) {
+                var s = state.get();
+                var res = Objects.equals(s, lastState);
+                lastState = s;
+                return res;
+            }
+
+            @Override
+            public void render(Graphics2D g2d) {
+                render.render(g2d);
+            }
+
+            @Override
+            public void tick() {
+                render.tick();
+            }
+
+            @Override
+            public boolean isVisible() {
+                return render.isVisible();
+            }
+
+            @Override
+            public int tickGroup() {
+                return render.tickGroup();
+            }
+        };
+    }
+}
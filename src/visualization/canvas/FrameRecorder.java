@@ -0,0 +1,342 @@
+package visualization.canvas;
+
+import visualization.canvas.export.FrameWriter;
+import visualization.canvas.export.ImageSequenceWriter;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// renders frames into pooled buffers and hands them to background encoders through a bounded queue,
+// encoded frames are passed to the writer in index order
+@SuppressWarnings("unused")
+public class FrameRecorder implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 8;
+    public static final int DEFAULT_NUM_OF_ENCODERS = 2;
+    private static final byte[] NOTHING = new byte[0];
+    private static final byte[] SKIPPED = new byte[0];
+
+    private final FrameWriter writer;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<Frame> pending;
+    private final BlockingQueue<BufferedImage> freeBuffers;
+    private final ExecutorService encoders;
+    private final int numOfEncoders;
+    private final AtomicLong frameCounter;
+    private final AtomicLong submitted;
+    private final AtomicLong written;
+    private final AtomicLong dropped;
+    private final AtomicLong failed;
+    private final AtomicLong encodeNanos;
+    private final AtomicInteger allocatedBuffers;
+    private final AtomicInteger aliveEncoders;
+    private final int maxBuffers;
+    private final Map<Long, byte[]> reorder;
+    private long nextToWrite;
+    private boolean writing;
+    private volatile boolean running;
+
+    public FrameRecorder(FrameWriter writer, OverflowPolicy policy, int queueCapacity, int numOfEncoders) {
+        if (queueCapacity < 1 || numOfEncoders < 1)
+            throw new IllegalArgumentException("AHD:: Queue capacity and number of encoders should be positive");
+        this.writer = writer;
+        this.policy = policy;
+        this.numOfEncoders = numOfEncoders;
+        pending = new ArrayBlockingQueue<>(queueCapacity);
+        freeBuffers = new ArrayBlockingQueue<>(queueCapacity + numOfEncoders + 1);
+        frameCounter = new AtomicLong();
+        submitted = new AtomicLong();
+        written = new AtomicLong();
+        dropped = new AtomicLong();
+        failed = new AtomicLong();
+        encodeNanos = new AtomicLong();
+        allocatedBuffers = new AtomicInteger();
+        aliveEncoders = new AtomicInteger(numOfEncoders);
+        maxBuffers = queueCapacity + numOfEncoders + 1;
+        reorder = new HashMap<>();
+        nextToWrite = 0;
+        var threadCounter = new AtomicInteger();
+        encoders = Executors.newFixedThreadPool(numOfEncoders, r -> {
+            var t = new Thread(r, "FrameRecorder-encoder-" + threadCounter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        running = true;
+        for (int i = 0; i < numOfEncoders; i++)
+            encoders.execute(this::encodeLoop);
+    }
+
+    public FrameRecorder(FrameWriter writer) {
+        this(writer, OverflowPolicy.DROP_NEWEST, DEFAULT_QUEUE_CAPACITY, DEFAULT_NUM_OF_ENCODERS);
+    }
+
+    public FrameRecorder(String directory, String format, float compressionQuality, OverflowPolicy policy,
+                         int queueCapacity, int numOfEncoders) {
+        this(new ImageSequenceWriter(directory, format, compressionQuality), policy, queueCapacity, numOfEncoders);
+    }
+
+    public FrameRecorder(String directory) {
+        this(directory, "png", 0.5f, OverflowPolicy.DROP_NEWEST, DEFAULT_QUEUE_CAPACITY, DEFAULT_NUM_OF_ENCODERS);
+    }
+    // renders the frame once into a pooled buffer, blits it on g2d when given and queues it for encoding
+    public void record(int width, int height, Graphics2D g2d, Consumer<Graphics2D> renderAction) {
+        var buffer = running ? acquire(width, height) : null;
+        if (buffer == null) {
+            if (g2d != null)
+                renderAction.accept(g2d);
+            return;
+        }
+        Arrays.fill(((DataBufferInt) buffer.getRaster().getDataBuffer()).getData(), 0);
+        var bg = buffer.createGraphics();
+        if (g2d != null)
+            bg.setRenderingHints(g2d.getRenderingHints());
+        try {
+            renderAction.accept(bg);
+        } finally {
+            bg.dispose();
+        }
+        if (g2d != null)
+            g2d.drawImage(buffer, 0, 0, null);
+        submit(new Frame(buffer, frameCounter.getAndIncrement()));
+    }
+
+    private BufferedImage acquire(int width, int height) {
+        var res = freeBuffers.poll();
+        if (res == null && allocatedBuffers.getAndUpdate(n -> n < maxBuffers ? n + 1 : n) < maxBuffers)
+            res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        if (res == null) {
+            switch (policy) {
+                case BLOCK -> {
+                    try {
+                        res = freeBuffers.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+                case DROP_OLDEST -> {
+                    var old = pending.poll();
+                    if (old != null) {
+                        dropped.incrementAndGet();
+                        skip(old.index);
+                        res = old.image;
+                    }
+                }
+                case DROP_NEWEST -> {}
+            }
+        }
+        if (res == null) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        if (res.getWidth() != width || res.getHeight() != height)
+            res = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        return res;
+    }
+
+    private void submit(Frame frame) {
+        submitted.incrementAndGet();
+        try {
+            if (policy == OverflowPolicy.BLOCK) {
+                pending.put(frame);
+            } else if (!pending.offer(frame)) {
+                dropped.incrementAndGet();
+                release(frame.image);
+                skip(frame.index);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            release(frame.image);
+            skip(frame.index);
+        }
+    }
+
+    private void release(BufferedImage image) {
+        //noinspection ResultOfMethodCallIgnored
+        freeBuffers.offer(image);
+    }
+
+    private void encodeLoop() {
+        try {
+            while (running || !pending.isEmpty()) {
+                Frame frame;
+                try {
+                    frame = pending.poll(50, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (frame == null)
+                    continue;
+                var t = System.nanoTime();
+                byte[] data;
+                try {
+                    data = writer.encode(frame.image, frame.index);
+                    if (data == null)
+                        data = NOTHING;
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    e.printStackTrace();
+                    data = SKIPPED;
+                } finally {
+                    encodeNanos.addAndGet(System.nanoTime() - t);
+                    release(frame.image);
+                }
+                commit(frame.index, data);
+            }
+        } finally {
+            if (aliveEncoders.decrementAndGet() == 0)
+                closeWriter();
+        }
+    }
+
+    // frames finish encoding out of order, they are held here until every earlier frame is written or skipped, the
+    // recording thread only marks skipped frames and encoders do the writing outside the lock, one at a time so the
+    // frames stay in order
+    private synchronized void skip(long index) {
+        reorder.put(index, SKIPPED);
+    }
+
+    private void commit(long index, byte[] data) {
+        synchronized (this) {
+            reorder.put(index, data);
+            if (writing)
+                return;
+            writing = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        var ready = new ArrayList<byte[]>();
+        while (true) {
+            long first;
+            synchronized (this) {
+                first = nextToWrite;
+                byte[] next;
+                while ((next = reorder.remove(nextToWrite)) != null) {
+                    ready.add(next);
+                    nextToWrite++;
+                }
+                if (ready.isEmpty()) {
+                    writing = false;
+                    return;
+                }
+            }
+            for (int i = 0; i < ready.size(); i++) {
+                var data = ready.get(i);
+                if (data == SKIPPED)
+                    continue;
+                try {
+                    if (data != NOTHING)
+                        writer.write(data, first + i);
+                    written.incrementAndGet();
+                } catch (IOException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }
+            ready.clear();
+        }
+    }
+
+    // runs on the last encoder, every other one has finished writing
+    private void closeWriter() {
+        drain();
+        synchronized (this) {
+            if (!reorder.isEmpty())
+                System.err.println("AHD:: " + reorder.size() + " encoded frames were not written because of a missing frame");
+            reorder.clear();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // stops accepting frames, encoders exit after writing the queued ones
+    public void stop() {
+        running = false;
+        encoders.shutdown();
+    }
+
+    // waits until queued frames are written, encoders are stopped and the writer is closed
+    @Override
+    public void close() {
+        stop();
+        try {
+            if (!encoders.awaitTermination(1, TimeUnit.MINUTES))
+                encoders.shutdownNow();
+        } catch (InterruptedException e) {
+            encoders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public FrameWriter getWriter() {
+        return writer;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getNumOfEncoders() {
+        return numOfEncoders;
+    }
+
+    public long getSubmittedFrames() {
+        return submitted.get();
+    }
+
+    public long getWrittenFrames() {
+        return written.get();
+    }
+
+    public long getDroppedFrames() {
+        return dropped.get();
+    }
+
+    public long getFailedFrames() {
+        return failed.get();
+    }
+
+    public int getQueuedFrames() {
+        return pending.size();
+    }
+
+    public double getAverageEncodeMillis() {
+        var n = written.get() + failed.get();
+        return n == 0 ? 0 : encodeNanos.get() / 1e6 / n;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameRecorder{" + writer + ", submitted=" + getSubmittedFrames() + ", written=" + getWrittenFrames() +
+                ", dropped=" + getDroppedFrames() + ", failed=" + getFailedFrames() + ", queued=" + getQueuedFrames() + '}';
+    }
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_NEWEST, DROP_OLDEST
+    }
+
+    private record Frame(BufferedImage image, long index) {}
+}
@@ -18,7 +18,9 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @SuppressWarnings("unused")
@@ -51,6 +53,11 @@ public class Graph2DCanvas extends CoordinatedCanvas {
     public static final int COLOR_FUNC = 15; // Function2D only in advanced plotting mode
     public static final int BEFORE_PARSE = 25; // Arc or Function before being parsed By Function4DParser
     public static final int OBJECT_ID = 26; // A Random double number between 0 and 1 as an ID
+    public static final int DECIMATION_TOLERANCE = 27; // double in pixels, 0 keeps every pixel column extreme
+
+    // point sets only
+    public static final int POINT_CLOUD = 28; // PointCloud of a large set, refilled from the set on every frame
+    public static final int POINT_CLOUD_THRESHOLD = 5_000; // sets larger than this are drawn through a PointCloud
 
     // arcs only
     public static final int DELTA = 24;
@@ -77,21 +84,35 @@ public class Graph2DCanvas extends CoordinatedCanvas {
             put(ADVANCED_PLOT, false);
             put(POINT_RADIUS, 0.1);
             put(BEFORE_PARSE, "Un Available");
+            put(DECIMATION_TOLERANCE, 0D);
         }};
     }
 
+    private static final ThreadLocal<PolylineDecimator> DECIMATOR = ThreadLocal.withInitial(PolylineDecimator::new);
+
     // collections to display
     private final HashMap<Function2D, HashMap<Integer, Object>> functions;
-    private final HashMap<Set<Point2D>, HashMap<Integer, Object>> pointSets;
+    private final Map<Set<Point2D>, HashMap<Integer, Object>> pointSets;
+    private final List<PointCloud> pointClouds;
     private final HashMap<Arc2D, HashMap<Integer, Object>> arcs;
     protected final HashMap<String, Function<?, ?>> stringBaseMap;
 
     public Graph2DCanvas() {
         functions = new HashMap<>();
-        pointSets = new HashMap<>();
+        // identity keys, hashing a set walks all of its points
+        pointSets = new IdentityHashMap<>();
+        pointClouds = new ArrayList<>();
         arcs = new HashMap<>();
         stringBaseMap = new HashMap<>();
-        addRender(this::typicalPlotting, this::showPointSets, this::advancedPlotting, this::showRoots, this::showStationaryPoints);
+        // plots are sampled again on every frame, so they are only free of damage while there is nothing to plot
+        addRender(DirtyRegionRender.of(g2d -> {
+            typicalPlotting(g2d);
+            showPointSets(g2d);
+            pointClouds.forEach(c -> c.render(g2d));
+            advancedPlotting(g2d);
+            showRoots(g2d);
+            showStationaryPoints(g2d);
+        }, () -> functions.isEmpty() && pointSets.isEmpty() && arcs.isEmpty() && pointClouds.isEmpty() ? Boolean.TRUE : new Object()));
         setShowGrid(true);
     }
 
@@ -113,6 +134,7 @@ public class Graph2DCanvas extends CoordinatedCanvas {
         properties.put(UP_BOUND, u);
         properties.put(BEFORE_PARSE, "Un Available");
         properties.put(OBJECT_ID, Math.random());
+        properties.put(DECIMATION_TOLERANCE, 0D);
 
         properties.put(TYPICAL_PLOT, true);
         properties.put(DOT_PLOT, false);
@@ -148,6 +170,7 @@ public class Graph2DCanvas extends CoordinatedCanvas {
         properties.put(UP_BOUND, Double.POSITIVE_INFINITY);
         properties.put(BEFORE_PARSE, "Un Available");
         properties.put(OBJECT_ID, Math.random());
+        properties.put(DECIMATION_TOLERANCE, 0D);
 
         properties.put(TYPICAL_PLOT, true);
         properties.put(DOT_PLOT, false);
@@ -216,10 +239,30 @@ public class Graph2DCanvas extends CoordinatedCanvas {
         return functions;
     }
 
-    public HashMap<Set<Point2D>, HashMap<Integer, Object>> getPointSets() {
+    public Map<Set<Point2D>, HashMap<Integer, Object>> getPointSets() {
         return pointSets;
     }
 
+    public PointCloud addPointCloudToDraw(double[] xs, double[] ys, Color color) {
+        var res = new PointCloud(this, color, xs, ys);
+        addPointCloudToDraw(res);
+        return res;
+    }
+
+    public void addPointCloudToDraw(PointCloud cloud) {
+        pointClouds.add(cloud);
+        repaint();
+    }
+
+    public void removePointCloud(PointCloud cloud) {
+        pointClouds.remove(cloud);
+        repaint();
+    }
+
+    public List<PointCloud> getPointClouds() {
+        return pointClouds;
+    }
+
     public void removeAllFunctions() {
         functions.clear();
         repaint();
@@ -256,7 +299,7 @@ public class Graph2DCanvas extends CoordinatedCanvas {
                     (double) p.get(LOW_BOUND)), Math.min(coordinateX(getWidth()), (double) p.get(UP_BOUND)),
                     1 / (getXScale() * (double) p.get(ACCURACY_RATE)), (int) p.get(NUM_OF_THREADS));
             p.put(ALL_POINTS, sample);
-            typicalPlotter(sample, (Color) p.get(COLOR), this, g2d);
+            typicalPlotter(sample, (Color) p.get(COLOR), (double) p.get(DECIMATION_TOLERANCE), this, g2d);
         }
 
         for (var arc : arcs.keySet()) {
@@ -269,44 +312,20 @@ public class Graph2DCanvas extends CoordinatedCanvas {
             var sample = Sampling.multiThreadSampling(arc, (double) p.get(LOW_BOUND), (double) p.get(UP_BOUND),
                     (double) p.get(DELTA), (int) p.get(NUM_OF_THREADS));
             p.put(ALL_POINTS, sample);
-            typicalPlotter(sample, (Color) p.get(COLOR), this, g2d);
+            typicalPlotter(sample, (Color) p.get(COLOR), (double) p.get(DECIMATION_TOLERANCE), this, g2d);
         }
     }
 
     public static void typicalPlotter(List<Point2D> sample, Color c,
             CoordinatedScreen cs, Graphics2D g2d) {
-        var vps = new ArrayList<>(sample);
-        List<Point2D> nanPoints = new ArrayList<>();
-
-        for (int i = 1; i < sample.size(); i++)
-            if (!Double.isFinite(sample.get(i - 1).y))
-                try {
-                    while (!Double.isFinite(sample.get(i).y))
-                        nanPoints.add(sample.get(i++));
-                } catch (Exception e) {
-                    break;
-                }
-
-        vps.removeAll(nanPoints);
-        vps.add(new Point2D(0, Double.NaN));
+        typicalPlotter(sample, c, 0, cs, g2d);
+    }
 
+    // the sample is decimated to the pixel columns it covers before drawing, tolerance in pixels also simplifies it
+    public static void typicalPlotter(List<Point2D> sample, Color c, double tolerance,
+            CoordinatedScreen cs, Graphics2D g2d) {
         g2d.setColor(c);
-        for (int i = 1, pre = 0; i < vps.size(); i++)
-            if (!Double.isFinite(vps.get(i).y)) {
-                var ps = vps.subList(pre + 1, i);
-
-                int[] xa = new int[ps.size()];
-                int[] ya = new int[ps.size()];
-
-                int counter = 0;
-                for (var p : ps) {
-                    xa[counter] = cs.screenX(p.x);
-                    ya[counter++] = cs.screenY(p.y);
-                }
-
-                g2d.drawPolyline(xa, ya, xa.length);
-                pre = i;
-            }
+        DECIMATOR.get().draw(sample, cs, tolerance, g2d);
     }
 
     private void showRoots(Graphics2D g2d) {
@@ -364,14 +383,30 @@ public class Graph2DCanvas extends CoordinatedCanvas {
 
     private void showPointSets(Graphics2D g2d) {
         for (var s : pointSets.entrySet()) {
-            g2d.setColor((Color) s.getValue().get(COLOR));
-            var r = (int) (/*getXScale() * */(double) s.getValue().get(POINT_RADIUS));
-            var fs = (boolean) s.getValue().get(FILLED_OVAL);
-            for (var p : s.getKey())
+            var p = s.getValue();
+            if (!(boolean) p.getOrDefault(IS_VISIBLE, true))
+                continue;
+            var r = (int) (/*getXScale() * */(double) p.get(POINT_RADIUS));
+            var fs = (boolean) p.get(FILLED_OVAL);
+            if (s.getKey().size() > POINT_CLOUD_THRESHOLD) {
+                // the set and its points may have changed in place, refilling reuses the arrays of the cloud
+                var cloud = p.get(POINT_CLOUD) instanceof PointCloud c ? c : null;
+                if (cloud == null)
+                    p.put(POINT_CLOUD, cloud = PointCloud.of(this, (Color) p.get(COLOR), s.getKey()));
+                else
+                    cloud.setPoints(s.getKey());
+                cloud.setColor((Color) p.get(COLOR));
+                cloud.setPointRadius(r);
+                cloud.setFilled(fs);
+                cloud.render(g2d);
+                continue;
+            }
+            g2d.setColor((Color) p.get(COLOR));
+            for (var point : s.getKey())
                 if (fs) {
-                    g2d.fillOval(screenX(p.x) - r, screenY(p.y) - r, 2*r, 2*r);
+                    g2d.fillOval(screenX(point.x) - r, screenY(point.y) - r, 2*r, 2*r);
                 } else {
-                    g2d.drawOval(screenX(p.x) - r, screenY(p.y) - r, 2*r, 2*r);
+                    g2d.drawOval(screenX(point.x) - r, screenY(point.y) - r, 2*r, 2*r);
                 }
         }
     }
@@ -0,0 +1,121 @@
+package visualization.canvas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// log linear buckets like HdrHistogram, every power of two range is split into 32 buckets (about 3% error)
+@SuppressWarnings("unused")
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int NUM_OF_BUCKETS = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(NUM_OF_BUCKETS);
+        count = new AtomicLong();
+        sum = new AtomicLong();
+        min = new AtomicLong(Long.MAX_VALUE);
+        max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        final var v = value;
+        min.getAndUpdate(m -> Math.min(m, v));
+        max.getAndUpdate(m -> Math.max(m, v));
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        var shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        var shift = (index - SUB_BUCKETS) / HALF + 1;
+        var sub = (long) ((index - SUB_BUCKETS) % HALF + HALF);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // smallest recorded bucket value that covers the given percent of samples
+    public long percentile(double percent) {
+        var n = count.get();
+        if (n == 0)
+            return 0;
+        var target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percent)) / 100 * n));
+        long acc = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            acc += counts.get(i);
+            if (acc >= target)
+                return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMean() {
+        var n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    public long getMin() {
+        var res = min.get();
+        return res == Long.MAX_VALUE ? 0 : res;
+    }
+
+    public long getMax() {
+        var res = max.get();
+        return res == Long.MIN_VALUE ? 0 : res;
+    }
+
+    // number of samples above the value, with the precision of buckets
+    public long countAbove(long value) {
+        long res = 0;
+        for (int i = indexOf(Math.max(0, value)) + 1; i < NUM_OF_BUCKETS; i++)
+            res += counts.get(i);
+        return res;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            var c = other.counts.get(i);
+            if (c != 0)
+                counts.addAndGet(i, c);
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        min.getAndUpdate(m -> Math.min(m, other.min.get()));
+        max.getAndUpdate(m -> Math.max(m, other.max.get()));
+    }
+
+    public void reset() {
+        for (int i = 0; i < NUM_OF_BUCKETS; i++)
+            counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() + ", mean=" + Math.round(getMean()) + "ns, p50=" + percentile(50) +
+                "ns, p99=" + percentile(99) + "ns, max=" + getMax() + "ns}";
+    }
+}
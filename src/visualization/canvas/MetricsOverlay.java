@@ -0,0 +1,112 @@
+package visualization.canvas;
+
+import java.awt.*;
+
+// panel drawn on top of a canvas, lists frame and tick latencies and the slowest renders against the frame budget
+@SuppressWarnings("unused")
+public class MetricsOverlay implements Render {
+    private static final int WIDTH = 380;
+    private static final int BAR_WIDTH = 90;
+
+    private final RenderMetrics metrics;
+    private int numOfRenders;
+    private Font font;
+    private Color background;
+    private Color foreground;
+
+    public MetricsOverlay(RenderMetrics metrics, int numOfRenders) {
+        this.metrics = metrics;
+        this.numOfRenders = numOfRenders;
+        font = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+        background = new Color(0, 0, 0, 170);
+        foreground = new Color(220, 220, 220);
+    }
+
+    public MetricsOverlay(RenderMetrics metrics) {
+        this(metrics, 8);
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        var clip = g2d.getClipBounds();
+        var right = clip == null ? WIDTH : clip.x + clip.width;
+        var top = clip == null ? 0 : clip.y;
+        var slowest = metrics.slowestRenders(numOfRenders);
+        var lineHeight = font.getSize() + 3;
+        var height = lineHeight * (4 + slowest.size()) + 6;
+        var x = right - WIDTH - 4;
+        var y = top + 4;
+
+        var oldFont = g2d.getFont();
+        var oldColor = g2d.getColor();
+        g2d.setColor(background);
+        g2d.fillRect(x, y, WIDTH, height);
+        g2d.setFont(font);
+        var budget = metrics.getFrameBudgetNanos();
+        var frame = metrics.getFrameHistogram();
+        var ty = y + lineHeight;
+        g2d.setColor(frame.percentile(99) > budget ? Color.ORANGE : foreground);
+        g2d.drawString("frame " + RenderMetrics.summary(frame), x + 4, ty);
+        ty += lineHeight;
+        g2d.setColor(foreground);
+        g2d.drawString("budget " + RenderMetrics.millis(budget) + "ms, over: " + metrics.getFramesOverBudget() +
+                "/" + frame.getCount(), x + 4, ty);
+        ty += lineHeight;
+        g2d.drawString("tick  " + RenderMetrics.summary(metrics.getTickHistogram()), x + 4, ty);
+        ty += lineHeight;
+        g2d.drawString("cpu " + Math.round(metrics.getCpuLoad() * 100) + "%, gc " + metrics.getGcCount() + " " +
+                Math.round(metrics.getGcMillisPerSecond()) + "ms/s, alloc " + Math.round(metrics.getAllocationRate() / (1 << 20)) +
+                "MB/s, heap " + (metrics.getHeapUsed() >> 20) + "MB", x + 4, ty);
+        ty += lineHeight;
+        for (var s : slowest) {
+            var p99 = s.getRenderHistogram().percentile(99);
+            var w = (int) Math.min(BAR_WIDTH, BAR_WIDTH * p99 / (double) budget);
+            g2d.setColor(p99 > budget ? Color.RED : p99 > budget / 2 ? Color.ORANGE : Color.GREEN.darker());
+            g2d.fillRect(x + 4, ty - font.getSize() + 2, Math.max(w, 1), font.getSize() - 2);
+            g2d.setColor(foreground);
+            var name = RenderMetrics.nameOf(s.getRender());
+            if (name.length() > 30)
+                name = name.substring(name.length() - 30);
+            g2d.drawString(RenderMetrics.millis(p99) + "ms " + name, x + BAR_WIDTH + 8, ty);
+            ty += lineHeight;
+        }
+        g2d.setFont(oldFont);
+        g2d.setColor(oldColor);
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getNumOfRenders() {
+        return numOfRenders;
+    }
+
+    public void setNumOfRenders(int numOfRenders) {
+        this.numOfRenders = Math.max(0, numOfRenders);
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    public void setFont(Font font) {
+        this.font = font;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public void setBackground(Color background) {
+        this.background = background;
+    }
+
+    public Color getForeground() {
+        return foreground;
+    }
+
+    public void setForeground(Color foreground) {
+        this.foreground = foreground;
+    }
+}
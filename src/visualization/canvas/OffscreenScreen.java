@@ -0,0 +1,249 @@
+package visualization.canvas;
+
+import jmath.datatypes.functions.Arc2D;
+import jmath.datatypes.functions.Function2D;
+import jmath.datatypes.tuples.Point2D;
+import jmath.datatypes.tuples.Point3D;
+import jmath.functions.utils.Sampling;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+// coordinated screen without any swing component, same transforms as CoordinatedCanvas so renders work on both
+@SuppressWarnings("unused")
+public class OffscreenScreen implements CoordinatedScreen, Render {
+    private int width;
+    private int height;
+    private double xScale;
+    private double yScale;
+    private int shiftX;
+    private int shiftY;
+    private boolean showGrid;
+    private boolean showAxis;
+    private boolean isDark;
+    private boolean antiAlias;
+    private Color background;
+    private final Camera camera;
+
+    public OffscreenScreen(int width, int height) {
+        setSize(width, height);
+        xScale = 50;
+        yScale = 50;
+        shiftX = 0;
+        shiftY = 0;
+        showGrid = true;
+        showAxis = true;
+        antiAlias = true;
+        setDark(true);
+        camera = new Camera(this);
+        camera.setFrameDimension(width, height);
+    }
+
+    public void addRender(Render... renders) {
+        camera.addRender(renders);
+    }
+
+    public void addFunctionToDraw(Function2D f, Color color, float thickness) {
+        addRender(g2d -> {
+            g2d.setStroke(new BasicStroke(thickness, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_ROUND));
+            Graph2DCanvas.typicalPlotter(Sampling.sample(f, coordinateX(0), coordinateX(width), 1 / (xScale * 2)), color, this, g2d);
+        });
+    }
+
+    public void addFunctionToDraw(Function2D f, Color color) {
+        addFunctionToDraw(f, color, 1.5f);
+    }
+
+    public void addArcToDraw(Arc2D arc, double l, double u, double delta, Color color) {
+        addRender(g2d -> {
+            g2d.setStroke(new BasicStroke(1.5f, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_ROUND));
+            Graph2DCanvas.typicalPlotter(arc.sample(l, u, delta, 1), color, this, g2d);
+        });
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        if (antiAlias)
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setColor(background);
+        g2d.fillRect(0, 0, width, height);
+        if (showGrid)
+            CoordinatedCanvas.drawGrid(g2d, width, height, xScale, yScale, shiftX, shiftY,
+                    isDark ? CoordinatedCanvas.LIGHT.darker().darker() : CoordinatedCanvas.DARK.brighter().brighter());
+        if (showAxis)
+            CoordinatedCanvas.drawAxis(g2d, width, height, shiftX, shiftY,
+                    isDark ? CoordinatedCanvas.LIGHT.darker() : CoordinatedCanvas.DARK.brighter());
+        camera.render(g2d);
+    }
+
+    @Override
+    public void tick() {
+        camera.tick();
+    }
+
+    // draws the whole screen on the image from its top left corner, the image may be larger than the screen
+    public BufferedImage renderTo(BufferedImage image) {
+        var g2d = image.createGraphics();
+        try {
+            g2d.setClip(0, 0, width, height);
+            render(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return image;
+    }
+
+    public BufferedImage getFrame() {
+        return renderTo(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    // fits the coordinate window to the screen
+    public void setView(double xMin, double xMax, double yMin, double yMax) {
+        if (!(xMax > xMin) || !(yMax > yMin))
+            throw new IllegalArgumentException("AHD:: Invalid view: [" + xMin + ", " + xMax + "] x [" + yMin + ", " + yMax + "]");
+        xScale = width / (xMax - xMin);
+        yScale = height / (yMax - yMin);
+        shiftX = (int) Math.round((xMin + xMax) / 2 * xScale);
+        shiftY = (int) Math.round(-(yMin + yMax) / 2 * yScale);
+        camera.setPos((xMin + xMax) / 2, (yMin + yMax) / 2, camera.getZ());
+    }
+
+    @Override
+    public final double coordinateX(int screenX) {
+        return (screenX + shiftX - width / 2.0) / xScale;
+    }
+
+    @Override
+    public final double coordinateY(int screenY) {
+        return -(screenY + shiftY - height / 2.0) / yScale;
+    }
+
+    @Override
+    public final int screenX(double value) {
+        return (int) (width / 2.0 + value * xScale - shiftX);
+    }
+
+    @Override
+    public final int screenY(double value) {
+        return (int) (height / 2.0 - value * yScale - shiftY);
+    }
+
+    @Override
+    public Point screen(Point2D p) {
+        return new Point(screenX(p.x), screenY(p.y));
+    }
+
+    @Override
+    public Point screen(Point3D p) {
+        double dist = Math.sqrt(p.x*p.x + p.y*p.y) * Math.abs(10/(10+camera.getZ()-p.z));
+        double theta = Math.atan2(p.y, p.x);
+        return new Point(screenX(dist * Math.cos(theta)), screenY(dist * Math.sin(theta)));
+    }
+
+    @Override
+    public Camera camera() {
+        return camera;
+    }
+
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid screen size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        if (camera != null)
+            camera.setFrameDimension(width, height);
+    }
+
+    @Override
+    public Rectangle viewBounds(Graphics2D g2d) {
+        return CoordinatedScreen.viewBounds(g2d, getWidth(), getHeight());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getXScale() {
+        return xScale;
+    }
+
+    public void setXScale(double xScale) {
+        this.xScale = Math.max(Math.abs(xScale), Double.MIN_VALUE);
+    }
+
+    public double getYScale() {
+        return yScale;
+    }
+
+    public void setYScale(double yScale) {
+        this.yScale = Math.max(Math.abs(yScale), Double.MIN_VALUE);
+    }
+
+    public int getShiftX() {
+        return shiftX;
+    }
+
+    public void setShiftX(int shiftX) {
+        this.shiftX = shiftX;
+    }
+
+    public int getShiftY() {
+        return shiftY;
+    }
+
+    public void setShiftY(int shiftY) {
+        this.shiftY = shiftY;
+    }
+
+    public boolean isShowGrid() {
+        return showGrid;
+    }
+
+    public void setShowGrid(boolean showGrid) {
+        this.showGrid = showGrid;
+    }
+
+    public boolean isShowAxis() {
+        return showAxis;
+    }
+
+    public void setShowAxis(boolean showAxis) {
+        this.showAxis = showAxis;
+    }
+
+    public boolean isDark() {
+        return isDark;
+    }
+
+    public void setDark(boolean isDark) {
+        this.isDark = isDark;
+        background = isDark ? CoordinatedCanvas.DARK : CoordinatedCanvas.LIGHT;
+    }
+
+    public boolean isAntiAlias() {
+        return antiAlias;
+    }
+
+    public void setAntiAlias(boolean antiAlias) {
+        this.antiAlias = antiAlias;
+    }
+
+    public Color getBackground() {
+        return background;
+    }
+
+    public void setBackground(Color background) {
+        this.background = background;
+    }
+
+    @Override
+    public String toString() {
+        return "OffscreenScreen{" + width + "x" + height + ", scale=" + Arrays.toString(new double[]{xScale, yScale}) +
+                ", renders=" + camera.size() + '}';
+    }
+}
@@ -0,0 +1,321 @@
+package visualization.canvas;
+
+import jmath.datatypes.tuples.Point2D;
+import utils.Parallel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Collection;
+
+// large scatter plot kept in primitive arrays, points are binned into a per pixel density grid on the shared pool and
+// drawn as one image, only when few points are in view they are drawn one by one
+@SuppressWarnings("unused")
+public class PointCloud implements Render {
+    public static final int DEFAULT_EXACT_THRESHOLD = 20_000;
+    private static final int MIN_POINTS_PER_TASK = 1 << 16;
+
+    private final CoordinatedScreen cs;
+    private double[] xs;
+    private double[] ys;
+    private int size;
+    private Color color;
+    private Mode mode;
+    private double pointRadius;
+    private double alpha;
+    private int exactThreshold;
+    private boolean filled;
+    private boolean visible;
+    private BufferedImage image;
+    private int[] density;
+    private int[] palette;
+    private int lastVisiblePoints;
+    private boolean lastExact;
+
+    public PointCloud(CoordinatedScreen cs, Color color) {
+        this.cs = cs;
+        this.color = color;
+        xs = new double[16];
+        ys = new double[16];
+        size = 0;
+        mode = Mode.ALPHA;
+        pointRadius = 3;
+        alpha = 0.25;
+        exactThreshold = DEFAULT_EXACT_THRESHOLD;
+        filled = true;
+        visible = true;
+        palette = null;
+    }
+
+    public PointCloud(CoordinatedScreen cs, Color color, double[] xs, double[] ys) {
+        this(cs, color);
+        addAll(xs, ys);
+    }
+
+    public static PointCloud of(CoordinatedScreen cs, Color color, Collection<Point2D> points) {
+        var res = new PointCloud(cs, color);
+        res.setPoints(points);
+        return res;
+    }
+
+    // replaces the points with the current coordinates of the collection, the arrays are reused
+    public synchronized void setPoints(Collection<Point2D> points) {
+        size = 0;
+        ensureCapacity(points.size());
+        for (var p : points)
+            add(p.x, p.y);
+    }
+
+    public synchronized void add(double x, double y) {
+        ensureCapacity(size + 1);
+        xs[size] = x;
+        ys[size++] = y;
+    }
+
+    public synchronized void addAll(double[] xs, double[] ys) {
+        if (xs.length != ys.length)
+            throw new IllegalArgumentException("AHD:: Length of xs and ys should be equal");
+        ensureCapacity(size + xs.length);
+        System.arraycopy(xs, 0, this.xs, size, xs.length);
+        System.arraycopy(ys, 0, this.ys, size, ys.length);
+        size += xs.length;
+    }
+
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length)
+            return;
+        var len = Math.max(capacity, xs.length * 2);
+        xs = Arrays.copyOf(xs, len);
+        ys = Arrays.copyOf(ys, len);
+    }
+
+    @Override
+    public synchronized void render(Graphics2D g2d) {
+        if (!visible || size == 0)
+            return;
+        var bounds = cs.viewBounds(g2d);
+        if (bounds.width <= 0 || bounds.height <= 0)
+            return;
+        var count = bin(bounds);
+        lastVisiblePoints = count;
+        lastExact = count <= exactThreshold;
+        if (lastExact)
+            drawExact(g2d, bounds);
+        else
+            drawDensity(g2d, bounds);
+    }
+
+    // counts the points of every pixel in bounds, the points are cut in slices and every worker bins a strided set of
+    // them into a private grid that is summed later, so the extra grids are bounded by the pool and live for one frame
+    private int bin(Rectangle bounds) {
+        final var w = bounds.width;
+        final var h = bounds.height;
+        final var ox = bounds.x;
+        final var oy = bounds.y;
+        final var n = size;
+        final var xs = this.xs;
+        final var ys = this.ys;
+        final var grain = Parallel.grainOf(n, MIN_POINTS_PER_TASK);
+        final var tasks = (n + grain - 1) / grain;
+        final var workers = Math.max(1, Math.min(Parallel.parallelism(), tasks));
+        if (density == null || density.length != w * h)
+            density = new int[w * h];
+        final var grids = new int[workers][];
+        grids[0] = density;
+        final var counts = new int[workers];
+        Parallel.forRange(0, workers, 1, (s, e) -> {
+            for (int k = s; k < e; k++) {
+                var grid = grids[k];
+                if (grid == null)
+                    grid = grids[k] = new int[w * h];
+                else
+                    Arrays.fill(grid, 0);
+                var c = 0;
+                for (int t = k; t < tasks; t += workers) {
+                    for (int i = t * grain, end = Math.min(n, i + grain); i < end; i++) {
+                        if (Double.isNaN(xs[i]) || Double.isNaN(ys[i]))
+                            continue;
+                        var x = cs.screenX(xs[i]) - ox;
+                        var y = cs.screenY(ys[i]) - oy;
+                        if (x < 0 || y < 0 || x >= w || y >= h)
+                            continue;
+                        grid[y * w + x]++;
+                        c++;
+                    }
+                }
+                counts[k] = c;
+            }
+        });
+        if (workers > 1) {
+            Parallel.forRange(0, h, Parallel.grainOf(h, 16), (s, e) -> {
+                for (int k = 1; k < workers; k++) {
+                    var grid = grids[k];
+                    for (int i = s * w, end = e * w; i < end; i++)
+                        density[i] += grid[i];
+                }
+            });
+        }
+        var res = 0;
+        for (var c : counts)
+            res += c;
+        return res;
+    }
+
+    private void drawExact(Graphics2D g2d, Rectangle bounds) {
+        g2d.setColor(color);
+        var r = (int) Math.max(1, pointRadius);
+        var d = 2 * r;
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(xs[i]) || Double.isNaN(ys[i]))
+                continue;
+            var x = cs.screenX(xs[i]);
+            var y = cs.screenY(ys[i]);
+            if (x + r < bounds.x || y + r < bounds.y || x - r >= bounds.x + bounds.width || y - r >= bounds.y + bounds.height)
+                continue;
+            if (filled)
+                g2d.fillOval(x - r, y - r, d, d);
+            else
+                g2d.drawOval(x - r, y - r, d, d);
+        }
+    }
+
+    private void drawDensity(Graphics2D g2d, Rectangle bounds) {
+        final var w = bounds.width;
+        final var h = bounds.height;
+        if (image == null || image.getWidth() != w || image.getHeight() != h)
+            image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        final var pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final var density = this.density;
+        var max = 0;
+        for (var c : density)
+            max = Math.max(max, c);
+        final var table = colorTable(max);
+        Parallel.forRange(0, h, Parallel.grainOf(h, 16), (s, e) -> {
+            for (int i = s * w, end = e * w; i < end; i++) {
+                var c = density[i];
+                pixels[i] = c < table.length ? table[c] : table[table.length - 1];
+            }
+        });
+        g2d.drawImage(image, bounds.x, bounds.y, null);
+    }
+
+    // argb of every count up to max, heat maps go through the palette on a log scale, alpha mode stacks the color
+    // as if every point was composited on top of the previous one
+    private int[] colorTable(int max) {
+        var len = Math.min(max, 1 << 16) + 1;
+        var res = new int[len];
+        var rgb = color.getRGB() & 0xFFFFFF;
+        var base = color.getAlpha() / 255.0;
+        var log = Math.log1p(Math.max(max, 1));
+        for (int c = 1; c < len; c++) {
+            if (mode == Mode.HEATMAP) {
+                var p = palette();
+                res[c] = p[(int) Math.min(p.length - 1, Math.log1p(c) / log * (p.length - 1))];
+            } else {
+                var a = 1 - Math.pow(1 - alpha, c);
+                res[c] = (int) Math.round(a * base * 255) << 24 | rgb;
+            }
+        }
+        return res;
+    }
+
+    private int[] palette() {
+        if (palette != null)
+            return palette;
+        Color[] stops = {new Color(0, 0, 128), Color.BLUE, Color.CYAN, Color.YELLOW, Color.RED, Color.WHITE};
+        var res = new int[256];
+        for (int i = 0; i < res.length; i++) {
+            var f = i / 255.0 * (stops.length - 1);
+            var k = Math.min((int) f, stops.length - 2);
+            var t = f - k;
+            var a = stops[k];
+            var b = stops[k + 1];
+            res[i] = 0xFF000000 |
+                    (int) (a.getRed() + (b.getRed() - a.getRed()) * t) << 16 |
+                    (int) (a.getGreen() + (b.getGreen() - a.getGreen()) * t) << 8 |
+                    (int) (a.getBlue() + (b.getBlue() - a.getBlue()) * t);
+        }
+        return palette = res;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public double getPointRadius() {
+        return pointRadius;
+    }
+
+    public void setPointRadius(double pointRadius) {
+        this.pointRadius = pointRadius;
+    }
+
+    public double getAlpha() {
+        return alpha;
+    }
+
+    // opacity a single point adds in alpha mode
+    public void setAlpha(double alpha) {
+        if (alpha <= 0 || alpha > 1)
+            throw new IllegalArgumentException("AHD:: Alpha should be in (0, 1]");
+        this.alpha = alpha;
+    }
+
+    public int getExactThreshold() {
+        return exactThreshold;
+    }
+
+    // points are drawn one by one while at most this many of them are in view
+    public void setExactThreshold(int exactThreshold) {
+        this.exactThreshold = exactThreshold;
+    }
+
+    public boolean isFilled() {
+        return filled;
+    }
+
+    public void setFilled(boolean filled) {
+        this.filled = filled;
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
+    public int getLastVisiblePoints() {
+        return lastVisiblePoints;
+    }
+
+    public boolean isLastExact() {
+        return lastExact;
+    }
+
+    public enum Mode {
+        ALPHA, HEATMAP
+    }
+}
@@ -0,0 +1,176 @@
+package visualization.canvas;
+
+import jmath.datatypes.tuples.Point2D;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+// reduces a sampled polyline to what can be seen on screen before it is drawn, points falling into the same pixel column
+// are replaced by their first, min, max and last screen y, so the drawn vertexes are bounded by the screen width
+// rather than the sample size, non-finite points split the polyline into separate pieces
+@SuppressWarnings("unused")
+public final class PolylineDecimator {
+    private int[] xs;
+    private int[] ys;
+    private int size;
+    private long inputPoints;
+    private long outputPoints;
+
+    public PolylineDecimator() {
+        xs = new int[256];
+        ys = new int[256];
+        size = 0;
+    }
+
+    public interface PolylineConsumer {
+        void accept(int[] xs, int[] ys, int n);
+    }
+
+    // one linear pass over the sample, tolerance in pixels enables Ramer–Douglas–Peucker on each piece when positive
+    public void decimate(List<Point2D> sample, CoordinatedScreen cs, double tolerance, PolylineConsumer out) {
+        size = 0;
+        boolean inColumn = false;
+        int column = 0, first = 0, last = 0, min = 0, max = 0;
+        boolean minFirst = true;
+        for (var p : sample) {
+            inputPoints++;
+            if (p == null || !Double.isFinite(p.x) || !Double.isFinite(p.y)) {
+                if (inColumn)
+                    flushColumn(column, first, min, max, last, minFirst);
+                inColumn = false;
+                flush(tolerance, out);
+                continue;
+            }
+            var x = cs.screenX(p.x);
+            var y = cs.screenY(p.y);
+            if (inColumn && x == column) {
+                if (y < min) {
+                    min = y;
+                    minFirst = false;
+                } else if (y > max) {
+                    max = y;
+                    minFirst = true;
+                }
+                last = y;
+                continue;
+            }
+            if (inColumn)
+                flushColumn(column, first, min, max, last, minFirst);
+            inColumn = true;
+            column = x;
+            first = last = min = max = y;
+            minFirst = true;
+        }
+        if (inColumn)
+            flushColumn(column, first, min, max, last, minFirst);
+        flush(tolerance, out);
+    }
+
+    public void draw(List<Point2D> sample, CoordinatedScreen cs, double tolerance, Graphics2D g2d) {
+        decimate(sample, cs, tolerance, g2d::drawPolyline);
+    }
+
+    // extremes are kept in the order they were reached, so a rising column is not drawn as a falling one
+    private void flushColumn(int x, int first, int min, int max, int last, boolean minFirst) {
+        add(x, first);
+        if (minFirst) {
+            add(x, min);
+            add(x, max);
+        } else {
+            add(x, max);
+            add(x, min);
+        }
+        add(x, last);
+    }
+
+    private void add(int x, int y) {
+        if (size > 0 && xs[size - 1] == x && ys[size - 1] == y)
+            return;
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size++] = y;
+    }
+
+    private void flush(double tolerance, PolylineConsumer out) {
+        if (size == 0)
+            return;
+        if (tolerance > 0 && size > 2)
+            size = simplify(xs, ys, size, tolerance);
+        outputPoints += size;
+        out.accept(xs, ys, size);
+        size = 0;
+    }
+
+    // Ramer–Douglas–Peucker with an explicit stack, kept vertexes are compacted to the front of the arrays
+    public static int simplify(int[] xs, int[] ys, int n, double tolerance) {
+        if (n < 3)
+            return n;
+        var keep = new boolean[n];
+        keep[0] = keep[n - 1] = true;
+        var stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        var tol2 = tolerance * tolerance;
+        while (top > 0) {
+            var e = stack[--top];
+            var s = stack[--top];
+            if (e - s < 2)
+                continue;
+            double dx = xs[e] - xs[s];
+            double dy = ys[e] - ys[s];
+            var len2 = dx * dx + dy * dy;
+            int index = -1;
+            double dist = tol2;
+            for (int i = s + 1; i < e; i++) {
+                double px = xs[i] - xs[s];
+                double py = ys[i] - ys[s];
+                double d;
+                if (len2 == 0) {
+                    d = px * px + py * py;
+                } else {
+                    var cross = px * dy - py * dx;
+                    d = cross * cross / len2;
+                }
+                if (d > dist) {
+                    dist = d;
+                    index = i;
+                }
+            }
+            if (index == -1)
+                continue;
+            keep[index] = true;
+            if (top + 4 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = s;
+            stack[top++] = index;
+            stack[top++] = index;
+            stack[top++] = e;
+        }
+        int res = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                xs[res] = xs[i];
+                ys[res++] = ys[i];
+            }
+        }
+        return res;
+    }
+
+    public long getInputPoints() {
+        return inputPoints;
+    }
+
+    public long getOutputPoints() {
+        return outputPoints;
+    }
+
+    public void resetCounters() {
+        inputPoints = 0;
+        outputPoints = 0;
+    }
+}
@@ -4,8 +4,16 @@ import java.awt.*;
 
 @FunctionalInterface
 public interface Render extends Tick {
+    int INDEPENDENT_TICK_GROUP = -1;
+
     void render(Graphics2D g2d);
 
+    // renders of the same group tick one after another in order, different groups and independent renders tick in parallel,
+    // renders whose tick only touches their own state return INDEPENDENT_TICK_GROUP
+    default int tickGroup() {
+        return 0;
+    }
+
     default boolean inViewPort() {
         return true;
     }
@@ -1,7 +1,9 @@
 package visualization.canvas;
 
 import swingutils.MainFrame;
+import utils.Parallel;
 import utils.Utils;
+import visualization.canvas.export.FrameWriter;
 import visualization.shapes.shape3d.Area;
 import visualization.shapes.shape3d.FlatSurface;
 import visualization.shapes.shape3d.Shape3D;
@@ -11,42 +13,45 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.*;
 import java.util.List;
-import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
 public class RenderManager extends ArrayList<Render> implements Render {
     private static final RenderManager unsafe = new RenderManager();
 
-    private static final long MAX_SINGLE_THREADED_TICK_TIME = 80;
     private int renderCounter;
     private int tickCounter;
-    private final ThreadPoolExecutor tickExecutor;
-    private final Runnable tickRunnable;
+    private final ReentrantLock tickBarrier;
     private final AtomicLong lastTickTime;
+    private volatile int lastNumOfTickTasks;
+    private volatile Map<Render, Long> lastTickNanos;
     private long lastRenderTime;
-    private String frameSequencePath;
+    private final RenderMetrics metrics;
+    private FrameRecorder frameRecorder;
     private Dimension frameDimension;
+    private volatile double interpolation;
+    private volatile boolean staticLayersCached;
 
     public RenderManager(Render... renders) {
         super(Arrays.asList(renders));
-        tickExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(15);
+        tickBarrier = new ReentrantLock();
         lastTickTime = new AtomicLong();
+        lastNumOfTickTasks = 0;
+        lastTickNanos = Map.of();
         renderCounter = 0;
         tickCounter = 0;
         frameDimension = new Dimension(MainFrame.DEFAULT_WIDTH, MainFrame.DEFAULT_HEIGHT);
-        frameSequencePath = null;
-        tickRunnable = () -> {
-            var t = System.currentTimeMillis();
-            forEach(Tick::tick);
-            lastTickTime.set(System.currentTimeMillis() - t);
-            tickCounter++;
-        };
+        frameRecorder = null;
+        interpolation = 0;
+        staticLayersCached = false;
+        metrics = new RenderMetrics();
     }
 
     public int numOfAliveTickThreads() {
-        return tickExecutor.getActiveCount();
+        return tickBarrier.isLocked() ? Math.min(lastNumOfTickTasks, Parallel.parallelism()) : 0;
     }
 
     public void addRender(Render... renders) {
@@ -54,10 +59,15 @@ public class RenderManager extends ArrayList<Render> implements Render {
     }
 
     public void addTick(Runnable... ticks) {
-        addRender(Arrays.stream(ticks).map(t -> new Render() {
+        addRender(Arrays.stream(ticks).map(t -> new DirtyRegionRender() {
             @Override
             public void render(Graphics2D g2d) {}
 
+            @Override
+            public boolean collectDirtyRegions(List<Rectangle> regions) {
+                return true;
+            }
+
             @Override
             public void tick() {
                 t.run();
@@ -65,6 +75,65 @@ public class RenderManager extends ArrayList<Render> implements Render {
         }).toArray(Render[]::new));
     }
 
+    // removals drop the metrics of renders that left the list so the stats do not keep them alive
+    @Override
+    public Render remove(int index) {
+        var res = super.remove(index);
+        metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        var res = super.remove(o);
+        if (res)
+            metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        var res = super.removeAll(c);
+        if (res)
+            metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        var res = super.retainAll(c);
+        if (res)
+            metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Render> filter) {
+        var res = super.removeIf(filter);
+        if (res)
+            metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        super.removeRange(fromIndex, toIndex);
+        metrics.retain(this);
+    }
+
+    @Override
+    public Render set(int index, Render element) {
+        var res = super.set(index, element);
+        metrics.retain(this);
+        return res;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        metrics.retain(this);
+    }
+
     public List<Shape3D> getShape3d() {
         return stream().filter(e -> e instanceof Shape3D).map(e -> (Shape3D) e).collect(Collectors.toList());
     }
@@ -80,21 +149,16 @@ public class RenderManager extends ArrayList<Render> implements Render {
 
     @Override
     public void render(Graphics2D g2d) {
-        var t = System.currentTimeMillis();
+        var t = System.nanoTime();
 //        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        renderAction(g2d);
-        if (frameSequencePath != null) {
-            var img = new BufferedImage(MainFrame.DEFAULT_WIDTH, MainFrame.DEFAULT_HEIGHT, BufferedImage.TYPE_INT_ARGB);
-            var _g2d = img.createGraphics();
-            renderAction(_g2d);
-            _g2d.dispose();
-            try {
-                Utils.saveRenderedImage(img, frameSequencePath + "/frame" + renderCounter + ".png", "png");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-        lastRenderTime = System.currentTimeMillis() - t;
+        var recorder = frameRecorder;
+        if (recorder != null && recorder.isRunning())
+            recorder.record(frameDimension.width, frameDimension.height, g2d, this::renderAction);
+        else
+            renderAction(g2d);
+        var nanos = System.nanoTime() - t;
+        lastRenderTime = nanos / 1_000_000;
+        metrics.frameDone(nanos, size());
         renderCounter++;
     }
 
@@ -112,11 +176,40 @@ public class RenderManager extends ArrayList<Render> implements Render {
                 RenderingHints.KEY_DITHERING, RenderingHints.VALUE_DITHER_ENABLE,
                 RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC
         ));
-        list.forEach(r -> r.renderIfInView(g2d));
-        stream().filter(e -> !(e instanceof Area)).forEach(render -> render.renderIfInView(g2d));
+        metrics.renderAreaFaces(list, g2d);
+        var skipStatic = staticLayersCached;
+        stream().filter(e -> !(e instanceof Area) && !(skipStatic && e instanceof StaticLayer))
+                .forEach(render -> metrics.render(render, g2d));
 //        forEach(e -> e.render(g2d));
     }
 
+    public void renderStaticLayers(Graphics2D g2d) {
+        stream().filter(StaticLayer.class::isInstance).forEach(render -> render.renderIfInView(g2d));
+    }
+
+    // asks every render for its damage since the last frame, false means the whole frame has to be repainted
+    public boolean collectDirtyRegions(List<Rectangle> regions) {
+        var res = true;
+        for (var r : toArray(Render[]::new)) {
+            if (r instanceof StaticLayer && staticLayersCached)
+                continue;
+            if (r instanceof DirtyRegionRender d)
+                res &= d.collectDirtyRegions(regions);
+            else
+                res = false;
+        }
+        return res;
+    }
+
+    public boolean isStaticLayersCached() {
+        return staticLayersCached;
+    }
+
+    // when true, static layers are left out of render because the caller draws them from its own cache
+    public void setStaticLayersCached(boolean staticLayersCached) {
+        this.staticLayersCached = staticLayersCached;
+    }
+
     public int getRenderCounter() {
         return renderCounter;
     }
@@ -135,7 +228,7 @@ public class RenderManager extends ArrayList<Render> implements Render {
     }
 
     public boolean singleThreadedTick() {
-        return lastTickTime.get() < MAX_SINGLE_THREADED_TICK_TIME;
+        return lastNumOfTickTasks < 2;
     }
 
     public long tickRoundTime() {
@@ -146,6 +239,10 @@ public class RenderManager extends ArrayList<Render> implements Render {
         return lastRenderTime;
     }
 
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
     public BufferedImage getFrame(int width, int height) {
         return getFrame(width, height, false);
     }
@@ -164,12 +261,41 @@ public class RenderManager extends ArrayList<Render> implements Render {
         Utils.saveRenderedImage(getFrame(width, height, antiAlias), fileAddress, "png");
     }
 
+    // fraction of the next fixed tick that has elapsed when a frame is rendered, renders may use it to interpolate
+    public double getInterpolation() {
+        return interpolation;
+    }
+
+    public void setInterpolation(double interpolation) {
+        this.interpolation = interpolation;
+    }
+
     public void setFrameDimension(int width, int height) {
         frameDimension = new Dimension(width, height);
     }
 
+    public Dimension getFrameDimension() {
+        return frameDimension;
+    }
+
     public void setPathToSaveFrameSequence(String dir) {
-        this.frameSequencePath = dir;
+        setFrameRecorder(dir == null ? null : new FrameRecorder(dir));
+    }
+
+    public void setFrameRecorder(FrameRecorder frameRecorder) {
+        var old = this.frameRecorder;
+        this.frameRecorder = frameRecorder;
+        if (old != null && old != frameRecorder)
+            old.stop();
+    }
+
+    // streams rendered frames to a single video or gif file through the writer, null stops recording
+    public void setFrameWriter(FrameWriter writer) {
+        setFrameRecorder(writer == null ? null : new FrameRecorder(writer));
+    }
+
+    public FrameRecorder getFrameRecorder() {
+        return frameRecorder;
     }
 
     @Deprecated
@@ -178,15 +304,57 @@ public class RenderManager extends ArrayList<Render> implements Render {
         return unsafe;
     }
 
+    // one tick of every render, the call returns when all of them are done so ticks never overlap
     @Override
     public void tick() {
-        if (lastTickTime.get() < MAX_SINGLE_THREADED_TICK_TIME) {
-            var t = System.currentTimeMillis();
-            forEach(Tick::tick);
-            lastTickTime.set(System.currentTimeMillis() - t);
+        tickBarrier.lock();
+        try {
+            var t = System.nanoTime();
+            var renders = toArray(Render[]::new);
+            var nanos = new long[renders.length];
+            var chains = tickChains(renders);
+            lastNumOfTickTasks = chains.length;
+            Parallel.forRange(0, chains.length, 1, (s, e) -> {
+                for (int i = s; i < e; i++) {
+                    for (var r : chains[i])
+                        nanos[r] = metrics.tick(renders[r]);
+                }
+            });
+            var tickNanos = new IdentityHashMap<Render, Long>(renders.length * 2);
+            for (int i = 0; i < renders.length; i++)
+                tickNanos.put(renders[i], nanos[i]);
+            lastTickNanos = tickNanos;
+            var total = System.nanoTime() - t;
+            lastTickTime.set(total / 1_000_000);
+            metrics.tickDone(total);
             tickCounter++;
-        } else {
-            tickExecutor.execute(tickRunnable);
+        } finally {
+            tickBarrier.unlock();
+        }
+    }
+
+    // indexes of renders grouped into chains that have to tick sequentially, chains are independent of each other
+    private static int[][] tickChains(Render[] renders) {
+        var groups = new LinkedHashMap<Integer, List<Integer>>();
+        var chains = new ArrayList<int[]>();
+        for (int i = 0; i < renders.length; i++) {
+            var group = renders[i].tickGroup();
+            if (group == INDEPENDENT_TICK_GROUP)
+                chains.add(new int[]{i});
+            else
+                groups.computeIfAbsent(group, k -> new ArrayList<>()).add(i);
         }
+        for (var chain : groups.values())
+            chains.add(chain.stream().mapToInt(Integer::intValue).toArray());
+        return chains.toArray(int[][]::new);
+    }
+
+    // time the render took in the last tick
+    public long lastTickNanosOf(Render render) {
+        return lastTickNanos.getOrDefault(render, 0L);
+    }
+
+    public Map<Render, Long> getLastTickNanos() {
+        return Collections.unmodifiableMap(lastTickNanos);
     }
 }
@@ -0,0 +1,381 @@
+package visualization.canvas;
+
+import com.sun.management.OperatingSystemMXBean;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.awt.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+// per frame and per render timings of a RenderManager, system counters are sampled at most every SAMPLE_PERIOD
+@SuppressWarnings("unused")
+public class RenderMetrics {
+    public static final long SAMPLE_PERIOD = 500_000_000L;
+
+    private static final OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private static final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private static final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+    private static final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private final LatencyHistogram frameHistogram;
+    private final LatencyHistogram tickHistogram;
+    private final LatencyHistogram areaFacesHistogram;
+    private final Map<Render, RenderStats> stats;
+    private volatile boolean enabled;
+    private volatile long frameBudgetNanos;
+    private volatile long framesOverBudget;
+    private volatile long lastFrameNanos;
+    private volatile long lastTickNanos;
+    private long frameCounter;
+
+    private long lastSampleTime;
+    private long lastGcMillis;
+    private long lastAllocatedBytes;
+    private volatile double cpuLoad;
+    private volatile long gcCount;
+    private volatile long gcMillis;
+    private volatile double gcMillisPerSecond;
+    private volatile double allocationRate;
+    private volatile long heapUsed;
+
+    public RenderMetrics() {
+        frameHistogram = new LatencyHistogram();
+        tickHistogram = new LatencyHistogram();
+        areaFacesHistogram = new LatencyHistogram();
+        stats = new IdentityHashMap<>();
+        enabled = true;
+        frameBudgetNanos = 1_000_000_000L / 60;
+        framesOverBudget = 0;
+        frameCounter = 0;
+        lastSampleTime = 0;
+        lastAllocatedBytes = -1;
+        cpuLoad = 0;
+    }
+
+    void render(Render render, Graphics2D g2d) {
+        if (!enabled) {
+            render.renderIfInView(g2d);
+            return;
+        }
+        var event = new RenderEvent();
+        event.begin();
+        var t = System.nanoTime();
+        render.renderIfInView(g2d);
+        var nanos = System.nanoTime() - t;
+        var s = statsOf(render);
+        s.renderHistogram.record(nanos);
+        s.lastRenderNanos = nanos;
+        if (event.shouldCommit()) {
+            event.render = nameOf(render);
+            event.phase = "render";
+            event.commit();
+        }
+    }
+
+    // faces of areas are depth sorted together so they are timed as one pass instead of per face
+    void renderAreaFaces(List<? extends Render> faces, Graphics2D g2d) {
+        var t = System.nanoTime();
+        faces.forEach(r -> r.renderIfInView(g2d));
+        if (enabled)
+            areaFacesHistogram.record(System.nanoTime() - t);
+    }
+
+    long tick(Render render) {
+        if (!enabled) {
+            var t = System.nanoTime();
+            render.tick();
+            return System.nanoTime() - t;
+        }
+        var event = new RenderEvent();
+        event.begin();
+        var t = System.nanoTime();
+        render.tick();
+        var nanos = System.nanoTime() - t;
+        var s = statsOf(render);
+        s.tickHistogram.record(nanos);
+        s.lastTickNanos = nanos;
+        if (event.shouldCommit()) {
+            event.render = nameOf(render);
+            event.phase = "tick";
+            event.commit();
+        }
+        return nanos;
+    }
+
+    void frameDone(long nanos, int numOfRenders) {
+        lastFrameNanos = nanos;
+        if (!enabled)
+            return;
+        frameHistogram.record(nanos);
+        if (nanos > frameBudgetNanos)
+            framesOverBudget++;
+        var event = new FrameEvent();
+        if (event.isEnabled()) {
+            event.frame = frameCounter;
+            event.numOfRenders = numOfRenders;
+            event.frameTime = nanos;
+            event.overBudget = nanos > frameBudgetNanos;
+            event.commit();
+        }
+        frameCounter++;
+        sample();
+    }
+
+    void tickDone(long nanos) {
+        lastTickNanos = nanos;
+        if (enabled)
+            tickHistogram.record(nanos);
+    }
+
+    // reads the management beans, cheap enough for every frame because it returns early inside the period
+    public synchronized void sample() {
+        var now = System.nanoTime();
+        if (lastSampleTime != 0 && now - lastSampleTime < SAMPLE_PERIOD)
+            return;
+        var elapsed = lastSampleTime == 0 ? 0 : (now - lastSampleTime) / 1e9;
+        lastSampleTime = now;
+        cpuLoad = Math.max(0, osBean.getProcessCpuLoad());
+        long count = 0, millis = 0;
+        for (var gc : gcBeans) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        var allocated = allocatedBytes();
+        if (elapsed > 0) {
+            gcMillisPerSecond = (millis - lastGcMillis) / elapsed;
+            if (allocated >= 0 && lastAllocatedBytes >= 0)
+                allocationRate = Math.max(0, allocated - lastAllocatedBytes) / elapsed;
+        }
+        gcCount = count;
+        gcMillis = millis;
+        lastGcMillis = millis;
+        lastAllocatedBytes = allocated;
+        heapUsed = memoryBean.getHeapMemoryUsage().getUsed();
+    }
+
+    // sum over live threads, bytes of threads that died between two samples are missed
+    private static long allocatedBytes() {
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean b) || !b.isThreadAllocatedMemorySupported() ||
+                !b.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long res = 0;
+        for (var bytes : b.getThreadAllocatedBytes(b.getAllThreadIds()))
+            res += Math.max(0, bytes);
+        return res;
+    }
+
+    public synchronized RenderStats statsOf(Render render) {
+        return stats.computeIfAbsent(render, RenderStats::new);
+    }
+
+    public synchronized List<RenderStats> getRenderStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    // renders with the highest 99th percentile of render time, the ones to look at when frames miss the budget
+    public List<RenderStats> slowestRenders(int n) {
+        return slowest(n, s -> s.renderHistogram.percentile(99));
+    }
+
+    public List<RenderStats> slowestTicks(int n) {
+        return slowest(n, s -> s.tickHistogram.percentile(99));
+    }
+
+    private List<RenderStats> slowest(int n, ToLongFunction<RenderStats> key) {
+        var res = getRenderStats();
+        res.sort(Comparator.comparingLong(key).reversed());
+        return res.subList(0, Math.min(Math.max(n, 0), res.size()));
+    }
+
+    // drops stats of renders that are not in the manager anymore
+    public synchronized void retain(List<? extends Render> renders) {
+        var keep = new IdentityHashMap<Render, Boolean>();
+        renders.forEach(r -> keep.put(r, true));
+        stats.keySet().removeIf(r -> !keep.containsKey(r));
+    }
+
+    public synchronized void reset() {
+        frameHistogram.reset();
+        tickHistogram.reset();
+        areaFacesHistogram.reset();
+        stats.clear();
+        framesOverBudget = 0;
+    }
+
+    public LatencyHistogram getFrameHistogram() {
+        return frameHistogram;
+    }
+
+    public LatencyHistogram getTickHistogram() {
+        return tickHistogram;
+    }
+
+    public LatencyHistogram getAreaFacesHistogram() {
+        return areaFacesHistogram;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = Math.max(1, frameBudgetNanos);
+    }
+
+    public long getFramesOverBudget() {
+        return framesOverBudget;
+    }
+
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public double getCpuLoad() {
+        return cpuLoad;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    public double getGcMillisPerSecond() {
+        return gcMillisPerSecond;
+    }
+
+    // bytes per second allocated by all threads, 0 when the jvm can not measure it
+    public double getAllocationRate() {
+        return allocationRate;
+    }
+
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    public String report(int numOfRenders) {
+        var sb = new StringBuilder();
+        sb.append("frame: ").append(summary(frameHistogram)).append(", over budget: ").append(framesOverBudget).append('\n');
+        sb.append("tick: ").append(summary(tickHistogram)).append('\n');
+        if (areaFacesHistogram.getCount() != 0)
+            sb.append("area faces: ").append(summary(areaFacesHistogram)).append('\n');
+        sb.append("cpu: ").append(Math.round(cpuLoad * 1000) / 10.0).append("%, gc: ").append(gcCount).append(" (")
+                .append(gcMillis).append("ms), alloc: ").append(Math.round(allocationRate / (1 << 20))).append("MB/s, heap: ")
+                .append(heapUsed >> 20).append("MB\n");
+        for (var s : slowestRenders(numOfRenders))
+            sb.append(s).append('\n');
+        return sb.toString();
+    }
+
+    static String summary(LatencyHistogram h) {
+        return "p50=" + millis(h.percentile(50)) + "ms p99=" + millis(h.percentile(99)) + "ms max=" + millis(h.getMax()) + "ms";
+    }
+
+    static String millis(long nanos) {
+        return String.valueOf(Math.round(nanos / 1e4) / 100.0);
+    }
+
+    static String nameOf(Render render) {
+        var name = render.getClass().getSimpleName();
+        return (name.isEmpty() ? render.getClass().getName() : name) + "@" + Integer.toHexString(System.identityHashCode(render));
+    }
+
+    @Override
+    public String toString() {
+        return report(5);
+    }
+
+    public static final class RenderStats {
+        private final Render render;
+        private final LatencyHistogram renderHistogram;
+        private final LatencyHistogram tickHistogram;
+        private volatile long lastRenderNanos;
+        private volatile long lastTickNanos;
+
+        private RenderStats(Render render) {
+            this.render = render;
+            renderHistogram = new LatencyHistogram();
+            tickHistogram = new LatencyHistogram();
+        }
+
+        public Render getRender() {
+            return render;
+        }
+
+        public LatencyHistogram getRenderHistogram() {
+            return renderHistogram;
+        }
+
+        public LatencyHistogram getTickHistogram() {
+            return tickHistogram;
+        }
+
+        public long getLastRenderNanos() {
+            return lastRenderNanos;
+        }
+
+        public long getLastTickNanos() {
+            return lastTickNanos;
+        }
+
+        @Override
+        public String toString() {
+            return nameOf(render) + " render: " + summary(renderHistogram) + ", tick: " + summary(tickHistogram);
+        }
+    }
+
+    @Name("ulib.Frame")
+    @Label("Frame")
+    @Category({"ulib", "Rendering"})
+    @StackTrace(false)
+    static final class FrameEvent extends Event {
+        @Label("Frame")
+        long frame;
+        @Label("Renders")
+        int numOfRenders;
+        @Label("Frame Time")
+        @Timespan
+        long frameTime;
+        @Label("Over Budget")
+        boolean overBudget;
+    }
+
+    @Name("ulib.Render")
+    @Threshold("1 ms")
+    @Label("Render")
+    @Category({"ulib", "Rendering"})
+    @StackTrace(false)
+    static final class RenderEvent extends Event {
+        @Label("Render")
+        String render;
+        @Label("Phase")
+        String phase;
+    }
+}
@@ -0,0 +1,123 @@
+package visualization.canvas;
+
+import utils.Parallel;
+import visualization.canvas.export.ImageSequenceWriter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// renders many independent screens on the shared pool, every worker reuses images of the session instead of allocating
+@SuppressWarnings("unused")
+public class RenderSession {
+    private final int width;
+    private final int height;
+    private final ConcurrentLinkedQueue<BufferedImage> pool;
+    private final AtomicInteger allocated;
+    private final AtomicLong rendered;
+    private final AtomicLong failed;
+
+    public RenderSession(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid image size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        pool = new ConcurrentLinkedQueue<>();
+        allocated = new AtomicInteger();
+        rendered = new AtomicLong();
+        failed = new AtomicLong();
+    }
+
+    // jobs are created lazily by index so thousands of screens are never alive at once,
+    // the image given to the sink is reused after it returns
+    public void render(int numOfJobs, IntFunction<? extends Render> jobs, FrameSink sink) {
+        Parallel.forRange(0, numOfJobs, 1, (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var image = acquire();
+                try {
+                    var job = jobs.apply(i);
+                    var g2d = image.createGraphics();
+                    try {
+                        g2d.setClip(0, 0, width, height);
+                        job.render(g2d);
+                    } finally {
+                        g2d.dispose();
+                    }
+                    sink.accept(i, image);
+                    rendered.incrementAndGet();
+                } catch (IOException | RuntimeException ex) {
+                    failed.incrementAndGet();
+                    ex.printStackTrace();
+                } finally {
+                    release(image);
+                }
+            }
+        });
+    }
+
+    public void renderToFiles(int numOfJobs, IntFunction<? extends Render> jobs, IntFunction<String> pathOf,
+                              String format, float compressionQuality) {
+        render(numOfJobs, jobs, (i, image) -> ImageSequenceWriter.write(image, new File(pathOf.apply(i)),
+                format, compressionQuality));
+    }
+
+    public void renderToFiles(int numOfJobs, IntFunction<? extends Render> jobs, IntFunction<String> pathOf) {
+        renderToFiles(numOfJobs, jobs, pathOf, "png", 0.5f);
+    }
+
+    public BufferedImage acquire() {
+        var res = pool.poll();
+        if (res == null) {
+            allocated.incrementAndGet();
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Arrays.fill(((DataBufferInt) res.getRaster().getDataBuffer()).getData(), 0);
+        return res;
+    }
+
+    public void release(BufferedImage image) {
+        if (image != null && image.getWidth() == width && image.getHeight() == height && image.getType() == BufferedImage.TYPE_INT_ARGB)
+            pool.offer(image);
+    }
+
+    public void clearPool() {
+        pool.clear();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getAllocatedImages() {
+        return allocated.get();
+    }
+
+    public long getRenderedFrames() {
+        return rendered.get();
+    }
+
+    public long getFailedFrames() {
+        return failed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderSession{" + width + "x" + height + ", rendered=" + rendered + ", failed=" + failed +
+                ", allocated=" + allocated + '}';
+    }
+
+    @FunctionalInterface
+    public interface FrameSink {
+        void accept(int index, BufferedImage image) throws IOException;
+    }
+}
@@ -0,0 +1,27 @@
+package visualization.canvas;
+
+import java.awt.*;
+
+// render whose output only changes with the static state of its canvas, like grids and axes,
+// it is drawn once into a cached layer when the canvas repaints dirty regions
+public final class StaticLayer implements Render {
+    private final Render render;
+
+    public StaticLayer(Render render) {
+        this.render = render;
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        render.render(g2d);
+    }
+
+    @Override
+    public boolean isVisible() {
+        return render.isVisible();
+    }
+
+    public Render getRender() {
+        return render;
+    }
+}
@@ -0,0 +1,212 @@
+package visualization.canvas;
+
+import utils.Parallel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// colors the plane of a coordinated canvas in fixed size tiles anchored to the plane, so tiles survive panning and are
+// only shaded again when the scale changes or the subclass invalidates them, a tile is first shaded on a coarse grid and
+// refined by halving the step while the frame budget lasts, tiles are spread over the shared pool
+@SuppressWarnings("unused")
+public abstract class TiledPlaneRenderer {
+    public static final int TILE_SIZE = 64;
+    public static final int COARSE_STEP = 8;
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final Map<Long, Tile> cache;
+    private int cacheCapacity;
+    private long frameBudgetNanos;
+    private double xScale;
+    private double yScale;
+    private double fracX;
+    private double fracY;
+    private final AtomicLong shadedPixels;
+    private long reusedTiles;
+
+    protected TiledPlaneRenderer() {
+        cacheCapacity = DEFAULT_CACHE_CAPACITY;
+        frameBudgetNanos = 12_000_000;
+        shadedPixels = new AtomicLong();
+        cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+                return size() > cacheCapacity;
+            }
+        };
+    }
+
+    // writes the argb of n points of the plane, called concurrently from the pool
+    protected abstract void shade(double[] xs, double[] ys, int[] out, int n);
+
+    // draws the visible tiles and returns false while some of them still need refinement, so the caller repaints
+    public boolean render(Graphics2D g2d, CoordinatedCanvas cc) {
+        final var w = cc.getWidth();
+        final var h = cc.getHeight();
+        if (w <= 0 || h <= 0)
+            return true;
+        // global pixel i lies at coordinate (i + frac) / scale, frac is only -0.5 or 0 depending on the screen size
+        final var gx0 = cc.getShiftX() - w / 2;
+        final var gy0 = cc.getShiftY() - h / 2;
+        final var fx = w / 2 - w / 2.0;
+        final var fy = h / 2 - h / 2.0;
+        if (cc.getXScale() != xScale || cc.getYScale() != yScale || fx != fracX || fy != fracY) {
+            cache.clear();
+            xScale = cc.getXScale();
+            yScale = cc.getYScale();
+            fracX = fx;
+            fracY = fy;
+        }
+        final var tx0 = Math.floorDiv(gx0, TILE_SIZE);
+        final var tx1 = Math.floorDiv(gx0 + w - 1, TILE_SIZE);
+        final var ty0 = Math.floorDiv(gy0, TILE_SIZE);
+        final var ty1 = Math.floorDiv(gy0 + h - 1, TILE_SIZE);
+        // the cache holds the view twice over so a tile of this frame is never evicted by another one of it
+        final var count = (tx1 - tx0 + 1) * (ty1 - ty0 + 1);
+        cacheCapacity = Math.max(cacheCapacity, 2 * count);
+        var visible = new ArrayList<Tile>(count);
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                var key = (long) tx << 32 | ty & 0xFFFFFFFFL;
+                var tile = cache.get(key);
+                if (tile == null)
+                    cache.put(key, tile = new Tile(tx, ty));
+                else
+                    reusedTiles++;
+                visible.add(tile);
+            }
+        }
+        var t = System.nanoTime();
+        var tiles = visible.toArray(Tile[]::new);
+        refine(tiles, COARSE_STEP);
+        var complete = true;
+        for (int step = COARSE_STEP / 2; step >= 1 && complete; step /= 2) {
+            var pending = new ArrayList<Tile>();
+            for (var tile : tiles)
+                if (tile.step > step)
+                    pending.add(tile);
+            var batch = Math.max(1, Parallel.parallelism() * 2);
+            for (int i = 0; i < pending.size(); i += batch) {
+                if (System.nanoTime() - t > frameBudgetNanos) {
+                    complete = false;
+                    break;
+                }
+                refine(pending.subList(i, Math.min(pending.size(), i + batch)).toArray(Tile[]::new), step);
+            }
+        }
+        for (var tile : tiles)
+            g2d.drawImage(tile.image, tile.tx * TILE_SIZE - gx0, tile.ty * TILE_SIZE - gy0, null);
+        return complete;
+    }
+
+    private void refine(Tile[] tiles, int step) {
+        Parallel.forRange(0, tiles.length, 1, (s, e) -> {
+            for (int i = s; i < e; i++)
+                if (tiles[i].step > step)
+                    shade(tiles[i], step);
+        });
+    }
+
+    // shades the points on the grid of this step that the previous step did not cover and fills their blocks
+    private void shade(Tile tile, int step) {
+        final var buffers = BUFFERS.get();
+        final var xs = buffers.xs;
+        final var ys = buffers.ys;
+        final var out = buffers.out;
+        final var first = tile.step == Integer.MAX_VALUE;
+        final var prev = step * 2;
+        final var x0 = tile.tx * TILE_SIZE;
+        final var y0 = tile.ty * TILE_SIZE;
+        int n = 0;
+        for (int j = 0; j < TILE_SIZE; j += step) {
+            for (int i = 0; i < TILE_SIZE; i += step) {
+                if (!first && i % prev == 0 && j % prev == 0)
+                    continue;
+                xs[n] = (x0 + i + fracX) / xScale;
+                ys[n++] = -(y0 + j + fracY) / yScale;
+            }
+        }
+        shade(xs, ys, out, n);
+        shadedPixels.addAndGet(n);
+        final var pixels = tile.pixels;
+        n = 0;
+        for (int j = 0; j < TILE_SIZE; j += step) {
+            for (int i = 0; i < TILE_SIZE; i += step) {
+                if (!first && i % prev == 0 && j % prev == 0)
+                    continue;
+                var rgb = out[n++];
+                if (step == 1) {
+                    pixels[j * TILE_SIZE + i] = rgb;
+                    continue;
+                }
+                for (int y = j, ye = Math.min(TILE_SIZE, j + step); y < ye; y++)
+                    for (int x = i, xe = Math.min(TILE_SIZE, i + step); x < xe; x++)
+                        pixels[y * TILE_SIZE + x] = rgb;
+            }
+        }
+        tile.step = step;
+    }
+
+    public void invalidate() {
+        cache.clear();
+    }
+
+    public long getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    // time a frame may spend refining tiles beyond the coarse pass
+    public void setFrameBudgetNanos(long frameBudgetNanos) {
+        this.frameBudgetNanos = frameBudgetNanos;
+    }
+
+    public int getCacheCapacity() {
+        return cacheCapacity;
+    }
+
+    public void setCacheCapacity(int cacheCapacity) {
+        if (cacheCapacity < 1)
+            throw new IllegalArgumentException("AHD:: Cache capacity should be positive");
+        this.cacheCapacity = cacheCapacity;
+    }
+
+    public int getCachedTiles() {
+        return cache.size();
+    }
+
+    public long getShadedPixels() {
+        return shadedPixels.get();
+    }
+
+    public long getReusedTiles() {
+        return reusedTiles;
+    }
+
+    private static final class Buffers {
+        private final double[] xs = new double[TILE_SIZE * TILE_SIZE];
+        private final double[] ys = new double[TILE_SIZE * TILE_SIZE];
+        private final int[] out = new int[TILE_SIZE * TILE_SIZE];
+    }
+
+    private static final class Tile {
+        private final int tx;
+        private final int ty;
+        private final BufferedImage image;
+        private final int[] pixels;
+        private volatile int step;
+
+        private Tile(int tx, int ty) {
+            this.tx = tx;
+            this.ty = ty;
+            image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            step = Integer.MAX_VALUE;
+        }
+    }
+}
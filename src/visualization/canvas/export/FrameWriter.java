@@ -0,0 +1,22 @@
+package visualization.canvas.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.IOException;
+
+// encode is called on encoder threads in any order, write is called once per frame in index order
+public interface FrameWriter extends Closeable {
+    byte[] encode(BufferedImage frame, long index) throws IOException;
+
+    default void write(byte[] encoded, long index) throws IOException {}
+
+    @Override
+    default void close() throws IOException {}
+
+    static int[] argbOf(BufferedImage frame) {
+        if (frame.getType() == BufferedImage.TYPE_INT_ARGB && frame.getRaster().getDataBuffer() instanceof DataBufferInt b)
+            return b.getData();
+        return frame.getRGB(0, 0, frame.getWidth(), frame.getHeight(), null, 0, frame.getWidth());
+    }
+}
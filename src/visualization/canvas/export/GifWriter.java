@@ -0,0 +1,376 @@
+package visualization.canvas.export;
+
+import utils.Parallel;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// animated GIF89a with one global palette, frames are quantized and LZW compressed on the encoder threads
+@SuppressWarnings("unused")
+public class GifWriter extends VideoStreamWriter {
+    private static final int TRANSPARENT_INDEX = 255;
+    private static final int NUM_OF_COLORS = 255;
+
+    private final OutputStream out;
+    private final boolean loop;
+    private final PaletteType paletteType;
+    private volatile int[] palette;
+    private volatile byte[] inverseMap;
+    private boolean headerWritten;
+
+    public GifWriter(String path, int fps, boolean loop, PaletteType paletteType) throws IOException {
+        super(fps);
+        this.loop = loop;
+        this.paletteType = paletteType;
+        out = new BufferedOutputStream(new FileOutputStream(path), 1 << 16);
+        headerWritten = false;
+    }
+
+    public GifWriter(String path, int fps) throws IOException {
+        this(path, fps, true, PaletteType.ADAPTIVE);
+    }
+
+    @Override
+    public byte[] encode(BufferedImage frame, long index) throws IOException {
+        checkSize(frame);
+        var argb = FrameWriter.argbOf(frame);
+        var map = inverseMapOf(argb);
+        var pixels = new byte[argb.length];
+        for (int i = 0; i < argb.length; i++) {
+            var c = argb[i];
+            pixels[i] = (c >>> 24) < 128 ? (byte) TRANSPARENT_INDEX : map[(c >> 9) & 0x7C00 | (c >> 6) & 0x3E0 | (c >> 3) & 0x1F];
+        }
+        var res = new ByteArrayOutputStream(argb.length / 4 + 64);
+        var w = frame.getWidth();
+        var h = frame.getHeight();
+        res.write(0x2C);
+        writeShort(res, 0);
+        writeShort(res, 0);
+        writeShort(res, w);
+        writeShort(res, h);
+        res.write(0);
+        new LZWEncoder(pixels, res).encode();
+        return res.toByteArray();
+    }
+
+    private byte[] inverseMapOf(int[] firstFrame) {
+        var res = inverseMap;
+        if (res != null)
+            return res;
+        synchronized (this) {
+            if (inverseMap == null) {
+                var p = paletteType == PaletteType.WEB ? webPalette() : adaptivePalette(firstFrame);
+                var map = new byte[1 << 15];
+                Parallel.forRange(0, map.length, (s, e) -> {
+                    for (int i = s; i < e; i++)
+                        map[i] = (byte) nearest(p, (i >> 10 & 0x1F) << 3 | 4, (i >> 5 & 0x1F) << 3 | 4, (i & 0x1F) << 3 | 4);
+                });
+                palette = p;
+                inverseMap = map;
+            }
+            return inverseMap;
+        }
+    }
+
+    private static int nearest(int[] palette, int r, int g, int b) {
+        int res = 0;
+        var best = Integer.MAX_VALUE;
+        for (int i = 0; i < palette.length; i++) {
+            var c = palette[i];
+            var dr = (c >> 16 & 0xFF) - r;
+            var dg = (c >> 8 & 0xFF) - g;
+            var db = (c & 0xFF) - b;
+            var d = 2 * dr * dr + 4 * dg * dg + 3 * db * db;
+            if (d < best) {
+                best = d;
+                res = i;
+            }
+        }
+        return res;
+    }
+
+    private static int[] webPalette() {
+        var res = new int[NUM_OF_COLORS];
+        int counter = 0;
+        for (int r = 0; r < 6; r++)
+            for (int g = 0; g < 6; g++)
+                for (int b = 0; b < 6; b++)
+                    res[counter++] = r * 51 << 16 | g * 51 << 8 | b * 51;
+        for (int i = 0; counter < NUM_OF_COLORS; i++) {
+            var v = (i + 1) * 255 / (NUM_OF_COLORS - 216 + 1);
+            res[counter++] = v << 16 | v << 8 | v;
+        }
+        return res;
+    }
+
+    // the first frame gets most of the entries, a coarse cube keeps colors of later frames close
+    private static int[] adaptivePalette(int[] firstFrame) {
+        var cut = medianCut(firstFrame, NUM_OF_COLORS - 64);
+        var res = Arrays.copyOf(cut, cut.length + 64);
+        int counter = cut.length;
+        for (int r = 0; r < 4; r++)
+            for (int g = 0; g < 4; g++)
+                for (int b = 0; b < 4; b++)
+                    res[counter++] = r * 85 << 16 | g * 85 << 8 | b * 85;
+        return res;
+    }
+
+    // median cut over a 5 bit per channel histogram
+    private static int[] medianCut(int[] argb, int numOfColors) {
+        var histogram = new int[1 << 15];
+        for (var c : argb)
+            if ((c >>> 24) >= 128)
+                histogram[(c >> 9) & 0x7C00 | (c >> 6) & 0x3E0 | (c >> 3) & 0x1F]++;
+        int n = 0;
+        for (var h : histogram)
+            n += h != 0 ? 1 : 0;
+        var colors = new int[n];
+        n = 0;
+        for (int i = 0; i < histogram.length; i++)
+            if (histogram[i] != 0)
+                colors[n++] = i;
+        if (colors.length == 0)
+            return new int[0];
+
+        var boxes = new ArrayList<int[]>();
+        boxes.add(new int[]{0, colors.length});
+        var boxed = Arrays.stream(colors).boxed().toArray(Integer[]::new);
+        while (boxes.size() < numOfColors) {
+            int[] widest = null;
+            int widestChannel = 0;
+            int widestRange = 0;
+            for (var box : boxes) {
+                if (box[1] - box[0] < 2)
+                    continue;
+                for (int ch = 0; ch < 3; ch++) {
+                    int min = 31, max = 0;
+                    for (int i = box[0]; i < box[1]; i++) {
+                        var v = boxed[i] >> (ch * 5) & 0x1F;
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                    if (max - min > widestRange) {
+                        widestRange = max - min;
+                        widest = box;
+                        widestChannel = ch;
+                    }
+                }
+            }
+            if (widest == null)
+                break;
+            final var shift = widestChannel * 5;
+            Arrays.sort(boxed, widest[0], widest[1], Comparator.comparingInt(c -> c >> shift & 0x1F));
+            long total = 0;
+            for (int i = widest[0]; i < widest[1]; i++)
+                total += histogram[boxed[i]];
+            long acc = 0;
+            var split = widest[0] + 1;
+            for (int i = widest[0]; i < widest[1] - 1; i++) {
+                acc += histogram[boxed[i]];
+                split = i + 1;
+                if (acc * 2 >= total)
+                    break;
+            }
+            boxes.add(new int[]{split, widest[1]});
+            widest[1] = split;
+        }
+
+        var res = new int[boxes.size()];
+        for (int k = 0; k < res.length; k++) {
+            var box = boxes.get(k);
+            long r = 0, g = 0, b = 0, total = 0;
+            for (int i = box[0]; i < box[1]; i++) {
+                var c = boxed[i];
+                var h = histogram[c];
+                r += (long) ((c >> 10 & 0x1F) << 3 | 4) * h;
+                g += (long) ((c >> 5 & 0x1F) << 3 | 4) * h;
+                b += (long) ((c & 0x1F) << 3 | 4) * h;
+                total += h;
+            }
+            res[k] = (int) (r / total) << 16 | (int) (g / total) << 8 | (int) (b / total);
+        }
+        return res;
+    }
+
+    @Override
+    public void write(byte[] encoded, long index) throws IOException {
+        if (!headerWritten) {
+            writeHeader();
+            headerWritten = true;
+        }
+        // delay is taken from the frame index so rounding to centiseconds does not drift
+        var delay = (int) ((index + 1) * 100 / fps - index * 100 / fps);
+        out.write(0x21);
+        out.write(0xF9);
+        out.write(4);
+        out.write(2 << 2 | 1);
+        writeShort(out, delay);
+        out.write(TRANSPARENT_INDEX);
+        out.write(0);
+        out.write(encoded);
+    }
+
+    private void writeHeader() throws IOException {
+        out.write("GIF89a".getBytes(StandardCharsets.US_ASCII));
+        writeShort(out, getWidth());
+        writeShort(out, getHeight());
+        out.write(0xF7);
+        out.write(0);
+        out.write(0);
+        var p = palette;
+        for (int i = 0; i < 256; i++) {
+            var c = i < p.length ? p[i] : 0;
+            out.write(c >> 16 & 0xFF);
+            out.write(c >> 8 & 0xFF);
+            out.write(c & 0xFF);
+        }
+        if (loop) {
+            out.write(0x21);
+            out.write(0xFF);
+            out.write(11);
+            out.write("NETSCAPE2.0".getBytes(StandardCharsets.US_ASCII));
+            out.write(3);
+            out.write(1);
+            writeShort(out, 0);
+            out.write(0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (headerWritten)
+                out.write(0x3B);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeShort(OutputStream out, int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write(v >> 8 & 0xFF);
+    }
+
+    public PaletteType getPaletteType() {
+        return paletteType;
+    }
+
+    public boolean isLoop() {
+        return loop;
+    }
+
+    public enum PaletteType {
+        WEB, ADAPTIVE
+    }
+
+    // variable length LZW of GIF, codes from 9 to 12 bits with an open addressing string table
+    private static final class LZWEncoder {
+        private static final int MAX_BITS = 12;
+        private static final int MAX_CODE = 1 << MAX_BITS;
+        private static final int TABLE_SIZE = 5003;
+        private static final int CLEAR = 256;
+        private static final int EOI = 257;
+
+        private final byte[] pixels;
+        private final OutputStream out;
+        private final int[] hashes;
+        private final int[] codes;
+        private final byte[] block;
+        private int blockSize;
+        private int accumulator;
+        private int numOfBits;
+        private int codeSize;
+        private int nextCode;
+
+        private LZWEncoder(byte[] pixels, OutputStream out) {
+            this.pixels = pixels;
+            this.out = out;
+            hashes = new int[TABLE_SIZE];
+            codes = new int[TABLE_SIZE];
+            block = new byte[255];
+        }
+
+        private void encode() throws IOException {
+            out.write(8);
+            resetTable();
+            output(CLEAR);
+            if (pixels.length != 0) {
+                int prefix = pixels[0] & 0xFF;
+                for (int i = 1; i < pixels.length; i++) {
+                    var c = pixels[i] & 0xFF;
+                    var key = (c << MAX_BITS) + prefix;
+                    var h = (c << 4) ^ prefix;
+                    var step = h == 0 ? 1 : TABLE_SIZE - h;
+                    var found = false;
+                    while (hashes[h] >= 0) {
+                        if (hashes[h] == key) {
+                            prefix = codes[h];
+                            found = true;
+                            break;
+                        }
+                        h -= step;
+                        if (h < 0)
+                            h += TABLE_SIZE;
+                    }
+                    if (found)
+                        continue;
+                    output(prefix);
+                    prefix = c;
+                    if (nextCode < MAX_CODE) {
+                        codes[h] = nextCode++;
+                        hashes[h] = key;
+                    } else {
+                        output(CLEAR);
+                        resetTable();
+                    }
+                }
+                output(prefix);
+            }
+            output(EOI);
+            if (numOfBits > 0)
+                writeByte(accumulator & 0xFF);
+            flushBlock();
+            out.write(0);
+        }
+
+        private void resetTable() {
+            Arrays.fill(hashes, -1);
+            nextCode = EOI + 1;
+            codeSize = 9;
+        }
+
+        private void output(int code) throws IOException {
+            accumulator |= code << numOfBits;
+            numOfBits += codeSize;
+            while (numOfBits >= 8) {
+                writeByte(accumulator & 0xFF);
+                accumulator >>>= 8;
+                numOfBits -= 8;
+            }
+            if (nextCode >= 1 << codeSize && codeSize < MAX_BITS)
+                codeSize++;
+        }
+
+        private void writeByte(int b) throws IOException {
+            block[blockSize++] = (byte) b;
+            if (blockSize == block.length)
+                flushBlock();
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockSize == 0)
+                return;
+            out.write(blockSize);
+            out.write(block, 0, blockSize);
+            blockSize = 0;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package visualization.canvas.export;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+// one image file per frame, frames are written directly by the encoder threads
+@SuppressWarnings("unused")
+public class ImageSequenceWriter implements FrameWriter {
+    private final String directory;
+    private final String format;
+    private final float compressionQuality;
+    private final ThreadLocal<BufferedImage> rgbBuffers;
+
+    public ImageSequenceWriter(String directory, String format, float compressionQuality) {
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext())
+            throw new IllegalArgumentException("AHD:: No image writer for format: " + format);
+        this.directory = directory;
+        this.format = format.toLowerCase();
+        this.compressionQuality = Math.max(0, Math.min(1, compressionQuality));
+        rgbBuffers = new ThreadLocal<>();
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory).mkdirs();
+    }
+
+    public ImageSequenceWriter(String directory) {
+        this(directory, "png", 0.5f);
+    }
+
+    @Override
+    public byte[] encode(BufferedImage frame, long index) throws IOException {
+        var image = frame;
+        if (!supportsAlpha()) {
+            var rgb = rgbBuffers.get();
+            if (rgb == null || rgb.getWidth() != image.getWidth() || rgb.getHeight() != image.getHeight())
+                rgbBuffers.set(rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB));
+            var g = rgb.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            image = rgb;
+        }
+        write(image, new File(directory, "frame" + index + "." + format), format, compressionQuality);
+        return null;
+    }
+
+    private boolean supportsAlpha() {
+        return format.equals("png") || format.equals("gif") || format.equals("tif") || format.equals("tiff");
+    }
+
+    public static void write(BufferedImage image, Object output, String format, float compressionQuality) throws IOException {
+        var writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (var out = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(out);
+            var param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null)
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                param.setCompressionQuality(compressionQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public float getCompressionQuality() {
+        return compressionQuality;
+    }
+
+    @Override
+    public String toString() {
+        return directory + "/frame*." + format;
+    }
+}
@@ -0,0 +1,175 @@
+package visualization.canvas.export;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// motion jpeg in an avi 1.0 container, the idx1 index is spooled to a temp file so memory does not grow with duration
+@SuppressWarnings("unused")
+public class MJPEGAviWriter extends VideoStreamWriter {
+    private static final int HEADER_SIZE = 224;
+    private static final int MOVI_FOURCC_POS = 220;
+    private static final long MAX_RIFF_SIZE = 0xFFFFFFFFL - (1 << 20);
+
+    private final FileChannel channel;
+    private final Path indexPath;
+    private final FileChannel index;
+    private final float quality;
+    private final ThreadLocal<BufferedImage> rgbBuffers;
+    private final ByteBuffer chunkHeader;
+    private final ByteBuffer indexEntry;
+    private long moviSize;
+    private long numOfFrames;
+    private int maxChunkSize;
+
+    public MJPEGAviWriter(String path, int fps, float quality) throws IOException {
+        super(fps);
+        this.quality = Math.max(0, Math.min(1, quality));
+        channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        indexPath = Files.createTempFile("ulib-avi-index", ".tmp");
+        index = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        rgbBuffers = new ThreadLocal<>();
+        chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        indexEntry = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        moviSize = 4;
+        numOfFrames = 0;
+        maxChunkSize = 0;
+        channel.position(HEADER_SIZE);
+    }
+
+    public MJPEGAviWriter(String path, int fps) throws IOException {
+        this(path, fps, 0.8f);
+    }
+
+    @Override
+    public byte[] encode(BufferedImage frame, long index) throws IOException {
+        checkSize(frame);
+        var rgb = rgbBuffers.get();
+        if (rgb == null || rgb.getWidth() != frame.getWidth() || rgb.getHeight() != frame.getHeight())
+            rgbBuffers.set(rgb = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB));
+        var g = rgb.createGraphics();
+        g.drawImage(frame, 0, 0, null);
+        g.dispose();
+        var out = new ByteArrayOutputStream(frame.getWidth() * frame.getHeight() / 4);
+        ImageSequenceWriter.write(rgb, out, "jpg", quality);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void write(byte[] encoded, long frameIndex) throws IOException {
+        var padded = encoded.length + (encoded.length & 1);
+        if (HEADER_SIZE + moviSize + 8 + padded + 16 * (numOfFrames + 1) + 8 > MAX_RIFF_SIZE)
+            throw new IOException("AHD:: AVI file reached the 4GB limit of RIFF");
+        chunkHeader.clear();
+        chunkHeader.put("00dc".getBytes(StandardCharsets.US_ASCII)).putInt(encoded.length).flip();
+        writeFully(channel, chunkHeader);
+        writeFully(channel, ByteBuffer.wrap(encoded));
+        if (padded != encoded.length)
+            writeFully(channel, ByteBuffer.wrap(new byte[1]));
+
+        indexEntry.clear();
+        indexEntry.put("00dc".getBytes(StandardCharsets.US_ASCII)).putInt(0x10).putInt((int) moviSize).putInt(encoded.length).flip();
+        writeFully(index, indexEntry);
+
+        moviSize += 8 + padded;
+        numOfFrames++;
+        maxChunkSize = Math.max(maxChunkSize, encoded.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            chunkHeader.clear();
+            chunkHeader.put("idx1".getBytes(StandardCharsets.US_ASCII)).putInt((int) (numOfFrames * 16)).flip();
+            writeFully(channel, chunkHeader);
+            index.position(0);
+            var len = index.size();
+            var pos = channel.position();
+            while (len > 0) {
+                var n = channel.transferFrom(index, pos, len);
+                if (n <= 0)
+                    break;
+                pos += n;
+                len -= n;
+            }
+            var fileSize = pos;
+            channel.position(0);
+            writeFully(channel, header(fileSize));
+        } finally {
+            index.close();
+            channel.close();
+            Files.deleteIfExists(indexPath);
+        }
+    }
+
+    private ByteBuffer header(long fileSize) {
+        var w = Math.max(getWidth(), 0);
+        var h = Math.max(getHeight(), 0);
+        var b = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        fourcc(b, "RIFF").putInt((int) (fileSize - 8));
+        fourcc(b, "AVI ");
+        fourcc(b, "LIST").putInt(192);
+        fourcc(b, "hdrl");
+        fourcc(b, "avih").putInt(56);
+        b.putInt(1_000_000 / fps);
+        b.putInt(maxChunkSize * fps);
+        b.putInt(0);
+        b.putInt(0x10);
+        b.putInt((int) numOfFrames);
+        b.putInt(0);
+        b.putInt(1);
+        b.putInt(maxChunkSize + 8);
+        b.putInt(w);
+        b.putInt(h);
+        b.putInt(0).putInt(0).putInt(0).putInt(0);
+        fourcc(b, "LIST").putInt(116);
+        fourcc(b, "strl");
+        fourcc(b, "strh").putInt(56);
+        fourcc(b, "vids");
+        fourcc(b, "MJPG");
+        b.putInt(0);
+        b.putShort((short) 0).putShort((short) 0);
+        b.putInt(0);
+        b.putInt(1);
+        b.putInt(fps);
+        b.putInt(0);
+        b.putInt((int) numOfFrames);
+        b.putInt(maxChunkSize + 8);
+        b.putInt(-1);
+        b.putInt(0);
+        b.putShort((short) 0).putShort((short) 0).putShort((short) w).putShort((short) h);
+        fourcc(b, "strf").putInt(40);
+        b.putInt(40);
+        b.putInt(w);
+        b.putInt(h);
+        b.putShort((short) 1);
+        b.putShort((short) 24);
+        fourcc(b, "MJPG");
+        b.putInt(w * h * 3);
+        b.putInt(0).putInt(0).putInt(0).putInt(0);
+        fourcc(b, "LIST").putInt((int) moviSize);
+        fourcc(b, "movi");
+        return b.flip();
+    }
+
+    private static ByteBuffer fourcc(ByteBuffer b, String code) {
+        return b.put(code.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    public long getNumOfFrames() {
+        return numOfFrames;
+    }
+}
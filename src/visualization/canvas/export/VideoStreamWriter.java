@@ -0,0 +1,41 @@
+package visualization.canvas.export;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+// base of single file writers, the frame size is fixed by the first encoded frame
+public abstract class VideoStreamWriter implements FrameWriter {
+    protected final int fps;
+    private volatile int width;
+    private volatile int height;
+
+    protected VideoStreamWriter(int fps) {
+        if (fps <= 0)
+            throw new IllegalArgumentException("AHD:: FPS should be positive");
+        this.fps = fps;
+        width = -1;
+        height = -1;
+    }
+
+    protected final synchronized void checkSize(BufferedImage frame) throws IOException {
+        if (width < 0) {
+            width = frame.getWidth();
+            height = frame.getHeight();
+        } else if (width != frame.getWidth() || height != frame.getHeight()) {
+            throw new IOException("AHD:: Frame size changed from " + width + "x" + height + " to " +
+                    frame.getWidth() + "x" + frame.getHeight());
+        }
+    }
+
+    public int getFps() {
+        return fps;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,83 @@
+package visualization.canvas.export;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// raw YUV4MPEG2 stream with 4:2:0 chroma, transparent pixels are composed on black
+@SuppressWarnings("unused")
+public class Y4MWriter extends VideoStreamWriter {
+    private static final byte[] FRAME_HEADER = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private boolean headerWritten;
+
+    public Y4MWriter(String path, int fps) throws IOException {
+        super(fps);
+        out = new BufferedOutputStream(new FileOutputStream(path), 1 << 20);
+        headerWritten = false;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage frame, long index) throws IOException {
+        checkSize(frame);
+        final var w = getWidth();
+        final var h = getHeight();
+        final var cw = (w + 1) / 2;
+        final var ch = (h + 1) / 2;
+        var argb = FrameWriter.argbOf(frame);
+        var res = new byte[FRAME_HEADER.length + w * h + 2 * cw * ch];
+        System.arraycopy(FRAME_HEADER, 0, res, 0, FRAME_HEADER.length);
+        final var yOff = FRAME_HEADER.length;
+        final var uOff = yOff + w * h;
+        final var vOff = uOff + cw * ch;
+        for (int y = 0; y < h; y += 2) {
+            for (int x = 0; x < w; x += 2) {
+                int sr = 0, sg = 0, sb = 0, n = 0;
+                for (int dy = 0; dy < 2 && y + dy < h; dy++) {
+                    for (int dx = 0; dx < 2 && x + dx < w; dx++) {
+                        var i = (y + dy) * w + x + dx;
+                        var c = argb[i];
+                        var a = c >>> 24;
+                        var r = ((c >> 16) & 0xFF) * a / 255;
+                        var g = ((c >> 8) & 0xFF) * a / 255;
+                        var b = (c & 0xFF) * a / 255;
+                        res[yOff + i] = (byte) ((19595 * r + 38470 * g + 7471 * b + 32768) >> 16);
+                        sr += r;
+                        sg += g;
+                        sb += b;
+                        n++;
+                    }
+                }
+                sr /= n;
+                sg /= n;
+                sb /= n;
+                var ci = (y / 2) * cw + x / 2;
+                res[uOff + ci] = (byte) clamp((-11059 * sr - 21709 * sg + 32768 * sb + 8421376) >> 16);
+                res[vOff + ci] = (byte) clamp((32768 * sr - 27439 * sg - 5329 * sb + 8421376) >> 16);
+            }
+        }
+        return res;
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+
+    @Override
+    public void write(byte[] encoded, long index) throws IOException {
+        if (!headerWritten) {
+            out.write(("YUV4MPEG2 W" + getWidth() + " H" + getHeight() + " F" + fps + ":1 Ip A1:1 C420jpeg\n").getBytes(StandardCharsets.US_ASCII));
+            headerWritten = true;
+        }
+        out.write(encoded);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -17,6 +17,26 @@ public final class ColorScheme {
 
     public int getColor(int factor) {
         int a = (int) (255.0 * 4.0 * factor / maxIteration);
-        return (2 * a << 16) | (a << 8) | (2 * a);
+        return Math.min(2 * a, 255) << 16 | Math.min(a, 255) << 8 | Math.min(2 * a, 255);
+    }
+
+    // fractional iteration counts of smooth coloring blend the two neighbour colors channel by channel
+    public int getColor(double factor) {
+        var n = (int) Math.floor(factor);
+        var t = factor - n;
+        var c0 = getColor(n);
+        var c1 = getColor(n + 1);
+        var r = (int) (((c0 >> 16) & 0xFF) * (1 - t) + ((c1 >> 16) & 0xFF) * t);
+        var g = (int) (((c0 >> 8) & 0xFF) * (1 - t) + ((c1 >> 8) & 0xFF) * t);
+        var b = (int) ((c0 & 0xFF) * (1 - t) + (c1 & 0xFF) * t);
+        return r << 16 | g << 8 | b;
+    }
+
+    // getColor of every iteration count up to maxIteration
+    public int[] palette() {
+        var res = new int[maxIteration + 1];
+        for (int i = 0; i <= maxIteration; i++)
+            res[i] = getColor(i);
+        return res;
     }
 }
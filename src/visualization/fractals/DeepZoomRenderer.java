@@ -0,0 +1,332 @@
+package visualization.fractals;
+
+import visualization.canvas.CoordinatedCanvas;
+import visualization.canvas.TiledPlaneRenderer;
+
+import java.awt.*;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// mandelbrot beyond double precision, the plane of the canvas is the offset from a reference point kept in BigDecimal,
+// one reference orbit is iterated at the precision the zoom needs and every pixel only iterates its offset from that
+// orbit in doubles, the first iterations of a batch are skipped with a third order series approximation, pixels whose
+// offset swamps the orbit are detected as glitches and iterated again against an orbit of one of them
+@SuppressWarnings("unused")
+public class DeepZoomRenderer extends TiledPlaneRenderer {
+    private static final double GLITCH_TOLERANCE = 1e-6;
+    private static final double SERIES_TOLERANCE = 1e-8;
+    private static final int MAX_REFERENCES_PER_BATCH = 8;
+    // never a color, colors are opaque
+    private static final int GLITCH = 1;
+    private static final ThreadLocal<int[]> GLITCHES = ThreadLocal.withInitial(() -> new int[TILE_SIZE * TILE_SIZE]);
+
+    private volatile BigDecimal centerReal;
+    private volatile BigDecimal centerImaginary;
+    private volatile int maxIteration;
+    private volatile double escapeRadius;
+    private volatile boolean smooth;
+    private volatile int interiorColor;
+    private volatile ColorScheme colorScheme;
+    private volatile boolean seriesApproximation;
+    private volatile Orbit reference;
+    private final AtomicLong skippedIterations;
+    private final AtomicLong glitchedPixels;
+
+    public DeepZoomRenderer(BigDecimal centerReal, BigDecimal centerImaginary, int maxIteration, double escapeRadius) {
+        this.centerReal = centerReal;
+        this.centerImaginary = centerImaginary;
+        this.maxIteration = maxIteration;
+        this.escapeRadius = escapeRadius;
+        smooth = true;
+        interiorColor = 0;
+        colorScheme = new ColorScheme(maxIteration);
+        seriesApproximation = true;
+        reference = null;
+        skippedIterations = new AtomicLong();
+        glitchedPixels = new AtomicLong();
+    }
+
+    public DeepZoomRenderer(String centerReal, String centerImaginary) {
+        this(new BigDecimal(centerReal), new BigDecimal(centerImaginary), 1000, 100);
+    }
+
+    // digits enough to tell neighbour pixels apart at the scale of the canvas
+    public static int precisionOf(double scale) {
+        return Math.max(20, (int) Math.ceil(Math.log10(Math.max(scale, 1))) + 15);
+    }
+
+    @Override
+    public boolean render(Graphics2D g2d, CoordinatedCanvas cc) {
+        var digits = precisionOf(Math.max(cc.getXScale(), cc.getYScale()));
+        var orbit = reference;
+        if (orbit == null || orbit.precision < digits || orbit.maxIteration != maxIteration) {
+            reference = new Orbit(centerReal, centerImaginary, new MathContext(digits), maxIteration, escapeRadius);
+            invalidate();
+        }
+        return super.render(g2d, cc);
+    }
+
+    // moves the reference to the center of the view and resets the shift of the canvas, use it before the shift overflows
+    public void recenter(CoordinatedCanvas cc) {
+        var mc = new MathContext(precisionOf(Math.max(cc.getXScale(), cc.getYScale())));
+        centerReal = centerReal.add(new BigDecimal(cc.getShiftX() / cc.getXScale()), mc);
+        centerImaginary = centerImaginary.add(new BigDecimal(-cc.getShiftY() / cc.getYScale()), mc);
+        reference = null;
+        cc.setShiftXY(0, 0);
+        invalidate();
+    }
+
+    @Override
+    protected void shade(double[] xs, double[] ys, int[] out, int n) {
+        final var orbit = reference;
+        if (orbit == null) {
+            Arrays.fill(out, 0, n, interiorColor);
+            return;
+        }
+        var maxDelta = 0d;
+        for (int i = 0; i < n; i++)
+            maxDelta = Math.max(maxDelta, Math.hypot(xs[i], ys[i]));
+        final var skip = seriesApproximation ? orbit.skipFor(maxDelta) : 0;
+        skippedIterations.addAndGet((long) skip * n);
+        final var glitches = GLITCHES.get();
+        var numOfGlitches = 0;
+        for (int i = 0; i < n; i++) {
+            var res = iterate(orbit, xs[i], ys[i], skip);
+            if (res == GLITCH)
+                glitches[numOfGlitches++] = i;
+            else
+                out[i] = res;
+        }
+        // every round iterates the remaining glitches against the orbit of one of them, that pixel is exact by definition
+        for (int r = 0; r < MAX_REFERENCES_PER_BATCH && numOfGlitches > 0; r++) {
+            var g = glitches[numOfGlitches / 2];
+            var dr = xs[g];
+            var di = ys[g];
+            var mc = new MathContext(orbit.precision);
+            var secondary = new Orbit(orbit.cr.add(new BigDecimal(dr), mc), orbit.ci.add(new BigDecimal(di), mc), mc,
+                    orbit.maxIteration, escapeRadius);
+            var remaining = 0;
+            for (int k = 0; k < numOfGlitches; k++) {
+                var i = glitches[k];
+                var res = iterate(secondary, xs[i] - dr, ys[i] - di, 0);
+                if (res == GLITCH && i != g)
+                    glitches[remaining++] = i;
+                else
+                    out[i] = res == GLITCH ? interiorColor : res;
+            }
+            numOfGlitches = remaining;
+        }
+        for (int k = 0; k < numOfGlitches; k++)
+            out[glitches[k]] = interiorColor;
+        glitchedPixels.addAndGet(numOfGlitches);
+    }
+
+    // argb of the pixel at offset (dcr, dci) from the orbit or GLITCH, argb values always have an opaque alpha
+    private int iterate(Orbit orbit, double dcr, double dci, int skip) {
+        final var zr = orbit.zr;
+        final var zi = orbit.zi;
+        final var len = orbit.length;
+        final var max = orbit.maxIteration;
+        final var r2 = escapeRadius * escapeRadius;
+        double dr, di;
+        int k;
+        if (skip > 0) {
+            // delta = A dc + B dc^2 + C dc^3
+            var c2r = dcr * dcr - dci * dci;
+            var c2i = 2 * dcr * dci;
+            var c3r = c2r * dcr - c2i * dci;
+            var c3i = c2r * dci + c2i * dcr;
+            dr = orbit.ar[skip] * dcr - orbit.ai[skip] * dci + orbit.br[skip] * c2r - orbit.bi[skip] * c2i +
+                    orbit.cr3[skip] * c3r - orbit.ci3[skip] * c3i;
+            di = orbit.ar[skip] * dci + orbit.ai[skip] * dcr + orbit.br[skip] * c2i + orbit.bi[skip] * c2r +
+                    orbit.cr3[skip] * c3i + orbit.ci3[skip] * c3r;
+            k = skip;
+        } else {
+            dr = 0;
+            di = 0;
+            k = 0;
+        }
+        while (k < max) {
+            if (k >= len)
+                return GLITCH;
+            var x = zr[k] + dr;
+            var y = zi[k] + di;
+            var norm = x * x + y * y;
+            if (norm > r2)
+                return FractalRenderer.colorOf(colorScheme, k, max, norm, smooth);
+            if (norm < GLITCH_TOLERANCE * (zr[k] * zr[k] + zi[k] * zi[k]))
+                return GLITCH;
+            // delta' = 2 Z delta + delta^2 + dc
+            var t = 2 * (zr[k] * dr - zi[k] * di) + dr * dr - di * di + dcr;
+            di = 2 * (zr[k] * di + zi[k] * dr) + 2 * dr * di + dci;
+            dr = t;
+            k++;
+        }
+        return interiorColor | 0xFF000000;
+    }
+
+    public BigDecimal getCenterReal() {
+        return centerReal;
+    }
+
+    public BigDecimal getCenterImaginary() {
+        return centerImaginary;
+    }
+
+    public void setCenter(BigDecimal real, BigDecimal imaginary) {
+        centerReal = real;
+        centerImaginary = imaginary;
+        reference = null;
+        invalidate();
+    }
+
+    public int getMaxIteration() {
+        return maxIteration;
+    }
+
+    public void setMaxIteration(int maxIteration) {
+        this.maxIteration = maxIteration;
+        colorScheme.setMaxIteration(maxIteration);
+        reference = null;
+        invalidate();
+    }
+
+    public double getEscapeRadius() {
+        return escapeRadius;
+    }
+
+    public void setEscapeRadius(double escapeRadius) {
+        this.escapeRadius = escapeRadius;
+        reference = null;
+        invalidate();
+    }
+
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    public void setSmooth(boolean smooth) {
+        this.smooth = smooth;
+        invalidate();
+    }
+
+    public int getInteriorColor() {
+        return interiorColor;
+    }
+
+    public void setInteriorColor(int interiorColor) {
+        this.interiorColor = interiorColor;
+        invalidate();
+    }
+
+    public ColorScheme getColorScheme() {
+        return colorScheme;
+    }
+
+    public void setColorScheme(ColorScheme colorScheme) {
+        this.colorScheme = colorScheme;
+        invalidate();
+    }
+
+    public boolean isSeriesApproximation() {
+        return seriesApproximation;
+    }
+
+    public void setSeriesApproximation(boolean seriesApproximation) {
+        this.seriesApproximation = seriesApproximation;
+        invalidate();
+    }
+
+    public int getReferenceLength() {
+        var orbit = reference;
+        return orbit == null ? 0 : orbit.length;
+    }
+
+    public long getSkippedIterations() {
+        return skippedIterations.get();
+    }
+
+    public long getGlitchedPixels() {
+        return glitchedPixels.get();
+    }
+
+    // Z_n of the reference point rounded to doubles, with the series coefficients A_n, B_n and C_n of the offsets
+    private static final class Orbit {
+        private final BigDecimal cr;
+        private final BigDecimal ci;
+        private final int precision;
+        private final int maxIteration;
+        private final int length;
+        private final double[] zr;
+        private final double[] zi;
+        private final double[] ar;
+        private final double[] ai;
+        private final double[] br;
+        private final double[] bi;
+        private final double[] cr3;
+        private final double[] ci3;
+
+        private Orbit(BigDecimal cr, BigDecimal ci, MathContext mc, int maxIteration, double escapeRadius) {
+            this.cr = cr;
+            this.ci = ci;
+            this.precision = mc.getPrecision();
+            this.maxIteration = maxIteration;
+            var r2 = escapeRadius * escapeRadius;
+            var zr = new double[maxIteration + 1];
+            var zi = new double[maxIteration + 1];
+            var x = BigDecimal.ZERO;
+            var y = BigDecimal.ZERO;
+            var two = BigDecimal.valueOf(2);
+            int n = 0;
+            while (n <= maxIteration) {
+                zr[n] = x.doubleValue();
+                zi[n] = y.doubleValue();
+                n++;
+                if (zr[n - 1] * zr[n - 1] + zi[n - 1] * zi[n - 1] > r2)
+                    break;
+                var nx = x.multiply(x, mc).subtract(y.multiply(y, mc), mc).add(cr, mc);
+                y = two.multiply(x, mc).multiply(y, mc).add(ci, mc);
+                x = nx;
+            }
+            length = n;
+            this.zr = zr;
+            this.zi = zi;
+            ar = new double[n];
+            ai = new double[n];
+            br = new double[n];
+            bi = new double[n];
+            cr3 = new double[n];
+            ci3 = new double[n];
+            // A' = 2ZA + 1, B' = 2ZB + A^2, C' = 2ZC + 2AB
+            for (int k = 0; k + 1 < n; k++) {
+                var z2r = 2 * zr[k];
+                var z2i = 2 * zi[k];
+                ar[k + 1] = z2r * ar[k] - z2i * ai[k] + 1;
+                ai[k + 1] = z2r * ai[k] + z2i * ar[k];
+                br[k + 1] = z2r * br[k] - z2i * bi[k] + ar[k] * ar[k] - ai[k] * ai[k];
+                bi[k + 1] = z2r * bi[k] + z2i * br[k] + 2 * ar[k] * ai[k];
+                cr3[k + 1] = z2r * cr3[k] - z2i * ci3[k] + 2 * (ar[k] * br[k] - ai[k] * bi[k]);
+                ci3[k + 1] = z2r * ci3[k] + z2i * cr3[k] + 2 * (ar[k] * bi[k] + ai[k] * br[k]);
+            }
+        }
+
+        // the last iteration the series still holds for offsets up to maxDelta, its third order term has to stay
+        // negligible next to the first order one
+        private int skipFor(double maxDelta) {
+            if (maxDelta == 0)
+                return 0;
+            var d2 = maxDelta * maxDelta;
+            var res = 0;
+            for (int k = 1; k < length - 1; k++) {
+                var a = Math.hypot(ar[k], ai[k]);
+                var c = Math.hypot(cr3[k], ci3[k]);
+                if (!Double.isFinite(a) || !Double.isFinite(c) || c * d2 > SERIES_TOLERANCE * a)
+                    break;
+                res = k;
+            }
+            return res;
+        }
+    }
+}
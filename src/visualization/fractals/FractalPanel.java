@@ -2,41 +2,74 @@ package visualization.fractals;
 
 import jmath.datatypes.functions.Function3D;
 import swingutils.MainFrame;
+import utils.Parallel;
+import visualization.canvas.FrameRecorder;
 import visualization.canvas.Graph3DCanvas;
+import visualization.canvas.TiledPlaneRenderer;
+import visualization.canvas.export.FrameWriter;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.math.BigDecimal;
 
 public class FractalPanel extends Graph3DCanvas {
+    private static final int MAX_DEEP_ZOOM_SHIFT = 1 << 20;
 
-    private final ArrayList<Thread> threads;
-    private int numOfThreads;
-    private boolean inProgress;
     private int maxIteration;
     private ColorScheme cs;
-    private int[] colorPalette;
     private Function3D conditionFunction;
     private Function3D realIterationFunction;
     private Function3D imaginaryIterationFunction;
     private double escapeRadius;
+    private final FractalRenderer renderer;
+    private DeepZoomRenderer deepZoomRenderer;
 
     public FractalPanel() {
         removeAllRenders();
-        inProgress = false;
-        numOfThreads = 15;
-        threads = new ArrayList<>(numOfThreads);
         maxIteration = 1000;
         cs = new ColorScheme(maxIteration);
-        colorPalette = new int[maxIteration];
-        for (int i = 0; i < maxIteration; i++)
-            colorPalette[i] = cs.getColor(i);
         escapeRadius = 100;
-        conditionFunction = (x, y) -> x * x - y * y;
-        realIterationFunction = (x, y) -> x * x - y * y;
-        imaginaryIterationFunction = (x, y) -> 2 * x * y;
+        // escape is tested as condition(z) > escapeRadius^2, so the default condition is the squared norm
+        conditionFunction = FractalRenderer.SQUARED_NORM;
+        realIterationFunction = FractalRenderer.SQUARE_REAL;
+        imaginaryIterationFunction = FractalRenderer.SQUARE_IMAGINARY;
+        renderer = new FractalRenderer(maxIteration, escapeRadius);
+        renderer.setColorScheme(cs);
+        deepZoomRenderer = null;
+    }
+
+    public FractalRenderer getRenderer() {
+        return renderer;
+    }
+
+    public DeepZoomRenderer getDeepZoomRenderer() {
+        return deepZoomRenderer;
+    }
+
+    public TiledPlaneRenderer getActiveRenderer() {
+        return deepZoomRenderer == null ? renderer : deepZoomRenderer;
+    }
+
+    // the plane of the panel becomes the offset from the given point, only the mandelbrot iteration is supported
+    public void setDeepZoom(BigDecimal real, BigDecimal imaginary) {
+        deepZoomRenderer = new DeepZoomRenderer(real, imaginary, maxIteration, escapeRadius);
+        deepZoomRenderer.setColorScheme(cs);
+        setShiftXY(0, 0);
+        repaint();
+    }
+
+    public void setDeepZoom(String real, String imaginary) {
+        setDeepZoom(new BigDecimal(real), new BigDecimal(imaginary));
+    }
+
+    public void disableDeepZoom() {
+        deepZoomRenderer = null;
+        repaint();
+    }
+
+    public boolean isDeepZoom() {
+        return deepZoomRenderer != null;
     }
 
     public Function3D getConditionFunction() {
@@ -45,6 +78,7 @@ public class FractalPanel extends Graph3DCanvas {
 
     public void setConditionFunction(Function3D conditionFunction) {
         this.conditionFunction = conditionFunction;
+        renderer.setIteration(realIterationFunction, imaginaryIterationFunction, conditionFunction);
         repaint();
     }
 
@@ -54,6 +88,7 @@ public class FractalPanel extends Graph3DCanvas {
 
     public void setRealIterationFunction(Function3D realIterationFunction) {
         this.realIterationFunction = realIterationFunction;
+        renderer.setIteration(realIterationFunction, imaginaryIterationFunction, conditionFunction);
         repaint();
     }
 
@@ -63,6 +98,7 @@ public class FractalPanel extends Graph3DCanvas {
 
     public void setImaginaryIterationFunction(Function3D imaginaryIterationFunction) {
         this.imaginaryIterationFunction = imaginaryIterationFunction;
+        renderer.setIteration(realIterationFunction, imaginaryIterationFunction, conditionFunction);
         repaint();
     }
 
@@ -72,6 +108,9 @@ public class FractalPanel extends Graph3DCanvas {
 
     public void setEscapeRadius(double escapeRadius) {
         this.escapeRadius = escapeRadius;
+        renderer.setEscapeRadius(escapeRadius);
+        if (deepZoomRenderer != null)
+            deepZoomRenderer.setEscapeRadius(escapeRadius);
         repaint();
     }
 
@@ -81,51 +120,88 @@ public class FractalPanel extends Graph3DCanvas {
 
     public void setMaxIteration(int maxIteration) {
         this.maxIteration = maxIteration;
-        cs.setMaxIteration(maxIteration);
-        colorPalette = new int[maxIteration];
-        for (int i = 0; i < maxIteration; i++)
-            colorPalette[i] = cs.getColor(i);
+        renderer.setMaxIteration(maxIteration);
+        if (deepZoomRenderer != null)
+            deepZoomRenderer.setMaxIteration(maxIteration);
         repaint();
     }
 
+    // tiles are rendered on the shared pool
     public int getNumOfThreads() {
-        return numOfThreads;
+        return Parallel.parallelism();
     }
 
-    public void setNumOfThreads(int numOfThreads) {
-        this.numOfThreads = numOfThreads;
+    @Deprecated
+    public void setNumOfThreads(int numOfThreads) {}
+
+    public void setJulia(double real, double imaginary) {
+        renderer.setJulia(real, imaginary);
+        repaint();
+    }
+
+    public void setMandelbrot() {
+        renderer.setMandelbrot();
+        repaint();
     }
 
     @Override
     public synchronized void paintComponent(Graphics g) {
-        g.drawImage(frame(), 0, 0, null);
+        var g2d = (Graphics2D) g;
+        g2d.setColor(backGround);
+        g2d.fillRect(0, 0, getWidth(), getHeight());
+        var deep = deepZoomRenderer;
+        if (deep != null && Math.max(Math.abs(shiftX), Math.abs(shiftY)) > MAX_DEEP_ZOOM_SHIFT)
+            deep.recenter(this);
+        if (!getActiveRenderer().render(g2d, this))
+            repaint();
     }
 
+    // the whole view fully refined
     protected BufferedImage frame() {
-        if (inProgress)
-            return null;
         var canvas = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
         var g2d = canvas.createGraphics();
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setColor(backGround);
-        g2d.fillRect(0, 0, getWidth(), getHeight());
-
-        ColorScheme cs = new ColorScheme(maxIteration);
-        int[] colorPallet = new int[maxIteration];
-        for (int i = 0; i < maxIteration; i++)
-            colorPallet[i] = cs.getColor(i);
-
-        if (!inProgress) {
-            inProgress = true;
-
-            var width = canvas.getWidth();
-            var height = canvas.getHeight();
+        renderFully(g2d);
+        g2d.dispose();
+        return canvas;
+    }
 
-//            System.out.println((System.currentTimeMillis() - tt) / 1000.0);
-            inProgress = false;
+    // holds the lock paintComponent renders under, so the tile cache and the budget of the renderer are never shared
+    // with a frame of the event thread
+    private synchronized void renderFully(Graphics2D g2d) {
+        var active = getActiveRenderer();
+        var budget = active.getFrameBudgetNanos();
+        active.setFrameBudgetNanos(Long.MAX_VALUE);
+        try {
+            active.render(g2d, this);
+        } finally {
+            active.setFrameBudgetNanos(budget);
         }
+    }
 
-        return canvas;
+    // zooms into the point geometrically from one scale to the other and streams every fully refined frame to the writer
+    public void writeDeepZoom(BigDecimal real, BigDecimal imaginary, double fromScale, double toScale, int numOfFrames,
+                              FrameWriter writer) {
+        if (numOfFrames < 1 || fromScale <= 0 || toScale <= 0)
+            throw new IllegalArgumentException("AHD:: Number of frames and scales should be positive");
+        setDeepZoom(real, imaginary);
+        var w = getWidth();
+        var h = getHeight();
+        try (var recorder = new FrameRecorder(writer, FrameRecorder.OverflowPolicy.BLOCK,
+                FrameRecorder.DEFAULT_QUEUE_CAPACITY, FrameRecorder.DEFAULT_NUM_OF_ENCODERS)) {
+            for (int i = 0; i < numOfFrames; i++) {
+                var scale = fromScale * Math.pow(toScale / fromScale, numOfFrames == 1 ? 0 : i / (numOfFrames - 1.0));
+                // the scale is set and the frame rendered in one hold of the lock so a paint of the event thread can
+                // not come in between, the lock is not held while the recorder waits for a free buffer
+                recorder.record(w, h, null, g2d -> {
+                    synchronized (this) {
+                        setXYScale(scale, scale);
+                        g2d.setColor(backGround);
+                        g2d.fillRect(0, 0, w, h);
+                        renderFully(g2d);
+                    }
+                });
+            }
+        }
     }
 
     public static void main(String[] args) {
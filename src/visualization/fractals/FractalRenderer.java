@@ -0,0 +1,204 @@
+package visualization.fractals;
+
+import jmath.datatypes.functions.Function3D;
+import visualization.canvas.TiledPlaneRenderer;
+
+// escape time fractals on cached progressive tiles, z -> z^2 + c runs on primitive doubles, any other iteration goes
+// through the pluggable functions, escaped points are smooth colored with the normalized iteration count
+@SuppressWarnings("unused")
+public class FractalRenderer extends TiledPlaneRenderer {
+    public static final Function3D SQUARE_REAL = (x, y) -> x * x - y * y;
+    public static final Function3D SQUARE_IMAGINARY = (x, y) -> 2 * x * y;
+    public static final Function3D SQUARED_NORM = (x, y) -> x * x + y * y;
+    private static final int PERIOD_CHECK = 20;
+    private static final double LOG_2 = Math.log(2);
+
+    private volatile Mode mode;
+    private volatile double juliaReal;
+    private volatile double juliaImaginary;
+    private volatile int maxIteration;
+    private volatile double escapeRadius;
+    private volatile boolean smooth;
+    private volatile int interiorColor;
+    private volatile ColorScheme colorScheme;
+    private volatile Function3D realIterationFunction;
+    private volatile Function3D imaginaryIterationFunction;
+    private volatile Function3D conditionFunction;
+
+    public FractalRenderer(int maxIteration, double escapeRadius) {
+        mode = Mode.MANDELBROT;
+        this.maxIteration = maxIteration;
+        this.escapeRadius = escapeRadius;
+        smooth = true;
+        interiorColor = 0;
+        colorScheme = new ColorScheme(maxIteration);
+        realIterationFunction = SQUARE_REAL;
+        imaginaryIterationFunction = SQUARE_IMAGINARY;
+        conditionFunction = SQUARED_NORM;
+    }
+
+    public FractalRenderer() {
+        this(1000, 100);
+    }
+
+    public boolean isFastPath() {
+        return realIterationFunction == SQUARE_REAL && imaginaryIterationFunction == SQUARE_IMAGINARY &&
+                conditionFunction == SQUARED_NORM;
+    }
+
+    @Override
+    protected void shade(double[] xs, double[] ys, int[] out, int n) {
+        final var julia = mode == Mode.JULIA;
+        final var jr = juliaReal;
+        final var ji = juliaImaginary;
+        final var max = maxIteration;
+        final var r2 = escapeRadius * escapeRadius;
+        final var scheme = colorScheme;
+        final var fast = isFastPath();
+        for (int i = 0; i < n; i++) {
+            var cr = julia ? jr : xs[i];
+            var ci = julia ? ji : ys[i];
+            var zr = julia ? xs[i] : 0;
+            var zi = julia ? ys[i] : 0;
+            if (!julia && fast && inMainBulbs(cr, ci)) {
+                out[i] = interiorColor;
+                continue;
+            }
+            int k = 0;
+            double norm;
+            if (fast) {
+                double zr2 = zr * zr, zi2 = zi * zi;
+                double pr = zr, pi = zi;
+                while (k < max && zr2 + zi2 <= r2) {
+                    zi = 2 * zr * zi + ci;
+                    zr = zr2 - zi2 + cr;
+                    zr2 = zr * zr;
+                    zi2 = zi * zi;
+                    k++;
+                    // an orbit that comes back to a saved point is periodic and never escapes
+                    if (zr == pr && zi == pi) {
+                        k = max;
+                        break;
+                    }
+                    if (k % PERIOD_CHECK == 0) {
+                        pr = zr;
+                        pi = zi;
+                    }
+                }
+                norm = zr2 + zi2;
+            } else {
+                var fr = realIterationFunction;
+                var fi = imaginaryIterationFunction;
+                var cond = conditionFunction;
+                while (k < max && cond.valueAt(zr, zi) <= r2) {
+                    var t = fr.valueAt(zr, zi) + cr;
+                    zi = fi.valueAt(zr, zi) + ci;
+                    zr = t;
+                    k++;
+                }
+                norm = zr * zr + zi * zi;
+            }
+            out[i] = k >= max ? interiorColor : colorOf(scheme, k, max, norm, smooth);
+        }
+    }
+
+    // k is the iteration the orbit escaped at with the squared norm of z
+    static int colorOf(ColorScheme scheme, int k, int max, double norm, boolean smooth) {
+        if (smooth && norm > 1) {
+            var nu = k + 1 - Math.log(Math.log(norm) / 2) / LOG_2;
+            return 0xFF000000 | scheme.getColor(Math.max(0, Math.min(max, nu)));
+        }
+        return 0xFF000000 | scheme.getColor(k);
+    }
+
+    // the main cardioid and the period 2 bulb cover most of the set and are never iterated
+    private static boolean inMainBulbs(double cr, double ci) {
+        var x = cr - 0.25;
+        var q = x * x + ci * ci;
+        if (q * (q + x) <= 0.25 * ci * ci)
+            return true;
+        return (cr + 1) * (cr + 1) + ci * ci <= 0.0625;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMandelbrot() {
+        mode = Mode.MANDELBROT;
+        invalidate();
+    }
+
+    public void setJulia(double real, double imaginary) {
+        mode = Mode.JULIA;
+        juliaReal = real;
+        juliaImaginary = imaginary;
+        invalidate();
+    }
+
+    public double getJuliaReal() {
+        return juliaReal;
+    }
+
+    public double getJuliaImaginary() {
+        return juliaImaginary;
+    }
+
+    public int getMaxIteration() {
+        return maxIteration;
+    }
+
+    public void setMaxIteration(int maxIteration) {
+        this.maxIteration = maxIteration;
+        colorScheme.setMaxIteration(maxIteration);
+        invalidate();
+    }
+
+    public double getEscapeRadius() {
+        return escapeRadius;
+    }
+
+    public void setEscapeRadius(double escapeRadius) {
+        this.escapeRadius = escapeRadius;
+        invalidate();
+    }
+
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    public void setSmooth(boolean smooth) {
+        this.smooth = smooth;
+        invalidate();
+    }
+
+    public int getInteriorColor() {
+        return interiorColor;
+    }
+
+    public void setInteriorColor(int interiorColor) {
+        this.interiorColor = interiorColor;
+        invalidate();
+    }
+
+    public ColorScheme getColorScheme() {
+        return colorScheme;
+    }
+
+    public void setColorScheme(ColorScheme colorScheme) {
+        this.colorScheme = colorScheme;
+        invalidate();
+    }
+
+    // z is replaced by (real(z), imaginary(z)) + c until condition(z) exceeds the squared escape radius
+    public void setIteration(Function3D realIterationFunction, Function3D imaginaryIterationFunction, Function3D conditionFunction) {
+        this.realIterationFunction = realIterationFunction;
+        this.imaginaryIterationFunction = imaginaryIterationFunction;
+        this.conditionFunction = conditionFunction;
+        invalidate();
+    }
+
+    public enum Mode {
+        MANDELBROT, JULIA
+    }
+}
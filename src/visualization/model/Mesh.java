@@ -0,0 +1,173 @@
+package visualization.model;
+
+import jmath.datatypes.tuples.Point3D;
+import visualization.canvas.CoordinatedScreen;
+import visualization.shapes.shape3d.FlatSurface;
+
+import java.awt.*;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// polygon mesh on primitive arrays, face i uses indexes [faceOffsets[i], faceOffsets[i + 1]), -1 means absent
+@SuppressWarnings("unused")
+public final class Mesh implements Serializable {
+    private final double[] vertexes;
+    private final double[] texCoords;
+    private final double[] normals;
+    private final int[] faceOffsets;
+    private final int[] vertexIndexes;
+    private final int[] texCoordIndexes;
+    private final int[] normalIndexes;
+
+    public Mesh(double[] vertexes, double[] texCoords, double[] normals,
+                int[] faceOffsets, int[] vertexIndexes, int[] texCoordIndexes, int[] normalIndexes) {
+        if (vertexes.length % 3 != 0 || normals.length % 3 != 0 || texCoords.length % 2 != 0)
+            throw new IllegalArgumentException("AHD:: Invalid mesh component length");
+        if (faceOffsets.length == 0 || faceOffsets[faceOffsets.length - 1] != vertexIndexes.length ||
+                vertexIndexes.length != texCoordIndexes.length || vertexIndexes.length != normalIndexes.length)
+            throw new IllegalArgumentException("AHD:: Invalid mesh face indexes");
+        this.vertexes = vertexes;
+        this.texCoords = texCoords;
+        this.normals = normals;
+        this.faceOffsets = faceOffsets;
+        this.vertexIndexes = vertexIndexes;
+        this.texCoordIndexes = texCoordIndexes;
+        this.normalIndexes = normalIndexes;
+    }
+
+    public int numOfVertexes() {
+        return vertexes.length / 3;
+    }
+
+    public int numOfTexCoords() {
+        return texCoords.length / 2;
+    }
+
+    public int numOfNormals() {
+        return normals.length / 3;
+    }
+
+    public int numOfFaces() {
+        return faceOffsets.length - 1;
+    }
+
+    public int faceSize(int face) {
+        return faceOffsets[face + 1] - faceOffsets[face];
+    }
+
+    public int vertexOf(int face, int corner) {
+        return vertexIndexes[faceOffsets[face] + corner];
+    }
+
+    public int texCoordOf(int face, int corner) {
+        return texCoordIndexes[faceOffsets[face] + corner];
+    }
+
+    public int normalOf(int face, int corner) {
+        return normalIndexes[faceOffsets[face] + corner];
+    }
+
+    public boolean hasTexCoords() {
+        return texCoords.length != 0;
+    }
+
+    public boolean hasNormals() {
+        return normals.length != 0;
+    }
+
+    public int numOfTriangles() {
+        int res = 0;
+        for (int i = 0; i < numOfFaces(); i++)
+            res += Math.max(0, faceSize(i) - 2);
+        return res;
+    }
+
+    // fan triangulation, 3 vertex indexes per triangle
+    public int[] triangles() {
+        var res = new int[numOfTriangles() * 3];
+        int counter = 0;
+        for (int i = 0; i < numOfFaces(); i++) {
+            var s = faceOffsets[i];
+            for (int j = s + 1; j < faceOffsets[i + 1] - 1; j++) {
+                res[counter++] = vertexIndexes[s];
+                res[counter++] = vertexIndexes[j];
+                res[counter++] = vertexIndexes[j + 1];
+            }
+        }
+        return res;
+    }
+
+    public double[] getVertexes() {
+        return vertexes;
+    }
+
+    public double[] getTexCoords() {
+        return texCoords;
+    }
+
+    public double[] getNormals() {
+        return normals;
+    }
+
+    public int[] getFaceOffsets() {
+        return faceOffsets;
+    }
+
+    public int[] getVertexIndexes() {
+        return vertexIndexes;
+    }
+
+    public int[] getTexCoordIndexes() {
+        return texCoordIndexes;
+    }
+
+    public int[] getNormalIndexes() {
+        return normalIndexes;
+    }
+
+    public List<Point3D> vertexPoints() {
+        var res = new ArrayList<Point3D>(numOfVertexes());
+        for (int i = 0; i < vertexes.length; i += 3)
+            res.add(new Point3D(vertexes[i], vertexes[i + 1], vertexes[i + 2]));
+        return res;
+    }
+
+    // surfaces share the same Point3D per vertex so rotating the points moves every face using them
+    @SafeVarargs
+    public final List<FlatSurface> toSurfaces(CoordinatedScreen cs, Color color, List<Point3D>... pointsS) {
+        var ps = vertexPoints();
+        var res = new ArrayList<FlatSurface>(numOfFaces());
+        for (int i = 0; i < numOfFaces(); i++) {
+            var face = new Point3D[faceSize(i)];
+            for (int j = 0; j < face.length; j++)
+                face[j] = ps.get(vertexOf(i, j));
+            res.add(new FlatSurface(cs, color, face));
+        }
+        for (var p : pointsS)
+            p.addAll(ps);
+        return res;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Mesh mesh)) return false;
+        return Arrays.equals(vertexes, mesh.vertexes) && Arrays.equals(texCoords, mesh.texCoords) &&
+                Arrays.equals(normals, mesh.normals) && Arrays.equals(faceOffsets, mesh.faceOffsets) &&
+                Arrays.equals(vertexIndexes, mesh.vertexIndexes) && Arrays.equals(texCoordIndexes, mesh.texCoordIndexes) &&
+                Arrays.equals(normalIndexes, mesh.normalIndexes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(vertexes) + Arrays.hashCode(vertexIndexes);
+    }
+
+    @Override
+    public String toString() {
+        return "Mesh{vertexes=" + numOfVertexes() + ", texCoords=" + numOfTexCoords() +
+                ", normals=" + numOfNormals() + ", faces=" + numOfFaces() + '}';
+    }
+}
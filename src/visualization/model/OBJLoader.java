@@ -0,0 +1,473 @@
+package visualization.model;
+
+import utils.Parallel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+// parses wavefront obj files from mapped bytes in parallel chunks without creating intermediate strings
+@SuppressWarnings("unused")
+public final class OBJLoader {
+    public static final String CACHE_EXTENSION = ".umesh";
+
+    private static final int CACHE_MAGIC = 0x554D5348;
+    private static final int CACHE_VERSION = 1;
+    private static final int CACHE_HEADER_SIZE = 4 + 4 + 8 + 8 + 6 * 4;
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    public static Mesh load(String path) throws IOException {
+        return load(path, false);
+    }
+
+    public static Mesh load(String path, boolean useCache) throws IOException {
+        var file = Path.of(path);
+        if (!useCache)
+            return parse(file);
+        var cache = cachePathOf(file);
+        var size = Files.size(file);
+        var modified = Files.getLastModifiedTime(file).toMillis();
+        var res = readCache(cache, size, modified);
+        if (res != null)
+            return res;
+        res = parse(file);
+        try {
+            writeCache(res, cache, size, modified);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    public static Path cachePathOf(Path objFile) {
+        return objFile.resolveSibling(objFile.getFileName() + CACHE_EXTENSION);
+    }
+
+    public static Mesh parse(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("AHD:: OBJ files larger than 2GB are not supported: " + file);
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    public static Mesh parse(byte[] data) throws IOException {
+        return parse(ByteBuffer.wrap(data));
+    }
+
+    private static Mesh parse(ByteBuffer data) throws IOException {
+        final var size = data.limit();
+        var numOfChunks = (int) Math.min(Parallel.parallelism() * 2L, size / MIN_CHUNK_SIZE + 1);
+        var bounds = new int[numOfChunks + 1];
+        bounds[numOfChunks] = size;
+        for (int i = 1; i < numOfChunks; i++) {
+            var p = Math.max(bounds[i - 1], (int) ((long) size * i / numOfChunks));
+            while (p < size && data.get(p) != '\n')
+                p++;
+            bounds[i] = Math.min(size, p + 1);
+        }
+
+        var chunks = new Chunk[numOfChunks];
+        var buffers = new ByteBuffer[numOfChunks];
+        for (int i = 0; i < numOfChunks; i++)
+            buffers[i] = data.duplicate().position(bounds[i]).limit(bounds[i + 1]);
+        var errors = new IOException[numOfChunks];
+        Parallel.forRange(0, numOfChunks, 1, (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var bytes = new byte[buffers[i].remaining()];
+                buffers[i].get(bytes);
+                try {
+                    chunks[i] = new Chunk(bytes).parse();
+                } catch (IOException ex) {
+                    errors[i] = ex;
+                }
+            }
+        });
+        for (var e : errors)
+            if (e != null)
+                throw e;
+        return merge(chunks);
+    }
+
+    private static Mesh merge(Chunk[] chunks) throws IOException {
+        final var n = chunks.length;
+        var vOffsets = new int[n + 1];
+        var vtOffsets = new int[n + 1];
+        var vnOffsets = new int[n + 1];
+        var fOffsets = new int[n + 1];
+        var iOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            var c = chunks[i];
+            vOffsets[i + 1] = vOffsets[i] + c.vertexes.size;
+            vtOffsets[i + 1] = vtOffsets[i] + c.texCoords.size;
+            vnOffsets[i + 1] = vnOffsets[i] + c.normals.size;
+            fOffsets[i + 1] = fOffsets[i] + c.faceSizes.size;
+            iOffsets[i + 1] = iOffsets[i] + c.vertexIndexes.size;
+        }
+
+        var vertexes = new double[vOffsets[n] * 3];
+        var texCoords = new double[vtOffsets[n] * 2];
+        var normals = new double[vnOffsets[n] * 3];
+        var faceOffsets = new int[fOffsets[n] + 1];
+        var vi = new int[iOffsets[n]];
+        var vti = new int[iOffsets[n]];
+        var vni = new int[iOffsets[n]];
+
+        Parallel.forRange(0, n, 1, (s, e) -> {
+            for (int k = s; k < e; k++) {
+                final var i = k;
+                var c = chunks[i];
+                System.arraycopy(c.vertexes.data, 0, vertexes, vOffsets[i] * 3, c.vertexes.size * 3);
+                System.arraycopy(c.texCoords.data, 0, texCoords, vtOffsets[i] * 2, c.texCoords.size * 2);
+                System.arraycopy(c.normals.data, 0, normals, vnOffsets[i] * 3, c.normals.size * 3);
+                var ib = iOffsets[i];
+                System.arraycopy(c.vertexIndexes.data, 0, vi, ib, c.vertexIndexes.size);
+                System.arraycopy(c.texCoordIndexes.data, 0, vti, ib, c.texCoordIndexes.size);
+                System.arraycopy(c.normalIndexes.data, 0, vni, ib, c.normalIndexes.size);
+                c.relativeVertexes.forEach(p -> vi[ib + p] += vOffsets[i]);
+                c.relativeTexCoords.forEach(p -> vti[ib + p] += vtOffsets[i]);
+                c.relativeNormals.forEach(p -> vni[ib + p] += vnOffsets[i]);
+                var acc = ib;
+                var fb = fOffsets[i];
+                for (int j = 0; j < c.faceSizes.size; j++) {
+                    faceOffsets[fb + j] = acc;
+                    acc += c.faceSizes.data[j];
+                }
+            }
+        });
+        faceOffsets[faceOffsets.length - 1] = vi.length;
+
+        checkIndexes(vi, vOffsets[n], false, "vertex");
+        checkIndexes(vti, vtOffsets[n], true, "texture coordinate");
+        checkIndexes(vni, vnOffsets[n], true, "normal");
+        return new Mesh(vertexes, texCoords, normals, faceOffsets, vi, vti, vni);
+    }
+
+    private static void checkIndexes(int[] indexes, int count, boolean optional, String name) throws IOException {
+        for (var i : indexes)
+            if (i >= count || i < (optional ? -1 : 0))
+                throw new IOException("AHD:: Invalid " + name + " index in face: " + i + ", count: " + count);
+    }
+
+    public static void writeCache(Mesh mesh, Path cache, long sourceSize, long sourceModified) throws IOException {
+        var len = CACHE_HEADER_SIZE +
+                8L * (mesh.getVertexes().length + mesh.getTexCoords().length + mesh.getNormals().length) +
+                4L * (mesh.getFaceOffsets().length + 3L * mesh.getVertexIndexes().length);
+        if (len > Integer.MAX_VALUE)
+            throw new IOException("AHD:: Mesh is too large to be cached");
+        var buffer = ByteBuffer.allocate((int) len);
+        buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putLong(sourceSize).putLong(sourceModified);
+        buffer.putInt(mesh.getVertexes().length).putInt(mesh.getTexCoords().length).putInt(mesh.getNormals().length);
+        buffer.putInt(mesh.getFaceOffsets().length).putInt(mesh.getVertexIndexes().length).putInt(0);
+        for (var arr : List.of(mesh.getVertexes(), mesh.getTexCoords(), mesh.getNormals())) {
+            buffer.asDoubleBuffer().put(arr);
+            buffer.position(buffer.position() + arr.length * 8);
+        }
+        for (var arr : List.of(mesh.getFaceOffsets(), mesh.getVertexIndexes(), mesh.getTexCoordIndexes(), mesh.getNormalIndexes())) {
+            buffer.asIntBuffer().put(arr);
+            buffer.position(buffer.position() + arr.length * 4);
+        }
+        buffer.flip();
+        var tmp = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        Files.move(tmp, cache, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // returns null if cache does not exist, is stale or is not readable
+    public static Mesh readCache(Path cache, long sourceSize, long sourceModified) {
+        if (!Files.isRegularFile(cache))
+            return null;
+        try (var channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < CACHE_HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                return null;
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION ||
+                    buffer.getLong() != sourceSize || buffer.getLong() != sourceModified)
+                return null;
+            var vertexes = new double[buffer.getInt()];
+            var texCoords = new double[buffer.getInt()];
+            var normals = new double[buffer.getInt()];
+            var faceOffsets = new int[buffer.getInt()];
+            var indexesLen = buffer.getInt();
+            buffer.getInt();
+            var vi = new int[indexesLen];
+            var vti = new int[indexesLen];
+            var vni = new int[indexesLen];
+            for (var arr : List.of(vertexes, texCoords, normals)) {
+                buffer.asDoubleBuffer().get(arr);
+                buffer.position(buffer.position() + arr.length * 8);
+            }
+            for (var arr : List.of(faceOffsets, vi, vti, vni)) {
+                buffer.asIntBuffer().get(arr);
+                buffer.position(buffer.position() + arr.length * 4);
+            }
+            return new Mesh(vertexes, texCoords, normals, faceOffsets, vi, vti, vni);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] b;
+        private int p;
+
+        private final DoubleList vertexes = new DoubleList(3);
+        private final DoubleList texCoords = new DoubleList(2);
+        private final DoubleList normals = new DoubleList(3);
+        private final IntList faceSizes = new IntList();
+        private final IntList vertexIndexes = new IntList();
+        private final IntList texCoordIndexes = new IntList();
+        private final IntList normalIndexes = new IntList();
+        // positions of relative (negative) indexes, they are resolved against this chunk and need its global offset
+        private final IntList relativeVertexes = new IntList();
+        private final IntList relativeTexCoords = new IntList();
+        private final IntList relativeNormals = new IntList();
+
+        private Chunk(byte[] b) {
+            this.b = b;
+            p = 0;
+        }
+
+        private Chunk parse() throws IOException {
+            while (p < b.length) {
+                skipBlanks();
+                if (p >= b.length)
+                    break;
+                var c = b[p];
+                if (c == 'v' && p + 1 < b.length) {
+                    var n = b[p + 1];
+                    if (isBlank(n)) {
+                        p++;
+                        vertexes.add(parseDouble(), parseDouble(), parseDouble());
+                    } else if (n == 't' && p + 2 < b.length && isBlank(b[p + 2])) {
+                        p += 2;
+                        var u = parseDouble();
+                        texCoords.add(u, atEol() ? 0 : parseDouble(), 0);
+                    } else if (n == 'n' && p + 2 < b.length && isBlank(b[p + 2])) {
+                        p += 2;
+                        normals.add(parseDouble(), parseDouble(), parseDouble());
+                    }
+                } else if (c == 'f' && p + 1 < b.length && isBlank(b[p + 1])) {
+                    p++;
+                    parseFace();
+                }
+                skipLine();
+            }
+            return this;
+        }
+
+        private void parseFace() throws IOException {
+            int corners = 0;
+            while (!atEol()) {
+                addIndex(vertexIndexes, relativeVertexes, parseInt(), vertexes.size);
+                var vt = 0;
+                var vn = 0;
+                if (p < b.length && b[p] == '/') {
+                    p++;
+                    if (p < b.length && b[p] != '/')
+                        vt = parseInt();
+                    if (p < b.length && b[p] == '/') {
+                        p++;
+                        vn = parseInt();
+                    }
+                }
+                addIndex(texCoordIndexes, relativeTexCoords, vt, texCoords.size);
+                addIndex(normalIndexes, relativeNormals, vn, normals.size);
+                corners++;
+            }
+            if (corners >= 3) {
+                faceSizes.add(corners);
+            } else {
+                vertexIndexes.size -= corners;
+                texCoordIndexes.size -= corners;
+                normalIndexes.size -= corners;
+                while (relativeVertexes.size > 0 && relativeVertexes.last() >= vertexIndexes.size)
+                    relativeVertexes.size--;
+                while (relativeTexCoords.size > 0 && relativeTexCoords.last() >= texCoordIndexes.size)
+                    relativeTexCoords.size--;
+                while (relativeNormals.size > 0 && relativeNormals.last() >= normalIndexes.size)
+                    relativeNormals.size--;
+            }
+        }
+
+        private static void addIndex(IntList indexes, IntList relatives, int index, int localCount) {
+            if (index > 0) {
+                indexes.add(index - 1);
+            } else if (index < 0) {
+                relatives.add(indexes.size);
+                indexes.add(localCount + index);
+            } else {
+                indexes.add(-1);
+            }
+        }
+
+        private static boolean isBlank(byte c) {
+            return c == ' ' || c == '\t';
+        }
+
+        private void skipBlanks() {
+            while (p < b.length && (isBlank(b[p]) || b[p] == '\r'))
+                p++;
+        }
+
+        private boolean atEol() {
+            skipBlanks();
+            return p >= b.length || b[p] == '\n' || b[p] == '#';
+        }
+
+        private void skipLine() {
+            while (p < b.length && b[p] != '\n')
+                p++;
+            p++;
+        }
+
+        private int parseInt() throws IOException {
+            skipBlanks();
+            var neg = false;
+            if (p < b.length && (b[p] == '-' || b[p] == '+'))
+                neg = b[p++] == '-';
+            var start = p;
+            long res = 0;
+            while (p < b.length && b[p] >= '0' && b[p] <= '9') {
+                res = res * 10 + (b[p++] - '0');
+                if (res > Integer.MAX_VALUE)
+                    throw error("index is too large");
+            }
+            if (start == p)
+                throw error("integer expected");
+            return (int) (neg ? -res : res);
+        }
+
+        private double parseDouble() throws IOException {
+            skipBlanks();
+            var start = p;
+            var neg = false;
+            if (p < b.length && (b[p] == '-' || b[p] == '+'))
+                neg = b[p++] == '-';
+            long mantissa = 0;
+            int digits = 0;
+            int exp = 0;
+            var any = false;
+            while (p < b.length && b[p] >= '0' && b[p] <= '9') {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b[p] - '0');
+                    if (mantissa != 0)
+                        digits++;
+                } else {
+                    exp++;
+                }
+                p++;
+            }
+            if (p < b.length && b[p] == '.') {
+                p++;
+                while (p < b.length && b[p] >= '0' && b[p] <= '9') {
+                    any = true;
+                    if (digits < 18) {
+                        mantissa = mantissa * 10 + (b[p] - '0');
+                        if (mantissa != 0)
+                            digits++;
+                        exp--;
+                    }
+                    p++;
+                }
+            }
+            if (!any)
+                return parseSpecial(start);
+            if (p < b.length && (b[p] == 'e' || b[p] == 'E')) {
+                p++;
+                exp += parseInt();
+            }
+            double res;
+            if (mantissa == 0)
+                res = 0;
+            else if (exp >= 0)
+                res = exp < POW10.length ? mantissa * POW10[exp] : mantissa * Math.pow(10, exp);
+            else
+                res = -exp < POW10.length ? mantissa / POW10[-exp] : mantissa / Math.pow(10, -exp);
+            return neg ? -res : res;
+        }
+
+        private double parseSpecial(int start) throws IOException {
+            p = start;
+            while (p < b.length && !isBlank(b[p]) && b[p] != '\r' && b[p] != '\n')
+                p++;
+            try {
+                return Double.parseDouble(new String(b, start, p - start));
+            } catch (NumberFormatException e) {
+                throw error("number expected");
+            }
+        }
+
+        private IOException error(String msg) {
+            var s = p;
+            while (s > 0 && b[s - 1] != '\n')
+                s--;
+            var e = p;
+            while (e < b.length && b[e] != '\n')
+                e++;
+            return new IOException("AHD:: Invalid OBJ line, " + msg + ": " + new String(b, s, Math.min(e - s, 120)).trim());
+        }
+    }
+
+    private static final class DoubleList {
+        private final int stride;
+        private double[] data;
+        private int size;
+
+        private DoubleList(int stride) {
+            this.stride = stride;
+            data = new double[stride * 1024];
+        }
+
+        private void add(double a, double b, double c) {
+            if ((size + 1) * stride > data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            var i = size++ * stride;
+            data[i] = a;
+            data[i + 1] = b;
+            if (stride == 3)
+                data[i + 2] = c;
+        }
+    }
+
+    private static final class IntList {
+        private int[] data = new int[1024];
+        private int size;
+
+        private void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, data.length * 2);
+            data[size++] = v;
+        }
+
+        private int last() {
+            return data[size - 1];
+        }
+
+        private void forEach(Parallel.IntConsumer action) {
+            for (int i = 0; i < size; i++)
+                action.accept(data[i]);
+        }
+    }
+
+    private OBJLoader() {}
+}
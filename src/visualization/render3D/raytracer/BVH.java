@@ -0,0 +1,364 @@
+package visualization.render3D.raytracer;
+
+// bounding volume hierarchy over triangles flattened into arrays, built top down with a binned surface area heuristic,
+// the children of an inner node are stored next to each other so only the left one is kept
+@SuppressWarnings("unused")
+public final class BVH {
+    private static final int LEAF_SIZE = 4;
+    // a leaf the heuristic prefers to any split may still hold at most this many triangles
+    private static final int MAX_LEAF_SIZE = 16;
+    private static final int BINS = 12;
+    private static final double EPSILON = 1e-9;
+
+    private final double[] triangles;
+    private final int[] order;
+    private double[] bounds;
+    private int[] first;
+    private int[] count;
+    private int numOfNodes;
+    private int depth;
+
+    // triangles holds 9 numbers per triangle, the first vertex and the two edges leaving it
+    public BVH(double[] triangles, int numOfTriangles) {
+        this.triangles = triangles;
+        order = new int[numOfTriangles];
+        for (int i = 0; i < numOfTriangles; i++)
+            order[i] = i;
+        var capacity = Math.max(1, 2 * numOfTriangles);
+        bounds = new double[capacity * 6];
+        first = new int[capacity];
+        count = new int[capacity];
+        numOfNodes = 0;
+        if (numOfTriangles == 0)
+            return;
+        var boxes = new double[numOfTriangles * 6];
+        var centroids = new double[numOfTriangles * 3];
+        for (int i = 0; i < numOfTriangles; i++) {
+            var o = i * 9;
+            for (int a = 0; a < 3; a++) {
+                var v0 = triangles[o + a];
+                var v1 = v0 + triangles[o + 3 + a];
+                var v2 = v0 + triangles[o + 6 + a];
+                boxes[i * 6 + a] = Math.min(v0, Math.min(v1, v2));
+                boxes[i * 6 + 3 + a] = Math.max(v0, Math.max(v1, v2));
+                centroids[i * 3 + a] = (v0 + v1 + v2) / 3;
+            }
+        }
+        numOfNodes = 1;
+        build(0, 0, 0, numOfTriangles, boxes, centroids);
+    }
+
+    private void build(int node, int level, int start, int end, double[] boxes, double[] centroids) {
+        depth = Math.max(depth, level);
+        var b = node * 6;
+        double cminX = Double.POSITIVE_INFINITY, cminY = cminX, cminZ = cminX;
+        double cmaxX = Double.NEGATIVE_INFINITY, cmaxY = cmaxX, cmaxZ = cmaxX;
+        for (int a = 0; a < 3; a++) {
+            bounds[b + a] = Double.POSITIVE_INFINITY;
+            bounds[b + 3 + a] = Double.NEGATIVE_INFINITY;
+        }
+        for (int i = start; i < end; i++) {
+            var p = order[i];
+            for (int a = 0; a < 3; a++) {
+                bounds[b + a] = Math.min(bounds[b + a], boxes[p * 6 + a]);
+                bounds[b + 3 + a] = Math.max(bounds[b + 3 + a], boxes[p * 6 + 3 + a]);
+            }
+            cminX = Math.min(cminX, centroids[p * 3]);
+            cminY = Math.min(cminY, centroids[p * 3 + 1]);
+            cminZ = Math.min(cminZ, centroids[p * 3 + 2]);
+            cmaxX = Math.max(cmaxX, centroids[p * 3]);
+            cmaxY = Math.max(cmaxY, centroids[p * 3 + 1]);
+            cmaxZ = Math.max(cmaxZ, centroids[p * 3 + 2]);
+        }
+        var n = end - start;
+        if (n <= LEAF_SIZE) {
+            makeLeaf(node, start, n);
+            return;
+        }
+        var ex = cmaxX - cminX;
+        var ey = cmaxY - cminY;
+        var ez = cmaxZ - cminZ;
+        var axis = ex >= ey && ex >= ez ? 0 : ey >= ez ? 1 : 2;
+        var min = axis == 0 ? cminX : axis == 1 ? cminY : cminZ;
+        var extent = axis == 0 ? ex : axis == 1 ? ey : ez;
+        if (extent < EPSILON) {
+            makeLeaf(node, start, n);
+            return;
+        }
+        var split = sahSplit(node, start, end, axis, min, extent, boxes, centroids);
+        if (split < 0 && n <= MAX_LEAF_SIZE) {
+            makeLeaf(node, start, n);
+            return;
+        }
+        var mid = split < 0 ? -1 : partition(start, end, axis, min + extent * split / BINS, centroids);
+        if (mid <= start || mid >= end) {
+            // no useful split on the heuristic, fall back to the median of the centroids
+            mid = (start + end) >>> 1;
+            nthElement(start, end, mid, axis, centroids);
+        }
+        var left = numOfNodes;
+        numOfNodes += 2;
+        ensureCapacity(numOfNodes);
+        first[node] = left;
+        count[node] = 0;
+        build(left, level + 1, start, mid, boxes, centroids);
+        build(left + 1, level + 1, mid, end, boxes, centroids);
+    }
+
+    // returns the bin boundary with the least cost or -1 when keeping a leaf is cheaper
+    private int sahSplit(int node, int start, int end, int axis, double min, double extent, double[] boxes, double[] centroids) {
+        var binCounts = new int[BINS];
+        var binBounds = new double[BINS * 6];
+        for (int i = 0; i < BINS; i++) {
+            for (int a = 0; a < 3; a++) {
+                binBounds[i * 6 + a] = Double.POSITIVE_INFINITY;
+                binBounds[i * 6 + 3 + a] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        for (int i = start; i < end; i++) {
+            var p = order[i];
+            var bin = Math.min(BINS - 1, (int) ((centroids[p * 3 + axis] - min) / extent * BINS));
+            binCounts[bin]++;
+            for (int a = 0; a < 3; a++) {
+                binBounds[bin * 6 + a] = Math.min(binBounds[bin * 6 + a], boxes[p * 6 + a]);
+                binBounds[bin * 6 + 3 + a] = Math.max(binBounds[bin * 6 + 3 + a], boxes[p * 6 + 3 + a]);
+            }
+        }
+        var leftArea = new double[BINS];
+        var leftCount = new int[BINS];
+        var box = emptyBox();
+        var c = 0;
+        for (int i = 0; i < BINS - 1; i++) {
+            c += binCounts[i];
+            grow(box, binBounds, i);
+            leftArea[i] = area(box);
+            leftCount[i] = c;
+        }
+        box = emptyBox();
+        c = 0;
+        var best = -1;
+        var bestCost = (double) (end - start);
+        var parentArea = area(bounds, node * 6);
+        for (int i = BINS - 1; i > 0; i--) {
+            c += binCounts[i];
+            grow(box, binBounds, i);
+            if (leftCount[i - 1] == 0 || c == 0)
+                continue;
+            var cost = 0.125 + (leftArea[i - 1] * leftCount[i - 1] + area(box) * c) / Math.max(parentArea, EPSILON);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int partition(int start, int end, int axis, double pivot, double[] centroids) {
+        int i = start, j = end - 1;
+        while (i <= j) {
+            if (centroids[order[i] * 3 + axis] < pivot) {
+                i++;
+            } else {
+                var t = order[i];
+                order[i] = order[j];
+                order[j--] = t;
+            }
+        }
+        return i;
+    }
+
+    private void nthElement(int start, int end, int nth, int axis, double[] centroids) {
+        int lo = start, hi = end - 1;
+        while (lo < hi) {
+            var pivot = centroids[order[(lo + hi) >>> 1] * 3 + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (centroids[order[i] * 3 + axis] < pivot)
+                    i++;
+                while (centroids[order[j] * 3 + axis] > pivot)
+                    j--;
+                if (i <= j) {
+                    var t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            if (nth <= j)
+                hi = j;
+            else if (nth >= i)
+                lo = i;
+            else
+                break;
+        }
+    }
+
+    private void makeLeaf(int node, int start, int n) {
+        first[node] = start;
+        count[node] = n;
+    }
+
+    private void ensureCapacity(int nodes) {
+        if (nodes <= first.length)
+            return;
+        var len = Math.max(nodes, first.length * 2);
+        bounds = java.util.Arrays.copyOf(bounds, len * 6);
+        first = java.util.Arrays.copyOf(first, len);
+        count = java.util.Arrays.copyOf(count, len);
+    }
+
+    private static double[] emptyBox() {
+        return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    }
+
+    private static void grow(double[] box, double[] boxes, int i) {
+        for (int a = 0; a < 3; a++) {
+            box[a] = Math.min(box[a], boxes[i * 6 + a]);
+            box[3 + a] = Math.max(box[3 + a], boxes[i * 6 + 3 + a]);
+        }
+    }
+
+    private static double area(double[] box) {
+        return area(box, 0);
+    }
+
+    private static double area(double[] box, int o) {
+        var x = box[o + 3] - box[o];
+        var y = box[o + 4] - box[o + 1];
+        var z = box[o + 5] - box[o + 2];
+        return x < 0 ? 0 : 2 * (x * y + y * z + z * x);
+    }
+
+    // closest triangle hit along the ray nearer than hit.t, updates the hit when found
+    public boolean intersect(RayHit hit) {
+        if (numOfNodes == 0)
+            return false;
+        final var stack = hit.stack(depth + 2);
+        int top = 0;
+        stack[top++] = 0;
+        var found = false;
+        while (top > 0) {
+            var node = stack[--top];
+            if (slab(node, hit) >= hit.t)
+                continue;
+            if (count[node] > 0) {
+                for (int i = first[node], end = i + count[node]; i < end; i++) {
+                    var tri = order[i];
+                    var t = intersectTriangle(tri, hit.ox, hit.oy, hit.oz, hit.dx, hit.dy, hit.dz);
+                    if (t < hit.t) {
+                        hit.t = t;
+                        hit.kind = RayHit.TRIANGLE;
+                        hit.index = tri;
+                        found = true;
+                    }
+                }
+                continue;
+            }
+            var left = first[node];
+            var dl = slab(left, hit);
+            var dr = slab(left + 1, hit);
+            // the nearer child is pushed last so it is visited first
+            if (dl < dr) {
+                if (dr < hit.t)
+                    stack[top++] = left + 1;
+                if (dl < hit.t)
+                    stack[top++] = left;
+            } else {
+                if (dl < hit.t)
+                    stack[top++] = left;
+                if (dr < hit.t)
+                    stack[top++] = left + 1;
+            }
+        }
+        return found;
+    }
+
+    // true when any triangle lies on the ray before maxT, used for shadows
+    public boolean occluded(RayHit ray, double maxT) {
+        if (numOfNodes == 0)
+            return false;
+        final var stack = ray.stack(depth + 2);
+        int top = 0;
+        stack[top++] = 0;
+        var t = ray.t;
+        ray.t = maxT;
+        try {
+            while (top > 0) {
+                var node = stack[--top];
+                if (slab(node, ray) >= maxT)
+                    continue;
+                if (count[node] > 0) {
+                    for (int i = first[node], end = i + count[node]; i < end; i++)
+                        if (intersectTriangle(order[i], ray.ox, ray.oy, ray.oz, ray.dx, ray.dy, ray.dz) < maxT)
+                            return true;
+                    continue;
+                }
+                stack[top++] = first[node];
+                stack[top++] = first[node] + 1;
+            }
+            return false;
+        } finally {
+            ray.t = t;
+        }
+    }
+
+    // distance to the box of the node or infinity when the ray misses it
+    private double slab(int node, RayHit r) {
+        var b = node * 6;
+        var t1 = (bounds[b] - r.ox) * r.invDx;
+        var t2 = (bounds[b + 3] - r.ox) * r.invDx;
+        var tmin = Math.min(t1, t2);
+        var tmax = Math.max(t1, t2);
+        t1 = (bounds[b + 1] - r.oy) * r.invDy;
+        t2 = (bounds[b + 4] - r.oy) * r.invDy;
+        tmin = Math.max(tmin, Math.min(t1, t2));
+        tmax = Math.min(tmax, Math.max(t1, t2));
+        t1 = (bounds[b + 2] - r.oz) * r.invDz;
+        t2 = (bounds[b + 5] - r.oz) * r.invDz;
+        tmin = Math.max(tmin, Math.min(t1, t2));
+        tmax = Math.min(tmax, Math.max(t1, t2));
+        return tmax >= Math.max(tmin, 0) ? Math.max(tmin, 0) : Double.POSITIVE_INFINITY;
+    }
+
+    // moller trumbore, distance of the hit or infinity
+    public double intersectTriangle(int tri, double ox, double oy, double oz, double dx, double dy, double dz) {
+        var o = tri * 9;
+        final var tr = triangles;
+        var e1x = tr[o + 3];
+        var e1y = tr[o + 4];
+        var e1z = tr[o + 5];
+        var e2x = tr[o + 6];
+        var e2y = tr[o + 7];
+        var e2z = tr[o + 8];
+        var px = dy * e2z - dz * e2y;
+        var py = dz * e2x - dx * e2z;
+        var pz = dx * e2y - dy * e2x;
+        var det = e1x * px + e1y * py + e1z * pz;
+        if (det > -1e-12 && det < 1e-12)
+            return Double.POSITIVE_INFINITY;
+        var inv = 1 / det;
+        var tx = ox - tr[o];
+        var ty = oy - tr[o + 1];
+        var tz = oz - tr[o + 2];
+        var u = (tx * px + ty * py + tz * pz) * inv;
+        if (u < 0 || u > 1)
+            return Double.POSITIVE_INFINITY;
+        var qx = ty * e1z - tz * e1y;
+        var qy = tz * e1x - tx * e1z;
+        var qz = tx * e1y - ty * e1x;
+        var v = (dx * qx + dy * qy + dz * qz) * inv;
+        if (v < 0 || u + v > 1)
+            return Double.POSITIVE_INFINITY;
+        var t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        return t > EPSILON ? t : Double.POSITIVE_INFINITY;
+    }
+
+    public int getNumOfNodes() {
+        return numOfNodes;
+    }
+
+    // levels below the root, a traversal keeps at most one pending node per level besides the two children
+    public int getDepth() {
+        return depth;
+    }
+}
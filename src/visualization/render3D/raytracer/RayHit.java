@@ -0,0 +1,62 @@
+package visualization.render3D.raytracer;
+
+// mutable ray and its closest hit, one instance per thread is reused for every ray so tracing allocates nothing
+@SuppressWarnings("unused")
+public final class RayHit {
+    public static final int NONE = 0;
+    public static final int TRIANGLE = 1;
+    public static final int SPHERE = 2;
+    public static final int PLANE = 3;
+
+    public double ox, oy, oz;
+    public double dx, dy, dz;
+    public double invDx, invDy, invDz;
+    public double t;
+    public int kind;
+    public int index;
+    private int[] stack;
+
+    public RayHit() {
+        stack = new int[128];
+    }
+
+    // direction has to be normalized
+    public RayHit set(double ox, double oy, double oz, double dx, double dy, double dz) {
+        this.ox = ox;
+        this.oy = oy;
+        this.oz = oz;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+        invDx = 1 / dx;
+        invDy = 1 / dy;
+        invDz = 1 / dz;
+        t = Double.POSITIVE_INFINITY;
+        kind = NONE;
+        index = -1;
+        return this;
+    }
+
+    // traversal stack of at least size entries, grown for deeper hierarchies and kept for the next rays
+    int[] stack(int size) {
+        if (stack.length < size)
+            stack = new int[Math.max(size, stack.length * 2)];
+        return stack;
+    }
+
+    public boolean hit() {
+        return kind != NONE;
+    }
+
+    public double hitX() {
+        return ox + t * dx;
+    }
+
+    public double hitY() {
+        return oy + t * dy;
+    }
+
+    public double hitZ() {
+        return oz + t * dz;
+    }
+}
@@ -0,0 +1,360 @@
+package visualization.render3D.raytracer;
+
+import jmath.datatypes.tuples.Point3D;
+import utils.Parallel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// whitted style tracer over a scene, pixels are traced in tiles on the shared pool with per thread ray structs, a coarse
+// pass is shown first and every pass of one sample per pixel is accumulated and handed to the preview consumer
+@SuppressWarnings("unused")
+public class RayTracer {
+    public static final int TILE_SIZE = 32;
+    public static final int COARSE_STEP = 8;
+    private static final double EPSILON = 1e-6;
+    private static final double GAMMA = 1 / 2.2;
+    private static final int SHININESS = 64;
+    private static final ThreadLocal<State> STATES = ThreadLocal.withInitial(State::new);
+
+    private final Scene scene;
+    private Point3D eye;
+    private Point3D target;
+    private Point3D up;
+    private double fieldOfView;
+    private int samplesPerPixel;
+    private int maxDepth;
+    private volatile boolean cancelled;
+    // camera basis, u to the right, v to the top and w toward the eye
+    private double ux, uy, uz, vx, vy, vz, wx, wy, wz;
+    // linear colors of the ambient and the lights scaled by their intensity, taken when a render starts
+    private double[] radiances;
+
+    public RayTracer(Scene scene) {
+        this.scene = scene;
+        eye = new Point3D(0, 1, 5);
+        target = new Point3D(0, 0, 0);
+        up = new Point3D(0, 1, 0);
+        fieldOfView = 50;
+        samplesPerPixel = 4;
+        maxDepth = 4;
+    }
+
+    public BufferedImage render(int width, int height) {
+        return render(width, height, null);
+    }
+
+    // preview receives the same image after the coarse pass and after each sample pass, it is called on the render thread
+    public BufferedImage render(int width, int height, Consumer<BufferedImage> preview) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("AHD:: Size of the image should be positive");
+        cancelled = false;
+        scene.build();
+        setupCamera();
+        setupLights();
+        final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final var pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        final var accumulated = new float[width * height * 3];
+        final var tanHalf = Math.tan(Math.toRadians(fieldOfView) / 2);
+        final var aspect = (double) width / height;
+
+        if (preview != null) {
+            Parallel.forTiles(width, height, TILE_SIZE, TILE_SIZE, (x0, y0, x1, y1) -> {
+                var state = STATES.get();
+                for (int y = y0; y < y1; y += COARSE_STEP) {
+                    for (int x = x0; x < x1; x += COARSE_STEP) {
+                        trace(state, (x + 0.5) / width, (y + 0.5) / height, tanHalf, aspect);
+                        var rgb = toRGB(state.color[0], state.color[1], state.color[2]);
+                        for (int j = y, je = Math.min(y1, y + COARSE_STEP); j < je; j++)
+                            for (int i = x, ie = Math.min(x1, x + COARSE_STEP); i < ie; i++)
+                                pixels[j * width + i] = rgb;
+                    }
+                }
+            });
+            preview.accept(image);
+        }
+
+        for (int s = 0; s < samplesPerPixel && !cancelled; s++) {
+            final var sample = s;
+            final var inv = 1f / (s + 1);
+            Parallel.forTiles(width, height, TILE_SIZE, TILE_SIZE, (x0, y0, x1, y1) -> {
+                if (cancelled)
+                    return;
+                var state = STATES.get();
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        // the first sample goes through the pixel center so one sample is the classic image
+                        double jx = 0.5, jy = 0.5;
+                        if (sample > 0) {
+                            var h = hash(x, y, sample);
+                            jx = (h & 0xFFFF) / 65536.0;
+                            jy = (h >>> 16) / 65536.0;
+                        }
+                        trace(state, (x + jx) / width, (y + jy) / height, tanHalf, aspect);
+                        var p = y * width + x;
+                        var o = p * 3;
+                        accumulated[o] += state.color[0];
+                        accumulated[o + 1] += state.color[1];
+                        accumulated[o + 2] += state.color[2];
+                        pixels[p] = toRGB(accumulated[o] * inv, accumulated[o + 1] * inv, accumulated[o + 2] * inv);
+                    }
+                }
+            });
+            if (preview != null && !cancelled)
+                preview.accept(image);
+        }
+        return image;
+    }
+
+    public CompletableFuture<BufferedImage> renderAsync(int width, int height, Consumer<BufferedImage> preview) {
+        return CompletableFuture.supplyAsync(() -> render(width, height, preview), Parallel.pool());
+    }
+
+    // the remaining passes are skipped, the returned image keeps what was accumulated so far
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void setupCamera() {
+        wx = eye.x - target.x;
+        wy = eye.y - target.y;
+        wz = eye.z - target.z;
+        var len = Math.sqrt(wx * wx + wy * wy + wz * wz);
+        if (len == 0)
+            throw new IllegalStateException("AHD:: Eye and target of the camera should differ");
+        wx /= len;
+        wy /= len;
+        wz /= len;
+        ux = up.y * wz - up.z * wy;
+        uy = up.z * wx - up.x * wz;
+        uz = up.x * wy - up.y * wx;
+        len = Math.sqrt(ux * ux + uy * uy + uz * uz);
+        if (len == 0)
+            throw new IllegalStateException("AHD:: Up vector of the camera should not be parallel to the view");
+        ux /= len;
+        uy /= len;
+        uz /= len;
+        vx = wy * uz - wz * uy;
+        vy = wz * ux - wx * uz;
+        vz = wx * uy - wy * ux;
+    }
+
+    private void setupLights() {
+        var lights = scene.getLights();
+        var res = new double[3 * (lights.size() + 1)];
+        var ambient = scene.getAmbient();
+        res[0] = Scene.toLinear(ambient.getRed());
+        res[1] = Scene.toLinear(ambient.getGreen());
+        res[2] = Scene.toLinear(ambient.getBlue());
+        for (int i = 0; i < lights.size(); i++) {
+            var c = lights.get(i).getColor();
+            var intensity = lights.get(i).getIntensity();
+            res[3 * i + 3] = Scene.toLinear(c.getRed()) * intensity;
+            res[3 * i + 4] = Scene.toLinear(c.getGreen()) * intensity;
+            res[3 * i + 5] = Scene.toLinear(c.getBlue()) * intensity;
+        }
+        radiances = res;
+    }
+
+    // traces the ray through the normalized image point and leaves its linear color in state.color
+    private void trace(State state, double sx, double sy, double tanHalf, double aspect) {
+        var px = (2 * sx - 1) * tanHalf * aspect;
+        var py = (1 - 2 * sy) * tanHalf;
+        var dx = px * ux + py * vx - wx;
+        var dy = px * uy + py * vy - wy;
+        var dz = px * uz + py * vz - wz;
+        var len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx /= len;
+        dy /= len;
+        dz /= len;
+        double ox = eye.x, oy = eye.y, oz = eye.z;
+        double r = 0, g = 0, b = 0;
+        double tr = 1, tg = 1, tb = 1;
+        final var hit = state.hit;
+        final var n = state.normal;
+        final var m = state.material;
+        final var lights = scene.getLights();
+        final var rad = radiances;
+        for (int depth = 0; depth < maxDepth; depth++) {
+            hit.set(ox, oy, oz, dx, dy, dz);
+            if (!scene.intersect(hit)) {
+                var t = 0.5 * (dy + 1);
+                r += tr * (1 - 0.5 * t);
+                g += tg * (1 - 0.3 * t);
+                b += tb;
+                break;
+            }
+            scene.normal(hit, n);
+            scene.material(hit, m);
+            var hx = hit.hitX() + n[0] * EPSILON;
+            var hy = hit.hitY() + n[1] * EPSILON;
+            var hz = hit.hitZ() + n[2] * EPSILON;
+            var reflectivity = m[3];
+            double lr = rad[0] * m[0], lg = rad[1] * m[1], lb = rad[2] * m[2];
+            double sr = 0, sg = 0, sb = 0;
+            for (int i = 0, size = rad.length / 3 - 1; i < size; i++) {
+                var light = lights.get(i);
+                double lx, ly, lz, dist;
+                if (light.isDotted()) {
+                    var p = light.getPosition();
+                    lx = p.x - hx;
+                    ly = p.y - hy;
+                    lz = p.z - hz;
+                    dist = Math.sqrt(lx * lx + ly * ly + lz * lz);
+                    lx /= dist;
+                    ly /= dist;
+                    lz /= dist;
+                } else {
+                    // direction is where the light travels so the surface looks against it
+                    var d = light.getDirection();
+                    lx = -d.x;
+                    ly = -d.y;
+                    lz = -d.z;
+                    dist = Double.POSITIVE_INFINITY;
+                }
+                var nDotL = n[0] * lx + n[1] * ly + n[2] * lz;
+                if (nDotL <= 0)
+                    continue;
+                state.shadow.set(hx, hy, hz, lx, ly, lz);
+                if (scene.occluded(state.shadow, dist))
+                    continue;
+                var cr = rad[3 * i + 3];
+                var cg = rad[3 * i + 4];
+                var cb = rad[3 * i + 5];
+                lr += cr * m[0] * nDotL;
+                lg += cg * m[1] * nDotL;
+                lb += cb * m[2] * nDotL;
+                // blinn phong highlight on the half vector between the light and the viewer
+                double hvx = lx - dx, hvy = ly - dy, hvz = lz - dz;
+                var hl = Math.sqrt(hvx * hvx + hvy * hvy + hvz * hvz);
+                var nDotH = (n[0] * hvx + n[1] * hvy + n[2] * hvz) / hl;
+                if (nDotH > 0) {
+                    var spec = pow(nDotH, SHININESS) * (0.1 + reflectivity);
+                    sr += cr * spec;
+                    sg += cg * spec;
+                    sb += cb * spec;
+                }
+            }
+            var diffuse = 1 - reflectivity;
+            r += tr * (lr * diffuse + sr);
+            g += tg * (lg * diffuse + sg);
+            b += tb * (lb * diffuse + sb);
+            if (reflectivity <= 0)
+                break;
+            tr *= reflectivity;
+            tg *= reflectivity;
+            tb *= reflectivity;
+            if (tr + tg + tb < 0.01)
+                break;
+            var dDotN = 2 * (dx * n[0] + dy * n[1] + dz * n[2]);
+            dx -= dDotN * n[0];
+            dy -= dDotN * n[1];
+            dz -= dDotN * n[2];
+            ox = hx;
+            oy = hy;
+            oz = hz;
+        }
+        state.color[0] = (float) r;
+        state.color[1] = (float) g;
+        state.color[2] = (float) b;
+    }
+
+    private static double pow(double x, int n) {
+        var res = 1.0;
+        while (n > 0) {
+            if ((n & 1) == 1)
+                res *= x;
+            x *= x;
+            n >>= 1;
+        }
+        return res;
+    }
+
+    private static int toRGB(float r, float g, float b) {
+        return channel(r) << 16 | channel(g) << 8 | channel(b);
+    }
+
+    private static int channel(float c) {
+        if (c <= 0)
+            return 0;
+        if (c >= 1)
+            return 255;
+        return (int) (Math.pow(c, GAMMA) * 255 + 0.5);
+    }
+
+    private static int hash(int x, int y, int s) {
+        var h = x * 0x9E3779B1 ^ y * 0x85EBCA77 ^ s * 0xC2B2AE3D;
+        h ^= h >>> 15;
+        h *= 0x2C1B3C6D;
+        h ^= h >>> 12;
+        h *= 0x297A2D39;
+        return h ^ h >>> 15;
+    }
+
+    public Scene getScene() {
+        return scene;
+    }
+
+    public void lookAt(Point3D eye, Point3D target, Point3D up) {
+        this.eye = eye;
+        this.target = target;
+        this.up = up;
+    }
+
+    public Point3D getEye() {
+        return eye;
+    }
+
+    public Point3D getTarget() {
+        return target;
+    }
+
+    public Point3D getUp() {
+        return up;
+    }
+
+    public double getFieldOfView() {
+        return fieldOfView;
+    }
+
+    // vertical field of view in degrees
+    public void setFieldOfView(double fieldOfView) {
+        if (fieldOfView <= 0 || fieldOfView >= 180)
+            throw new IllegalArgumentException("AHD:: Field of view should be in (0, 180) degrees");
+        this.fieldOfView = fieldOfView;
+    }
+
+    public int getSamplesPerPixel() {
+        return samplesPerPixel;
+    }
+
+    public void setSamplesPerPixel(int samplesPerPixel) {
+        if (samplesPerPixel < 1)
+            throw new IllegalArgumentException("AHD:: Samples per pixel should be positive");
+        this.samplesPerPixel = samplesPerPixel;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1)
+            throw new IllegalArgumentException("AHD:: Max depth should be positive");
+        this.maxDepth = maxDepth;
+    }
+
+    private static final class State {
+        private final RayHit hit = new RayHit();
+        private final RayHit shadow = new RayHit();
+        private final double[] normal = new double[3];
+        private final float[] material = new float[4];
+        private final float[] color = new float[3];
+    }
+}
@@ -0,0 +1,301 @@
+package visualization.render3D.raytracer;
+
+import jmath.datatypes.tuples.Point3D;
+import visualization.model.Mesh;
+import visualization.model.OBJLoader;
+import visualization.render3D.shading.LightSource;
+import visualization.shapes.shape3d.FlatSurface;
+import visualization.shapes.shape3d.Shape3D;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// primitives of a ray traced scene kept in flat arrays, triangles go through a bvh while the few spheres and planes are
+// tested directly, every primitive carries a linear rgb color and how much of the light it reflects
+@SuppressWarnings("unused")
+public class Scene {
+    private double[] triangles;
+    private float[] triangleMaterials;
+    private int numOfTriangles;
+    private double[] spheres;
+    private float[] sphereMaterials;
+    private int numOfSpheres;
+    private double[] planes;
+    private float[] planeMaterials;
+    private int numOfPlanes;
+    private final List<LightSource> lights;
+    private Color ambient;
+    private volatile BVH bvh;
+
+    public Scene() {
+        triangles = new double[9 * 64];
+        triangleMaterials = new float[4 * 64];
+        spheres = new double[4 * 8];
+        sphereMaterials = new float[4 * 8];
+        planes = new double[6 * 4];
+        planeMaterials = new float[4 * 4];
+        lights = new ArrayList<>();
+        ambient = new Color(25, 25, 30);
+    }
+
+    public Scene addSphere(Point3D center, double radius, Color color, double reflectivity) {
+        if (radius <= 0)
+            throw new IllegalArgumentException("AHD:: Radius of the sphere should be positive");
+        if (4 * (numOfSpheres + 1) > spheres.length) {
+            spheres = Arrays.copyOf(spheres, spheres.length * 2);
+            sphereMaterials = Arrays.copyOf(sphereMaterials, sphereMaterials.length * 2);
+        }
+        var o = 4 * numOfSpheres;
+        spheres[o] = center.x;
+        spheres[o + 1] = center.y;
+        spheres[o + 2] = center.z;
+        spheres[o + 3] = radius;
+        material(sphereMaterials, numOfSpheres++, color, reflectivity);
+        return this;
+    }
+
+    public Scene addPlane(Point3D point, Point3D normal, Color color, double reflectivity) {
+        var n = normal.normalize();
+        if (6 * (numOfPlanes + 1) > planes.length) {
+            planes = Arrays.copyOf(planes, planes.length * 2);
+            planeMaterials = Arrays.copyOf(planeMaterials, planeMaterials.length * 2);
+        }
+        var o = 6 * numOfPlanes;
+        planes[o] = point.x;
+        planes[o + 1] = point.y;
+        planes[o + 2] = point.z;
+        planes[o + 3] = n.x;
+        planes[o + 4] = n.y;
+        planes[o + 5] = n.z;
+        material(planeMaterials, numOfPlanes++, color, reflectivity);
+        return this;
+    }
+
+    public Scene addTriangle(Point3D a, Point3D b, Point3D c, Color color, double reflectivity) {
+        return addTriangle(a.x, a.y, a.z, b.x, b.y, b.z, c.x, c.y, c.z, color, reflectivity);
+    }
+
+    private Scene addTriangle(double ax, double ay, double az, double bx, double by, double bz,
+                              double cx, double cy, double cz, Color color, double reflectivity) {
+        if (9 * (numOfTriangles + 1) > triangles.length) {
+            triangles = Arrays.copyOf(triangles, triangles.length * 2);
+            triangleMaterials = Arrays.copyOf(triangleMaterials, triangleMaterials.length * 2);
+        }
+        var o = 9 * numOfTriangles;
+        triangles[o] = ax;
+        triangles[o + 1] = ay;
+        triangles[o + 2] = az;
+        triangles[o + 3] = bx - ax;
+        triangles[o + 4] = by - ay;
+        triangles[o + 5] = bz - az;
+        triangles[o + 6] = cx - ax;
+        triangles[o + 7] = cy - ay;
+        triangles[o + 8] = cz - az;
+        material(triangleMaterials, numOfTriangles++, color, reflectivity);
+        bvh = null;
+        return this;
+    }
+
+    // every flat surface of the shape and its nested components is fan triangulated with its own color
+    public Scene addShape(Shape3D shape, double reflectivity) {
+        if (shape instanceof FlatSurface fs) {
+            var points = fs.getPoints();
+            var color = fs.getFixedColor() != null ? fs.getFixedColor() : fs.getColor();
+            for (int i = 1; i < points.size() - 1; i++)
+                addTriangle(points.get(0), points.get(i), points.get(i + 1), color, reflectivity);
+        }
+        for (var component : shape.getComponents())
+            addShape(component, reflectivity);
+        return this;
+    }
+
+    public Scene addMesh(Mesh mesh, Color color, double reflectivity) {
+        var v = mesh.getVertexes();
+        var ts = mesh.triangles();
+        for (int i = 0; i < ts.length; i += 3) {
+            int a = 3 * ts[i], b = 3 * ts[i + 1], c = 3 * ts[i + 2];
+            addTriangle(v[a], v[a + 1], v[a + 2], v[b], v[b + 1], v[b + 2], v[c], v[c + 1], v[c + 2], color, reflectivity);
+        }
+        return this;
+    }
+
+    public Scene addModel(String pathOfModel, Color color, double reflectivity) throws IOException {
+        return addMesh(OBJLoader.load(pathOfModel), color, reflectivity);
+    }
+
+    public Scene addLight(LightSource light) {
+        lights.add(light);
+        return this;
+    }
+
+    // builds the bvh once all triangles are added, tracing builds it lazily otherwise
+    public synchronized Scene build() {
+        if (bvh == null)
+            bvh = new BVH(triangles, numOfTriangles);
+        return this;
+    }
+
+    private static void material(float[] materials, int index, Color color, double reflectivity) {
+        if (reflectivity < 0 || reflectivity > 1)
+            throw new IllegalArgumentException("AHD:: Reflectivity should be in [0, 1]");
+        var o = 4 * index;
+        materials[o] = toLinear(color.getRed());
+        materials[o + 1] = toLinear(color.getGreen());
+        materials[o + 2] = toLinear(color.getBlue());
+        materials[o + 3] = (float) reflectivity;
+    }
+
+    static float toLinear(int channel) {
+        return (float) Math.pow(channel / 255.0, 2.2);
+    }
+
+    // closest hit among every primitive, hit.t bounds the search
+    public boolean intersect(RayHit hit) {
+        var found = bvh().intersect(hit);
+        for (int i = 0; i < numOfSpheres; i++) {
+            var t = intersectSphere(i, hit);
+            if (t < hit.t) {
+                hit.t = t;
+                hit.kind = RayHit.SPHERE;
+                hit.index = i;
+                found = true;
+            }
+        }
+        for (int i = 0; i < numOfPlanes; i++) {
+            var t = intersectPlane(i, hit);
+            if (t < hit.t) {
+                hit.t = t;
+                hit.kind = RayHit.PLANE;
+                hit.index = i;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    public boolean occluded(RayHit ray, double maxT) {
+        for (int i = 0; i < numOfSpheres; i++)
+            if (intersectSphere(i, ray) < maxT)
+                return true;
+        for (int i = 0; i < numOfPlanes; i++)
+            if (intersectPlane(i, ray) < maxT)
+                return true;
+        return bvh().occluded(ray, maxT);
+    }
+
+    private double intersectSphere(int i, RayHit r) {
+        var o = 4 * i;
+        var ocx = r.ox - spheres[o];
+        var ocy = r.oy - spheres[o + 1];
+        var ocz = r.oz - spheres[o + 2];
+        var b = ocx * r.dx + ocy * r.dy + ocz * r.dz;
+        var c = ocx * ocx + ocy * ocy + ocz * ocz - spheres[o + 3] * spheres[o + 3];
+        var disc = b * b - c;
+        if (disc < 0)
+            return Double.POSITIVE_INFINITY;
+        var sq = Math.sqrt(disc);
+        var t = -b - sq;
+        if (t > 1e-9)
+            return t;
+        t = -b + sq;
+        return t > 1e-9 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    private double intersectPlane(int i, RayHit r) {
+        var o = 6 * i;
+        var den = planes[o + 3] * r.dx + planes[o + 4] * r.dy + planes[o + 5] * r.dz;
+        if (Math.abs(den) < 1e-12)
+            return Double.POSITIVE_INFINITY;
+        var t = ((planes[o] - r.ox) * planes[o + 3] + (planes[o + 1] - r.oy) * planes[o + 4] +
+                (planes[o + 2] - r.oz) * planes[o + 5]) / den;
+        return t > 1e-9 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    // unit normal at the hit facing against the ray, written to out
+    void normal(RayHit hit, double[] out) {
+        double nx, ny, nz;
+        switch (hit.kind) {
+            case RayHit.SPHERE -> {
+                var o = 4 * hit.index;
+                nx = hit.hitX() - spheres[o];
+                ny = hit.hitY() - spheres[o + 1];
+                nz = hit.hitZ() - spheres[o + 2];
+            }
+            case RayHit.PLANE -> {
+                var o = 6 * hit.index;
+                nx = planes[o + 3];
+                ny = planes[o + 4];
+                nz = planes[o + 5];
+            }
+            default -> {
+                var o = 9 * hit.index;
+                nx = triangles[o + 4] * triangles[o + 8] - triangles[o + 5] * triangles[o + 7];
+                ny = triangles[o + 5] * triangles[o + 6] - triangles[o + 3] * triangles[o + 8];
+                nz = triangles[o + 3] * triangles[o + 7] - triangles[o + 4] * triangles[o + 6];
+            }
+        }
+        var len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        if (nx * hit.dx + ny * hit.dy + nz * hit.dz > 0)
+            len = -len;
+        out[0] = nx / len;
+        out[1] = ny / len;
+        out[2] = nz / len;
+    }
+
+    // linear rgb and reflectivity of the hit primitive, planes are checkered to make distances readable
+    void material(RayHit hit, float[] out) {
+        float[] materials;
+        var o = 4 * hit.index;
+        switch (hit.kind) {
+            case RayHit.SPHERE -> materials = sphereMaterials;
+            case RayHit.PLANE -> {
+                materials = planeMaterials;
+                var checker = ((int) Math.floor(hit.hitX()) + (int) Math.floor(hit.hitY()) +
+                        (int) Math.floor(hit.hitZ())) & 1;
+                var f = checker == 0 ? 1f : 0.6f;
+                out[0] = materials[o] * f;
+                out[1] = materials[o + 1] * f;
+                out[2] = materials[o + 2] * f;
+                out[3] = materials[o + 3];
+                return;
+            }
+            default -> materials = triangleMaterials;
+        }
+        out[0] = materials[o];
+        out[1] = materials[o + 1];
+        out[2] = materials[o + 2];
+        out[3] = materials[o + 3];
+    }
+
+    private BVH bvh() {
+        var res = bvh;
+        return res != null ? res : build().bvh;
+    }
+
+    public List<LightSource> getLights() {
+        return lights;
+    }
+
+    public Color getAmbient() {
+        return ambient;
+    }
+
+    public void setAmbient(Color ambient) {
+        this.ambient = ambient;
+    }
+
+    public int getNumOfTriangles() {
+        return numOfTriangles;
+    }
+
+    public int getNumOfSpheres() {
+        return numOfSpheres;
+    }
+
+    public int getNumOfPlanes() {
+        return numOfPlanes;
+    }
+}
@@ -1,6 +1,7 @@
 package visualization.render3D.shading;
 
 import jmath.datatypes.tuples.Point3D;
+import utils.Parallel;
 import visualization.shapes.shape3d.FlatSurface;
 import visualization.shapes.shape3d.Shape3D;
 
@@ -8,14 +9,23 @@ import java.awt.*;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+@SuppressWarnings("unused")
 public final class Shader implements Serializable {
+    private static final int LIGHT_STRIDE = 11;
+    private static final int MIN_FACES_PER_TASK = 512;
+
     private final List<LightSource> lightSources;
+    private boolean incremental;
+    private transient Map<Shape3D, FaceCache> caches;
 
     public Shader(List<LightSource> lightSources) {
         this.lightSources = new ArrayList<>();
         this.lightSources.addAll(lightSources);
+        incremental = true;
     }
 
     public Shader(LightSource... lightSources) {
@@ -28,48 +38,261 @@ public final class Shader implements Serializable {
 
     public void shade(Shape3D... shapes) {
         try {
+            var lights = lightState();
             for (var s : shapes)
-                for (var c : s.getComponents())
-                    if (c instanceof FlatSurface)
-                        ((FlatSurface) c).setColor(colorUnderSource((FlatSurface) c));
+                shade(s, lights);
         } catch (Exception e) {
 //            ExceptionHandler.handle(e, ExceptionHandler.IGNORE);
         }
     }
 
+    private void shade(Shape3D shape, double[] lights) {
+        var cache = cacheOf(shape);
+        synchronized (cache) {
+            shade(cache, lights);
+        }
+    }
+
+    private void shade(FaceCache cache, double[] lights) {
+        final var faces = cache.faces;
+        final var all = !incremental || !Arrays.equals(lights, cache.lights);
+        cache.lights = lights;
+        Parallel.forRange(0, faces.length, Parallel.grainOf(faces.length, MIN_FACES_PER_TASK), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var face = faces[i];
+                var fixed = face.getFixedColor();
+                if (face.getPoints().size() < 3) {
+                    if (face.getColor() != fixed)
+                        face.setColor(fixed);
+                    continue;
+                }
+                var moved = cache.update(i, face.getPoints());
+                var rgb = fixed.getRGB();
+                if (!all && !moved && cache.fixedColors[i] == rgb)
+                    continue;
+                cache.fixedColors[i] = rgb;
+                var res = colorUnderSource(rgb, cache.normals, cache.centers, i * 3, lights);
+                if (face.getColor() == null || face.getColor().getRGB() != res)
+                    face.setColor(new Color(res));
+            }
+        });
+    }
+
     public Color colorUnderSource(FlatSurface surface) {
-        if (surface.getPoints().size() < 3)
+        var ps = surface.getPoints();
+        if (ps.size() < 3)
             return surface.getFixedColor();
+        var normal = new double[3];
+        var center = new double[3];
+        faceNormal(ps, normal, center, 0);
+        return new Color(colorUnderSource(surface.getFixedColor().getRGB(), normal, center, 0, lightState()));
+    }
+
+    private static int colorUnderSource(int pre, double[] normals, double[] centers, int offset, double[] lights) {
+        final var numOfLights = lights.length / LIGHT_STRIDE;
+        final var nx = normals[offset];
+        final var ny = normals[offset + 1];
+        final var nz = normals[offset + 2];
         double factor = 0;
-        Point3D meanColor = new Point3D();
-        for (var ls : lightSources) {
-            var d = Point3D.crossProduct(
-                    Point3D.sub(surface.getPoints().get(0), surface.getPoints().get(1)),
-                    Point3D.sub(surface.getPoints().get(1), surface.getPoints().get(2))).normalize().
-                    dotProduct(ls.isDotted() ? Point3D.sub(surface.getCenter(), ls.getPosition()).normalize() : ls.getDirection());
-            var tmp = Math.abs((d * d + 1) * (1 - ls.getIntensity()) / 2 + ls.getIntensity());
+        double mr = 0;
+        double mg = 0;
+        double mb = 0;
+        for (int l = 0; l < lights.length; l += LIGHT_STRIDE) {
+            double lx, ly, lz;
+            if (lights[l] != 0) {
+                lx = lights[l + 4] - centers[offset];
+                ly = lights[l + 5] - centers[offset + 1];
+                lz = lights[l + 6] - centers[offset + 2];
+                var len = Math.sqrt(lx * lx + ly * ly + lz * lz);
+                if (len != 1) {
+                    lx /= len;
+                    ly /= len;
+                    lz /= len;
+                }
+            } else {
+                lx = lights[l + 1];
+                ly = lights[l + 2];
+                lz = lights[l + 3];
+            }
+            var d = nx * lx + ny * ly + nz * lz;
+            var intensity = lights[l + 10];
+            var tmp = Math.abs((d * d + 1) * (1 - intensity) / 2 + intensity);
             factor += tmp;
-            meanColor.addVector(
-                    ls.getColor().getRed() * ls.getIntensity() * tmp,
-                    ls.getColor().getGreen() * ls.getIntensity() * tmp,
-                    ls.getColor().getBlue() * ls.getIntensity() * tmp
-            );
+            mr += lights[l + 7] * intensity * tmp;
+            mg += lights[l + 8] * intensity * tmp;
+            mb += lights[l + 9] * intensity * tmp;
         }
-        meanColor.affectOnXYZ(x -> x / lightSources.size());
-        return factorizedColor(surface.getFixedColor(), meanColor, factor / lightSources.size());
-    }
-
-    private Color factorizedColor(Color pre, Point3D meanColor, double factor) {
-        var newR = (int) (pre.getRed() * factor + meanColor.x);
-        var newG = (int) (pre.getGreen() * factor + meanColor.y);
-        var newB = (int) (pre.getBlue() * factor + meanColor.z);
+        factor /= numOfLights;
+        var newR = (int) (((pre >> 16) & 0xFF) * factor + mr / numOfLights);
+        var newG = (int) (((pre >> 8) & 0xFF) * factor + mg / numOfLights);
+        var newB = (int) ((pre & 0xFF) * factor + mb / numOfLights);
         newR = newR < 0 ? 0 : Math.min(newR, 255);
         newG = newG < 0 ? 0 : Math.min(newG, 255);
         newB = newB < 0 ? 0 : Math.min(newB, 255);
-        return new Color(newR, newG, newB);
+        return 0xFF000000 | newR << 16 | newG << 8 | newB;
+    }
+
+    // same vector Point3D.crossProduct(Point3D.sub(p0, p1), Point3D.sub(p1, p2)).normalize() gives, without allocation
+    private static void faceNormal(List<Point3D> ps, double[] normals, double[] centers, int offset) {
+        var p0 = ps.get(0);
+        var p1 = ps.get(1);
+        var p2 = ps.get(2);
+        var ax = p1.x - p0.x;
+        var ay = p1.y - p0.y;
+        var az = p1.z - p0.z;
+        var bx = p2.x - p1.x;
+        var by = p2.y - p1.y;
+        var bz = p2.z - p1.z;
+        var x = ax * by - ay * bx;
+        var y = az * bx - ax * bz;
+        var z = ay * bz - az * by;
+        var len = Math.sqrt(x * x + y * y + z * z);
+        if (len != 1) {
+            x /= len;
+            y /= len;
+            z /= len;
+        }
+        normals[offset] = x;
+        normals[offset + 1] = y;
+        normals[offset + 2] = z;
+        double cx = 0, cy = 0, cz = 0;
+        for (var p : ps) {
+            cx += p.x;
+            cy += p.y;
+            cz += p.z;
+        }
+        centers[offset] = cx / ps.size();
+        centers[offset + 1] = cy / ps.size();
+        centers[offset + 2] = cz / ps.size();
+    }
+
+    private double[] lightState() {
+        var res = new double[lightSources.size() * LIGHT_STRIDE];
+        int i = 0;
+        for (var ls : lightSources) {
+            res[i] = ls.isDotted() ? 1 : 0;
+            res[i + 1] = ls.getDirection().x;
+            res[i + 2] = ls.getDirection().y;
+            res[i + 3] = ls.getDirection().z;
+            res[i + 4] = ls.getPosition().x;
+            res[i + 5] = ls.getPosition().y;
+            res[i + 6] = ls.getPosition().z;
+            res[i + 7] = ls.getColor().getRed();
+            res[i + 8] = ls.getColor().getGreen();
+            res[i + 9] = ls.getColor().getBlue();
+            res[i + 10] = ls.getIntensity();
+            i += LIGHT_STRIDE;
+        }
+        return res;
+    }
+
+    private synchronized FaceCache cacheOf(Shape3D shape) {
+        if (caches == null)
+            caches = new IdentityHashMap<>();
+        var res = caches.get(shape);
+        if (res == null || !res.matches(shape)) {
+            res = new FaceCache(shape);
+            caches.put(shape, res);
+        }
+        return res;
+    }
+
+    public synchronized void invalidate(Shape3D shape) {
+        if (caches != null)
+            caches.remove(shape);
+    }
+
+    public synchronized void invalidateAll() {
+        if (caches != null)
+            caches.clear();
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    // when incremental only faces that moved or changed their fixed color are shaded unless lights have changed
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
     }
 
     public List<LightSource> getLightSources() {
         return lightSources;
     }
+
+    private static final class FaceCache {
+        private final List<Shape3D> components;
+        private final int numOfComponents;
+        private final FlatSurface[] faces;
+        private final int firstFaceIndex;
+        private final int lastFaceIndex;
+        private final int[] fixedColors;
+        private final int[] snapshotOffsets;
+        private final double[] snapshot;
+        private final double[] normals;
+        private final double[] centers;
+        private final boolean[] valid;
+        private double[] lights;
+
+        private FaceCache(Shape3D shape) {
+            components = shape.getComponents();
+            numOfComponents = components.size();
+            var list = new ArrayList<FlatSurface>();
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < numOfComponents; i++) {
+                if (components.get(i) instanceof FlatSurface f) {
+                    list.add(f);
+                    first = first == -1 ? i : first;
+                    last = i;
+                }
+            }
+            faces = list.toArray(FlatSurface[]::new);
+            firstFaceIndex = first;
+            lastFaceIndex = last;
+            fixedColors = new int[faces.length];
+            snapshotOffsets = new int[faces.length + 1];
+            for (int i = 0; i < faces.length; i++)
+                snapshotOffsets[i + 1] = snapshotOffsets[i] + faces[i].getPoints().size() * 3;
+            snapshot = new double[snapshotOffsets[faces.length]];
+            normals = new double[faces.length * 3];
+            centers = new double[faces.length * 3];
+            valid = new boolean[faces.length];
+            lights = null;
+        }
+
+        private boolean matches(Shape3D shape) {
+            return shape.getComponents() == components && components.size() == numOfComponents &&
+                    (faces.length == 0 || components.get(firstFaceIndex) == faces[0] && components.get(lastFaceIndex) == faces[faces.length - 1]);
+        }
+
+        // returns true and refreshes the cached normal if any vertex of the face has changed
+        private boolean update(int face, List<Point3D> ps) {
+            var offset = snapshotOffsets[face];
+            var changed = !valid[face] || ps.size() * 3 != snapshotOffsets[face + 1] - offset;
+            if (!changed) {
+                for (int i = 0; i < ps.size(); i++) {
+                    var p = ps.get(i);
+                    var j = offset + i * 3;
+                    if (snapshot[j] != p.x || snapshot[j + 1] != p.y || snapshot[j + 2] != p.z) {
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+            if (!changed)
+                return false;
+            var len = Math.min(ps.size(), (snapshotOffsets[face + 1] - offset) / 3);
+            for (int i = 0; i < len; i++) {
+                var p = ps.get(i);
+                var j = offset + i * 3;
+                snapshot[j] = p.x;
+                snapshot[j + 1] = p.y;
+                snapshot[j + 2] = p.z;
+            }
+            valid[face] = len == ps.size();
+            faceNormal(ps, normals, centers, face * 3);
+            return true;
+        }
+    }
 }
@@ -3,12 +3,14 @@ package visualization.shapes.shape2d.grid2d;
 import jmath.datatypes.tuples.Point2D;
 import utils.Utils;
 import visualization.canvas.CoordinatedScreen;
-import visualization.canvas.Render;
+import visualization.canvas.DirtyRegionRender;
 
 import java.awt.*;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
-public class GridPlain2D implements Render {
+public class GridPlain2D implements DirtyRegionRender {
     protected boolean isVisible;
     protected boolean drawGrid;
     protected float gridThickness;
@@ -20,6 +22,16 @@ public class GridPlain2D implements Render {
     protected final Tile2D[][] gridTiles;
     protected final Point2D pos;
     protected CoordinatedScreen cs;
+    private int[] lastRects;
+    private int[] lastColors;
+    private String[] lastLabels;
+    private int[] lastLabelColors;
+    private Font[] lastFonts;
+    private boolean[] lastVisibles;
+    private boolean[] lastFilled;
+    private float[] lastThicknesses;
+    private final int[] layout = new int[8];
+    private int[] lastLayout;
 
     public GridPlain2D(CoordinatedScreen cs, int numOfRows, int numOfCols, Point2D pos) {
         this.numOfRows = numOfRows;
@@ -144,13 +156,106 @@ public class GridPlain2D implements Render {
                     cs.screenY(-tilesHeight + pos.y), cs.screenX(tilesWidth * i + pos.x), cs.screenY((numOfRows-1) * tilesHeight + pos.y));
     }
 
+    // only tiles that intersect the clip are drawn, so repainting a few dirty tiles of a large grid is cheap
     @Override
     public void render(Graphics2D g2d) {
-        for (var row : gridTiles)
-            Arrays.stream(row).forEach(tile -> tile.renderIfInView(g2d));
+        var clip = g2d.getClipBounds();
+        var rect = new int[4];
+        for (var row : gridTiles) {
+            for (var tile : row) {
+                if (clip != null) {
+                    screenRectOf(tile, rect);
+                    if (rect[0] + rect[2] <= clip.x || rect[1] + rect[3] <= clip.y ||
+                            rect[0] >= clip.x + clip.width || rect[1] >= clip.y + clip.height)
+                        continue;
+                }
+                tile.renderIfInView(g2d);
+            }
+        }
         drawGrid(g2d);
     }
 
+    private void screenRectOf(Tile2D tile, int[] res) {
+        var margin = (int) Math.ceil(Math.max(tile.getThickness(), gridThickness)) + 2;
+        var x = cs.screenX(tile.getPos().x);
+        var y = cs.screenY(tile.getPos().y);
+        var w = cs.screenXLen(tile.getWidth());
+        var h = cs.screenYLen(tile.getHeight());
+        res[0] = Math.min(x, x + w) - margin;
+        res[1] = Math.min(y, y + h) - margin;
+        res[2] = Math.abs(w) + 2 * margin;
+        res[3] = Math.abs(h) + 2 * margin;
+    }
+
+    // compares what every tile would draw now with what it drew in the previous frame
+    @Override
+    public boolean collectDirtyRegions(List<Rectangle> regions) {
+        var n = numOfRows * numOfCols;
+        layout[0] = isVisible ? 1 : 0;
+        layout[1] = drawGrid ? 1 : 0;
+        layout[2] = Float.floatToIntBits(gridThickness);
+        layout[3] = gridColor == null ? 0 : gridColor.getRGB();
+        layout[4] = cs.screenX(pos.x);
+        layout[5] = cs.screenY(pos.y);
+        layout[6] = cs.screenXLen(tilesWidth);
+        layout[7] = cs.screenYLen(tilesHeight);
+        var res = lastRects != null && Arrays.equals(layout, lastLayout);
+        if (lastRects == null) {
+            lastRects = new int[n * 4];
+            lastColors = new int[n];
+            lastLabels = new String[n];
+            lastLabelColors = new int[n];
+            lastFonts = new Font[n];
+            lastVisibles = new boolean[n];
+            lastFilled = new boolean[n];
+            lastThicknesses = new float[n];
+            lastLayout = new int[layout.length];
+        }
+        System.arraycopy(layout, 0, lastLayout, 0, layout.length);
+        var rect = new int[4];
+        for (int i = 0, k = 0; i < numOfRows; i++) {
+            for (int j = 0; j < numOfCols; j++, k++) {
+                var tile = gridTiles[i][j];
+                screenRectOf(tile, rect);
+                var visible = tile.isVisible();
+                var color = visible ? tile.getColorFunc().getColor().getRGB() : 0;
+                var filled = tile.isFilled();
+                var thickness = tile.getThickness();
+                String label = null;
+                var labelColor = 0;
+                Font font = null;
+                if (visible) {
+                    var text = tile.getTextFunction();
+                    label = text.getText();
+                    if (label == null || label.isEmpty()) {
+                        label = null;
+                    } else {
+                        labelColor = text.getColor().getRGB();
+                        font = text.getFont();
+                    }
+                }
+                var o = k * 4;
+                var moved = lastRects[o] != rect[0] || lastRects[o + 1] != rect[1] || lastRects[o + 2] != rect[2] || lastRects[o + 3] != rect[3];
+                if (res && (moved || visible != lastVisibles[k] || color != lastColors[k] || filled != lastFilled[k] ||
+                        thickness != lastThicknesses[k] || !Objects.equals(label, lastLabels[k]) ||
+                        labelColor != lastLabelColors[k] || !Objects.equals(font, lastFonts[k]))) {
+                    regions.add(new Rectangle(rect[0], rect[1], rect[2], rect[3]));
+                    if (moved)
+                        regions.add(new Rectangle(lastRects[o], lastRects[o + 1], lastRects[o + 2], lastRects[o + 3]));
+                }
+                System.arraycopy(rect, 0, lastRects, o, 4);
+                lastVisibles[k] = visible;
+                lastColors[k] = color;
+                lastFilled[k] = filled;
+                lastThicknesses[k] = thickness;
+                lastLabels[k] = label;
+                lastLabelColors[k] = labelColor;
+                lastFonts[k] = font;
+            }
+        }
+        return res;
+    }
+
     @Override
     public boolean isVisible() {
         return isVisible;
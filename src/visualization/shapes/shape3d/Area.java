@@ -91,9 +91,13 @@ public class Area extends Shape3D {
     }
 
     public Area(CoordinatedScreen canvas, String pathOfModel) {
+        this(canvas, pathOfModel, false);
+    }
+
+    public Area(CoordinatedScreen canvas, String pathOfModel, boolean useModelCache) {
         super(canvas);
         List<FlatSurface> surfaces;
-        components.addAll(surfaces = OBJHandler.getSurfaces(pathOfModel, canvas, getPoints()));
+        components.addAll(surfaces = OBJHandler.getSurfaces(pathOfModel, useModelCache, canvas, getPoints()));
         numOfSides = surfaces.size();
         shader = new Shader(
                 new LightSource(new Point3D(1, 1, 1), Color.RED, 0.1)
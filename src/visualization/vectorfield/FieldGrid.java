@@ -0,0 +1,190 @@
+package visualization.vectorfield;
+
+import utils.Parallel;
+
+// a field sampled on nx by ny nodes over [xMin, xMax] x [yMin, yMax], rows are evaluated on the shared pool once and
+// reused by every frame until the field or the bounds change, lookups between nodes are bilinear, an evaluation is
+// published with its bounds as one snapshot so a lookup racing with a change of the bounds never mixes two of them
+@SuppressWarnings("unused")
+public class FieldGrid implements FieldSampler {
+    private FieldSampler field;
+    private final int nx;
+    private final int ny;
+    private volatile Bounds bounds;
+    // bumped by every change, a snapshot of an older version is stale
+    private volatile long version;
+    private volatile Nodes nodes;
+
+    public FieldGrid(FieldSampler field, int nx, int ny) {
+        if (nx < 2 || ny < 2)
+            throw new IllegalArgumentException("AHD:: Grid needs at least 2 nodes along each axis");
+        if ((long) nx * ny > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("AHD:: Grid is too large");
+        this.field = field;
+        this.nx = nx;
+        this.ny = ny;
+        setBounds(-1, 1, -1, 1);
+    }
+
+    public synchronized void setBounds(double xMin, double xMax, double yMin, double yMax) {
+        if (!(xMin < xMax) || !(yMin < yMax))
+            throw new IllegalArgumentException("AHD:: Invalid bounds of the grid");
+        var b = bounds;
+        if (b != null && xMin == b.xMin && xMax == b.xMax && yMin == b.yMin && yMax == b.yMax)
+            return;
+        bounds = new Bounds(xMin, xMax, yMin, yMax);
+        version++;
+    }
+
+    public synchronized void setField(FieldSampler field) {
+        this.field = field;
+        version++;
+    }
+
+    public FieldSampler getField() {
+        return field;
+    }
+
+    // forces the next lookup to evaluate the field again, for fields that change on their own
+    public synchronized void invalidate() {
+        version++;
+    }
+
+    public boolean isValid() {
+        var n = nodes;
+        return n != null && n.version == version;
+    }
+
+    public FieldGrid update() {
+        nodes();
+        return this;
+    }
+
+    // the snapshot of the current bounds and field, evaluated first when it is stale
+    private Nodes nodes() {
+        var n = nodes;
+        if (n != null && n.version == version)
+            return n;
+        synchronized (this) {
+            n = nodes;
+            if (n != null && n.version == version)
+                return n;
+            final var f = field;
+            final var b = bounds;
+            final var dx = (b.xMax - b.xMin) / (nx - 1);
+            final var dy = (b.yMax - b.yMin) / (ny - 1);
+            final var us = new double[nx * ny];
+            final var vs = new double[nx * ny];
+            final var defined = new byte[nx * ny];
+            final var max = new double[ny];
+            Parallel.forRange(0, ny, Parallel.grainOf(ny, 4), (s, e) -> {
+                var out = new double[2];
+                for (int j = s; j < e; j++) {
+                    var y = b.yMin + j * dy;
+                    var m = 0.0;
+                    for (int i = 0, k = j * nx; i < nx; i++, k++) {
+                        if (f.sample(b.xMin + i * dx, y, out)) {
+                            us[k] = out[0];
+                            vs[k] = out[1];
+                            defined[k] = 1;
+                            m = Math.max(m, out[0] * out[0] + out[1] * out[1]);
+                        }
+                    }
+                    max[j] = m;
+                }
+            });
+            var m = 0.0;
+            for (var v : max)
+                m = Math.max(m, v);
+            return nodes = new Nodes(version, b, dx, dy, us, vs, defined, Math.sqrt(m));
+        }
+    }
+
+    // undefined outside the bounds and inside cells touching a node where the field is undefined
+    @Override
+    public boolean sample(double x, double y, double[] out) {
+        final var n = nodes();
+        final var b = n.bounds;
+        var fx = (x - b.xMin) / n.dx;
+        var fy = (y - b.yMin) / n.dy;
+        if (!(fx >= 0 && fy >= 0 && fx <= nx - 1 && fy <= ny - 1))
+            return false;
+        var i = Math.min((int) fx, nx - 2);
+        var j = Math.min((int) fy, ny - 2);
+        var k = j * nx + i;
+        final var defined = n.defined;
+        if ((defined[k] & defined[k + 1] & defined[k + nx] & defined[k + nx + 1]) == 0)
+            return false;
+        final var us = n.us;
+        final var vs = n.vs;
+        var tx = fx - i;
+        var ty = fy - j;
+        var u0 = us[k] + (us[k + 1] - us[k]) * tx;
+        var u1 = us[k + nx] + (us[k + nx + 1] - us[k + nx]) * tx;
+        var v0 = vs[k] + (vs[k + 1] - vs[k]) * tx;
+        var v1 = vs[k + nx] + (vs[k + nx + 1] - vs[k + nx]) * tx;
+        out[0] = u0 + (u1 - u0) * ty;
+        out[1] = v0 + (v1 - v0) * ty;
+        return true;
+    }
+
+    public boolean contains(double x, double y) {
+        var b = bounds;
+        return x >= b.xMin && x <= b.xMax && y >= b.yMin && y <= b.yMax;
+    }
+
+    public double getMaxMagnitude() {
+        return nodes().maxMagnitude;
+    }
+
+    public double u(int i, int j) {
+        return nodes().us[j * nx + i];
+    }
+
+    public double v(int i, int j) {
+        return nodes().vs[j * nx + i];
+    }
+
+    public boolean isDefined(int i, int j) {
+        return nodes().defined[j * nx + i] != 0;
+    }
+
+    public double nodeX(int i) {
+        var n = nodes();
+        return n.bounds.xMin + i * n.dx;
+    }
+
+    public double nodeY(int j) {
+        var n = nodes();
+        return n.bounds.yMin + j * n.dy;
+    }
+
+    public int getNx() {
+        return nx;
+    }
+
+    public int getNy() {
+        return ny;
+    }
+
+    public double getXMin() {
+        return bounds.xMin;
+    }
+
+    public double getXMax() {
+        return bounds.xMax;
+    }
+
+    public double getYMin() {
+        return bounds.yMin;
+    }
+
+    public double getYMax() {
+        return bounds.yMax;
+    }
+
+    private record Bounds(double xMin, double xMax, double yMin, double yMax) {}
+
+    private record Nodes(long version, Bounds bounds, double dx, double dy, double[] us, double[] vs, byte[] defined,
+                         double maxMagnitude) {}
+}
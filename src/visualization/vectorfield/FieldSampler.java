@@ -0,0 +1,7 @@
+package visualization.vectorfield;
+
+// writes the vector at (x, y) into out[0] and out[1], false when the field is not defined there
+@FunctionalInterface
+public interface FieldSampler {
+    boolean sample(double x, double y, double[] out);
+}
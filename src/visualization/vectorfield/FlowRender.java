@@ -0,0 +1,293 @@
+package visualization.vectorfield;
+
+import visualization.canvas.CoordinatedScreen;
+import visualization.canvas.Render;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+// draws a plane field over the visible part of the screen, the field is sampled once per view on a grid that every
+// mode reads, so moving particles or redrawing arrows does not evaluate the field again until the camera moves
+@SuppressWarnings("unused")
+public class FlowRender implements Render {
+    // mean alpha the trails settle on when particles are spread evenly
+    private static final int TRAIL_ALPHA = 96;
+
+    private final CoordinatedScreen cs;
+    private final FieldGrid grid;
+    private final Streamlines streamlines;
+    private final ParticleSystem particles;
+    private final LineIntegralConvolution lic;
+    private Mode mode;
+    private boolean isVisible;
+    private int arrowSpacing;
+    private int seedsPerSide;
+    private double timeStep;
+    private float trailFade;
+    private Color color;
+    private double[][] lines;
+    private BufferedImage frame;
+    private int[] framePixels;
+    private Rectangle licView;
+
+    public FlowRender(CoordinatedScreen cs, FieldSampler field) {
+        this(cs, field, 100_000);
+    }
+
+    public FlowRender(CoordinatedScreen cs, FieldSampler field, int particleCount) {
+        this.cs = cs;
+        grid = new FieldGrid(field, 160, 160);
+        streamlines = new Streamlines(grid);
+        particles = new ParticleSystem(grid, particleCount);
+        lic = new LineIntegralConvolution(grid);
+        mode = Mode.PARTICLES;
+        isVisible = true;
+        arrowSpacing = 24;
+        seedsPerSide = 24;
+        timeStep = 0.01;
+        trailFade = 0.8f;
+        color = new Color(0x4FC3F7);
+    }
+
+    public FieldGrid getGrid() {
+        return grid;
+    }
+
+    public Streamlines getStreamlines() {
+        return streamlines;
+    }
+
+    public ParticleSystem getParticles() {
+        return particles;
+    }
+
+    public LineIntegralConvolution getLic() {
+        return lic;
+    }
+
+    public void setField(FieldSampler field) {
+        grid.setField(field);
+        lines = null;
+        licView = null;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+        if (framePixels != null)
+            Arrays.fill(framePixels, 0);
+        licView = null;
+    }
+
+    public void setVisible(boolean visible) {
+        isVisible = visible;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return isVisible;
+    }
+
+    public int getArrowSpacing() {
+        return arrowSpacing;
+    }
+
+    public void setArrowSpacing(int arrowSpacing) {
+        if (arrowSpacing < 4)
+            throw new IllegalArgumentException("AHD:: Arrows need at least 4 pixels");
+        this.arrowSpacing = arrowSpacing;
+    }
+
+    public int getSeedsPerSide() {
+        return seedsPerSide;
+    }
+
+    public void setSeedsPerSide(int seedsPerSide) {
+        if (seedsPerSide <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid count of seeds");
+        this.seedsPerSide = seedsPerSide;
+        lines = null;
+    }
+
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    public void setTimeStep(double timeStep) {
+        this.timeStep = timeStep;
+    }
+
+    public float getTrailFade() {
+        return trailFade;
+    }
+
+    // share of a trail kept from one frame to the next, 0 draws bare particles
+    public void setTrailFade(float trailFade) {
+        if (trailFade < 0 || trailFade >= 1)
+            throw new IllegalArgumentException("AHD:: Fade should be in [0, 1)");
+        this.trailFade = trailFade;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+        licView = null;
+    }
+
+    @Override
+    public void render(Graphics2D g2d) {
+        var view = cs.viewBounds(g2d);
+        if (view.width <= 0 || view.height <= 0)
+            return;
+        var xMin = cs.coordinateX(view.x);
+        var xMax = cs.coordinateX(view.x + view.width);
+        var yMin = cs.coordinateY(view.y + view.height);
+        var yMax = cs.coordinateY(view.y);
+        if (!(xMin < xMax) || !(yMin < yMax))
+            return;
+        var moved = xMin != grid.getXMin() || xMax != grid.getXMax() || yMin != grid.getYMin() || yMax != grid.getYMax();
+        grid.setBounds(xMin, xMax, yMin, yMax);
+        if (moved) {
+            particles.setBounds(xMin, xMax, yMin, yMax);
+            particles.reset();
+            lines = null;
+        }
+        var changed = !grid.isValid();
+        grid.update();
+        switch (mode) {
+            case ARROWS -> drawArrows(g2d, view);
+            case STREAMLINES -> drawStreamlines(g2d, changed);
+            case PARTICLES -> drawParticles(g2d, view, moved || changed);
+            case LIC -> drawLic(g2d, view, changed);
+        }
+    }
+
+    private void drawArrows(Graphics2D g2d, Rectangle view) {
+        var max = grid.getMaxMagnitude();
+        var d = new double[2];
+        var half = arrowSpacing * 0.4;
+        var path = new Path2D.Double[8];
+        for (int i = 0; i < path.length; i++)
+            path[i] = new Path2D.Double();
+        for (int py = view.y + arrowSpacing / 2; py < view.y + view.height; py += arrowSpacing) {
+            for (int px = view.x + arrowSpacing / 2; px < view.x + view.width; px += arrowSpacing) {
+                if (!grid.sample(cs.coordinateX(px), cs.coordinateY(py), d))
+                    continue;
+                var len = Math.hypot(d[0], d[1]);
+                if (!(len > 0))
+                    continue;
+                // unit direction on the screen, no trigonometry needed
+                var ux = d[0] / len;
+                var uy = -d[1] / len;
+                var x1 = px + ux * half;
+                var y1 = py + uy * half;
+                var p = path[Math.min(path.length - 1, (int) (len / max * path.length))];
+                p.moveTo(px - ux * half, py - uy * half);
+                p.lineTo(x1, y1);
+                p.moveTo(x1 - (ux - uy * 0.5) * half * 0.5, y1 - (uy + ux * 0.5) * half * 0.5);
+                p.lineTo(x1, y1);
+                p.lineTo(x1 - (ux + uy * 0.5) * half * 0.5, y1 - (uy - ux * 0.5) * half * 0.5);
+            }
+        }
+        // one path per band of magnitude from blue to red
+        for (int i = 0; i < path.length; i++) {
+            var t = (i + 0.5f) / path.length;
+            g2d.setColor(new Color(t, 0.2f, 1 - t));
+            g2d.draw(path[i]);
+        }
+    }
+
+    private void drawStreamlines(Graphics2D g2d, boolean changed) {
+        if (lines == null || changed) {
+            var w = grid.getXMax() - grid.getXMin();
+            var h = grid.getYMax() - grid.getYMin();
+            streamlines.setStep(Math.min(w, h) / 400);
+            streamlines.setStepRange(streamlines.getStep() / 16, streamlines.getStep() * 8);
+            streamlines.setMaxLength(Math.max(w, h));
+            lines = streamlines.trace(Streamlines.seedGrid(grid.getXMin(), grid.getXMax(), grid.getYMin(),
+                    grid.getYMax(), seedsPerSide, seedsPerSide));
+        }
+        var path = new Path2D.Double();
+        for (var line : lines) {
+            if (line.length < 4)
+                continue;
+            path.moveTo(cs.screenX(line[0]), cs.screenY(line[1]));
+            for (int i = 2; i < line.length; i += 2)
+                path.lineTo(cs.screenX(line[i]), cs.screenY(line[i + 1]));
+        }
+        g2d.setColor(color);
+        g2d.draw(path);
+    }
+
+    private void drawParticles(Graphics2D g2d, Rectangle view, boolean reset) {
+        var fresh = ensureFrame(view);
+        final var pixels = framePixels;
+        if (reset || fresh) {
+            Arrays.fill(pixels, 0);
+        } else if (trailFade == 0) {
+            Arrays.fill(pixels, 0);
+        } else {
+            // scales the alpha of the trail, pixels of the same color keep their rgb
+            var fade = (int) (trailFade * 256);
+            for (int i = 0; i < pixels.length; i++) {
+                var a = (pixels[i] >>> 24) * fade >>> 8;
+                pixels[i] = a == 0 ? 0 : a << 24 | pixels[i] & 0xFFFFFF;
+            }
+        }
+        var originX = (0 - grid.getXMin()) / (grid.getXMax() - grid.getXMin()) * view.width;
+        var originY = grid.getYMax() / (grid.getYMax() - grid.getYMin()) * view.height;
+        particles.render(pixels, view.width, view.height, originX, originY,
+                view.width / (grid.getXMax() - grid.getXMin()), view.height / (grid.getYMax() - grid.getYMin()),
+                particleAlpha(pixels.length) << 24 | color.getRGB() & 0xFFFFFF);
+        g2d.drawImage(frame, view.x, view.y, null);
+    }
+
+    // a particle hits about a pixel per frame and a trail keeps 1 / (1 - fade) frames
+    private int particleAlpha(int pixels) {
+        var alpha = TRAIL_ALPHA * (1 - trailFade) * pixels / particles.getCount();
+        return Math.max(1, Math.min(255, Math.round(alpha)));
+    }
+
+    private void drawLic(Graphics2D g2d, Rectangle view, boolean changed) {
+        var fresh = ensureFrame(view);
+        if (fresh || changed || !view.equals(licView)) {
+            var intensities = lic.convolve(view.width, view.height, grid.getXMin(), grid.getXMax(),
+                    grid.getYMin(), grid.getYMax());
+            LineIntegralConvolution.toPixels(intensities, framePixels, color.getRGB());
+            licView = new Rectangle(view);
+        }
+        g2d.drawImage(frame, view.x, view.y, null);
+    }
+
+    private boolean ensureFrame(Rectangle view) {
+        if (frame != null && frame.getWidth() == view.width && frame.getHeight() == view.height)
+            return false;
+        frame = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+        framePixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        return true;
+    }
+
+    @Override
+    public void tick() {
+        if (mode == Mode.PARTICLES)
+            particles.step(timeStep);
+    }
+
+    @Override
+    public int tickGroup() {
+        return INDEPENDENT_TICK_GROUP;
+    }
+
+    public enum Mode {
+        ARROWS, STREAMLINES, PARTICLES, LIC
+    }
+}
@@ -0,0 +1,184 @@
+package visualization.vectorfield;
+
+import utils.Parallel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+// line integral convolution, every pixel averages a white noise texture along the streamline through it, walking
+// half a pixel at a time forward and backward on the direction of the field sampled once at the center of every
+// pixel, rows run on the shared pool and the result is stretched to mean +- 2.5 standard deviations
+@SuppressWarnings("unused")
+public class LineIntegralConvolution {
+    private FieldSampler field;
+    private int length;
+    private long seed;
+    private float[] noise;
+    private int noiseWidth;
+    private int noiseHeight;
+
+    public LineIntegralConvolution(FieldSampler field) {
+        this.field = field;
+        length = 20;
+        seed = 0x2545F4914F6CDD1DL;
+    }
+
+    // intensity of every pixel in [0, 1] for a width x height image of [xMin, xMax] x [yMin, yMax], NaN where the
+    // field is undefined, row 0 is the top of the image
+    public float[] convolve(int width, int height, double xMin, double xMax, double yMin, double yMax) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid size of the texture");
+        final var tex = noise(width, height);
+        final var res = new float[width * height];
+        final var dirs = directions(width, height, xMin, xMax, yMin, yMax);
+        final var steps = 2 * length;
+        Parallel.forRange(0, height, Parallel.grainOf(height, 2), (s, e) -> {
+            for (int py = s; py < e; py++) {
+                for (int px = 0; px < width; px++) {
+                    var sum = 0f;
+                    var n = 0;
+                    for (int sign = -1; sign <= 1; sign += 2) {
+                        float x = px + 0.5f;
+                        float y = py + 0.5f;
+                        for (int k = 0; k < steps; k++) {
+                            if (x < 0 || y < 0 || x >= width || y >= height)
+                                break;
+                            var i = (int) y * width + (int) x;
+                            var dx = dirs[2 * i];
+                            if (Float.isNaN(dx))
+                                break;
+                            if (k > 0 || sign < 0) {
+                                sum += tex[i];
+                                n++;
+                            }
+                            x += sign * dx;
+                            y += sign * dirs[2 * i + 1];
+                        }
+                    }
+                    res[py * width + px] = n == 0 ? Float.NaN : sum / n;
+                }
+            }
+        });
+        stretch(res);
+        return res;
+    }
+
+    // half a pixel along the direction of the field at the center of every pixel, NaN where there is none
+    private float[] directions(int width, int height, double xMin, double xMax, double yMin, double yMax) {
+        final var res = new float[2 * width * height];
+        final var f = field;
+        final var pw = (xMax - xMin) / width;
+        final var ph = (yMax - yMin) / height;
+        Parallel.forRange(0, height, Parallel.grainOf(height, 2), (s, e) -> {
+            var d = new double[2];
+            for (int py = s; py < e; py++) {
+                for (int px = 0, i = py * width; px < width; px++, i++) {
+                    var dx = 0.0;
+                    var dy = 0.0;
+                    if (f.sample(xMin + (px + 0.5) * pw, yMax - (py + 0.5) * ph, d)) {
+                        // in pixels, y of the screen grows downward
+                        dx = d[0] / pw;
+                        dy = -d[1] / ph;
+                    }
+                    var len = Math.sqrt(dx * dx + dy * dy);
+                    res[2 * i] = len > 0 ? (float) (0.5 * dx / len) : Float.NaN;
+                    res[2 * i + 1] = len > 0 ? (float) (0.5 * dy / len) : Float.NaN;
+                }
+            }
+        });
+        return res;
+    }
+
+    public BufferedImage render(int width, int height, double xMin, double xMax, double yMin, double yMax) {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        var pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        toPixels(convolve(width, height, xMin, xMax, yMin, yMax), pixels, 0xFFFFFFFF);
+        return image;
+    }
+
+    // writes intensities as shades of rgb, transparent where the field is undefined
+    public static void toPixels(float[] intensities, int[] pixels, int rgb) {
+        var r = rgb >>> 16 & 0xFF;
+        var g = rgb >>> 8 & 0xFF;
+        var b = rgb & 0xFF;
+        Parallel.forRange(0, intensities.length, Parallel.grainOf(intensities.length, 4096), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var v = intensities[i];
+                if (Float.isNaN(v)) {
+                    pixels[i] = 0;
+                    continue;
+                }
+                pixels[i] = 0xFF000000 | (int) (r * v) << 16 | (int) (g * v) << 8 | (int) (b * v);
+            }
+        });
+    }
+
+    private static void stretch(float[] values) {
+        double sum = 0, squares = 0;
+        var n = 0;
+        for (var v : values) {
+            if (Float.isNaN(v))
+                continue;
+            sum += v;
+            squares += v * v;
+            n++;
+        }
+        if (n == 0)
+            return;
+        var mean = sum / n;
+        var deviation = Math.sqrt(Math.max(0, squares / n - mean * mean));
+        if (deviation == 0)
+            return;
+        var low = mean - 2.5 * deviation;
+        var scale = 1 / (5 * deviation);
+        for (int i = 0; i < values.length; i++)
+            if (!Float.isNaN(values[i]))
+                values[i] = (float) Math.max(0, Math.min(1, (values[i] - low) * scale));
+    }
+
+    private float[] noise(int width, int height) {
+        if (noise != null && noiseWidth == width && noiseHeight == height)
+            return noise;
+        var res = new float[width * height];
+        final var s = seed;
+        Parallel.forRange(0, res.length, Parallel.grainOf(res.length, 4096), (from, to) -> {
+            for (int i = from; i < to; i++) {
+                var z = s + i * 0x9E3779B97F4A7C15L;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                res[i] = ((z ^ (z >>> 31)) >>> 40) * 0x1.0p-24f;
+            }
+        });
+        noiseWidth = width;
+        noiseHeight = height;
+        return noise = res;
+    }
+
+    public FieldSampler getField() {
+        return field;
+    }
+
+    public void setField(FieldSampler field) {
+        this.field = field;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    // pixels walked to each side of a pixel
+    public void setLength(int length) {
+        if (length <= 0)
+            throw new IllegalArgumentException("AHD:: Length should be positive");
+        this.length = length;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+        noise = null;
+    }
+}
@@ -0,0 +1,217 @@
+package visualization.vectorfield;
+
+import utils.Parallel;
+
+import java.util.Arrays;
+
+// particles carried by a plane field, positions and ages live in primitive arrays so hundreds of thousands of them
+// step on the shared pool without allocation, a particle that leaves the bounds, outlives its lifetime or lands where
+// the field is undefined is spawned again at a place drawn from a hash of its index and the step count
+@SuppressWarnings("unused")
+public class ParticleSystem {
+    private FieldSampler field;
+    private final int count;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] previousXs;
+    private final double[] previousYs;
+    private final float[] ages;
+    private double xMin, xMax, yMin, yMax;
+    private float lifetime;
+    private long seed;
+    private long steps;
+
+    public ParticleSystem(FieldSampler field, int count) {
+        if (count <= 0)
+            throw new IllegalArgumentException("AHD:: Count of particles should be positive");
+        this.field = field;
+        this.count = count;
+        xs = new double[count];
+        ys = new double[count];
+        previousXs = new double[count];
+        previousYs = new double[count];
+        ages = new float[count];
+        lifetime = 5;
+        seed = 0x9E3779B97F4A7C15L;
+        xMin = yMin = -1;
+        xMax = yMax = 1;
+        reset();
+    }
+
+    // spreads the particles over the bounds with ages spread over the lifetime so they do not respawn together
+    public void reset() {
+        steps = 0;
+        Parallel.forRange(0, count, Parallel.grainOf(count, 4096), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                spawn(i, 0);
+                ages[i] = (float) (unit(mix(seed ^ mix(i + 0x632BE59BD9B4E019L))) * lifetime);
+            }
+        });
+    }
+
+    public void setBounds(double xMin, double xMax, double yMin, double yMax) {
+        if (!(xMin < xMax) || !(yMin < yMax))
+            throw new IllegalArgumentException("AHD:: Invalid bounds of the particles");
+        this.xMin = xMin;
+        this.xMax = xMax;
+        this.yMin = yMin;
+        this.yMax = yMax;
+    }
+
+    // one rk4 step of dt on the field itself, so particles move with the speed of the field
+    public void step(double dt) {
+        final var tick = ++steps;
+        final var f = field;
+        final var life = lifetime;
+        Parallel.forRange(0, count, Parallel.grainOf(count, 4096), (s, e) -> {
+            var k = new double[2];
+            for (int i = s; i < e; i++) {
+                var x = xs[i];
+                var y = ys[i];
+                previousXs[i] = x;
+                previousYs[i] = y;
+                var age = ages[i] + (float) dt;
+                if (age < life && f.sample(x, y, k)) {
+                    var k1x = k[0];
+                    var k1y = k[1];
+                    if (f.sample(x + dt / 2 * k1x, y + dt / 2 * k1y, k)) {
+                        var k2x = k[0];
+                        var k2y = k[1];
+                        if (f.sample(x + dt / 2 * k2x, y + dt / 2 * k2y, k)) {
+                            var k3x = k[0];
+                            var k3y = k[1];
+                            if (f.sample(x + dt * k3x, y + dt * k3y, k)) {
+                                x += dt / 6 * (k1x + 2 * k2x + 2 * k3x + k[0]);
+                                y += dt / 6 * (k1y + 2 * k2y + 2 * k3y + k[1]);
+                                if (x >= xMin && x <= xMax && y >= yMin && y <= yMax) {
+                                    xs[i] = x;
+                                    ys[i] = y;
+                                    ages[i] = age;
+                                    continue;
+                                }
+                            }
+                        }
+                    }
+                }
+                spawn(i, tick);
+                ages[i] = 0;
+            }
+        });
+    }
+
+    private void spawn(int i, long tick) {
+        var h = mix(seed ^ mix(i ^ tick * 0xD1B54A32D192ED03L));
+        var x = xMin + (xMax - xMin) * unit(h);
+        var y = yMin + (yMax - yMin) * unit(mix(h));
+        xs[i] = previousXs[i] = x;
+        ys[i] = previousYs[i] = y;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static double unit(long h) {
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    // draws the move of the last step of every particle as a segment, a world point (x, y) lands on the pixel
+    // (originX + x * scaleX, originY - y * scaleY), the alpha of the color is added to the alpha of the pixel so dense
+    // flow shows brighter, particles hitting the same pixel together may lose an addition which only dims it
+    public void render(int[] pixels, int width, int height, double originX, double originY, double scaleX,
+                       double scaleY, int color) {
+        if (pixels.length < width * height)
+            throw new IllegalArgumentException("AHD:: Pixels are less than the size");
+        final var alpha = color >>> 24;
+        final var rgb = color & 0xFFFFFF;
+        Parallel.forRange(0, count, Parallel.grainOf(count, 4096), (s, e) -> {
+            for (int i = s; i < e; i++) {
+                var x0 = originX + previousXs[i] * scaleX;
+                var y0 = originY - previousYs[i] * scaleY;
+                var x1 = originX + xs[i] * scaleX;
+                var y1 = originY - ys[i] * scaleY;
+                var n = (int) Math.min(64, Math.ceil(Math.max(Math.abs(x1 - x0), Math.abs(y1 - y0))));
+                for (int t = n == 0 ? 0 : 1; t <= n; t++) {
+                    var px = (int) Math.floor(n == 0 ? x1 : x0 + (x1 - x0) * t / n);
+                    var py = (int) Math.floor(n == 0 ? y1 : y0 + (y1 - y0) * t / n);
+                    if (px >= 0 && py >= 0 && px < width && py < height) {
+                        var k = py * width + px;
+                        pixels[k] = Math.min(255, (pixels[k] >>> 24) + alpha) << 24 | rgb;
+                    }
+                }
+            }
+        });
+    }
+
+    public double x(int i) {
+        return xs[i];
+    }
+
+    public double y(int i) {
+        return ys[i];
+    }
+
+    public float age(int i) {
+        return ages[i];
+    }
+
+    public double[] getXs() {
+        return Arrays.copyOf(xs, count);
+    }
+
+    public double[] getYs() {
+        return Arrays.copyOf(ys, count);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public FieldSampler getField() {
+        return field;
+    }
+
+    public void setField(FieldSampler field) {
+        this.field = field;
+    }
+
+    public float getLifetime() {
+        return lifetime;
+    }
+
+    public void setLifetime(float lifetime) {
+        if (!(lifetime > 0))
+            throw new IllegalArgumentException("AHD:: Lifetime should be positive");
+        this.lifetime = lifetime;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public double getXMin() {
+        return xMin;
+    }
+
+    public double getXMax() {
+        return xMax;
+    }
+
+    public double getYMin() {
+        return yMin;
+    }
+
+    public double getYMax() {
+        return yMax;
+    }
+}
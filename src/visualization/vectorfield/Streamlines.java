@@ -0,0 +1,245 @@
+package visualization.vectorfield;
+
+import utils.Parallel;
+
+import java.util.Arrays;
+
+// streamlines of a plane field, integrated along the unit direction of the field so a step is an arc length, either
+// with classic rk4 on a fixed step or with dormand prince 5(4) adapting the step to the tolerance, lines of different
+// seeds are traced on the shared pool, a line is returned as x0, y0, x1, y1, ...
+@SuppressWarnings("unused")
+public class Streamlines {
+    private static final double EPSILON = 1e-12;
+
+    private final FieldSampler field;
+    private double step;
+    private double minStep;
+    private double maxStep;
+    private double tolerance;
+    private double maxLength;
+    private int maxSteps;
+    private boolean adaptive;
+    private boolean bothWays;
+    private final ThreadLocal<Tracer> tracers = ThreadLocal.withInitial(Tracer::new);
+
+    public Streamlines(FieldSampler field) {
+        this.field = field;
+        step = 0.01;
+        minStep = 1e-4;
+        maxStep = 0.1;
+        tolerance = 1e-5;
+        maxLength = 10;
+        maxSteps = 10_000;
+        adaptive = false;
+        bothWays = true;
+    }
+
+    public double[] trace(double x, double y) {
+        var tracer = tracers.get();
+        tracer.len = 0;
+        if (bothWays) {
+            tracer.run(x, y, -1);
+            tracer.reverse();
+            tracer.len -= 2;
+        }
+        tracer.run(x, y, 1);
+        return Arrays.copyOf(tracer.line, tracer.len);
+    }
+
+    // seeds holds x0, y0, x1, y1, ..., the i-th line starts from the i-th seed
+    public double[][] trace(double[] seeds) {
+        if ((seeds.length & 1) != 0)
+            throw new IllegalArgumentException("AHD:: Seeds should be pairs of x and y");
+        var res = new double[seeds.length / 2][];
+        Parallel.forRange(0, res.length, Parallel.grainOf(res.length, 1), (s, e) -> {
+            for (int i = s; i < e; i++)
+                res[i] = trace(seeds[2 * i], seeds[2 * i + 1]);
+        });
+        return res;
+    }
+
+    public static double[] seedGrid(double xMin, double xMax, double yMin, double yMax, int nx, int ny) {
+        if (nx <= 0 || ny <= 0)
+            throw new IllegalArgumentException("AHD:: Invalid count of seeds");
+        var res = new double[2 * nx * ny];
+        for (int j = 0, k = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                res[k++] = xMin + (xMax - xMin) * (i + 0.5) / nx;
+                res[k++] = yMin + (yMax - yMin) * (j + 0.5) / ny;
+            }
+        }
+        return res;
+    }
+
+    // unit direction of the field times sign, false where the field is undefined or vanishes
+    private boolean direction(double x, double y, double sign, double[] out) {
+        if (!field.sample(x, y, out))
+            return false;
+        var len = Math.sqrt(out[0] * out[0] + out[1] * out[1]);
+        if (!(len > EPSILON))
+            return false;
+        out[0] *= sign / len;
+        out[1] *= sign / len;
+        return true;
+    }
+
+    private final class Tracer {
+        private final double[] k1 = new double[2], k2 = new double[2], k3 = new double[2], k4 = new double[2],
+                k5 = new double[2], k6 = new double[2], k7 = new double[2];
+        private double[] line = new double[256];
+        private int len;
+
+        private void add(double x, double y) {
+            if (len + 2 > line.length)
+                line = Arrays.copyOf(line, 2 * line.length);
+            line[len++] = x;
+            line[len++] = y;
+        }
+
+        private void reverse() {
+            for (int i = 0, j = len - 2; i < j; i += 2, j -= 2) {
+                var tx = line[i];
+                var ty = line[i + 1];
+                line[i] = line[j];
+                line[i + 1] = line[j + 1];
+                line[j] = tx;
+                line[j + 1] = ty;
+            }
+        }
+
+        private void run(double x, double y, double sign) {
+            add(x, y);
+            if (!direction(x, y, sign, k1))
+                return;
+            var h = adaptive ? Math.min(step, maxStep) : step;
+            var length = 0.0;
+            for (int n = 0; n < maxSteps && length < maxLength; n++) {
+                double nx, ny;
+                if (adaptive) {
+                    // k1 holds the direction at (x, y) and stays valid while a step is rejected
+                    while (true) {
+                        if (!dormandPrince(x, y, h, sign))
+                            return;
+                        var ex = h * (71.0 / 57600 * k1[0] - 71.0 / 16695 * k3[0] + 71.0 / 1920 * k4[0] -
+                                17253.0 / 339200 * k5[0] + 22.0 / 525 * k6[0] - 1.0 / 40 * k7[0]);
+                        var ey = h * (71.0 / 57600 * k1[1] - 71.0 / 16695 * k3[1] + 71.0 / 1920 * k4[1] -
+                                17253.0 / 339200 * k5[1] + 22.0 / 525 * k6[1] - 1.0 / 40 * k7[1]);
+                        var err = Math.max(Math.abs(ex), Math.abs(ey)) / tolerance;
+                        var factor = err == 0 ? 5 : Math.min(5, Math.max(0.2, 0.9 * Math.pow(err, -0.2)));
+                        if (err <= 1 || h <= minStep) {
+                            nx = x + h * (35.0 / 384 * k1[0] + 500.0 / 1113 * k3[0] + 125.0 / 192 * k4[0] -
+                                    2187.0 / 6784 * k5[0] + 11.0 / 84 * k6[0]);
+                            ny = y + h * (35.0 / 384 * k1[1] + 500.0 / 1113 * k3[1] + 125.0 / 192 * k4[1] -
+                                    2187.0 / 6784 * k5[1] + 11.0 / 84 * k6[1]);
+                            length += h;
+                            h = Math.max(minStep, Math.min(maxStep, h * factor));
+                            break;
+                        }
+                        h = Math.max(minStep, h * factor);
+                    }
+                } else {
+                    if (!direction(x + h / 2 * k1[0], y + h / 2 * k1[1], sign, k2) ||
+                            !direction(x + h / 2 * k2[0], y + h / 2 * k2[1], sign, k3) ||
+                            !direction(x + h * k3[0], y + h * k3[1], sign, k4))
+                        return;
+                    nx = x + h / 6 * (k1[0] + 2 * k2[0] + 2 * k3[0] + k4[0]);
+                    ny = y + h / 6 * (k1[1] + 2 * k2[1] + 2 * k3[1] + k4[1]);
+                    length += h;
+                }
+                x = nx;
+                y = ny;
+                add(x, y);
+                if (!direction(x, y, sign, k1))
+                    return;
+            }
+        }
+
+        private boolean dormandPrince(double x, double y, double h, double sign) {
+            return direction(x + h * (k1[0] / 5), y + h * (k1[1] / 5), sign, k2) &&
+                    direction(x + h * (3.0 / 40 * k1[0] + 9.0 / 40 * k2[0]),
+                            y + h * (3.0 / 40 * k1[1] + 9.0 / 40 * k2[1]), sign, k3) &&
+                    direction(x + h * (44.0 / 45 * k1[0] - 56.0 / 15 * k2[0] + 32.0 / 9 * k3[0]),
+                            y + h * (44.0 / 45 * k1[1] - 56.0 / 15 * k2[1] + 32.0 / 9 * k3[1]), sign, k4) &&
+                    direction(x + h * (19372.0 / 6561 * k1[0] - 25360.0 / 2187 * k2[0] + 64448.0 / 6561 * k3[0] - 212.0 / 729 * k4[0]),
+                            y + h * (19372.0 / 6561 * k1[1] - 25360.0 / 2187 * k2[1] + 64448.0 / 6561 * k3[1] - 212.0 / 729 * k4[1]),
+                            sign, k5) &&
+                    direction(x + h * (9017.0 / 3168 * k1[0] - 355.0 / 33 * k2[0] + 46732.0 / 5247 * k3[0] + 49.0 / 176 * k4[0] - 5103.0 / 18656 * k5[0]),
+                            y + h * (9017.0 / 3168 * k1[1] - 355.0 / 33 * k2[1] + 46732.0 / 5247 * k3[1] + 49.0 / 176 * k4[1] - 5103.0 / 18656 * k5[1]),
+                            sign, k6) &&
+                    direction(x + h * (35.0 / 384 * k1[0] + 500.0 / 1113 * k3[0] + 125.0 / 192 * k4[0] - 2187.0 / 6784 * k5[0] + 11.0 / 84 * k6[0]),
+                            y + h * (35.0 / 384 * k1[1] + 500.0 / 1113 * k3[1] + 125.0 / 192 * k4[1] - 2187.0 / 6784 * k5[1] + 11.0 / 84 * k6[1]),
+                            sign, k7);
+        }
+    }
+
+    public FieldSampler getField() {
+        return field;
+    }
+
+    public double getStep() {
+        return step;
+    }
+
+    public void setStep(double step) {
+        if (!(step > 0))
+            throw new IllegalArgumentException("AHD:: Step should be positive");
+        this.step = step;
+    }
+
+    public double getMinStep() {
+        return minStep;
+    }
+
+    public double getMaxStep() {
+        return maxStep;
+    }
+
+    public void setStepRange(double minStep, double maxStep) {
+        if (!(minStep > 0) || !(minStep <= maxStep))
+            throw new IllegalArgumentException("AHD:: Invalid range of the step");
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("AHD:: Tolerance should be positive");
+        this.tolerance = tolerance;
+    }
+
+    public double getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(double maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    public void setMaxSteps(int maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    public boolean isBothWays() {
+        return bothWays;
+    }
+
+    public void setBothWays(boolean bothWays) {
+        this.bothWays = bothWays;
+    }
+}
@@ -0,0 +1,57 @@
+package visualization.vectorfield;
+
+import jmath.datatypes.functions.Function3D;
+import jmath.parser.Function4DParser;
+
+// plane vector field made of its two components, evaluated exactly at every sample
+@SuppressWarnings("unused")
+public final class VectorField implements FieldSampler {
+    private final Function3D u;
+    private final Function3D v;
+
+    public VectorField(Function3D u, Function3D v) {
+        this.u = u;
+        this.v = v;
+    }
+
+    public static VectorField of(Function3D u, Function3D v) {
+        return new VectorField(u, v);
+    }
+
+    // components are expressions of x and y as the function parser reads them, like "-y" and "sin(x)"
+    public static VectorField parse(String u, String v) {
+        var fu = Function4DParser.parser(u);
+        var fv = Function4DParser.parser(v);
+        if (fu == null || fv == null)
+            throw new IllegalArgumentException("AHD:: Invalid vector field (" + u + ", " + v + ")");
+        return new VectorField((x, y) -> fu.valueAt(x, y, 0), (x, y) -> fv.valueAt(x, y, 0));
+    }
+
+    // field of unit vectors pointing away from (cx, cy)
+    public static VectorField radial(double cx, double cy) {
+        return new VectorField((x, y) -> (x - cx) / Math.hypot(x - cx, y - cy), (x, y) -> (y - cy) / Math.hypot(x - cx, y - cy));
+    }
+
+    public double u(double x, double y) {
+        return u.valueAt(x, y);
+    }
+
+    public double v(double x, double y) {
+        return v.valueAt(x, y);
+    }
+
+    @Override
+    public boolean sample(double x, double y, double[] out) {
+        out[0] = u.valueAt(x, y);
+        out[1] = v.valueAt(x, y);
+        return Double.isFinite(out[0]) && Double.isFinite(out[1]);
+    }
+
+    public Function3D getU() {
+        return u;
+    }
+
+    public Function3D getV() {
+        return v;
+    }
+}